@@ -0,0 +1,107 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.ConcurrentStop;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程安全站点基准测试
+ * <p>
+ * 多个线程共享同一站点，每个线程驾驶自己的车辆。用-t 1,2,4,...运行，比较吞吐量随线程数的变化
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentStopBenchmark {
+
+    /**
+     * 共享站点
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        public Route route;
+        public ConcurrentStop stop;
+        public ConcurrentStop destination;
+        public AtomicInteger nextId;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            route = new BusRoute(1, "benchmark");
+            stop = new ConcurrentStop("shared", 0, 0);
+            destination = new ConcurrentStop("destination", 10, 0);
+            route.addStop(stop);
+            route.addStop(destination);
+            nextId = new AtomicInteger();
+        }
+    }
+
+    /**
+     * 每个线程的车辆和乘客
+     */
+    @State(Scope.Thread)
+    public static class Driver {
+        public PublicTransport bus;
+        public Passenger passenger;
+
+        @Setup(Level.Trial)
+        public void setUp(Shared shared) {
+            int id = shared.nextId.getAndIncrement();
+            bus = new Bus(id, 50, shared.route, "BUS" + id);
+            passenger = new Passenger("rider" + id, shared.destination);
+            shared.stop.transportArrive(bus);
+        }
+    }
+
+    /**
+     * 车辆离站后重新到站
+     *
+     * @param shared
+     * @param driver
+     * @return
+     */
+    @Benchmark
+    public boolean arriveLeave(Shared shared, Driver driver) {
+        Stop stop = shared.stop;
+        stop.transportLeave(driver.bus);
+        stop.transportArrive(driver.bus);
+        return stop.isAtStop(driver.bus);
+    }
+
+    /**
+     * 乘客候车、上车后清客
+     *
+     * @param shared
+     * @param driver
+     * @return
+     */
+    @Benchmark
+    public List<Passenger> waitBoard(Shared shared, Driver driver) {
+        shared.stop.addPassenger(driver.passenger);
+        shared.stop.board(driver.bus);
+        return driver.bus.unload();
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试网络
+ * <p>
+ * 一条巴士线路，每站有waitingPassengers名前往线路其他站的候车乘客，vehicles辆车从始发站出发
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+@State(Scope.Thread)
+public class NetworkState {
+
+    /**
+     * 每条线路站数
+     */
+    @Param({"10", "100", "1000"})
+    public int stopsPerRoute;
+
+    /**
+     * 车辆数
+     */
+    @Param({"1", "100"})
+    public int vehicles;
+
+    /**
+     * 每站候车乘客数
+     */
+    @Param({"0", "1000"})
+    public int waitingPassengers;
+
+    public Route route;
+
+    public List<Stop> stops;
+
+    public List<PublicTransport> transports;
+
+    /**
+     * 下一辆要移动的车辆
+     */
+    public int nextTransport;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        route = new BusRoute(1, "benchmark");
+        stops = new ArrayList<>(stopsPerRoute);
+        for (int i = 0; i < stopsPerRoute; i++) {
+            Stop stop = new Stop("stop" + i, i, i % 7);
+            stops.add(stop);
+            route.addStop(stop);
+        }
+        for (int i = 0; i < stopsPerRoute; i++) {
+            Stop stop = stops.get(i);
+            for (int j = 0; j < waitingPassengers; j++) {
+                stop.addPassenger(new Passenger("waiting", stops.get((i + j + 1) % stopsPerRoute)));
+            }
+        }
+        transports = new ArrayList<>(vehicles);
+        for (int i = 0; i < vehicles; i++) {
+            PublicTransport bus = new Bus(i, 50, route, "BUS" + i);
+            stops.get(0).transportArrive(bus);
+            transports.add(bus);
+        }
+    }
+
+    /**
+     * 轮流取出下一辆车
+     *
+     * @return
+     */
+    public PublicTransport nextTransport() {
+        PublicTransport transport = transports.get(nextTransport);
+        nextTransport = nextTransport + 1 == transports.size() ? 0 : nextTransport + 1;
+        return transport;
+    }
+}
@@ -0,0 +1,119 @@
+package benchmarks;
+
+import exceptions.OverCapacityException;
+import exceptions.TransportResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import passengers.Passenger;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交通工具基准测试
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublicTransportBenchmark {
+
+    /**
+     * 满载所需乘客，目的站分布在整条线路上
+     */
+    @State(Scope.Thread)
+    public static class Load {
+        public List<Passenger> passengers;
+
+        @Setup(Level.Trial)
+        public void setUp(NetworkState state) {
+            PublicTransport transport = state.transports.get(0);
+            passengers = new ArrayList<>(transport.getCapacity());
+            for (int i = 0; i < transport.getCapacity(); i++) {
+                passengers.add(new Passenger("rider" + i, state.stops.get(i % state.stops.size())));
+            }
+        }
+    }
+
+    /**
+     * 轮流让车队中的车辆装满后清客，乘客按stopsPerRoute个目的站分组
+     *
+     * @param state
+     * @param load
+     * @return
+     * @throws OverCapacityException
+     */
+    @Benchmark
+    public List<Passenger> addPassengerUnload(NetworkState state, Load load) throws OverCapacityException {
+        PublicTransport transport = state.nextTransport();
+        for (Passenger passenger : load.passengers) {
+            transport.addPassenger(passenger);
+        }
+        return transport.unload();
+    }
+
+    /**
+     * 满载时上车被拒
+     *
+     * @param state
+     * @param load
+     * @return
+     */
+    @Benchmark
+    public boolean addPassengerOverCapacity(NetworkState state, Load load) {
+        PublicTransport transport = state.transports.get(0);
+        try {
+            for (Passenger passenger : load.passengers) {
+                transport.addPassenger(passenger);
+            }
+            transport.addPassenger(load.passengers.get(0));
+            return true;
+        } catch (OverCapacityException e) {
+            return false;
+        } finally {
+            transport.unload();
+        }
+    }
+
+    /**
+     * 满载时上车被拒(结果码)
+     *
+     * @param state
+     * @param load
+     * @return
+     */
+    @Benchmark
+    public boolean tryAddPassengerOverCapacity(NetworkState state, Load load) {
+        PublicTransport transport = state.transports.get(0);
+        transport.tryAddPassengers(load.passengers);
+        boolean added = transport.tryAddPassenger(load.passengers.get(0)) == TransportResult.SUCCESS;
+        transport.unload();
+        return added;
+    }
+
+    /**
+     * 轮流序列化车队中的车辆
+     *
+     * @param state
+     * @return
+     */
+    @Benchmark
+    public String transportToString(NetworkState state) {
+        return state.nextTransport().toString();
+    }
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线路基准测试
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteBenchmark {
+
+    /**
+     * 新建stopsPerRoute个站点并依次加入线路
+     *
+     * @param state
+     * @return
+     */
+    @Benchmark
+    public Route addStop(NetworkState state) {
+        Route route = new BusRoute(2, "build");
+        for (int i = 0; i < state.stopsPerRoute; i++) {
+            route.addStop(new Stop("stop" + i, i, 0));
+        }
+        return route;
+    }
+
+    @Benchmark
+    public String routeToString(NetworkState state) {
+        return state.route.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import passengers.Passenger;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 站点基准测试
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StopBenchmark {
+
+    /**
+     * 车辆从当前站出发前往下一站(transportDepart + transportArrive)
+     *
+     * @param state
+     * @return
+     */
+    @Benchmark
+    public Stop transportDepart(NetworkState state) {
+        PublicTransport transport = state.nextTransport();
+        Stop nextStop = transport.nextStop();
+        transport.getCurrentStop().transportDepart(transport, nextStop);
+        return nextStop;
+    }
+
+    /**
+     * 车辆前往下一站，从waitingPassengers名候车乘客中上客，再清客放回候车队列使每站人数保持不变
+     *
+     * @param state
+     * @return
+     */
+    @Benchmark
+    public int arriveBoard(NetworkState state) {
+        PublicTransport transport = state.nextTransport();
+        Stop nextStop = transport.nextStop();
+        transport.getCurrentStop().transportDepart(transport, nextStop);
+        int boarded = nextStop.board(transport);
+        for (Passenger passenger : transport.unload()) {
+            nextStop.addPassenger(passenger);
+        }
+        return boarded;
+    }
+
+    @Benchmark
+    public int distanceTo(NetworkState state) {
+        return state.stops.get(0).distanceTo(state.stops.get(state.stops.size() - 1));
+    }
+
+    @Benchmark
+    public String stopToString(NetworkState state) {
+        return state.stops.get(0).toString();
+    }
+}
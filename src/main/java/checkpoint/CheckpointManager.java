@@ -0,0 +1,633 @@
+package checkpoint;
+
+import events.NetworkEvents;
+import events.NetworkListener;
+import passengers.ConcessionPassenger;
+import passengers.Passenger;
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * 检查点管理
+ * <p>
+ * 保存各站候车乘客和在站车辆、各车所载乘客和线路位置，用于长时间仿真崩溃后恢复。
+ * 检查点分为全量和增量：注册到{@link NetworkEvents}后按事件记录自上次检查点以来变化的站点和车辆，
+ * 增量检查点只保存这些站点和车辆；每fullEvery个检查点保存一次全量，全量写完后删除更早的文件。
+ * <p>
+ * {@link #checkpoint()}须在仿真线程上两步之间调用：在调用线程上把变化的站点和车辆复制为只读镜像(停顿与变化量成正比)，
+ * 编码和写文件在后台执行器上按顺序完成，先写临时文件再改名，不会留下写了一半的检查点。
+ * 某次写入失败不影响之后的写入，失败由{@link #awaitWrites()}报告，且下一个检查点保存全量以补上丢失的变化。
+ * {@link #restore()}读取最新的全量检查点和其后序号连续的增量检查点，耗时与文件大小成正比。
+ * <p>
+ * 目录中已有检查点时，新检查点的序号接在已有文件之后，不会被更早运行的文件覆盖或在恢复时被其遮蔽。
+ * 站点和车辆按构造时线路的顺序编号，恢复时须用相同顺序构造的线路；
+ * 乘客按姓名、目的站和优惠码重建，目的站不在这些线路上时恢复为空。列式存储的乘客句柄不在检查点中
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class CheckpointManager implements NetworkListener {
+
+    /**
+     * 文件标识"CKPT"
+     */
+    private static final int MAGIC = 0x434B5054;
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * 默认每多少个检查点保存一次全量
+     */
+    private static final int DEFAULT_FULL_EVERY = 10;
+
+    private static final String FILE_PREFIX = "checkpoint-";
+
+    private static final String FULL_SUFFIX = ".full";
+
+    private static final String DELTA_SUFFIX = ".delta";
+
+    /**
+     * 检查点目录
+     */
+    private Path directory;
+
+    /**
+     * 后台写入执行器
+     */
+    private Executor executor;
+
+    /**
+     * 每多少个检查点保存一次全量
+     */
+    private int fullEvery;
+
+    /**
+     * 站点，按编号排列
+     */
+    private List<Stop> stops;
+
+    /**
+     * 车辆，按编号排列
+     */
+    private List<PublicTransport> vehicles;
+
+    private Map<Stop, Integer> stopIndexes;
+
+    private Map<PublicTransport, Integer> vehicleIndexes;
+
+    /**
+     * 自上次检查点以来变化的站点和车辆
+     */
+    private Set<Stop> dirtyStops;
+
+    private Set<PublicTransport> dirtyVehicles;
+
+    /**
+     * 下一个检查点序号
+     */
+    private long sequence;
+
+    /**
+     * 距上次全量的检查点数，为0时下一个检查点保存全量
+     */
+    private int sinceFull;
+
+    /**
+     * 最近一次后台写入
+     */
+    private CompletableFuture<Path> lastWrite;
+
+    /**
+     * 后台写入失败后，下一个检查点保存全量
+     */
+    private volatile boolean forceFull;
+
+    /**
+     * 尚未报告的第一个写入失败
+     */
+    private AtomicReference<Throwable> writeFailure;
+
+    public CheckpointManager(Path directory, Collection<? extends Route> routes, Executor executor) {
+        this(directory, routes, executor, DEFAULT_FULL_EVERY);
+    }
+
+    public CheckpointManager(Path directory, Collection<? extends Route> routes, Executor executor, int fullEvery) {
+        if (Objects.isNull(directory) || Objects.isNull(routes) || Objects.isNull(executor)) {
+            throw new IllegalArgumentException("Directory, Routes And Executor Can Not Be Empty!");
+        }
+        this.directory = directory;
+        this.executor = executor;
+        this.fullEvery = Math.max(fullEvery, 1);
+        this.stops = new ArrayList<>();
+        this.vehicles = new ArrayList<>();
+        this.stopIndexes = new IdentityHashMap<>();
+        this.vehicleIndexes = new IdentityHashMap<>();
+        for (Route route : routes) {
+            for (Stop stop : route.getStopsOnRoute()) {
+                if (!stopIndexes.containsKey(stop)) {
+                    stopIndexes.put(stop, stops.size());
+                    stops.add(stop);
+                }
+            }
+            for (PublicTransport transport : route.getTransports()) {
+                if (!vehicleIndexes.containsKey(transport)) {
+                    vehicleIndexes.put(transport, vehicles.size());
+                    vehicles.add(transport);
+                }
+            }
+        }
+        this.dirtyStops = ConcurrentHashMap.newKeySet();
+        this.dirtyVehicles = ConcurrentHashMap.newKeySet();
+        this.lastWrite = CompletableFuture.completedFuture(null);
+        this.writeFailure = new AtomicReference<>();
+        //序号接在目录中已有的检查点之后
+        TreeMap<Long, Path> fulls = new TreeMap<>();
+        TreeMap<Long, Path> deltas = new TreeMap<>();
+        try {
+            list(fulls, deltas);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long last = Math.max(fulls.isEmpty() ? -1 : fulls.lastKey(), deltas.isEmpty() ? -1 : deltas.lastKey());
+        this.sequence = last + 1;
+    }
+
+    /**
+     * 保存检查点，全量或增量由检查点计数决定
+     *
+     * @return 写入完成后给出文件路径
+     */
+    public CompletableFuture<Path> checkpoint() {
+        return checkpoint(sinceFull == 0);
+    }
+
+    /**
+     * 保存全量检查点
+     *
+     * @return 写入完成后给出文件路径
+     */
+    public CompletableFuture<Path> checkpointFull() {
+        return checkpoint(true);
+    }
+
+    /**
+     * 在调用线程上复制镜像，后台编码写入
+     *
+     * @param full
+     * @return
+     */
+    private synchronized CompletableFuture<Path> checkpoint(boolean full) {
+        //之前的写入失败时增量序号已断开，改为全量
+        if (forceFull) {
+            forceFull = false;
+            full = true;
+        }
+        Collection<Stop> changedStops = full ? stops : drain(dirtyStops);
+        Collection<PublicTransport> changedVehicles = full ? vehicles : drain(dirtyVehicles);
+        if (full) {
+            dirtyStops.clear();
+            dirtyVehicles.clear();
+        }
+        List<StopImage> stopImages = new ArrayList<>(changedStops.size());
+        for (Stop stop : changedStops) {
+            Integer index = stopIndexes.get(stop);
+            if (index != null) {
+                stopImages.add(new StopImage(index, images(stop.getWaitingPassengers()), indexes(stop.getVehicles())));
+            }
+        }
+        List<VehicleImage> vehicleImages = new ArrayList<>(changedVehicles.size());
+        for (PublicTransport transport : changedVehicles) {
+            Integer index = vehicleIndexes.get(transport);
+            if (index != null) {
+                vehicleImages.add(new VehicleImage(index, transport.getCursor().getPosition(),
+                        transport.getCursor().getDirection(), images(transport.getPassengers())));
+            }
+        }
+
+        long current = sequence++;
+        sinceFull = full ? 1 : sinceFull + 1;
+        if (sinceFull >= fullEvery) {
+            sinceFull = 0;
+        }
+        String name = String.format("%s%016d%s", FILE_PREFIX, current, full ? FULL_SUFFIX : DELTA_SUFFIX);
+        Path path = directory.resolve(name);
+        boolean writeFull = full;
+        //按顺序写入，前一个失败不影响后续写入
+        lastWrite = lastWrite.exceptionally(e -> null).thenApplyAsync(e -> {
+            write(path, current, writeFull, stopImages, vehicleImages);
+            if (writeFull) {
+                prune(current);
+            }
+            return path;
+        }, executor).whenComplete((e, error) -> {
+            if (Objects.nonNull(error)) {
+                writeFailure.compareAndSet(null, error);
+                forceFull = true;
+            }
+        });
+        return lastWrite;
+    }
+
+    /**
+     * 等待所有后台写入完成
+     *
+     * @throws IOException 上次调用以来有写入失败，报告其中第一个
+     */
+    public void awaitWrites() throws IOException {
+        try {
+            lastWrite.join();
+        } catch (RuntimeException e) {
+            //失败已记录在writeFailure中
+        }
+        Throwable error = writeFailure.getAndSet(null);
+        if (Objects.isNull(error)) {
+            return;
+        }
+        Throwable cause = Objects.isNull(error.getCause()) ? error : error.getCause();
+        throw cause instanceof UncheckedIOException ? ((UncheckedIOException) cause).getCause()
+                : new IOException("Checkpoint Write Failed!", cause);
+    }
+
+    /**
+     * 恢复最新的检查点
+     * <p>
+     * 读取最新的全量检查点，再按序号依次应用其后连续的增量检查点；恢复后下一个检查点为全量
+     *
+     * @return 恢复到的检查点序号，没有检查点时返回-1
+     * @throws IOException
+     */
+    public synchronized long restore() throws IOException {
+        awaitWrites();
+        TreeMap<Long, Path> fulls = new TreeMap<>();
+        TreeMap<Long, Path> deltas = new TreeMap<>();
+        list(fulls, deltas);
+        if (fulls.isEmpty()) {
+            return -1;
+        }
+        long restored = fulls.lastKey();
+        read(fulls.lastEntry().getValue());
+        while (deltas.containsKey(restored + 1)) {
+            read(deltas.get(++restored));
+        }
+        //序号断开后的增量无法应用，删除以免与之后的检查点混淆
+        for (Path path : deltas.tailMap(restored, false).values()) {
+            Files.deleteIfExists(path);
+        }
+        sequence = restored + 1;
+        sinceFull = 0;
+        dirtyStops.clear();
+        dirtyVehicles.clear();
+        return restored;
+    }
+
+    /**
+     * 标记站点已变化，用于不经过{@link NetworkEvents}的修改
+     *
+     * @param stop
+     */
+    public void markDirty(Stop stop) {
+        if (Objects.nonNull(stop)) {
+            dirtyStops.add(stop);
+        }
+    }
+
+    /**
+     * 标记车辆已变化，用于不经过{@link NetworkEvents}的修改(如直接调用travelTo)
+     *
+     * @param transport
+     */
+    public void markDirty(PublicTransport transport) {
+        if (Objects.nonNull(transport)) {
+            dirtyVehicles.add(transport);
+        }
+    }
+
+    public int dirtyStopCount() {
+        return dirtyStops.size();
+    }
+
+    public int dirtyVehicleCount() {
+        return dirtyVehicles.size();
+    }
+
+    @Override
+    public void onArrive(Stop stop, PublicTransport transport) {
+        dirtyStops.add(stop);
+        dirtyVehicles.add(transport);
+    }
+
+    @Override
+    public void onDepart(Stop stop, PublicTransport transport) {
+        dirtyStops.add(stop);
+        dirtyVehicles.add(transport);
+    }
+
+    @Override
+    public void onWait(Stop stop, Passenger passenger) {
+        dirtyStops.add(stop);
+    }
+
+    @Override
+    public void onBoard(PublicTransport transport, Passenger passenger) {
+        dirtyVehicles.add(transport);
+        //从站点上车时候车乘客也变化
+        markDirty(transport.getCurrentStop());
+    }
+
+    @Override
+    public void onAlight(PublicTransport transport, Passenger passenger) {
+        dirtyVehicles.add(transport);
+    }
+
+    /**
+     * 取出并清空变化集合，按编号排序使文件内容稳定
+     *
+     * @param dirty
+     * @param <T>
+     * @return
+     */
+    private <T> List<T> drain(Set<T> dirty) {
+        List<T> drained = new ArrayList<>(dirty.size());
+        for (T e : dirty) {
+            if (dirty.remove(e)) {
+                drained.add(e);
+            }
+        }
+        drained.sort((a, b) -> Integer.compare(indexOf(a), indexOf(b)));
+        return drained;
+    }
+
+    private int indexOf(Object e) {
+        Integer index = e instanceof Stop ? stopIndexes.get(e) : vehicleIndexes.get(e);
+        return index == null ? Integer.MAX_VALUE : index;
+    }
+
+    private PassengerImage[] images(List<Passenger> passengers) {
+        PassengerImage[] images = new PassengerImage[passengers.size()];
+        for (int i = 0; i < images.length; i++) {
+            Passenger passenger = passengers.get(i);
+            Integer destination = Objects.isNull(passenger.getDestination()) ? null
+                    : stopIndexes.get(passenger.getDestination());
+            boolean concession = passenger instanceof ConcessionPassenger;
+            images[i] = new PassengerImage(passenger.getName(), destination == null ? -1 : destination, concession,
+                    concession ? ((ConcessionPassenger) passenger).getConcessionId() : 0);
+        }
+        return images;
+    }
+
+    private int[] indexes(List<PublicTransport> transports) {
+        int[] indexes = new int[transports.size()];
+        int count = 0;
+        for (PublicTransport transport : transports) {
+            Integer index = vehicleIndexes.get(transport);
+            if (index != null) {
+                indexes[count++] = index;
+            }
+        }
+        return count == indexes.length ? indexes : Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * 编码写入，先写临时文件再改名
+     */
+    private void write(Path path, long current, boolean full, List<StopImage> stopImages,
+                       List<VehicleImage> vehicleImages) {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                    1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(current);
+                out.writeBoolean(full);
+                out.writeInt(stops.size());
+                out.writeInt(vehicles.size());
+                out.writeInt(stopImages.size());
+                for (StopImage image : stopImages) {
+                    out.writeInt(image.index);
+                    writePassengers(out, image.waiting);
+                    out.writeInt(image.vehicles.length);
+                    for (int vehicle : image.vehicles) {
+                        out.writeInt(vehicle);
+                    }
+                }
+                out.writeInt(vehicleImages.size());
+                for (VehicleImage image : vehicleImages) {
+                    out.writeInt(image.index);
+                    out.writeInt(image.position);
+                    out.writeInt(image.direction);
+                    writePassengers(out, image.passengers);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writePassengers(DataOutputStream out, PassengerImage[] passengers) throws IOException {
+        out.writeInt(passengers.length);
+        for (PassengerImage passenger : passengers) {
+            out.writeUTF(passenger.name);
+            out.writeInt(passenger.destination);
+            out.writeBoolean(passenger.concession);
+            out.writeInt(passenger.concessionId);
+        }
+    }
+
+    /**
+     * 读取并应用一个检查点
+     *
+     * @param path
+     * @throws IOException
+     */
+    private void read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Invalid Checkpoint " + path + "!");
+            }
+            in.readLong();
+            in.readBoolean();
+            if (in.readInt() != stops.size() || in.readInt() != vehicles.size()) {
+                throw new IOException("Checkpoint " + path + " Does Not Match Network!");
+            }
+            int stopCount = in.readInt();
+            for (int i = 0; i < stopCount; i++) {
+                Stop stop = stops.get(checkIndex(in.readInt(), stops.size()));
+                List<Passenger> waiting = readPassengers(in);
+                int vehicleCount = in.readInt();
+                List<PublicTransport> present = new ArrayList<>(vehicleCount);
+                for (int j = 0; j < vehicleCount; j++) {
+                    present.add(vehicles.get(checkIndex(in.readInt(), vehicles.size())));
+                }
+                stop.restoreState(waiting, present);
+            }
+            int vehicleCount = in.readInt();
+            for (int i = 0; i < vehicleCount; i++) {
+                PublicTransport transport = vehicles.get(checkIndex(in.readInt(), vehicles.size()));
+                int position = in.readInt();
+                int direction = in.readInt();
+                transport.restoreState(position, direction, readPassengers(in));
+            }
+        }
+    }
+
+    private List<Passenger> readPassengers(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Passenger> passengers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            int destination = in.readInt();
+            Stop stop = destination < 0 ? null : stops.get(checkIndex(destination, stops.size()));
+            boolean concession = in.readBoolean();
+            int concessionId = in.readInt();
+            passengers.add(concession ? new ConcessionPassenger(name, stop, concessionId) : new Passenger(name, stop));
+        }
+        return passengers;
+    }
+
+    private static int checkIndex(int index, int size) throws IOException {
+        if (index < 0 || index >= size) {
+            throw new IOException("Checkpoint Index " + index + " Out Of Range!");
+        }
+        return index;
+    }
+
+    /**
+     * 删除早于指定全量检查点的文件
+     *
+     * @param full
+     */
+    private void prune(long full) {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(e -> {
+                String name = e.getFileName().toString();
+                if (!name.startsWith(FILE_PREFIX)) {
+                    return false;
+                }
+                String suffix = name.endsWith(FULL_SUFFIX) ? FULL_SUFFIX
+                        : name.endsWith(DELTA_SUFFIX) ? DELTA_SUFFIX : null;
+                return suffix != null && sequenceOf(name, suffix) < full;
+            }).forEach(e -> {
+                try {
+                    Files.deleteIfExists(e);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按序号列出目录中的全量和增量检查点
+     *
+     * @param fulls
+     * @param deltas
+     * @throws IOException
+     */
+    private void list(Map<Long, Path> fulls, Map<Long, Path> deltas) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(e -> {
+                String name = e.getFileName().toString();
+                if (name.startsWith(FILE_PREFIX) && name.endsWith(FULL_SUFFIX)) {
+                    fulls.put(sequenceOf(name, FULL_SUFFIX), e);
+                } else if (name.startsWith(FILE_PREFIX) && name.endsWith(DELTA_SUFFIX)) {
+                    deltas.put(sequenceOf(name, DELTA_SUFFIX), e);
+                }
+            });
+        }
+    }
+
+    private static long sequenceOf(String name, String suffix) {
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - suffix.length()));
+    }
+
+    public List<Stop> getStops() {
+        return Collections.unmodifiableList(stops);
+    }
+
+    public List<PublicTransport> getVehicles() {
+        return Collections.unmodifiableList(vehicles);
+    }
+
+    /**
+     * 乘客镜像
+     */
+    private static class PassengerImage {
+        private final String name;
+        private final int destination;
+        private final boolean concession;
+        private final int concessionId;
+
+        private PassengerImage(String name, int destination, boolean concession, int concessionId) {
+            this.name = name;
+            this.destination = destination;
+            this.concession = concession;
+            this.concessionId = concessionId;
+        }
+    }
+
+    /**
+     * 站点镜像
+     */
+    private static class StopImage {
+        private final int index;
+        private final PassengerImage[] waiting;
+        private final int[] vehicles;
+
+        private StopImage(int index, PassengerImage[] waiting, int[] vehicles) {
+            this.index = index;
+            this.waiting = waiting;
+            this.vehicles = vehicles;
+        }
+    }
+
+    /**
+     * 车辆镜像
+     */
+    private static class VehicleImage {
+        private final int index;
+        private final int position;
+        private final int direction;
+        private final PassengerImage[] passengers;
+
+        private VehicleImage(int index, int position, int direction, PassengerImage[] passengers) {
+            this.index = index;
+            this.position = position;
+            this.direction = direction;
+            this.passengers = passengers;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package events;
+
+import passengers.Passenger;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 网络事件分发
+ * <p>
+ * 全局监听器注册表，{@link Stop}和{@link PublicTransport}在状态变化后通过此类通知监听器。
+ * 调用方先判断{@link #isEnabled()}再分发，没有监听器时只有一次字段读取。
+ * 注册表写时复制，分发时不加锁
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public final class NetworkEvents {
+
+    private static final NetworkListener[] EMPTY = new NetworkListener[0];
+
+    /**
+     * 已注册的监听器
+     */
+    private static volatile NetworkListener[] listeners = EMPTY;
+
+    private NetworkEvents() {
+    }
+
+    public static boolean isEnabled() {
+        return listeners.length > 0;
+    }
+
+    /**
+     * 注册监听器，重复注册会被忽略
+     *
+     * @param listener
+     */
+    public static synchronized void register(NetworkListener listener) {
+        if (Objects.isNull(listener)) {
+            throw new IllegalArgumentException("Listener Can Not Be Empty!");
+        }
+        for (NetworkListener e : listeners) {
+            if (e == listener) {
+                return;
+            }
+        }
+        NetworkListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * 注销监听器
+     *
+     * @param listener
+     * @return 未注册时返回false
+     */
+    public static synchronized boolean unregister(NetworkListener listener) {
+        NetworkListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                NetworkListener[] shrunk = new NetworkListener[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                listeners = shrunk.length == 0 ? EMPTY : shrunk;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 注销所有监听器
+     */
+    public static synchronized void clear() {
+        listeners = EMPTY;
+    }
+
+    public static void arrive(Stop stop, PublicTransport transport) {
+        for (NetworkListener listener : listeners) {
+            listener.onArrive(stop, transport);
+        }
+    }
+
+    public static void depart(Stop stop, PublicTransport transport) {
+        for (NetworkListener listener : listeners) {
+            listener.onDepart(stop, transport);
+        }
+    }
+
+    public static void waiting(Stop stop, Passenger passenger) {
+        for (NetworkListener listener : listeners) {
+            listener.onWait(stop, passenger);
+        }
+    }
+
+    public static void waitEnd(Stop stop, Passenger passenger) {
+        for (NetworkListener listener : listeners) {
+            listener.onWaitEnd(stop, passenger);
+        }
+    }
+
+    public static void board(PublicTransport transport, Passenger passenger) {
+        for (NetworkListener listener : listeners) {
+            listener.onBoard(transport, passenger);
+        }
+    }
+
+    public static void alight(PublicTransport transport, Passenger passenger) {
+        for (NetworkListener listener : listeners) {
+            listener.onAlight(transport, passenger);
+        }
+    }
+
+    public static void waitingHandle(Stop stop, int handle) {
+        for (NetworkListener listener : listeners) {
+            listener.onWaitHandle(stop, handle);
+        }
+    }
+
+    public static void boardHandle(PublicTransport transport, int handle) {
+        for (NetworkListener listener : listeners) {
+            listener.onBoardHandle(transport, handle);
+        }
+    }
+
+    public static void alightHandle(PublicTransport transport, int handle) {
+        for (NetworkListener listener : listeners) {
+            listener.onAlightHandle(transport, handle);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package events;
+
+import passengers.Passenger;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+/**
+ * 网络状态变化监听器
+ * <p>
+ * 在状态变化完成后回调，回调在触发变化的线程上同步执行，实现应尽快返回且不能修改网络。
+ * 默认实现为空，只需覆盖关心的事件
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public interface NetworkListener {
+
+    /**
+     * 车辆到站，到站下客完成后回调
+     *
+     * @param stop
+     * @param transport
+     */
+    default void onArrive(Stop stop, PublicTransport transport) {
+    }
+
+    /**
+     * 车辆离站
+     *
+     * @param stop
+     * @param transport
+     */
+    default void onDepart(Stop stop, PublicTransport transport) {
+    }
+
+    /**
+     * 乘客进入站点候车
+     *
+     * @param stop
+     * @param passenger
+     */
+    default void onWait(Stop stop, Passenger passenger) {
+    }
+
+    /**
+     * 乘客结束候车，从站点上车时在{@link #onBoard(PublicTransport, Passenger)}之前回调
+     *
+     * @param stop
+     * @param passenger
+     */
+    default void onWaitEnd(Stop stop, Passenger passenger) {
+    }
+
+    /**
+     * 乘客上车
+     *
+     * @param transport
+     * @param passenger
+     */
+    default void onBoard(PublicTransport transport, Passenger passenger) {
+    }
+
+    /**
+     * 乘客下车
+     *
+     * @param transport
+     * @param passenger
+     */
+    default void onAlight(PublicTransport transport, Passenger passenger) {
+    }
+
+    /**
+     * 列式存储中的乘客进入站点候车
+     *
+     * @param stop
+     * @param handle 乘客句柄
+     */
+    default void onWaitHandle(Stop stop, int handle) {
+    }
+
+    /**
+     * 列式存储中的乘客上车，从站点上车时也表示结束候车
+     *
+     * @param transport
+     * @param handle    乘客句柄
+     */
+    default void onBoardHandle(PublicTransport transport, int handle) {
+    }
+
+    /**
+     * 列式存储中的乘客下车
+     *
+     * @param transport
+     * @param handle    乘客句柄
+     */
+    default void onAlightHandle(PublicTransport transport, int handle) {
+    }
+}
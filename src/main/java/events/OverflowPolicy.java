@@ -0,0 +1,25 @@
+package events;
+
+/**
+ * 订阅者缓冲区满时的处理方式
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 丢弃最早的未送达事件
+     */
+    DROP_OLDEST,
+
+    /**
+     * 丢弃新事件
+     */
+    DROP_NEWEST,
+
+    /**
+     * 同一站点同一车辆的未送达事件只保留最新一条，原位置不变；缓冲区仍满时丢弃最早的事件
+     */
+    COALESCE
+}
@@ -0,0 +1,111 @@
+package events;
+
+import passengers.Passenger;
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * 车辆到站、离站和乘客上车事件
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class TransportEvent {
+
+    /**
+     * 事件类型
+     */
+    public enum Kind {
+        ARRIVAL, DEPARTURE, BOARDING
+    }
+
+    private final Kind kind;
+
+    /**
+     * 站点，上车时为车辆当前停靠站，可能为空
+     */
+    private final Stop stop;
+
+    private final PublicTransport transport;
+
+    /**
+     * 上车乘客，其他事件为空
+     */
+    private final Passenger passenger;
+
+    /**
+     * 发布序号，同一发布者内递增
+     */
+    private final long sequence;
+
+    public TransportEvent(Kind kind, Stop stop, PublicTransport transport, Passenger passenger, long sequence) {
+        this.kind = kind;
+        this.stop = stop;
+        this.transport = transport;
+        this.passenger = passenger;
+        this.sequence = sequence;
+    }
+
+    /**
+     * 按站点过滤
+     *
+     * @param stop
+     * @return
+     */
+    public static Predicate<TransportEvent> atStop(Stop stop) {
+        return e -> e.stop == stop;
+    }
+
+    /**
+     * 按线路过滤
+     *
+     * @param route
+     * @return
+     */
+    public static Predicate<TransportEvent> onRoute(Route route) {
+        return e -> e.transport.getRoute() == route;
+    }
+
+    /**
+     * 按车辆类型过滤，如"bus"
+     *
+     * @param type
+     * @return
+     */
+    public static Predicate<TransportEvent> ofType(String type) {
+        return e -> Objects.equals(e.transport.getType(), type);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Stop getStop() {
+        return stop;
+    }
+
+    public PublicTransport getTransport() {
+        return transport;
+    }
+
+    public Route getRoute() {
+        return transport.getRoute();
+    }
+
+    public Passenger getPassenger() {
+        return passenger;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s at %s", kind, transport, stop);
+    }
+}
@@ -0,0 +1,372 @@
+package events;
+
+import passengers.Passenger;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 到站、离站、上车事件流
+ * <p>
+ * 注册到{@link NetworkEvents}后把{@link Stop}和{@link PublicTransport}的事件发布给{@link Flow.Subscriber}，
+ * 订阅时可按站点、线路或车辆类型过滤(见{@link TransportEvent#atStop(Stop)}等)。
+ * <p>
+ * 每个订阅有独立的有界缓冲区，按订阅者request的数量在执行器上送达。发布只在缓冲区上做一次短暂加锁的入队，
+ * 不等待订阅者：缓冲区满时按{@link OverflowPolicy}丢弃或合并，慢订阅者不会拖慢{@link Stop#transportArrive(PublicTransport)}。
+ * {@link #close()}送完已缓冲的事件后通知onComplete
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class TransportEventPublisher implements Flow.Publisher<TransportEvent>, NetworkListener, AutoCloseable {
+
+    /**
+     * 默认缓冲区大小
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+
+    /**
+     * 送达执行器
+     */
+    private Executor executor;
+
+    /**
+     * 默认缓冲区大小
+     */
+    private int bufferSize;
+
+    /**
+     * 默认溢出处理方式
+     */
+    private OverflowPolicy policy;
+
+    /**
+     * 当前订阅
+     */
+    private List<EventSubscription> subscriptions;
+
+    /**
+     * 发布序号
+     */
+    private AtomicLong sequence;
+
+    /**
+     * 因缓冲区满丢弃或合并的事件数
+     */
+    private AtomicLong dropped;
+
+    private volatile boolean closed;
+
+    public TransportEventPublisher(Executor executor) {
+        this(executor, DEFAULT_BUFFER_SIZE, OverflowPolicy.DROP_OLDEST);
+    }
+
+    public TransportEventPublisher(Executor executor, int bufferSize, OverflowPolicy policy) {
+        if (Objects.isNull(executor) || Objects.isNull(policy)) {
+            throw new IllegalArgumentException("Executor And Policy Can Not Be Empty!");
+        }
+        this.executor = executor;
+        this.bufferSize = Math.max(bufferSize, 1);
+        this.policy = policy;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        this.sequence = new AtomicLong();
+        this.dropped = new AtomicLong();
+    }
+
+    /**
+     * 订阅全部事件，使用默认缓冲区大小和溢出处理方式
+     *
+     * @param subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super TransportEvent> subscriber) {
+        subscribe(subscriber, null, policy, bufferSize);
+    }
+
+    /**
+     * 订阅满足条件的事件
+     *
+     * @param subscriber
+     * @param filter     为空时订阅全部事件
+     * @param policy
+     * @param bufferSize
+     */
+    public void subscribe(Flow.Subscriber<? super TransportEvent> subscriber, Predicate<TransportEvent> filter,
+                          OverflowPolicy policy, int bufferSize) {
+        if (Objects.isNull(subscriber)) {
+            throw new NullPointerException("Subscriber Can Not Be Empty!");
+        }
+        EventSubscription subscription = new EventSubscription(subscriber, filter,
+                Objects.isNull(policy) ? this.policy : policy, Math.max(bufferSize, 1));
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.complete();
+            return;
+        }
+        subscriptions.add(subscription);
+    }
+
+    /**
+     * 发布事件
+     *
+     * @param kind
+     * @param stop
+     * @param transport
+     * @param passenger
+     */
+    public void publish(TransportEvent.Kind kind, Stop stop, PublicTransport transport, Passenger passenger) {
+        if (closed || subscriptions.isEmpty()) {
+            return;
+        }
+        TransportEvent event = new TransportEvent(kind, stop, transport, passenger, sequence.incrementAndGet());
+        for (EventSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    @Override
+    public void onArrive(Stop stop, PublicTransport transport) {
+        publish(TransportEvent.Kind.ARRIVAL, stop, transport, null);
+    }
+
+    @Override
+    public void onDepart(Stop stop, PublicTransport transport) {
+        publish(TransportEvent.Kind.DEPARTURE, stop, transport, null);
+    }
+
+    @Override
+    public void onBoard(PublicTransport transport, Passenger passenger) {
+        publish(TransportEvent.Kind.BOARDING, transport.getCurrentStop(), transport, passenger);
+    }
+
+    /**
+     * 停止发布并从{@link NetworkEvents}注销，已缓冲的事件送达后通知onComplete
+     */
+    @Override
+    public void close() {
+        closed = true;
+        NetworkEvents.unregister(this);
+        for (EventSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        subscriptions.clear();
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 订阅
+     * <p>
+     * 缓冲区由锁保护；送达用工作计数保证同一时刻只有一个线程调用订阅者
+     */
+    private class EventSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super TransportEvent> subscriber;
+        private final Predicate<TransportEvent> filter;
+        private final OverflowPolicy policy;
+        private final int capacity;
+
+        /**
+         * 非合并方式的缓冲区
+         */
+        private final ArrayDeque<TransportEvent> queue;
+
+        /**
+         * 合并方式的缓冲区，(站点, 车辆) -> 最新事件
+         */
+        private final Map<CoalesceKey, TransportEvent> coalesced;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+
+        /**
+         * 待送达的错误，与其他信号一样在送达循环中发出
+         */
+        private volatile Throwable error;
+
+        private EventSubscription(Flow.Subscriber<? super TransportEvent> subscriber, Predicate<TransportEvent> filter,
+                                  OverflowPolicy policy, int capacity) {
+            this.subscriber = subscriber;
+            this.filter = filter;
+            this.policy = policy;
+            this.capacity = capacity;
+            this.queue = policy == OverflowPolicy.COALESCE ? null : new ArrayDeque<>();
+            this.coalesced = policy == OverflowPolicy.COALESCE ? new LinkedHashMap<>() : null;
+        }
+
+        /**
+         * 入队，不等待订阅者
+         *
+         * @param event
+         */
+        private void offer(TransportEvent event) {
+            if (cancelled || (Objects.nonNull(filter) && !filter.test(event))) {
+                return;
+            }
+            synchronized (this) {
+                if (policy == OverflowPolicy.COALESCE) {
+                    CoalesceKey key = new CoalesceKey(event.getStop(), event.getTransport());
+                    if (coalesced.replace(key, event) != null) {
+                        dropped.incrementAndGet();
+                    } else {
+                        if (coalesced.size() >= capacity) {
+                            Iterator<TransportEvent> oldest = coalesced.values().iterator();
+                            oldest.next();
+                            oldest.remove();
+                            dropped.incrementAndGet();
+                        }
+                        coalesced.put(key, event);
+                    }
+                } else if (queue.size() < capacity) {
+                    queue.offer(event);
+                } else if (policy == OverflowPolicy.DROP_OLDEST) {
+                    queue.poll();
+                    queue.offer(event);
+                    dropped.incrementAndGet();
+                } else {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            }
+            if (demand.get() > 0) {
+                schedule();
+            }
+        }
+
+        private synchronized TransportEvent poll() {
+            if (queue != null) {
+                return queue.poll();
+            }
+            Iterator<TransportEvent> oldest = coalesced.values().iterator();
+            if (!oldest.hasNext()) {
+                return null;
+            }
+            TransportEvent event = oldest.next();
+            oldest.remove();
+            return event;
+        }
+
+        private synchronized boolean isEmpty() {
+            return queue != null ? queue.isEmpty() : coalesced.isEmpty();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Request Must Be Positive!");
+                schedule();
+                return;
+            }
+            //累加，溢出时视为无界
+            demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                if (queue != null) {
+                    queue.clear();
+                } else {
+                    coalesced.clear();
+                }
+            }
+        }
+
+        private void complete() {
+            completed = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (work.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * 在需求范围内送达缓冲的事件
+         */
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                if (!cancelled && Objects.nonNull(error)) {
+                    cancel();
+                    subscriber.onError(error);
+                    return;
+                }
+                while (!cancelled && demand.get() > 0) {
+                    TransportEvent event = poll();
+                    if (event == null) {
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(event);
+                    } catch (RuntimeException e) {
+                        //订阅者不应抛出异常，抛出时取消订阅
+                        cancel();
+                        return;
+                    }
+                }
+                if (!cancelled && completed && isEmpty()) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                missed = work.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 合并键：按站点和车辆的对象标识比较
+     */
+    private static class CoalesceKey {
+        private final Stop stop;
+        private final PublicTransport transport;
+
+        private CoalesceKey(Stop stop, PublicTransport transport) {
+            this.stop = stop;
+            this.transport = transport;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CoalesceKey)) {
+                return false;
+            }
+            CoalesceKey other = (CoalesceKey) o;
+            return stop == other.stop && transport == other.transport;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(stop) + System.identityHashCode(transport);
+        }
+    }
+}
@@ -9,4 +9,17 @@ package exceptions;
 public class EmptyRouteException extends TransportException {
     private static final long serialVersionUID = -3763231090150190937L;
 
+    /**
+     * 无堆栈的共享实例
+     */
+    public static final EmptyRouteException INSTANCE = new EmptyRouteException(false);
+
+    public EmptyRouteException() {
+        super();
+    }
+
+    private EmptyRouteException(boolean writableStackTrace) {
+        super(writableStackTrace);
+    }
+
 }
@@ -9,4 +9,17 @@ package exceptions;
 public class IncompatibleTypeException extends TransportException {
     private static final long serialVersionUID = -1310717302861673485L;
 
+    /**
+     * 共享实例，不填充堆栈
+     */
+    public static final IncompatibleTypeException INSTANCE = new IncompatibleTypeException(false);
+
+    public IncompatibleTypeException() {
+        super();
+    }
+
+    private IncompatibleTypeException(boolean writableStackTrace) {
+        super(writableStackTrace);
+    }
+
 }
@@ -7,4 +7,16 @@ package exceptions;
  * @since 2019/3/24
  */
 public class OverCapacityException extends TransportException {
+    /**
+     * 满载时抛出的共享实例，不填充堆栈
+     */
+    public static final OverCapacityException INSTANCE = new OverCapacityException(false);
+
+    public OverCapacityException() {
+        super();
+    }
+
+    private OverCapacityException(boolean writableStackTrace) {
+        super(writableStackTrace);
+    }
 }
@@ -8,4 +8,19 @@ package exceptions;
  */
 public class TransportException extends Exception {
     private static final long serialVersionUID = -1512373885345099971L;
+
+    public TransportException() {
+        super();
+    }
+
+    /**
+     * 可指定不填充堆栈的构造器
+     * <p>
+     * 不填充堆栈的异常同时关闭suppressed，可作为共享实例重复抛出
+     *
+     * @param writableStackTrace
+     */
+    protected TransportException(boolean writableStackTrace) {
+        super(null, null, writableStackTrace, writableStackTrace);
+    }
 }
@@ -0,0 +1,42 @@
+package exceptions;
+
+/**
+ * 运输操作结果码
+ * <p>
+ * 与{@link TransportException}体系一一对应，供不抛异常的tryXxx接口返回
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public enum TransportResult {
+
+    /**
+     * 成功
+     */
+    SUCCESS,
+
+    /**
+     * 参数为空，未做任何操作
+     */
+    IGNORED,
+
+    /**
+     * 乘客已在车上，未做任何操作
+     */
+    ALREADY_ABOARD,
+
+    /**
+     * 超载，对应OverCapacityException
+     */
+    OVER_CAPACITY,
+
+    /**
+     * 线路为空，对应EmptyRouteException
+     */
+    EMPTY_ROUTE,
+
+    /**
+     * 类型不匹配，对应IncompatibleTypeException
+     */
+    INCOMPATIBLE_TYPE
+}
@@ -0,0 +1,396 @@
+package journal;
+
+import events.NetworkEvents;
+import events.NetworkListener;
+import passengers.Passenger;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 只追加的二进制事件日志
+ * <p>
+ * 注册到{@link NetworkEvents}后记录车辆到站、离站，乘客候车、上车、下车，列式存储中的乘客以句柄记录为单独的类型。
+ * 每条记录定长24字节：
+ * <pre>
+ * long time | int type | int stopId | int vehicleId | int passengerId
+ * </pre>
+ * 只记录站点id、车辆id和乘客id(或乘客句柄)，不适用的字段为-1；类型0表示段内没有更多记录。
+ * 日志目录下按序号分为多个定长段文件journal-{序号}.seg，每段映射到内存后直接写入，写满后换下一段。
+ * <p>
+ * 分组提交：写入只修改映射内存，每积累commitRecords条记录或调用{@link #commit()}时统一刷盘一次，
+ * 崩溃最多丢失最后一组未提交的记录。写入加锁，可由多个线程的事件回调共用。
+ * <p>
+ * 时间由构造时传入的时钟提供，如{@code simulation::getClock}，在写入锁内读取，多个线程的事件回调按时间先后写入；
+ * {@link #replay(Path, long)}按写入顺序重放所有不晚于指定时刻的记录，重建各站在站车辆、候车乘客和各车所载乘客。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class EventJournal implements NetworkListener, Closeable {
+
+    /**
+     * 车辆到站
+     */
+    public static final int ARRIVE = 1;
+
+    /**
+     * 车辆离站
+     */
+    public static final int DEPART = 2;
+
+    /**
+     * 乘客候车
+     */
+    public static final int WAIT = 3;
+
+    /**
+     * 乘客上车，站点为车辆当前停靠站
+     */
+    public static final int BOARD = 4;
+
+    /**
+     * 乘客下车，站点为车辆当前停靠站
+     */
+    public static final int ALIGHT = 5;
+
+    /**
+     * 列式存储中的乘客候车，乘客字段为句柄
+     */
+    public static final int WAIT_HANDLE = 6;
+
+    /**
+     * 列式存储中的乘客上车，站点为车辆当前停靠站
+     */
+    public static final int BOARD_HANDLE = 7;
+
+    /**
+     * 列式存储中的乘客下车，站点为车辆当前停靠站
+     */
+    public static final int ALIGHT_HANDLE = 8;
+
+    /**
+     * 记录字节数
+     */
+    static final int RECORD_SIZE = 24;
+
+    /**
+     * 默认每段记录数(24MB)
+     */
+    private static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    /**
+     * 默认每组提交记录数
+     */
+    private static final int DEFAULT_COMMIT_RECORDS = 4096;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * 日志目录
+     */
+    private Path directory;
+
+    /**
+     * 时钟
+     */
+    private LongSupplier clock;
+
+    /**
+     * 每段记录数
+     */
+    private int segmentRecords;
+
+    /**
+     * 每组提交记录数
+     */
+    private int commitRecords;
+
+    /**
+     * 当前段
+     */
+    private FileChannel channel;
+
+    private MappedByteBuffer segment;
+
+    private int segmentIndex;
+
+    /**
+     * 未提交记录数
+     */
+    private int uncommitted;
+
+    /**
+     * 本实例写入的记录数
+     */
+    private long recordCount;
+
+    private boolean closed;
+
+    private EventJournal(Path directory, LongSupplier clock, int segmentRecords, int commitRecords) {
+        this.directory = directory;
+        this.clock = clock;
+        this.segmentRecords = segmentRecords;
+        this.commitRecords = commitRecords;
+    }
+
+    /**
+     * 打开日志目录，目录不存在时创建，已有日志时在末尾继续追加
+     *
+     * @param directory
+     * @param clock
+     * @return
+     * @throws IOException
+     */
+    public static EventJournal open(Path directory, LongSupplier clock) throws IOException {
+        return open(directory, clock, DEFAULT_SEGMENT_RECORDS, DEFAULT_COMMIT_RECORDS);
+    }
+
+    /**
+     * 打开日志目录
+     *
+     * @param directory
+     * @param clock
+     * @param segmentRecords 每段记录数
+     * @param commitRecords  每组提交记录数
+     * @return
+     * @throws IOException
+     */
+    public static EventJournal open(Path directory, LongSupplier clock, int segmentRecords, int commitRecords)
+            throws IOException {
+        if (Objects.isNull(directory) || Objects.isNull(clock)) {
+            throw new IllegalArgumentException("Directory And Clock Can Not Be Empty!");
+        }
+        if (segmentRecords <= 0 || commitRecords <= 0) {
+            throw new IllegalArgumentException("Segment And Commit Size Must Be Positive!");
+        }
+        Files.createDirectories(directory);
+        EventJournal journal = new EventJournal(directory, clock, segmentRecords, commitRecords);
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            journal.openSegment(0);
+            return journal;
+        }
+        //定位最后一段的末尾
+        journal.openSegment(segments.size() - 1);
+        MappedByteBuffer buffer = journal.segment;
+        while (buffer.remaining() >= RECORD_SIZE && buffer.getInt(buffer.position() + Long.BYTES) != 0) {
+            buffer.position(buffer.position() + RECORD_SIZE);
+        }
+        return journal;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param time
+     * @param type
+     * @param stopId
+     * @param vehicleId
+     * @param passengerId
+     */
+    public synchronized void append(long time, int type, int stopId, int vehicleId, int passengerId) {
+        if (closed) {
+            throw new IllegalStateException("Journal Closed!");
+        }
+        if (type <= 0) {
+            throw new IllegalArgumentException("Invalid Record Type!");
+        }
+        try {
+            if (segment.remaining() < RECORD_SIZE) {
+                commit();
+                openSegment(segmentIndex + 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segment.putLong(time).putInt(type).putInt(stopId).putInt(vehicleId).putInt(passengerId);
+        recordCount++;
+        if (++uncommitted >= commitRecords) {
+            commit();
+        }
+    }
+
+    /**
+     * 提交：把未提交的记录刷到磁盘
+     */
+    public synchronized void commit() {
+        if (uncommitted > 0) {
+            segment.force();
+            uncommitted = 0;
+        }
+    }
+
+    /**
+     * 提交并关闭，同时从{@link NetworkEvents}注销
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        NetworkEvents.unregister(this);
+        commit();
+        channel.close();
+        closed = true;
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void onArrive(Stop stop, PublicTransport transport) {
+        record(ARRIVE, stop.getId(), transport.getId(), -1);
+    }
+
+    @Override
+    public void onDepart(Stop stop, PublicTransport transport) {
+        record(DEPART, stop.getId(), transport.getId(), -1);
+    }
+
+    @Override
+    public void onWait(Stop stop, Passenger passenger) {
+        record(WAIT, stop.getId(), -1, passenger.getId());
+    }
+
+    @Override
+    public void onBoard(PublicTransport transport, Passenger passenger) {
+        record(BOARD, stopId(transport), transport.getId(), passenger.getId());
+    }
+
+    @Override
+    public void onAlight(PublicTransport transport, Passenger passenger) {
+        record(ALIGHT, stopId(transport), transport.getId(), passenger.getId());
+    }
+
+    @Override
+    public void onWaitHandle(Stop stop, int handle) {
+        record(WAIT_HANDLE, stop.getId(), -1, handle);
+    }
+
+    @Override
+    public void onBoardHandle(PublicTransport transport, int handle) {
+        record(BOARD_HANDLE, stopId(transport), transport.getId(), handle);
+    }
+
+    @Override
+    public void onAlightHandle(PublicTransport transport, int handle) {
+        record(ALIGHT_HANDLE, stopId(transport), transport.getId(), handle);
+    }
+
+    /**
+     * 在写入锁内读取时钟并追加，并发回调的记录时间不会倒退
+     *
+     * @param type
+     * @param stopId
+     * @param vehicleId
+     * @param passengerId
+     */
+    private synchronized void record(int type, int stopId, int vehicleId, int passengerId) {
+        append(clock.getAsLong(), type, stopId, vehicleId, passengerId);
+    }
+
+    /**
+     * 按写入顺序重放时间不晚于upTo的记录
+     * <p>
+     * 通过{@link #append(long, int, int, int, int)}直接写入的记录可能不按时间排列，更晚的记录被跳过而不是结束重放
+     *
+     * @param directory
+     * @param upTo
+     * @param visitor
+     * @return 重放的记录数
+     * @throws IOException
+     */
+    public static long replay(Path directory, long upTo, JournalVisitor visitor) throws IOException {
+        long visited = 0;
+        for (Path path : segments(directory)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    long time = buffer.getLong();
+                    int type = buffer.getInt();
+                    if (type == 0) {
+                        break;
+                    }
+                    if (time > upTo) {
+                        buffer.position(buffer.position() + RECORD_SIZE - Long.BYTES - Integer.BYTES);
+                        continue;
+                    }
+                    visitor.visit(time, type, buffer.getInt(), buffer.getInt(), buffer.getInt());
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * 重放到指定时刻并重建网络状态
+     *
+     * @param directory
+     * @param upTo
+     * @return
+     * @throws IOException
+     */
+    public static JournalState replay(Path directory, long upTo) throws IOException {
+        JournalState state = new JournalState();
+        replay(directory, upTo, state);
+        return state;
+    }
+
+    /**
+     * 打开并映射指定序号的段
+     *
+     * @param index
+     * @throws IOException
+     */
+    private void openSegment(int index) throws IOException {
+        if (Objects.nonNull(channel)) {
+            channel.close();
+        }
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), (long) segmentRecords * RECORD_SIZE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segmentIndex = index;
+    }
+
+    /**
+     * 目录下的段文件，按序号排列
+     *
+     * @param directory
+     * @return
+     * @throws IOException
+     */
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(e -> {
+                String name = e.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static int stopId(PublicTransport transport) {
+        Stop stop = transport.getCurrentStop();
+        return Objects.isNull(stop) ? -1 : stop.getId();
+    }
+}
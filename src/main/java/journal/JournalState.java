@@ -0,0 +1,166 @@
+package journal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 由日志重建的网络状态
+ * <p>
+ * 以id表示：各站在站车辆和候车乘客、各车所载乘客及车辆所在站，集合按事件先后排列；
+ * 列式存储中的乘客以句柄表示，与乘客id分开记录
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class JournalState implements JournalVisitor {
+
+    /**
+     * 站点id -> 在站车辆id
+     */
+    private Map<Integer, Set<Integer>> stopVehicles = new HashMap<>();
+
+    /**
+     * 站点id -> 候车乘客id
+     */
+    private Map<Integer, Set<Integer>> stopWaiting = new HashMap<>();
+
+    /**
+     * 车辆id -> 所载乘客id
+     */
+    private Map<Integer, Set<Integer>> vehiclePassengers = new HashMap<>();
+
+    /**
+     * 车辆id -> 所在站点id
+     */
+    private Map<Integer, Integer> vehicleStops = new HashMap<>();
+
+    /**
+     * 乘客id -> 候车站点id
+     */
+    private Map<Integer, Integer> passengerStops = new HashMap<>();
+
+    /**
+     * 站点id -> 候车乘客句柄
+     */
+    private Map<Integer, Set<Integer>> stopWaitingHandles = new HashMap<>();
+
+    /**
+     * 车辆id -> 所载乘客句柄
+     */
+    private Map<Integer, Set<Integer>> vehicleHandles = new HashMap<>();
+
+    /**
+     * 乘客句柄 -> 候车站点id
+     */
+    private Map<Integer, Integer> handleStops = new HashMap<>();
+
+    /**
+     * 已重放记录的最晚时间
+     */
+    private long time = Long.MIN_VALUE;
+
+    private long recordCount;
+
+    @Override
+    public void visit(long time, int type, int stopId, int vehicleId, int passengerId) {
+        this.time = Math.max(this.time, time);
+        recordCount++;
+        switch (type) {
+            case EventJournal.ARRIVE:
+                vehicleStops.put(vehicleId, stopId);
+                add(stopVehicles, stopId, vehicleId);
+                break;
+            case EventJournal.DEPART:
+                remove(stopVehicles, stopId, vehicleId);
+                vehicleStops.remove(vehicleId, stopId);
+                break;
+            case EventJournal.WAIT:
+                add(stopWaiting, stopId, passengerId);
+                passengerStops.put(passengerId, stopId);
+                break;
+            case EventJournal.BOARD:
+                Integer waitingAt = passengerStops.remove(passengerId);
+                if (waitingAt != null) {
+                    remove(stopWaiting, waitingAt, passengerId);
+                }
+                add(vehiclePassengers, vehicleId, passengerId);
+                break;
+            case EventJournal.ALIGHT:
+                remove(vehiclePassengers, vehicleId, passengerId);
+                break;
+            case EventJournal.WAIT_HANDLE:
+                add(stopWaitingHandles, stopId, passengerId);
+                handleStops.put(passengerId, stopId);
+                break;
+            case EventJournal.BOARD_HANDLE:
+                Integer handleAt = handleStops.remove(passengerId);
+                if (handleAt != null) {
+                    remove(stopWaitingHandles, handleAt, passengerId);
+                }
+                add(vehicleHandles, vehicleId, passengerId);
+                break;
+            case EventJournal.ALIGHT_HANDLE:
+                remove(vehicleHandles, vehicleId, passengerId);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public Set<Integer> vehiclesAt(int stopId) {
+        return view(stopVehicles, stopId);
+    }
+
+    public Set<Integer> waitingAt(int stopId) {
+        return view(stopWaiting, stopId);
+    }
+
+    public Set<Integer> passengersOn(int vehicleId) {
+        return view(vehiclePassengers, vehicleId);
+    }
+
+    public Set<Integer> waitingHandlesAt(int stopId) {
+        return view(stopWaitingHandles, stopId);
+    }
+
+    public Set<Integer> handlesOn(int vehicleId) {
+        return view(vehicleHandles, vehicleId);
+    }
+
+    /**
+     * 车辆所在站点id，不在站时返回-1
+     *
+     * @param vehicleId
+     * @return
+     */
+    public int stopOf(int vehicleId) {
+        return vehicleStops.getOrDefault(vehicleId, -1);
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private static void add(Map<Integer, Set<Integer>> map, int key, int value) {
+        map.computeIfAbsent(key, e -> new LinkedHashSet<>()).add(value);
+    }
+
+    private static void remove(Map<Integer, Set<Integer>> map, int key, int value) {
+        Set<Integer> values = map.get(key);
+        if (values != null && values.remove(value) && values.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    private static Set<Integer> view(Map<Integer, Set<Integer>> map, int key) {
+        Set<Integer> values = map.get(key);
+        return values == null ? Collections.emptySet() : Collections.unmodifiableSet(values);
+    }
+}
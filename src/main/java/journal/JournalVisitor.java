@@ -0,0 +1,21 @@
+package journal;
+
+/**
+ * 日志记录访问者，见{@link EventJournal#replay(java.nio.file.Path, long, JournalVisitor)}
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public interface JournalVisitor {
+
+    /**
+     * 访问一条记录，不适用的字段为-1
+     *
+     * @param time
+     * @param type        记录类型，见{@link EventJournal#ARRIVE}等
+     * @param stopId
+     * @param vehicleId
+     * @param passengerId
+     */
+    void visit(long time, int type, int stopId, int vehicleId, int passengerId);
+}
@@ -0,0 +1,44 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 计数器
+ * <p>
+ * 基于LongAdder分段累加，多线程递增互不竞争同一缓存行
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class Counter {
+
+    /**
+     * 累加器
+     */
+    private LongAdder adder;
+
+    public Counter() {
+        this.adder = new LongAdder();
+    }
+
+    public void increment() {
+        adder.increment();
+    }
+
+    public void add(long value) {
+        adder.add(value);
+    }
+
+    /**
+     * 当前累计值
+     *
+     * @return
+     */
+    public long sum() {
+        return adder.sum();
+    }
+
+    public void reset() {
+        adder.reset();
+    }
+}
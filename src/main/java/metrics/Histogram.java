@@ -0,0 +1,105 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁直方图
+ * <p>
+ * 按2的幂划分桶：桶0记录小于等于0的值，桶i记录[2^(i-1), 2^i - 1]内的值。
+ * 每个桶是一个LongAdder，记录一次只需计算前导零并累加，不加锁。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class Histogram {
+
+    /**
+     * 桶数
+     */
+    public static final int BUCKETS = 64;
+
+    /**
+     * 各桶计数
+     */
+    private LongAdder[] buckets;
+
+    /**
+     * 记录值之和
+     */
+    private LongAdder sum;
+
+    public Histogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+        this.sum = new LongAdder();
+    }
+
+    /**
+     * 记录一个值
+     *
+     * @param value
+     */
+    public void record(long value) {
+        buckets[bucketOf(value)].increment();
+        sum.add(value);
+    }
+
+    /**
+     * 值所在的桶
+     *
+     * @param value
+     * @return
+     */
+    public static int bucketOf(long value) {
+        return value <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * 桶的上界(含)
+     *
+     * @param bucket
+     * @return
+     */
+    public static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : (bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1);
+    }
+
+    /**
+     * 各桶计数快照
+     *
+     * @return
+     */
+    public long[] bucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * 记录次数
+     *
+     * @return
+     */
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        sum.reset();
+    }
+}
@@ -0,0 +1,194 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 指标快照
+ * <p>
+ * 某一时刻所有指标的只读取值，可导出为Prometheus文本格式
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class MetricsSnapshot {
+
+    /**
+     * 快照时间(毫秒)
+     */
+    private long timestamp;
+
+    /**
+     * 指标族，按加入顺序导出
+     */
+    private List<Family> families;
+
+    public MetricsSnapshot(long timestamp) {
+        this.timestamp = timestamp;
+        this.families = new ArrayList<>();
+    }
+
+    /**
+     * 增加指标族
+     *
+     * @param name
+     * @param type counter/gauge/histogram
+     * @param help
+     * @return
+     */
+    public Family family(String name, String type, String help) {
+        Family family = new Family(name, type, help);
+        families.add(family);
+        return family;
+    }
+
+    /**
+     * 查找样本值，不存在时返回-1
+     *
+     * @param name   样本名，直方图样本带_bucket/_sum/_count后缀
+     * @param labels 标签，如stop="A"，没有标签时为空串
+     * @return
+     */
+    public long getValue(String name, String labels) {
+        for (Family family : families) {
+            for (Sample sample : family.samples) {
+                if (sample.name.equals(name) && sample.labels.equals(labels)) {
+                    return sample.value;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 导出为Prometheus文本格式
+     *
+     * @return
+     */
+    public String toText() {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (Family family : families) {
+            stringBuilder.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            stringBuilder.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Sample sample : family.samples) {
+                stringBuilder.append(sample.name);
+                if (!sample.labels.isEmpty()) {
+                    stringBuilder.append('{').append(sample.labels).append('}');
+                }
+                stringBuilder.append(' ').append(sample.value).append(' ').append(timestamp).append('\n');
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<Family> getFamilies() {
+        return Collections.unmodifiableList(families);
+    }
+
+    /**
+     * 转义标签值
+     *
+     * @param value
+     * @return
+     */
+    public static String escape(String value) {
+        if (Objects.isNull(value)) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * 指标族
+     */
+    public static class Family {
+        private String name;
+        private String type;
+        private String help;
+        private List<Sample> samples;
+
+        private Family(String name, String type, String help) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.samples = new ArrayList<>();
+        }
+
+        /**
+         * 增加样本
+         *
+         * @param labels
+         * @param value
+         * @return
+         */
+        public Family sample(String labels, long value) {
+            return sample(name, labels, value);
+        }
+
+        /**
+         * 增加指定名称的样本(直方图的_bucket/_sum/_count)
+         *
+         * @param sampleName
+         * @param labels
+         * @param value
+         * @return
+         */
+        public Family sample(String sampleName, String labels, long value) {
+            samples.add(new Sample(sampleName, labels, value));
+            return this;
+        }
+
+        /**
+         * 增加直方图样本，桶计数按Prometheus约定累积
+         *
+         * @param labels
+         * @param histogram
+         * @return
+         */
+        public Family histogram(String labels, Histogram histogram) {
+            long[] counts = histogram.bucketCounts();
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            int last = counts.length - 1;
+            while (last > 0 && counts[last] == 0) {
+                last--;
+            }
+            for (int i = 0; i <= last; i++) {
+                cumulative += counts[i];
+                sample(name + "_bucket", prefix + "le=\"" + Histogram.upperBound(i) + "\"", cumulative);
+            }
+            sample(name + "_bucket", prefix + "le=\"+Inf\"", cumulative);
+            sample(name + "_sum", labels, histogram.sum());
+            return sample(name + "_count", labels, cumulative);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+    }
+
+    /**
+     * 样本
+     */
+    private static class Sample {
+        private String name;
+        private String labels;
+        private long value;
+
+        private Sample(String name, String labels, long value) {
+            this.name = name;
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package metrics;
+
+import events.NetworkEvents;
+import events.NetworkListener;
+import passengers.Passenger;
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 网络载客量汇总
+ * <p>
+ * 注册到{@link NetworkEvents}后随候车、上车、下车、到站、离站增量更新，维护按线路和车辆类型的在车人数与载客量、
+ * 按站点的候车人数与在站车辆数，以及候车人数最多的{@link #TOP_SIZE}个站点。
+ * 线路、类型和站点查询为O(1)，最拥挤的K个站点一般为O(K)，不需要遍历线路上的车辆或全部站点。
+ * <p>
+ * 构造时按传入线路的当前状态初始化(一次性遍历)；之后未经{@link NetworkEvents}的修改
+ * (如检查点恢复、列式存储句柄乘客)不会反映在汇总中，需要时重新构造。
+ * <p>
+ * 所有计数都是原子变量，事件不经过全局锁：站点按id索引并弱引用站点对象，
+ * 只有候车人数进入或可能改变前{@link #TOP_SIZE}名时才锁定排行。
+ * 排行中的站点候车人数减少后排行标记为过期，下次查询时遍历全部站点重建。
+ * 不再使用的站点和车辆用{@link #unregister(Stop)}、{@link #unregister(PublicTransport)}移除
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class OccupancyAggregates implements NetworkListener {
+
+    /**
+     * 增量维护的排行长度，查询更多站点时遍历全部站点
+     */
+    public static final int TOP_SIZE = 32;
+
+    /**
+     * 按候车人数降序、站点id升序
+     */
+    private static final Comparator<StopLoad> CROWDED = (a, b) -> a.rank != b.rank
+            ? Long.compare(b.rank, a.rank) : Integer.compare(a.stopId, b.stopId);
+
+    /**
+     * 线路 -> 计数
+     */
+    private Map<Route, Load> routes;
+
+    /**
+     * 车辆类型 -> 计数
+     */
+    private Map<String, Load> types;
+
+    /**
+     * 已计入载客量的车辆
+     */
+    private Map<PublicTransport, Boolean> vehicles;
+
+    /**
+     * 站点id -> 计数
+     */
+    private Map<Integer, StopLoad> stops;
+
+    /**
+     * 全网候车人数
+     */
+    private AtomicLong totalWaiting;
+
+    /**
+     * 候车人数最多的站点，按{@link #CROWDED}排列，由自身保护
+     */
+    private List<StopLoad> top;
+
+    /**
+     * 进入排行所需的最少候车人数，排行未满时为1
+     */
+    private volatile long threshold;
+
+    /**
+     * 排行中的站点候车人数减少，查询时需要重建
+     */
+    private volatile boolean stale;
+
+    public OccupancyAggregates() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * 按线路当前状态初始化
+     *
+     * @param initial
+     */
+    public OccupancyAggregates(Collection<? extends Route> initial) {
+        this.routes = new ConcurrentHashMap<>();
+        this.types = new ConcurrentHashMap<>();
+        this.vehicles = new ConcurrentHashMap<>();
+        this.stops = new ConcurrentHashMap<>();
+        this.totalWaiting = new AtomicLong();
+        this.top = new ArrayList<>(TOP_SIZE + 1);
+        this.threshold = 1;
+        for (Route route : initial) {
+            for (PublicTransport transport : route.getTransports()) {
+                if (register(transport)) {
+                    addPassengers(transport, transport.passengerCount());
+                }
+            }
+            for (Stop stop : route.getStopsOnRoute()) {
+                if (!stops.containsKey(stop.getId())) {
+                    StopLoad load = stopLoad(stop);
+                    load.vehicles.set(stop.vehicleCount());
+                    updateWaiting(load, stop.waitingCount());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onWait(Stop stop, Passenger passenger) {
+        updateWaiting(stopLoad(stop), 1);
+    }
+
+    @Override
+    public void onWaitEnd(Stop stop, Passenger passenger) {
+        updateWaiting(stopLoad(stop), -1);
+    }
+
+    @Override
+    public void onBoard(PublicTransport transport, Passenger passenger) {
+        register(transport);
+        addPassengers(transport, 1);
+    }
+
+    @Override
+    public void onAlight(PublicTransport transport, Passenger passenger) {
+        register(transport);
+        addPassengers(transport, -1);
+    }
+
+    @Override
+    public void onArrive(Stop stop, PublicTransport transport) {
+        //空车也计入载客量
+        register(transport);
+        stopLoad(stop).vehicles.incrementAndGet();
+    }
+
+    @Override
+    public void onDepart(Stop stop, PublicTransport transport) {
+        register(transport);
+        stopLoad(stop).vehicles.decrementAndGet();
+    }
+
+    /**
+     * 移除站点计数，站点的候车人数从全网候车人数中扣除
+     *
+     * @param stop
+     */
+    public void unregister(Stop stop) {
+        if (Objects.isNull(stop)) {
+            return;
+        }
+        StopLoad load = stops.remove(stop.getId());
+        if (load == null) {
+            return;
+        }
+        totalWaiting.addAndGet(-load.waiting.get());
+        synchronized (top) {
+            if (top.remove(load)) {
+                stale = true;
+            }
+        }
+    }
+
+    /**
+     * 移除车辆，车辆的载客量和当前在车人数从线路和类型计数中扣除
+     *
+     * @param transport
+     */
+    public void unregister(PublicTransport transport) {
+        if (Objects.isNull(transport) || vehicles.remove(transport) == null) {
+            return;
+        }
+        routeLoad(transport).capacity.addAndGet(-transport.getCapacity());
+        typeLoad(transport).capacity.addAndGet(-transport.getCapacity());
+        addPassengers(transport, -transport.passengerCount());
+    }
+
+    /**
+     * 线路在车人数
+     *
+     * @param route
+     * @return
+     */
+    public long routePassengers(Route route) {
+        Load load = routes.get(route);
+        return load == null ? 0 : load.passengers.get();
+    }
+
+    /**
+     * 线路载客率：在车人数 / 车辆总载客量，没有车辆时为0
+     *
+     * @param route
+     * @return
+     */
+    public double routeLoadFactor(Route route) {
+        Load load = routes.get(route);
+        return load == null ? 0 : load.factor();
+    }
+
+    /**
+     * 某类车辆的在车人数，如"ferry"
+     *
+     * @param type
+     * @return
+     */
+    public long typePassengers(String type) {
+        Load load = types.get(type);
+        return load == null ? 0 : load.passengers.get();
+    }
+
+    /**
+     * 某类车辆的平均载客率
+     *
+     * @param type
+     * @return
+     */
+    public double typeLoadFactor(String type) {
+        Load load = types.get(type);
+        return load == null ? 0 : load.factor();
+    }
+
+    /**
+     * 全网在车人数
+     *
+     * @return
+     */
+    public long totalOnBoard() {
+        long total = 0;
+        for (Load load : types.values()) {
+            total += load.passengers.get();
+        }
+        return total;
+    }
+
+    public long stopWaiting(Stop stop) {
+        StopLoad load = Objects.isNull(stop) ? null : stops.get(stop.getId());
+        return load == null ? 0 : load.waiting.get();
+    }
+
+    public int stopVehicles(Stop stop) {
+        StopLoad load = Objects.isNull(stop) ? null : stops.get(stop.getId());
+        return load == null ? 0 : load.vehicles.get();
+    }
+
+    public long totalWaiting() {
+        return totalWaiting.get();
+    }
+
+    /**
+     * 候车人数最多的k个站点，人数相同时按站点id；已被回收的站点不计入
+     *
+     * @param k
+     * @return
+     */
+    public List<Stop> mostCrowdedStops(int k) {
+        List<Stop> result = new ArrayList<>();
+        if (k <= 0) {
+            return result;
+        }
+        List<StopLoad> ranked;
+        synchronized (top) {
+            ranked = k > TOP_SIZE ? rebuild(k) : stale ? rebuild(TOP_SIZE) : new ArrayList<>(top);
+        }
+        for (StopLoad load : ranked) {
+            if (result.size() >= k) {
+                break;
+            }
+            Stop stop = load.stop.get();
+            if (Objects.nonNull(stop)) {
+                result.add(stop);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 首次见到车辆时计入载客量
+     *
+     * @param transport
+     * @return 首次见到时返回true
+     */
+    private boolean register(PublicTransport transport) {
+        if (vehicles.putIfAbsent(transport, Boolean.TRUE) != null) {
+            return false;
+        }
+        routeLoad(transport).capacity.addAndGet(transport.getCapacity());
+        typeLoad(transport).capacity.addAndGet(transport.getCapacity());
+        return true;
+    }
+
+    private void addPassengers(PublicTransport transport, long delta) {
+        routeLoad(transport).passengers.addAndGet(delta);
+        typeLoad(transport).passengers.addAndGet(delta);
+    }
+
+    private Load routeLoad(PublicTransport transport) {
+        return routes.computeIfAbsent(transport.getRoute(), e -> new Load());
+    }
+
+    private Load typeLoad(PublicTransport transport) {
+        return types.computeIfAbsent(Objects.toString(transport.getType(), ""), e -> new Load());
+    }
+
+    private StopLoad stopLoad(Stop stop) {
+        return stops.computeIfAbsent(stop.getId(), e -> new StopLoad(stop));
+    }
+
+    /**
+     * 更新候车人数，只有可能改变排行时才锁定排行
+     *
+     * @param load
+     * @param delta
+     */
+    private void updateWaiting(StopLoad load, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        long waiting = load.waiting.addAndGet(delta);
+        totalWaiting.addAndGet(delta);
+        if (delta < 0) {
+            //排行外的站点减少不影响排行
+            if (load.ranked) {
+                stale = true;
+            }
+            return;
+        }
+        if (!load.ranked && waiting < threshold) {
+            return;
+        }
+        synchronized (top) {
+            if (stale) {
+                return;
+            }
+            if (load.ranked) {
+                top.remove(load);
+            }
+            //先标记再读取，同时减少的线程能看到标记
+            load.ranked = true;
+            load.rank = load.waiting.get();
+            insert(load);
+        }
+    }
+
+    /**
+     * 按排序插入排行，超出长度时移出末位并提高门槛，持有top时调用
+     *
+     * @param load
+     */
+    private void insert(StopLoad load) {
+        if (load.rank <= 0) {
+            load.ranked = false;
+            return;
+        }
+        int index = Collections.binarySearch(top, load, CROWDED);
+        top.add(index < 0 ? -index - 1 : index, load);
+        load.ranked = true;
+        if (top.size() > TOP_SIZE) {
+            top.remove(TOP_SIZE).ranked = false;
+        }
+        threshold = top.size() < TOP_SIZE ? 1 : top.get(TOP_SIZE - 1).rank;
+    }
+
+    /**
+     * 遍历全部站点重建排行，持有top时调用
+     *
+     * @param k 返回的站点数
+     * @return 候车人数最多的k个站点
+     */
+    private List<StopLoad> rebuild(int k) {
+        //遍历期间增加的站点都进入锁，等重建完成后按最新人数插入
+        threshold = 1;
+        top.forEach(e -> e.ranked = false);
+        top.clear();
+        stale = false;
+        List<StopLoad> ranked = new ArrayList<>();
+        for (StopLoad load : stops.values()) {
+            load.ranked = true;
+            load.rank = load.waiting.get();
+            if (load.rank > 0) {
+                ranked.add(load);
+            } else {
+                load.ranked = false;
+            }
+        }
+        ranked.sort(CROWDED);
+        for (int i = 0; i < ranked.size(); i++) {
+            if (i < TOP_SIZE) {
+                top.add(ranked.get(i));
+            } else {
+                ranked.get(i).ranked = false;
+            }
+        }
+        threshold = top.size() < TOP_SIZE ? 1 : top.get(TOP_SIZE - 1).rank;
+        return ranked.size() > k ? new ArrayList<>(ranked.subList(0, k)) : ranked;
+    }
+
+    /**
+     * 在车人数与载客量
+     */
+    private static class Load {
+        private final AtomicLong passengers = new AtomicLong();
+        private final AtomicLong capacity = new AtomicLong();
+
+        private double factor() {
+            long total = capacity.get();
+            return total <= 0 ? 0 : (double) passengers.get() / total;
+        }
+    }
+
+    /**
+     * 站点计数
+     */
+    private static class StopLoad {
+        private final int stopId;
+        private final WeakReference<Stop> stop;
+        private final AtomicLong waiting = new AtomicLong();
+        private final AtomicInteger vehicles = new AtomicInteger();
+
+        /**
+         * 排序用的候车人数快照，由top保护
+         */
+        private long rank;
+
+        /**
+         * 是否在排行中
+         */
+        private volatile boolean ranked;
+
+        private StopLoad(Stop stop) {
+            this.stopId = stop.getId();
+            this.stop = new WeakReference<>(stop);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package metrics;
+
+import routes.Route;
+import stops.Stop;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 运营指标
+ * <p>
+ * 统计到站、离站、上车、超载拒载次数以及停站时间、候车队列长度分布，并按站点和线路细分。
+ * 默认关闭，可通过系统属性transport.metrics=true或{@link #setEnabled(boolean)}开启；
+ * 调用方先判断{@link #isEnabled()}再记录，关闭时只有一次字段读取。
+ * <p>
+ * 细分指标按站点id和线路类型、编号、名称保存，只弱引用站点和线路对象：丢弃的网络可被回收，
+ * 其细分指标在下次{@link #snapshot()}时移除。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public final class TransportMetrics {
+
+    /**
+     * 是否开启
+     */
+    private static volatile boolean enabled = Boolean.getBoolean("transport.metrics");
+
+    private static final Counter ARRIVALS = new Counter();
+
+    private static final Counter DEPARTURES = new Counter();
+
+    private static final Counter BOARDINGS = new Counter();
+
+    private static final Counter CAPACITY_REJECTIONS = new Counter();
+
+    /**
+     * 停站时间分布
+     */
+    private static final Histogram DWELL_TIME = new Histogram();
+
+    /**
+     * 车辆到站时的候车队列长度分布
+     */
+    private static final Histogram WAITING_QUEUE_LENGTH = new Histogram();
+
+    /**
+     * 站点id -> 站点细分指标
+     */
+    private static final Map<Integer, StopMetrics> STOPS = new ConcurrentHashMap<>();
+
+    /**
+     * 线路类型、编号和名称 -> 线路细分指标
+     */
+    private static final Map<RouteKey, RouteMetrics> ROUTES = new ConcurrentHashMap<>();
+
+    private TransportMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        TransportMetrics.enabled = enabled;
+    }
+
+    /**
+     * 记录车辆到站
+     *
+     * @param stop
+     * @param waitingPassengers 到站时候车人数
+     */
+    public static void recordArrival(Stop stop, int waitingPassengers) {
+        ARRIVALS.increment();
+        WAITING_QUEUE_LENGTH.record(waitingPassengers);
+        stopMetrics(stop).arrivals.increment();
+    }
+
+    /**
+     * 记录车辆离站
+     *
+     * @param stop
+     */
+    public static void recordDeparture(Stop stop) {
+        DEPARTURES.increment();
+        stopMetrics(stop).departures.increment();
+    }
+
+    /**
+     * 记录批量上车
+     *
+     * @param stop
+     * @param route
+     * @param passengers 上车人数
+     */
+    public static void recordBoarding(Stop stop, Route route, int passengers) {
+        BOARDINGS.add(passengers);
+        stopMetrics(stop).boardings.add(passengers);
+        routeMetrics(route).boardings.add(passengers);
+    }
+
+    /**
+     * 记录超载拒载
+     *
+     * @param route
+     */
+    public static void recordCapacityRejection(Route route) {
+        CAPACITY_REJECTIONS.increment();
+        routeMetrics(route).capacityRejections.increment();
+    }
+
+    /**
+     * 记录停站时间
+     *
+     * @param dwellTime
+     */
+    public static void recordDwell(long dwellTime) {
+        DWELL_TIME.record(dwellTime);
+    }
+
+    /**
+     * 清零所有指标
+     */
+    public static void reset() {
+        ARRIVALS.reset();
+        DEPARTURES.reset();
+        BOARDINGS.reset();
+        CAPACITY_REJECTIONS.reset();
+        DWELL_TIME.reset();
+        WAITING_QUEUE_LENGTH.reset();
+        STOPS.clear();
+        ROUTES.clear();
+    }
+
+    /**
+     * 生成快照，站点和线路的实时人数在此时读取
+     *
+     * @return
+     */
+    public static MetricsSnapshot snapshot() {
+        MetricsSnapshot snapshot = new MetricsSnapshot(System.currentTimeMillis());
+        snapshot.family("transport_arrivals_total", "counter", "Vehicle arrivals at stops.")
+                .sample("", ARRIVALS.sum());
+        snapshot.family("transport_departures_total", "counter", "Vehicle departures from stops.")
+                .sample("", DEPARTURES.sum());
+        snapshot.family("transport_boardings_total", "counter", "Passengers boarded from stop queues.")
+                .sample("", BOARDINGS.sum());
+        snapshot.family("transport_capacity_rejections_total", "counter", "Passengers rejected by full vehicles.")
+                .sample("", CAPACITY_REJECTIONS.sum());
+        snapshot.family("transport_dwell_time", "histogram", "Time vehicles spend at a stop.")
+                .histogram("", DWELL_TIME);
+        snapshot.family("transport_waiting_queue_length", "histogram", "Waiting passengers when a vehicle arrives.")
+                .histogram("", WAITING_QUEUE_LENGTH);
+
+        MetricsSnapshot.Family stopArrivals = snapshot.family("transport_stop_arrivals_total", "counter", "Vehicle arrivals per stop.");
+        MetricsSnapshot.Family stopDepartures = snapshot.family("transport_stop_departures_total", "counter", "Vehicle departures per stop.");
+        MetricsSnapshot.Family stopBoardings = snapshot.family("transport_stop_boardings_total", "counter", "Passengers boarded per stop.");
+        MetricsSnapshot.Family stopWaiting = snapshot.family("transport_stop_waiting_passengers", "gauge", "Passengers waiting per stop.");
+        MetricsSnapshot.Family stopVehicles = snapshot.family("transport_stop_vehicles", "gauge", "Vehicles at each stop.");
+        for (Iterator<StopMetrics> iterator = STOPS.values().iterator(); iterator.hasNext(); ) {
+            StopMetrics metrics = iterator.next();
+            Stop stop = metrics.stop.get();
+            //站点已被回收
+            if (stop == null) {
+                iterator.remove();
+                continue;
+            }
+            String labels = stopLabels(stop);
+            stopArrivals.sample(labels, metrics.arrivals.sum());
+            stopDepartures.sample(labels, metrics.departures.sum());
+            stopBoardings.sample(labels, metrics.boardings.sum());
+            stopWaiting.sample(labels, stop.waitingCount());
+            stopVehicles.sample(labels, stop.vehicleCount());
+        }
+
+        MetricsSnapshot.Family routeBoardings = snapshot.family("transport_route_boardings_total", "counter", "Passengers boarded per route.");
+        MetricsSnapshot.Family routeRejections = snapshot.family("transport_route_capacity_rejections_total", "counter", "Capacity rejections per route.");
+        MetricsSnapshot.Family routePassengers = snapshot.family("transport_route_passengers", "gauge", "Passengers on board per route.");
+        for (Iterator<RouteMetrics> iterator = ROUTES.values().iterator(); iterator.hasNext(); ) {
+            RouteMetrics metrics = iterator.next();
+            Route route = metrics.route.get();
+            if (route == null) {
+                iterator.remove();
+                continue;
+            }
+            String labels = routeLabels(route);
+            routeBoardings.sample(labels, metrics.boardings.sum());
+            routeRejections.sample(labels, metrics.capacityRejections.sum());
+            routePassengers.sample(labels, route.getTransports().stream().mapToLong(e -> e.passengerCount()).sum());
+        }
+        return snapshot;
+    }
+
+    /**
+     * 站点标签
+     *
+     * @param stop
+     * @return
+     */
+    public static String stopLabels(Stop stop) {
+        return String.format("stop=\"%s\",stop_id=\"%s\"", MetricsSnapshot.escape(stop.getName()), stop.getId());
+    }
+
+    /**
+     * 线路标签
+     *
+     * @param route
+     * @return
+     */
+    public static String routeLabels(Route route) {
+        return String.format("type=\"%s\",route=\"%s\"", route.getType(), route.getRouteNumber());
+    }
+
+    /**
+     * 当前保存细分指标的站点数，含已回收但尚未移除的站点
+     *
+     * @return
+     */
+    static int trackedStopCount() {
+        return STOPS.size();
+    }
+
+    private static StopMetrics stopMetrics(Stop stop) {
+        //站点id不会重复分配
+        StopMetrics metrics = STOPS.get(stop.getId());
+        return metrics != null ? metrics : STOPS.computeIfAbsent(stop.getId(), e -> new StopMetrics(stop));
+    }
+
+    private static RouteMetrics routeMetrics(Route route) {
+        RouteKey key = new RouteKey(route);
+        RouteMetrics metrics = ROUTES.get(key);
+        //相同编号和名称的旧线路已被回收时改为引用新线路，保留计数
+        if (metrics == null || metrics.route.get() == null) {
+            metrics = ROUTES.compute(key, (k, v) -> v == null ? new RouteMetrics(route) : v.rebind(route));
+        }
+        return metrics;
+    }
+
+    /**
+     * 站点指标
+     */
+    private static class StopMetrics {
+        private final WeakReference<Stop> stop;
+        private Counter arrivals = new Counter();
+        private Counter departures = new Counter();
+        private Counter boardings = new Counter();
+
+        private StopMetrics(Stop stop) {
+            this.stop = new WeakReference<>(stop);
+        }
+    }
+
+    /**
+     * 线路指标
+     */
+    private static class RouteMetrics {
+        private volatile WeakReference<Route> route;
+        private Counter boardings = new Counter();
+        private Counter capacityRejections = new Counter();
+
+        private RouteMetrics(Route route) {
+            this.route = new WeakReference<>(route);
+        }
+
+        private RouteMetrics rebind(Route route) {
+            if (this.route.get() == null) {
+                this.route = new WeakReference<>(route);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * 线路键，不引用线路对象
+     */
+    private static class RouteKey {
+        private final String type;
+        private final int routeNumber;
+        private final String name;
+
+        private RouteKey(Route route) {
+            this.type = route.getType();
+            this.routeNumber = route.getRouteNumber();
+            this.name = route.getName();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RouteKey)) {
+                return false;
+            }
+            RouteKey other = (RouteKey) o;
+            return routeNumber == other.routeNumber && Objects.equals(type, other.type)
+                    && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Objects.hashCode(type) + routeNumber) + Objects.hashCode(name);
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package network;
+
+import routes.Route;
+import stops.Stop;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 编译后的网络
+ * <p>
+ * 将Stop/Route对象图转换为以稠密int编号索引的压缩稀疏行(CSR)数组：
+ * 相邻站、站点坐标、站点所属线路以及线路停靠站序列。
+ * 图算法可直接在原始数组上运行，无需追踪对象引用也不产生分配。
+ * <p>
+ * 编译结果是网络的只读快照，编译范围内的站点或线路变化后{@link #isStale()}返回true，调用{@link #recompile()}重新生成。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class CompiledNetwork {
+
+    /**
+     * 编译来源线路
+     */
+    private Collection<? extends Route> sourceRoutes;
+
+    /**
+     * 编译时的拓扑版本
+     */
+    private long version;
+
+    /**
+     * 已确认编译结果仍有效的全局拓扑版本
+     */
+    private volatile long checkedVersion;
+
+    /**
+     * 编译时的{@link #signature()}
+     */
+    private long signature;
+
+    /**
+     * 编号 -> 站点
+     */
+    private Stop[] stops;
+
+    /**
+     * 站点 -> 编号
+     */
+    private Map<Stop, Integer> stopIds;
+
+    /**
+     * 编号 -> 线路
+     */
+    private Route[] routes;
+
+    /**
+     * 线路 -> 编号
+     */
+    private Map<Route, Integer> routeIds;
+
+    /**
+     * 站点x坐标
+     */
+    private int[] xs;
+
+    /**
+     * 站点y坐标
+     */
+    private int[] ys;
+
+    /**
+     * 相邻站偏移，站点i的相邻站位于[neighbourOffsets[i], neighbourOffsets[i + 1])
+     */
+    private int[] neighbourOffsets;
+
+    /**
+     * 相邻站编号
+     */
+    private int[] neighbourIds;
+
+    /**
+     * 到相邻站的距离
+     */
+    private int[] neighbourWeights;
+
+    /**
+     * 站点所属线路偏移
+     */
+    private int[] stopRouteOffsets;
+
+    /**
+     * 站点所属线路编号
+     */
+    private int[] stopRouteIds;
+
+    /**
+     * 线路停靠站偏移
+     */
+    private int[] routeStopOffsets;
+
+    /**
+     * 线路停靠站编号(按线路顺序)
+     */
+    private int[] routeStopIds;
+
+    private CompiledNetwork(Collection<? extends Route> sourceRoutes) {
+        this.sourceRoutes = sourceRoutes;
+    }
+
+    /**
+     * 编译指定线路组成的网络
+     * <p>
+     * 线路上的站点以及通过相邻关系可达的站点都会被编号
+     *
+     * @param routes
+     * @return
+     */
+    public static CompiledNetwork compile(Collection<? extends Route> routes) {
+        if (Objects.isNull(routes)) {
+            throw new IllegalArgumentException("Routes Can Not Be Empty!");
+        }
+        CompiledNetwork network = new CompiledNetwork(routes);
+        network.build();
+        return network;
+    }
+
+    /**
+     * 按编译来源线路重新编译
+     *
+     * @return
+     */
+    public CompiledNetwork recompile() {
+        return compile(sourceRoutes);
+    }
+
+    /**
+     * 构造全部数组
+     */
+    private void build() {
+        version = NetworkVersion.current();
+        buildRoutes();
+        buildStops();
+        buildNeighbours();
+        buildRouteMembership();
+        signature = signature();
+        checkedVersion = version;
+    }
+
+    /**
+     * 线路编号
+     */
+    private void buildRoutes() {
+        List<Route> routeList = new ArrayList<>();
+        routeIds = new IdentityHashMap<>();
+        for (Route route : sourceRoutes) {
+            if (Objects.nonNull(route) && !routeIds.containsKey(route)) {
+                routeIds.put(route, routeList.size());
+                routeList.add(route);
+            }
+        }
+        routes = routeList.toArray(new Route[0]);
+    }
+
+    /**
+     * 站点编号：按线路顺序编号，再广度优先补充仅通过相邻关系可达的站点
+     */
+    private void buildStops() {
+        List<Stop> stopList = new ArrayList<>();
+        stopIds = new IdentityHashMap<>();
+        Deque<Stop> queue = new ArrayDeque<>();
+        for (Route route : routes) {
+            for (Stop stop : route.getStopsOnRoute()) {
+                if (!stopIds.containsKey(stop)) {
+                    stopIds.put(stop, stopList.size());
+                    stopList.add(stop);
+                    queue.add(stop);
+                }
+            }
+        }
+        while (!queue.isEmpty()) {
+            for (Stop neighbour : queue.poll().getNeighbours()) {
+                if (!stopIds.containsKey(neighbour)) {
+                    stopIds.put(neighbour, stopList.size());
+                    stopList.add(neighbour);
+                    queue.add(neighbour);
+                }
+            }
+        }
+        stops = stopList.toArray(new Stop[0]);
+
+        xs = new int[stops.length];
+        ys = new int[stops.length];
+        for (int i = 0; i < stops.length; i++) {
+            xs[i] = stops[i].getX();
+            ys[i] = stops[i].getY();
+        }
+    }
+
+    /**
+     * 相邻站CSR
+     */
+    private void buildNeighbours() {
+        neighbourOffsets = new int[stops.length + 1];
+        for (int i = 0; i < stops.length; i++) {
+            neighbourOffsets[i + 1] = neighbourOffsets[i] + stops[i].getNeighbours().size();
+        }
+        neighbourIds = new int[neighbourOffsets[stops.length]];
+        neighbourWeights = new int[neighbourIds.length];
+        for (int i = 0; i < stops.length; i++) {
+            int edge = neighbourOffsets[i];
+            for (Stop neighbour : stops[i].getNeighbours()) {
+                int target = stopIds.get(neighbour);
+                neighbourIds[edge] = target;
+                neighbourWeights[edge] = Math.abs(xs[i] - xs[target]) + Math.abs(ys[i] - ys[target]);
+                edge++;
+            }
+        }
+    }
+
+    /**
+     * 线路停靠站序列及站点所属线路CSR
+     */
+    private void buildRouteMembership() {
+        routeStopOffsets = new int[routes.length + 1];
+        for (int r = 0; r < routes.length; r++) {
+            routeStopOffsets[r + 1] = routeStopOffsets[r] + routes[r].getStopsOnRoute().size();
+        }
+        routeStopIds = new int[routeStopOffsets[routes.length]];
+
+        //同一线路可能多次经过同一站，只计一次
+        int[] routeCounts = new int[stops.length];
+        int[] lastRoute = new int[stops.length];
+        Arrays.fill(lastRoute, -1);
+        int position = 0;
+        for (int r = 0; r < routes.length; r++) {
+            for (Stop stop : routes[r].getStopsOnRoute()) {
+                int id = stopIds.get(stop);
+                routeStopIds[position++] = id;
+                if (lastRoute[id] != r) {
+                    lastRoute[id] = r;
+                    routeCounts[id]++;
+                }
+            }
+        }
+
+        stopRouteOffsets = new int[stops.length + 1];
+        for (int i = 0; i < stops.length; i++) {
+            stopRouteOffsets[i + 1] = stopRouteOffsets[i] + routeCounts[i];
+        }
+        stopRouteIds = new int[stopRouteOffsets[stops.length]];
+        int[] fill = new int[stops.length];
+        Arrays.fill(lastRoute, -1);
+        for (int r = 0; r < routes.length; r++) {
+            for (int i = routeStopOffsets[r]; i < routeStopOffsets[r + 1]; i++) {
+                int id = routeStopIds[i];
+                if (lastRoute[id] != r) {
+                    lastRoute[id] = r;
+                    stopRouteIds[stopRouteOffsets[id] + fill[id]++] = r;
+                }
+            }
+        }
+    }
+
+    /**
+     * 编译后拓扑是否已变化
+     *
+     * @return
+     */
+    public boolean isStale() {
+        long current = NetworkVersion.current();
+        if (current == checkedVersion) {
+            return false;
+        }
+        //全局版本变化可能来自其他网络，修改次数只增不减，和未变说明编译范围内没有变化
+        if (signature() != signature) {
+            return true;
+        }
+        checkedVersion = current;
+        return false;
+    }
+
+    /**
+     * 站点和来源线路修改次数之和，来源线路每条另计1，增减线路也会改变结果
+     *
+     * @return
+     */
+    private long signature() {
+        long sum = 0;
+        for (Stop stop : stops) {
+            sum += stop.getTopologyVersion();
+        }
+        for (Route route : sourceRoutes) {
+            if (Objects.nonNull(route)) {
+                sum += route.getTopologyVersion() + 1L;
+            }
+        }
+        return sum;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 站点数
+     *
+     * @return
+     */
+    public int stopCount() {
+        return stops.length;
+    }
+
+    /**
+     * 线路数
+     *
+     * @return
+     */
+    public int routeCount() {
+        return routes.length;
+    }
+
+    /**
+     * 站点编号，不在网络内时返回-1
+     *
+     * @param stop
+     * @return
+     */
+    public int idOf(Stop stop) {
+        Integer id = Objects.isNull(stop) ? null : stopIds.get(stop);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * 编号对应站点
+     *
+     * @param id
+     * @return
+     */
+    public Stop stopOf(int id) {
+        return stops[id];
+    }
+
+    /**
+     * 线路编号，不在网络内时返回-1
+     *
+     * @param route
+     * @return
+     */
+    public int idOf(Route route) {
+        Integer id = Objects.isNull(route) ? null : routeIds.get(route);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * 编号对应线路
+     *
+     * @param id
+     * @return
+     */
+    public Route routeOf(int id) {
+        return routes[id];
+    }
+
+    public int x(int stopId) {
+        return xs[stopId];
+    }
+
+    public int y(int stopId) {
+        return ys[stopId];
+    }
+
+    /**
+     * 两站曼哈顿距离
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public int distance(int from, int to) {
+        return Math.abs(xs[from] - xs[to]) + Math.abs(ys[from] - ys[to]);
+    }
+
+    /**
+     * 站点相邻站区间起点
+     *
+     * @param stopId
+     * @return
+     */
+    public int neighbourStart(int stopId) {
+        return neighbourOffsets[stopId];
+    }
+
+    /**
+     * 站点相邻站区间终点(不含)
+     *
+     * @param stopId
+     * @return
+     */
+    public int neighbourEnd(int stopId) {
+        return neighbourOffsets[stopId + 1];
+    }
+
+    public int neighbourAt(int edge) {
+        return neighbourIds[edge];
+    }
+
+    public int weightAt(int edge) {
+        return neighbourWeights[edge];
+    }
+
+    /**
+     * 站点所属线路区间起点
+     *
+     * @param stopId
+     * @return
+     */
+    public int stopRouteStart(int stopId) {
+        return stopRouteOffsets[stopId];
+    }
+
+    /**
+     * 站点所属线路区间终点(不含)
+     *
+     * @param stopId
+     * @return
+     */
+    public int stopRouteEnd(int stopId) {
+        return stopRouteOffsets[stopId + 1];
+    }
+
+    public int stopRouteAt(int index) {
+        return stopRouteIds[index];
+    }
+
+    /**
+     * 线路停靠站区间起点
+     *
+     * @param routeId
+     * @return
+     */
+    public int routeStopStart(int routeId) {
+        return routeStopOffsets[routeId];
+    }
+
+    /**
+     * 线路停靠站区间终点(不含)
+     *
+     * @param routeId
+     * @return
+     */
+    public int routeStopEnd(int routeId) {
+        return routeStopOffsets[routeId + 1];
+    }
+
+    public int routeStopAt(int index) {
+        return routeStopIds[index];
+    }
+}
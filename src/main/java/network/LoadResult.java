@@ -0,0 +1,88 @@
+package network;
+
+import routes.Route;
+import stops.StopRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 网络文本导入结果
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class LoadResult {
+
+    /**
+     * 最多保留的错误信息条数，超出后只计数
+     */
+    private static final int MAX_ERROR_MESSAGES = 1000;
+
+    /**
+     * 导入的站点
+     */
+    private StopRegistry registry;
+
+    /**
+     * 导入的线路，按文件顺序排列
+     */
+    private List<Route> routes;
+
+    /**
+     * 格式错误的行，格式为"line {行号}: {原因}"
+     */
+    private List<String> errors;
+
+    /**
+     * 格式错误的行数
+     */
+    private long errorCount;
+
+    /**
+     * 读取的行数
+     */
+    private long lineCount;
+
+    LoadResult(StopRegistry registry) {
+        this.registry = registry;
+        this.routes = new ArrayList<>();
+        this.errors = new ArrayList<>();
+    }
+
+    void addRoute(Route route) {
+        routes.add(route);
+    }
+
+    void addError(long line, String message) {
+        errorCount++;
+        if (errors.size() < MAX_ERROR_MESSAGES) {
+            errors.add("line " + line + ": " + message);
+        }
+    }
+
+    void setLineCount(long lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public StopRegistry getRegistry() {
+        return registry;
+    }
+
+    public List<Route> getRoutes() {
+        return Collections.unmodifiableList(routes);
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+}
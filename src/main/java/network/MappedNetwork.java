@@ -0,0 +1,356 @@
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射的网络快照
+ * <p>
+ * 直接在映射的文件数据上查询站点、相邻站、线路和车辆，不创建任何网络对象。
+ * 文件格式(大端)依次为：
+ * <pre>
+ * 文件头    magic, 格式版本, 字符串数, 站点数, 相邻边数, 线路数, 线路停靠站数, 车辆数
+ * 字符串偏移 int[字符串数+1]，相对字符串数据起点
+ * 站点      站名字符串下标, x, y
+ * 相邻站    偏移int[站点数+1]，编号int[相邻边数]
+ * 线路      类型字符串下标, 线路编号, 线路名字符串下标, 运营方式
+ * 停靠站    偏移int[线路数+1]，站点编号int[线路停靠站数]
+ * 车辆      线路下标, 车辆id, 容量, 附加属性(巴士注册号/渡轮类型为字符串下标，火车为托架数)
+ * 字符串数据 UTF-8
+ * </pre>
+ * 各段长度由文件头的数量决定，定长记录可按下标O(1)定位。单个快照不超过2GB。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class MappedNetwork {
+
+    /**
+     * 文件标识"TNET"
+     */
+    static final int MAGIC = 0x544E4554;
+
+    /**
+     * 格式版本
+     */
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * 文件头字节数
+     */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * 站点记录字节数
+     */
+    static final int STOP_RECORD = 12;
+
+    /**
+     * 线路记录字节数
+     */
+    static final int ROUTE_RECORD = 16;
+
+    /**
+     * 车辆记录字节数
+     */
+    static final int VEHICLE_RECORD = 16;
+
+    /**
+     * 映射的文件数据
+     */
+    private ByteBuffer buffer;
+
+    private int stringCount;
+    private int stopCount;
+    private int neighbourCount;
+    private int routeCount;
+    private int routeStopCount;
+    private int vehicleCount;
+
+    /**
+     * 各段起点
+     */
+    private int stringOffsetsPosition;
+    private int stopsPosition;
+    private int neighbourOffsetsPosition;
+    private int neighbourIdsPosition;
+    private int routesPosition;
+    private int routeStopOffsetsPosition;
+    private int routeStopIdsPosition;
+    private int vehiclesPosition;
+    private int stringDataPosition;
+
+    MappedNetwork(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not A Network Snapshot!");
+        }
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported Snapshot Version " + version + "!");
+        }
+        this.stringCount = buffer.getInt(8);
+        this.stopCount = buffer.getInt(12);
+        this.neighbourCount = buffer.getInt(16);
+        this.routeCount = buffer.getInt(20);
+        this.routeStopCount = buffer.getInt(24);
+        this.vehicleCount = buffer.getInt(28);
+        if (stringCount < 0 || stopCount < 0 || neighbourCount < 0 || routeCount < 0 || routeStopCount < 0
+                || vehicleCount < 0) {
+            throw new IOException("Corrupt Network Snapshot Header!");
+        }
+
+        //数量都不超过int范围，各段长度按long累加不会溢出，超出文件长度时在读取任何数据前报错
+        long position = HEADER_SIZE;
+        this.stringOffsetsPosition = section(position);
+        position += 4L * (stringCount + 1L);
+        this.stopsPosition = section(position);
+        position += (long) STOP_RECORD * stopCount;
+        this.neighbourOffsetsPosition = section(position);
+        position += 4L * (stopCount + 1L);
+        this.neighbourIdsPosition = section(position);
+        position += 4L * neighbourCount;
+        this.routesPosition = section(position);
+        position += (long) ROUTE_RECORD * routeCount;
+        this.routeStopOffsetsPosition = section(position);
+        position += 4L * (routeCount + 1L);
+        this.routeStopIdsPosition = section(position);
+        position += 4L * routeStopCount;
+        this.vehiclesPosition = section(position);
+        position += (long) VEHICLE_RECORD * vehicleCount;
+        this.stringDataPosition = section(position);
+        int stringDataSize = buffer.getInt(stringOffsetsPosition + 4 * stringCount);
+        if (stringDataSize < 0 || position + stringDataSize > buffer.capacity()) {
+            throw new IOException("Truncated Network Snapshot!");
+        }
+    }
+
+    /**
+     * 校验段起点在文件内
+     *
+     * @param position
+     * @return
+     * @throws IOException 超出文件长度
+     */
+    private int section(long position) throws IOException {
+        if (position > buffer.capacity()) {
+            throw new IOException("Truncated Network Snapshot!");
+        }
+        return (int) position;
+    }
+
+    /**
+     * 只读映射快照文件
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static MappedNetwork open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedNetwork(buffer);
+        }
+    }
+
+    /**
+     * 字符串表中的字符串
+     *
+     * @param index
+     * @return
+     */
+    public String string(int index) {
+        int start = buffer.getInt(stringOffsetsPosition + 4 * index);
+        int end = buffer.getInt(stringOffsetsPosition + 4 * (index + 1));
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buffer.duplicate();
+        view.position(stringDataPosition + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按站名查找站点编号，不存在时返回-1
+     *
+     * @param name
+     * @return
+     */
+    public int findStop(String name) {
+        if (name == null) {
+            return -1;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < stopCount; i++) {
+            if (stringEquals(stopNameIndex(i), bytes)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 字符串表中的字符串是否等于指定字节，不解码
+     *
+     * @param index
+     * @param bytes
+     * @return
+     */
+    private boolean stringEquals(int index, byte[] bytes) {
+        int start = buffer.getInt(stringOffsetsPosition + 4 * index);
+        int end = buffer.getInt(stringOffsetsPosition + 4 * (index + 1));
+        if (end - start != bytes.length) {
+            return false;
+        }
+        int base = stringDataPosition + start;
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(base + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int stringCount() {
+        return stringCount;
+    }
+
+    public int stopCount() {
+        return stopCount;
+    }
+
+    public int routeCount() {
+        return routeCount;
+    }
+
+    public int vehicleCount() {
+        return vehicleCount;
+    }
+
+    int stopNameIndex(int stop) {
+        return buffer.getInt(stopsPosition + STOP_RECORD * stop);
+    }
+
+    public String stopName(int stop) {
+        return string(stopNameIndex(stop));
+    }
+
+    public int stopX(int stop) {
+        return buffer.getInt(stopsPosition + STOP_RECORD * stop + 4);
+    }
+
+    public int stopY(int stop) {
+        return buffer.getInt(stopsPosition + STOP_RECORD * stop + 8);
+    }
+
+    /**
+     * 两站曼哈顿距离
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public int distance(int from, int to) {
+        return Math.abs(stopX(from) - stopX(to)) + Math.abs(stopY(from) - stopY(to));
+    }
+
+    /**
+     * 站点相邻站区间起点
+     *
+     * @param stop
+     * @return
+     */
+    public int neighbourStart(int stop) {
+        return buffer.getInt(neighbourOffsetsPosition + 4 * stop);
+    }
+
+    /**
+     * 站点相邻站区间终点(不含)
+     *
+     * @param stop
+     * @return
+     */
+    public int neighbourEnd(int stop) {
+        return buffer.getInt(neighbourOffsetsPosition + 4 * (stop + 1));
+    }
+
+    public int neighbourAt(int edge) {
+        return buffer.getInt(neighbourIdsPosition + 4 * edge);
+    }
+
+    int routeTypeIndex(int route) {
+        return buffer.getInt(routesPosition + ROUTE_RECORD * route);
+    }
+
+    public String routeType(int route) {
+        return string(routeTypeIndex(route));
+    }
+
+    public int routeNumber(int route) {
+        return buffer.getInt(routesPosition + ROUTE_RECORD * route + 4);
+    }
+
+    public String routeName(int route) {
+        return string(buffer.getInt(routesPosition + ROUTE_RECORD * route + 8));
+    }
+
+    /**
+     * 运营方式序号，见{@link routes.OperatingPattern}
+     *
+     * @param route
+     * @return
+     */
+    public int routePattern(int route) {
+        return buffer.getInt(routesPosition + ROUTE_RECORD * route + 12);
+    }
+
+    /**
+     * 线路停靠站区间起点
+     *
+     * @param route
+     * @return
+     */
+    public int routeStopStart(int route) {
+        return buffer.getInt(routeStopOffsetsPosition + 4 * route);
+    }
+
+    /**
+     * 线路停靠站区间终点(不含)
+     *
+     * @param route
+     * @return
+     */
+    public int routeStopEnd(int route) {
+        return buffer.getInt(routeStopOffsetsPosition + 4 * (route + 1));
+    }
+
+    public int routeStopAt(int index) {
+        return buffer.getInt(routeStopIdsPosition + 4 * index);
+    }
+
+    public int vehicleRoute(int vehicle) {
+        return buffer.getInt(vehiclesPosition + VEHICLE_RECORD * vehicle);
+    }
+
+    public int vehicleId(int vehicle) {
+        return buffer.getInt(vehiclesPosition + VEHICLE_RECORD * vehicle + 4);
+    }
+
+    public int vehicleCapacity(int vehicle) {
+        return buffer.getInt(vehiclesPosition + VEHICLE_RECORD * vehicle + 8);
+    }
+
+    /**
+     * 车辆附加属性，巴士和渡轮为字符串下标，火车为托架数
+     *
+     * @param vehicle
+     * @return
+     */
+    public int vehicleAttribute(int vehicle) {
+        return buffer.getInt(vehiclesPosition + VEHICLE_RECORD * vehicle + 12);
+    }
+}
@@ -0,0 +1,373 @@
+package network;
+
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+import stops.StopRegistry;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 网络文本流式导入
+ * <p>
+ * 逐行解析{@link Stop#toString()}和{@link Route#toString()}的输出：
+ * <pre>
+ * 站点 {name}:{x}:{y}
+ * 线路 {type},{name},{number}:{stop0}|{stop1}|...|{stopN}
+ * </pre>
+ * 站名不含逗号，因此含逗号的行为线路，否则为站点；站名可以含冒号，站点行从右向左取坐标。
+ * 线路引用的站点须在之前的行中定义(或已在传入的注册表中)。
+ * <p>
+ * 按固定大小的字符缓冲区读取，不把整个文件读入内存，不使用正则；
+ * 每行只为站名、线路名分配字符串，线路行中的站名直接在行缓冲区上查找。
+ * 格式错误的行记录行号和原因后跳过，不中断导入。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class NetworkLoader {
+
+    /**
+     * 读取缓冲区字符数
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * 站点注册表
+     */
+    private StopRegistry registry;
+
+    /**
+     * 站名索引(开放寻址)，同名只索引最先出现的站点
+     */
+    private Stop[] nameTable;
+
+    private int nameCount;
+
+    /**
+     * 当前行
+     */
+    private char[] line;
+
+    private int lineLength;
+
+    /**
+     * 当前线路行解析出的站点
+     */
+    private List<Stop> routeStops;
+
+    public NetworkLoader() {
+        this(new StopRegistry());
+    }
+
+    /**
+     * 导入到已有注册表，线路行可引用其中的站点
+     *
+     * @param registry
+     */
+    public NetworkLoader(StopRegistry registry) {
+        if (Objects.isNull(registry)) {
+            throw new IllegalArgumentException("Registry Can Not Be Empty!");
+        }
+        this.registry = registry;
+        this.nameTable = new Stop[64];
+        this.line = new char[256];
+        this.routeStops = new ArrayList<>();
+        registry.getStops().forEach(this::index);
+    }
+
+    /**
+     * 导入UTF-8文件
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public LoadResult load(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    /**
+     * 导入字符流，调用方负责关闭
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     */
+    public LoadResult load(Reader reader) throws IOException {
+        LoadResult result = new LoadResult(registry);
+        char[] buffer = new char[BUFFER_SIZE];
+        long lineNumber = 0;
+        lineLength = 0;
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    append(buffer, start, i - start);
+                    parseLine(++lineNumber, result);
+                    lineLength = 0;
+                    start = i + 1;
+                }
+            }
+            append(buffer, start, read - start);
+        }
+        //最后一行没有换行符
+        if (lineLength > 0) {
+            parseLine(++lineNumber, result);
+            lineLength = 0;
+        }
+        result.setLineCount(lineNumber);
+        return result;
+    }
+
+    /**
+     * 追加到当前行
+     *
+     * @param chars
+     * @param offset
+     * @param length
+     */
+    private void append(char[] chars, int offset, int length) {
+        if (lineLength + length > line.length) {
+            char[] grown = new char[Math.max(line.length * 2, lineLength + length)];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        System.arraycopy(chars, offset, line, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * 解析当前行
+     *
+     * @param lineNumber
+     * @param result
+     */
+    private void parseLine(long lineNumber, LoadResult result) {
+        int end = lineLength;
+        if (end > 0 && line[end - 1] == '\r') {
+            end--;
+        }
+        if (isBlank(0, end)) {
+            return;
+        }
+        String error = indexOf(',', 0, end) >= 0 ? parseRoute(end, result) : parseStop(end);
+        if (Objects.nonNull(error)) {
+            result.addError(lineNumber, error);
+        }
+    }
+
+    /**
+     * 解析站点行{name}:{x}:{y}
+     *
+     * @param end
+     * @return 错误原因，成功时返回null
+     */
+    private String parseStop(int end) {
+        int yColon = lastIndexOf(':', 0, end);
+        int xColon = yColon < 0 ? -1 : lastIndexOf(':', 0, yColon);
+        if (xColon <= 0) {
+            return "Malformed Stop";
+        }
+        long x = parseInt(xColon + 1, yColon);
+        long y = parseInt(yColon + 1, end);
+        if (x == Long.MIN_VALUE || y == Long.MIN_VALUE) {
+            return "Invalid Stop Coordinate";
+        }
+        Stop stop = new Stop(new String(line, 0, xColon), (int) x, (int) y);
+        registry.register(stop);
+        index(stop);
+        return null;
+    }
+
+    /**
+     * 解析线路行{type},{name},{number}:{stop0}|...|{stopN}
+     *
+     * @param end
+     * @param result
+     * @return 错误原因，成功时返回null
+     */
+    private String parseRoute(int end, LoadResult result) {
+        int typeComma = indexOf(',', 0, end);
+        int nameComma = indexOf(',', typeComma + 1, end);
+        int colon = nameComma < 0 ? -1 : indexOf(':', nameComma + 1, end);
+        if (colon < 0) {
+            return "Malformed Route";
+        }
+        long number = parseInt(nameComma + 1, colon);
+        if (number == Long.MIN_VALUE) {
+            return "Invalid Route Number";
+        }
+
+        //先解析全部站点，任一站点未定义则整行跳过
+        routeStops.clear();
+        int start = colon + 1;
+        while (start < end) {
+            int bar = indexOf('|', start, end);
+            int stopEnd = bar < 0 ? end : bar;
+            Stop stop = lookup(start, stopEnd);
+            if (stop == null) {
+                return "Unknown Stop " + new String(line, start, stopEnd - start);
+            }
+            routeStops.add(stop);
+            start = stopEnd + 1;
+        }
+
+        String name = new String(line, typeComma + 1, nameComma - typeComma - 1);
+        Route route;
+        if (regionEquals(0, typeComma, "bus")) {
+            route = new BusRoute((int) number, name);
+        } else if (regionEquals(0, typeComma, "train")) {
+            route = new TrainRoute((int) number, name);
+        } else if (regionEquals(0, typeComma, "ferry")) {
+            route = new FerryRoute((int) number, name);
+        } else {
+            return "Unknown Route Type " + new String(line, 0, typeComma);
+        }
+        routeStops.forEach(route::addStop);
+        result.addRoute(route);
+        return null;
+    }
+
+    /**
+     * 解析[start, end)内的十进制整数，格式错误或溢出时返回Long.MIN_VALUE
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    private long parseInt(int start, int end) {
+        if (start >= end) {
+            return Long.MIN_VALUE;
+        }
+        boolean negative = line[start] == '-';
+        int i = negative || line[start] == '+' ? start + 1 : start;
+        if (i == end) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = line[i];
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return Long.MIN_VALUE;
+            }
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    /**
+     * 加入站名索引
+     *
+     * @param stop
+     */
+    private void index(Stop stop) {
+        if ((nameCount + 1) * 2 > nameTable.length) {
+            Stop[] old = nameTable;
+            nameTable = new Stop[old.length * 2];
+            nameCount = 0;
+            for (Stop e : old) {
+                if (e != null) {
+                    insert(e);
+                }
+            }
+        }
+        insert(stop);
+    }
+
+    private void insert(Stop stop) {
+        String name = stop.getName();
+        int mask = nameTable.length - 1;
+        for (int i = mix(name.hashCode()) & mask; ; i = (i + 1) & mask) {
+            if (nameTable[i] == null) {
+                nameTable[i] = stop;
+                nameCount++;
+                return;
+            }
+            if (nameTable[i].getName().equals(name)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 按行缓冲区[start, end)中的站名查找，不创建字符串
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    private Stop lookup(int start, int end) {
+        //与String.hashCode相同的算法
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + line[i];
+        }
+        int mask = nameTable.length - 1;
+        for (int i = mix(hash) & mask; nameTable[i] != null; i = (i + 1) & mask) {
+            if (regionEquals(start, end, nameTable[i].getName())) {
+                return nameTable[i];
+            }
+        }
+        return null;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean regionEquals(int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (line[i] != value.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOf(char c, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
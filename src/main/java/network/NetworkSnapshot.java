@@ -0,0 +1,310 @@
+package network;
+
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.OperatingPattern;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Ferry;
+import vehicles.PublicTransport;
+import vehicles.Train;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 网络二进制快照
+ * <p>
+ * 将线路、站点坐标和相邻关系、线路停靠站序列及车辆写入带版本号的二进制文件，格式见{@link MappedNetwork}。
+ * 读取时映射文件并按顺序重建对象，避免逐行解析文本；只需查询时可直接使用{@link MappedNetwork}。
+ * 时刻表和乘客不在快照中。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class NetworkSnapshot {
+
+    /**
+     * 站点，按快照编号排列
+     */
+    private List<Stop> stops;
+
+    /**
+     * 线路，按快照编号排列
+     */
+    private List<Route> routes;
+
+    /**
+     * 车辆
+     */
+    private List<PublicTransport> vehicles;
+
+    private NetworkSnapshot(List<Stop> stops, List<Route> routes, List<PublicTransport> vehicles) {
+        this.stops = Collections.unmodifiableList(stops);
+        this.routes = Collections.unmodifiableList(routes);
+        this.vehicles = Collections.unmodifiableList(vehicles);
+    }
+
+    /**
+     * 写入快照，已有文件会被覆盖
+     *
+     * @param path
+     * @param routes
+     * @throws IOException
+     */
+    public static void write(Path path, Collection<? extends Route> routes) throws IOException {
+        CompiledNetwork network = CompiledNetwork.compile(routes);
+        StringTable strings = new StringTable();
+        int stopCount = network.stopCount();
+        int routeCount = network.routeCount();
+
+        int[] stopNames = new int[stopCount];
+        for (int i = 0; i < stopCount; i++) {
+            stopNames[i] = strings.indexOf(network.stopOf(i).getName());
+        }
+        int[] routeTypes = new int[routeCount];
+        int[] routeNames = new int[routeCount];
+        List<PublicTransport> vehicles = new ArrayList<>();
+        List<Integer> vehicleRoutes = new ArrayList<>();
+        for (int r = 0; r < routeCount; r++) {
+            Route route = network.routeOf(r);
+            routeTypes[r] = strings.indexOf(route.getType());
+            routeNames[r] = strings.indexOf(route.getName());
+            for (PublicTransport transport : route.getTransports()) {
+                vehicles.add(transport);
+                vehicleRoutes.add(r);
+            }
+        }
+        int[] vehicleAttributes = new int[vehicles.size()];
+        for (int i = 0; i < vehicles.size(); i++) {
+            vehicleAttributes[i] = attributeOf(vehicles.get(i), strings);
+        }
+
+        int neighbourCount = network.stopCount() == 0 ? 0 : network.neighbourEnd(stopCount - 1);
+        int routeStopCount = routeCount == 0 ? 0 : network.routeStopEnd(routeCount - 1);
+        long size = MappedNetwork.HEADER_SIZE + 4L * (strings.size() + 1)
+                + (long) MappedNetwork.STOP_RECORD * stopCount + 4L * (stopCount + 1) + 4L * neighbourCount
+                + (long) MappedNetwork.ROUTE_RECORD * routeCount + 4L * (routeCount + 1) + 4L * routeStopCount
+                + (long) MappedNetwork.VEHICLE_RECORD * vehicles.size() + strings.byteSize();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Network Too Large For A Single Snapshot!");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MappedNetwork.MAGIC).putInt(MappedNetwork.FORMAT_VERSION)
+                    .putInt(strings.size()).putInt(stopCount).putInt(neighbourCount)
+                    .putInt(routeCount).putInt(routeStopCount).putInt(vehicles.size());
+            //字符串偏移
+            int offset = 0;
+            buffer.putInt(offset);
+            for (byte[] bytes : strings.encoded) {
+                offset += bytes.length;
+                buffer.putInt(offset);
+            }
+            //站点
+            for (int i = 0; i < stopCount; i++) {
+                buffer.putInt(stopNames[i]).putInt(network.x(i)).putInt(network.y(i));
+            }
+            //相邻站
+            for (int i = 0; i < stopCount; i++) {
+                buffer.putInt(network.neighbourStart(i));
+            }
+            buffer.putInt(neighbourCount);
+            for (int edge = 0; edge < neighbourCount; edge++) {
+                buffer.putInt(network.neighbourAt(edge));
+            }
+            //线路
+            for (int r = 0; r < routeCount; r++) {
+                Route route = network.routeOf(r);
+                buffer.putInt(routeTypes[r]).putInt(route.getRouteNumber()).putInt(routeNames[r])
+                        .putInt(route.getOperatingPattern().ordinal());
+            }
+            for (int r = 0; r < routeCount; r++) {
+                buffer.putInt(network.routeStopStart(r));
+            }
+            buffer.putInt(routeStopCount);
+            for (int i = 0; i < routeStopCount; i++) {
+                buffer.putInt(network.routeStopAt(i));
+            }
+            //车辆
+            for (int i = 0; i < vehicles.size(); i++) {
+                PublicTransport transport = vehicles.get(i);
+                buffer.putInt(vehicleRoutes.get(i)).putInt(transport.getId()).putInt(transport.getCapacity())
+                        .putInt(vehicleAttributes[i]);
+            }
+            //字符串数据
+            for (byte[] bytes : strings.encoded) {
+                buffer.put(bytes);
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * 读取快照并重建站点、线路和车辆
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static NetworkSnapshot read(Path path) throws IOException {
+        MappedNetwork mapped = MappedNetwork.open(path);
+        String[] strings = new String[mapped.stringCount()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = mapped.string(i);
+        }
+
+        List<Stop> stops = new ArrayList<>(mapped.stopCount());
+        for (int i = 0; i < mapped.stopCount(); i++) {
+            stops.add(new Stop(strings[mapped.stopNameIndex(i)], mapped.stopX(i), mapped.stopY(i)));
+        }
+
+        List<Route> routes = new ArrayList<>(mapped.routeCount());
+        OperatingPattern[] patterns = OperatingPattern.values();
+        for (int r = 0; r < mapped.routeCount(); r++) {
+            Route route = newRoute(strings[mapped.routeTypeIndex(r)], mapped.routeNumber(r), mapped.routeName(r));
+            int pattern = mapped.routePattern(r);
+            route.setOperatingPattern(pattern >= 0 && pattern < patterns.length ? patterns[pattern] : null);
+            for (int i = mapped.routeStopStart(r); i < mapped.routeStopEnd(r); i++) {
+                route.addStop(stops.get(mapped.routeStopAt(i)));
+            }
+            routes.add(route);
+        }
+        //线路之外单独建立的相邻关系，已存在的会被忽略
+        for (int i = 0; i < mapped.stopCount(); i++) {
+            Stop stop = stops.get(i);
+            for (int edge = mapped.neighbourStart(i); edge < mapped.neighbourEnd(i); edge++) {
+                stop.addNeighbouringStop(stops.get(mapped.neighbourAt(edge)));
+            }
+        }
+
+        List<PublicTransport> vehicles = new ArrayList<>(mapped.vehicleCount());
+        for (int i = 0; i < mapped.vehicleCount(); i++) {
+            Route route = routes.get(mapped.vehicleRoute(i));
+            PublicTransport transport = newTransport(route, mapped.vehicleId(i), mapped.vehicleCapacity(i),
+                    mapped.vehicleAttribute(i), strings);
+            route.tryAddTransport(transport);
+            vehicles.add(transport);
+        }
+        return new NetworkSnapshot(stops, routes, vehicles);
+    }
+
+    /**
+     * 按类型创建线路
+     *
+     * @param type
+     * @param number
+     * @param name
+     * @return
+     * @throws IOException
+     */
+    private static Route newRoute(String type, int number, String name) throws IOException {
+        switch (type) {
+            case "bus":
+                return new BusRoute(number, name);
+            case "train":
+                return new TrainRoute(number, name);
+            case "ferry":
+                return new FerryRoute(number, name);
+            default:
+                throw new IOException("Unknown Route Type " + type + "!");
+        }
+    }
+
+    /**
+     * 按线路类型创建车辆
+     *
+     * @param route
+     * @param id
+     * @param capacity
+     * @param attribute
+     * @param strings
+     * @return
+     */
+    private static PublicTransport newTransport(Route route, int id, int capacity, int attribute, String[] strings) {
+        if (route instanceof TrainRoute) {
+            return new Train(id, capacity, route, attribute);
+        }
+        if (route instanceof FerryRoute) {
+            return new Ferry(id, capacity, route, strings[attribute]);
+        }
+        return new Bus(id, capacity, route, strings[attribute]);
+    }
+
+    /**
+     * 车辆附加属性
+     *
+     * @param transport
+     * @param strings
+     * @return
+     */
+    private static int attributeOf(PublicTransport transport, StringTable strings) {
+        if (transport instanceof Train) {
+            return ((Train) transport).getCarriageCount();
+        }
+        if (transport instanceof Ferry) {
+            return strings.indexOf(((Ferry) transport).getFerryType());
+        }
+        if (transport instanceof Bus) {
+            return strings.indexOf(((Bus) transport).getRegistrationNumber());
+        }
+        return strings.indexOf("");
+    }
+
+    public List<Stop> getStops() {
+        return stops;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public List<PublicTransport> getVehicles() {
+        return vehicles;
+    }
+
+    /**
+     * 去重的字符串表
+     */
+    private static class StringTable {
+        private Map<String, Integer> indexes = new HashMap<>();
+        private List<byte[]> encoded = new ArrayList<>();
+        private long byteSize;
+
+        private int indexOf(String value) {
+            String key = Objects.isNull(value) ? "" : value;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = encoded.size();
+                byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+                indexes.put(key, index);
+                encoded.add(bytes);
+                byteSize += bytes.length;
+            }
+            return index;
+        }
+
+        private int size() {
+            return encoded.size();
+        }
+
+        private long byteSize() {
+            return byteSize;
+        }
+    }
+}
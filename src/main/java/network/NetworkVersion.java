@@ -0,0 +1,37 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 网络拓扑版本
+ * <p>
+ * 任意站点增加相邻站或线路增加停靠站时版本加一。版本是全局的，只用作快速判断：
+ * 版本未变时编译结果一定有效；版本变化后还需比较编译时各站点和线路自身的修改次数，
+ * 无关网络(如另行加载的网络)的变化不会使编译结果过期。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public final class NetworkVersion {
+
+    /**
+     * 当前版本
+     */
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    private NetworkVersion() {
+    }
+
+    public static long current() {
+        return VERSION.get();
+    }
+
+    /**
+     * 拓扑发生变化
+     *
+     * @return 新版本
+     */
+    public static long increment() {
+        return VERSION.incrementAndGet();
+    }
+}
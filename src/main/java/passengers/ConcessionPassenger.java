@@ -11,46 +11,37 @@ import stops.Stop;
 public class ConcessionPassenger extends Passenger {
 
     /**
-     * 优惠码长度
+     * 乘客优惠码
      */
-    private static final int CONCESSION_RULE_SIZE = 6;
+    private int concessionId;
 
     /**
-     * 优惠码前缀
+     * 优惠码校验结果，优惠码变化时重新计算
      */
-    private static final String CONCESSION_RULE_PREFIX = "42";
-
-    /**
-     * 乘客优惠码
-     */
-    private int concessionId;
+    private boolean valid;
 
     public ConcessionPassenger(String name, Stop destination, int concessionId) {
         super(name, destination);
-        this.concessionId = concessionId;
+        renew(concessionId);
     }
 
     /**
      * 过期
      */
     public void expire() {
-        this.concessionId = 0;
+        renew(ConcessionService.EXPIRED_ID);
     }
 
     /**
      * 是否验证
      * <p>
      * 优惠码有效时返回true
-     * 有效规则：42****
+     * 有效规则：42****，见{@link ConcessionService#isValid(int)}
      *
      * @return
      */
     public boolean isValid() {
-        String concessionId = String.valueOf(this.concessionId);
-        if (concessionId.startsWith(CONCESSION_RULE_PREFIX) && concessionId.length() == CONCESSION_RULE_SIZE) {
-            return true;
-        }
-        return false;
+        return valid;
     }
 
     /**
@@ -60,5 +51,10 @@ public class ConcessionPassenger extends Passenger {
      */
     public void renew(int newId) {
         this.concessionId = newId;
+        this.valid = ConcessionService.isValid(newId);
+    }
+
+    public int getConcessionId() {
+        return concessionId;
     }
 }
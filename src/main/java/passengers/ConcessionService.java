@@ -0,0 +1,164 @@
+package passengers;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 优惠码校验服务
+ * <p>
+ * 有效规则为42****，即十进制6位且以42开头，等价于420000 <= id <= 429999，
+ * 用两次比较判断，不转换字符串。支持整批校验到BitSet以及批量过期、更新。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public final class ConcessionService {
+
+    /**
+     * 最小有效优惠码
+     */
+    public static final int MIN_VALID_ID = 420000;
+
+    /**
+     * 最大有效优惠码
+     */
+    public static final int MAX_VALID_ID = 429999;
+
+    /**
+     * 过期后的优惠码
+     */
+    public static final int EXPIRED_ID = 0;
+
+    private ConcessionService() {
+    }
+
+    /**
+     * 优惠码是否有效
+     *
+     * @param concessionId
+     * @return
+     */
+    public static boolean isValid(int concessionId) {
+        return concessionId >= MIN_VALID_ID && concessionId <= MAX_VALID_ID;
+    }
+
+    /**
+     * 校验优惠码数组，有效的下标置位
+     *
+     * @param concessionIds
+     * @return
+     */
+    public static BitSet validate(int[] concessionIds) {
+        BitSet result = new BitSet(concessionIds.length);
+        validate(concessionIds, 0, concessionIds.length, result);
+        return result;
+    }
+
+    /**
+     * 校验优惠码数组的[from, to)区间，有效的下标在result中置位，无效的清位
+     *
+     * @param concessionIds
+     * @param from
+     * @param to
+     * @param result
+     */
+    public static void validate(int[] concessionIds, int from, int to, BitSet result) {
+        for (int i = from; i < to; i++) {
+            result.set(i, isValid(concessionIds[i]));
+        }
+    }
+
+    /**
+     * 校验乘客列表，使用乘客缓存的校验结果
+     *
+     * @param passengers
+     * @return 有效乘客的下标
+     */
+    public static BitSet validate(List<? extends ConcessionPassenger> passengers) {
+        BitSet result = new BitSet(passengers.size());
+        int i = 0;
+        for (ConcessionPassenger passenger : passengers) {
+            if (Objects.nonNull(passenger) && passenger.isValid()) {
+                result.set(i);
+            }
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * 校验列式存储中的全部乘客，使用存储缓存的校验结果
+     *
+     * @param store
+     * @return 持有效优惠码的句柄
+     */
+    public static BitSet validate(PassengerStore store) {
+        return store.validConcessions();
+    }
+
+    /**
+     * 批量过期
+     *
+     * @param passengers
+     * @param selection  需要过期的下标，为空时全部过期
+     * @return 过期人数
+     */
+    public static int expire(List<? extends ConcessionPassenger> passengers, BitSet selection) {
+        return renew(passengers, selection, e -> EXPIRED_ID);
+    }
+
+    /**
+     * 批量更新优惠码
+     *
+     * @param passengers
+     * @param selection  需要更新的下标，为空时全部更新
+     * @param newId      由旧优惠码得到新优惠码
+     * @return 更新人数
+     */
+    public static int renew(List<? extends ConcessionPassenger> passengers, BitSet selection, IntUnaryOperator newId) {
+        int count = 0;
+        for (int i = 0; i < passengers.size(); i++) {
+            ConcessionPassenger passenger = passengers.get(i);
+            if (Objects.nonNull(passenger) && (Objects.isNull(selection) || selection.get(i))) {
+                passenger.renew(newId.applyAsInt(passenger.getConcessionId()));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 批量过期列式存储中的特价票乘客
+     *
+     * @param store
+     * @param selection 需要过期的句柄，为空时全部特价票乘客过期
+     * @return 过期人数
+     */
+    public static int expire(PassengerStore store, BitSet selection) {
+        return renew(store, selection, e -> EXPIRED_ID);
+    }
+
+    /**
+     * 批量更新列式存储中特价票乘客的优惠码，非特价票乘客忽略
+     *
+     * @param store
+     * @param selection 需要更新的句柄，为空时全部特价票乘客更新
+     * @param newId     由旧优惠码得到新优惠码
+     * @return 更新人数
+     */
+    public static int renew(PassengerStore store, BitSet selection, IntUnaryOperator newId) {
+        int count = 0;
+        int size = store.size();
+        int handle = Objects.isNull(selection) ? 0 : selection.nextSetBit(0);
+        while (handle >= 0 && handle < size) {
+            if (store.isConcession(handle)) {
+                store.setConcessionId(handle, newId.applyAsInt(store.getConcessionId(handle)));
+                count++;
+            }
+            handle = Objects.isNull(selection) ? handle + 1 : selection.nextSetBit(handle + 1);
+        }
+        return count;
+    }
+}
@@ -1,8 +1,11 @@
 package passengers;
 
 import stops.Stop;
+import utils.NameUtils;
+import vehicles.PublicTransport;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 乘客基类
@@ -12,6 +15,16 @@ import java.util.Objects;
  */
 public class Passenger {
 
+    /**
+     * 乘客id序列
+     */
+    private static final AtomicInteger ID_SEQUENCE = new AtomicInteger();
+
+    /**
+     * 乘客标识，创建时分配且不可变
+     */
+    private final int id;
+
     /**
      * 乘客姓名
      */
@@ -22,6 +35,11 @@ public class Passenger {
      */
     private Stop destination;
 
+    /**
+     * 所乘车辆，不在车上时为null，由{@link PublicTransport}维护
+     */
+    private PublicTransport vehicle;
+
     /**
      * 只有姓名的构造器
      * <p>
@@ -31,11 +49,12 @@ public class Passenger {
      * @param name
      */
     public Passenger(String name) {
+        this.id = ID_SEQUENCE.getAndIncrement();
         if (name == null) {
             this.name = "";
             return;
         }
-        this.name = name.replaceAll("[\\n,\\r]", "");
+        this.name = NameUtils.sanitize(name);
     }
 
     /**
@@ -55,6 +74,10 @@ public class Passenger {
         return Objects.equals("", this.name) ? "Anonymous passenger" : String.format("Passenger named %s", this.name);
     }
 
+    public int getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -63,7 +86,35 @@ public class Passenger {
         return destination;
     }
 
+    /**
+     * 修改目的站
+     * <p>
+     * 在车上时车辆按新目的站重新分组，乘客在新目的站下车
+     *
+     * @param destination
+     */
     public void setDestination(Stop destination) {
+        Stop previous = this.destination;
         this.destination = destination;
+        if (Objects.nonNull(vehicle) && previous != destination) {
+            vehicle.changeDestination(this, previous);
+        }
+    }
+
+    public PublicTransport getVehicle() {
+        return vehicle;
+    }
+
+    /**
+     * 上车或下车时由车辆调用，凭证只有{@link PublicTransport}能提供
+     *
+     * @param vehicle 下车时为null
+     * @param boarding 上下车凭证
+     */
+    public void setVehicle(PublicTransport vehicle, PublicTransport.Boarding boarding) {
+        if (Objects.isNull(boarding)) {
+            throw new IllegalArgumentException("Boarding Can Not Be Empty!");
+        }
+        this.vehicle = vehicle;
     }
 }
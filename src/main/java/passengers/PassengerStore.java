@@ -0,0 +1,390 @@
+package passengers;
+
+import stops.Stop;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 列式乘客存储
+ * <p>
+ * 大规模仿真中不为每个乘客创建对象，而是按列保存在基本类型数组中，乘客以int句柄(行号)表示：
+ * 姓名为字符串池编号，目的站为存储内的站点序号，另有优惠码、标志和当前位置。
+ * 每个乘客约占18字节，同名乘客共享同一个字符串。
+ * <p>
+ * 站点序号按站点首次出现的先后分配，与全局站点id无关，站点表只与本存储用到的站点数成正比；
+ * 站点表弱引用站点对象，存储不会使已不在网络中的站点无法回收。
+ * <p>
+ * 句柄可放入{@link Stop}和{@link vehicles.PublicTransport}的句柄列表，
+ * 需要对象时用{@link #toPassenger(int)}生成。存储不是线程安全的。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class PassengerStore {
+
+    /**
+     * 没有目的站
+     */
+    public static final int NO_STOP = -1;
+
+    /**
+     * 位置：未在站点或车上
+     */
+    public static final byte LOCATION_NONE = 0;
+
+    /**
+     * 位置：在站点候车
+     */
+    public static final byte LOCATION_STOP = 1;
+
+    /**
+     * 位置：在车上
+     */
+    public static final byte LOCATION_VEHICLE = 2;
+
+    /**
+     * 标志位：特价票乘客
+     */
+    private static final byte FLAG_CONCESSION = 1;
+
+    /**
+     * 默认初始容量
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * 姓名字符串池
+     */
+    private StringPool names;
+
+    /**
+     * 站点id -> 站点序号
+     */
+    private Map<Integer, Integer> stopIndexes;
+
+    /**
+     * 站点序号 -> 站点id
+     */
+    private int[] stopIds;
+
+    /**
+     * 站点序号 -> 站点，用于句柄解析目的站
+     */
+    private WeakReference<Stop>[] stopRefs;
+
+    /**
+     * 已分配的站点序号数
+     */
+    private int stopCount;
+
+    private int[] nameIds;
+    private int[] destinations;
+    private int[] concessionIds;
+    private byte[] flags;
+
+    /**
+     * 持有效优惠码的句柄，优惠码变化时更新
+     */
+    private BitSet validConcessions;
+
+    private byte[] locationKinds;
+    private int[] locationIds;
+
+    /**
+     * 乘客数
+     */
+    private int size;
+
+    public PassengerStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PassengerStore(int capacity) {
+        int initial = Math.max(capacity, 1);
+        this.names = new StringPool();
+        this.stopIndexes = new HashMap<>();
+        this.stopIds = new int[16];
+        this.stopRefs = newStopRefs(16);
+        this.nameIds = new int[initial];
+        this.destinations = new int[initial];
+        this.concessionIds = new int[initial];
+        this.flags = new byte[initial];
+        this.validConcessions = new BitSet(initial);
+        this.locationKinds = new byte[initial];
+        this.locationIds = new int[initial];
+    }
+
+    /**
+     * 增加乘客
+     *
+     * @param name
+     * @param destination
+     * @return 句柄
+     */
+    public int add(String name, Stop destination) {
+        if (size == nameIds.length) {
+            grow();
+        }
+        int handle = size++;
+        nameIds[handle] = names.intern(name);
+        destinations[handle] = register(destination);
+        concessionIds[handle] = 0;
+        flags[handle] = 0;
+        validConcessions.clear(handle);
+        locationKinds[handle] = LOCATION_NONE;
+        locationIds[handle] = 0;
+        return handle;
+    }
+
+    /**
+     * 增加特价票乘客
+     *
+     * @param name
+     * @param destination
+     * @param concessionId
+     * @return 句柄
+     */
+    public int addConcession(String name, Stop destination, int concessionId) {
+        int handle = add(name, destination);
+        flags[handle] = FLAG_CONCESSION;
+        setConcessionId(handle, concessionId);
+        return handle;
+    }
+
+    /**
+     * 由乘客对象导入
+     *
+     * @param passenger
+     * @return 句柄
+     */
+    public int add(Passenger passenger) {
+        if (passenger instanceof ConcessionPassenger) {
+            return addConcession(passenger.getName(), passenger.getDestination(),
+                    ((ConcessionPassenger) passenger).getConcessionId());
+        }
+        return add(passenger.getName(), passenger.getDestination());
+    }
+
+    /**
+     * 生成乘客对象
+     *
+     * @param handle
+     * @return
+     */
+    public Passenger toPassenger(int handle) {
+        checkHandle(handle);
+        if (isConcession(handle)) {
+            return new ConcessionPassenger(getName(handle), getDestination(handle), concessionIds[handle]);
+        }
+        return new Passenger(getName(handle), getDestination(handle));
+    }
+
+    public String getName(int handle) {
+        checkHandle(handle);
+        return names.get(nameIds[handle]);
+    }
+
+    public int getNameId(int handle) {
+        checkHandle(handle);
+        return nameIds[handle];
+    }
+
+    /**
+     * 目的站id，没有目的站时返回{@link #NO_STOP}
+     *
+     * @param handle
+     * @return
+     */
+    public int getDestinationId(int handle) {
+        checkHandle(handle);
+        return stopId(destinations[handle]);
+    }
+
+    /**
+     * 目的站，没有目的站或站点已被回收时返回null
+     *
+     * @param handle
+     * @return
+     */
+    public Stop getDestination(int handle) {
+        checkHandle(handle);
+        int index = destinations[handle];
+        return index == NO_STOP ? null : stopRefs[index].get();
+    }
+
+    public void setDestination(int handle, Stop destination) {
+        checkHandle(handle);
+        destinations[handle] = register(destination);
+    }
+
+    public boolean isConcession(int handle) {
+        checkHandle(handle);
+        return (flags[handle] & FLAG_CONCESSION) != 0;
+    }
+
+    public int getConcessionId(int handle) {
+        checkHandle(handle);
+        return concessionIds[handle];
+    }
+
+    /**
+     * 更新优惠码，同时更新校验结果；只有特价票乘客会被视为有效
+     *
+     * @param handle
+     * @param concessionId
+     */
+    public void setConcessionId(int handle, int concessionId) {
+        checkHandle(handle);
+        concessionIds[handle] = concessionId;
+        boolean valid = (flags[handle] & FLAG_CONCESSION) != 0 && ConcessionService.isValid(concessionId);
+        validConcessions.set(handle, valid);
+    }
+
+    /**
+     * 优惠码是否有效(缓存结果)
+     *
+     * @param handle
+     * @return
+     */
+    public boolean isConcessionValid(int handle) {
+        checkHandle(handle);
+        return validConcessions.get(handle);
+    }
+
+    /**
+     * 持有效优惠码的句柄快照
+     *
+     * @return
+     */
+    public BitSet validConcessions() {
+        return (BitSet) validConcessions.clone();
+    }
+
+    public byte getLocationKind(int handle) {
+        checkHandle(handle);
+        return locationKinds[handle];
+    }
+
+    /**
+     * 当前位置：在站点时为站点id，在车上时为车辆id
+     *
+     * @param handle
+     * @return
+     */
+    public int getLocationId(int handle) {
+        checkHandle(handle);
+        return locationKinds[handle] == LOCATION_STOP ? stopId(locationIds[handle]) : locationIds[handle];
+    }
+
+    /**
+     * 在站点候车
+     *
+     * @param handle
+     * @param stop
+     */
+    public void moveToStop(int handle, Stop stop) {
+        checkHandle(handle);
+        locationKinds[handle] = LOCATION_STOP;
+        locationIds[handle] = register(stop);
+    }
+
+    /**
+     * 在车上
+     *
+     * @param handle
+     * @param vehicleId
+     */
+    public void moveToVehicle(int handle, int vehicleId) {
+        checkHandle(handle);
+        locationKinds[handle] = LOCATION_VEHICLE;
+        locationIds[handle] = vehicleId;
+    }
+
+    /**
+     * 离开网络
+     *
+     * @param handle
+     */
+    public void clearLocation(int handle) {
+        checkHandle(handle);
+        locationKinds[handle] = LOCATION_NONE;
+        locationIds[handle] = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public StringPool getNames() {
+        return names;
+    }
+
+    /**
+     * 每个乘客占用的列字节数
+     *
+     * @return
+     */
+    public static int bytesPerPassenger() {
+        return 4 * Integer.BYTES + 2 * Byte.BYTES;
+    }
+
+    /**
+     * 站点序号对应的站点id
+     *
+     * @param index
+     * @return 序号为{@link #NO_STOP}时返回{@link #NO_STOP}
+     */
+    private int stopId(int index) {
+        return index == NO_STOP ? NO_STOP : stopIds[index];
+    }
+
+    /**
+     * 记录站点以便按序号解析，同一站点只分配一次序号
+     *
+     * @param stop
+     * @return 站点序号，站点为空时返回{@link #NO_STOP}
+     */
+    private int register(Stop stop) {
+        if (Objects.isNull(stop)) {
+            return NO_STOP;
+        }
+        Integer index = stopIndexes.get(stop.getId());
+        if (index != null) {
+            return index;
+        }
+        if (stopCount == stopIds.length) {
+            stopIds = Arrays.copyOf(stopIds, stopCount * 2);
+            stopRefs = Arrays.copyOf(stopRefs, stopCount * 2);
+        }
+        stopIds[stopCount] = stop.getId();
+        stopRefs[stopCount] = new WeakReference<>(stop);
+        stopIndexes.put(stop.getId(), stopCount);
+        return stopCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WeakReference<Stop>[] newStopRefs(int length) {
+        return (WeakReference<Stop>[]) new WeakReference[length];
+    }
+
+    private void checkHandle(int handle) {
+        if (handle < 0 || handle >= size) {
+            throw new IndexOutOfBoundsException("Passenger " + handle + " Out Of Range!");
+        }
+    }
+
+    private void grow() {
+        int capacity = nameIds.length * 2;
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        destinations = Arrays.copyOf(destinations, capacity);
+        concessionIds = Arrays.copyOf(concessionIds, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        locationKinds = Arrays.copyOf(locationKinds, capacity);
+        locationIds = Arrays.copyOf(locationIds, capacity);
+    }
+}
@@ -0,0 +1,61 @@
+package passengers;
+
+import utils.NameUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 字符串池
+ * <p>
+ * 相同的字符串只保存一份并分配连续的int编号，编号0固定为空串
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class StringPool {
+
+    /**
+     * 字符串 -> 编号
+     */
+    private Map<String, Integer> ids;
+
+    /**
+     * 编号 -> 字符串
+     */
+    private List<String> values;
+
+    public StringPool() {
+        this.ids = new HashMap<>();
+        this.values = new ArrayList<>();
+        intern("");
+    }
+
+    /**
+     * 去掉换行、回车和逗号后入池
+     *
+     * @param value 为空时视为空串
+     * @return 编号
+     */
+    public int intern(String value) {
+        String key = Objects.isNull(value) ? "" : NameUtils.sanitize(value);
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = values.size();
+            ids.put(key, id);
+            values.add(key);
+        }
+        return id;
+    }
+
+    public String get(int id) {
+        return values.get(id);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
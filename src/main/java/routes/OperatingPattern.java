@@ -0,0 +1,21 @@
+package routes;
+
+/**
+ * 线路运营方式
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public enum OperatingPattern {
+
+    /**
+     * 往返：到达终点站后沿原线路折返
+     */
+    SHUTTLE,
+
+    /**
+     * 环线：到达终点站后回到始发站继续同向运行；
+     * 终点站与始发站为同一站时视为闭合环线，不重复停靠
+     */
+    LOOP
+}
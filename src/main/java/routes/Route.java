@@ -2,11 +2,17 @@ package routes;
 
 import exceptions.EmptyRouteException;
 import exceptions.IncompatibleTypeException;
+import exceptions.TransportResult;
+import network.NetworkVersion;
 import stops.Stop;
+import utils.NameUtils;
 import vehicles.PublicTransport;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -32,20 +38,42 @@ public abstract class Route {
      */
     private List<Stop> stopsOnRoute;
 
+    /**
+     * 停靠站 -> 首次出现的位置
+     */
+    private Map<Stop, Integer> stopPositions;
+
+    /**
+     * 运营方式
+     */
+    private OperatingPattern operatingPattern;
+
     /**
      * 公共交通
      */
     private List<PublicTransport> transports;
 
+    /**
+     * 时刻表，首次使用时创建
+     */
+    private Timetable timetable;
+
+    /**
+     * 停靠站修改次数，用于判断编译结果是否过期
+     */
+    private volatile int topologyVersion;
+
     public Route(int routeNumber, String name) {
         this.routeNumber = routeNumber;
         this.stopsOnRoute = new ArrayList<>();
+        this.stopPositions = new HashMap<>();
+        this.operatingPattern = OperatingPattern.SHUTTLE;
         this.transports = new ArrayList<>();
         if (name == null) {
             this.name = "";
             return;
         }
-        this.name = name.replaceAll("[\\n,\\r]", "");
+        this.name = NameUtils.sanitize(name);
     }
 
     /**
@@ -72,9 +100,20 @@ public abstract class Route {
             lastStop.addNeighbouringStop(stop);
         }
         //增加站
+        boolean added = stopPositions.putIfAbsent(stop, stopsOnRoute.size()) == null;
         stopsOnRoute.add(stop);
         //站记录此线路
         stop.addRoute(this);
+        //其他站前往新停靠站的候车乘客可乘坐此线路
+        if (added) {
+            for (Stop other : stopPositions.keySet()) {
+                if (other != stop) {
+                    other.addDestination(this, stop);
+                }
+            }
+        }
+        topologyVersion++;
+        NetworkVersion.increment();
     }
 
     /**
@@ -85,21 +124,55 @@ public abstract class Route {
      * @throws IncompatibleTypeException
      */
     public void addTransport(PublicTransport transport) throws EmptyRouteException, IncompatibleTypeException {
-        if (Objects.isNull(transport)) {
-            return;
+        switch (tryAddTransport(transport)) {
+            //线路为空抛EmptyRouteException
+            case EMPTY_ROUTE:
+                throw EmptyRouteException.INSTANCE;
+            //运输类型不匹配抛IncompatibleTypeException
+            case INCOMPATIBLE_TYPE:
+                throw IncompatibleTypeException.INSTANCE;
+            default:
+                break;
         }
+    }
 
-        //线路为空抛EmptyRouteException
+    /**
+     * 增加交通工具，不抛异常
+     *
+     * @param transport
+     * @return 线路为空返回EMPTY_ROUTE，类型不匹配返回INCOMPATIBLE_TYPE
+     */
+    public TransportResult tryAddTransport(PublicTransport transport) {
+        if (Objects.isNull(transport)) {
+            return TransportResult.IGNORED;
+        }
         if (this.stopsOnRoute.isEmpty()) {
-            throw new EmptyRouteException();
+            return TransportResult.EMPTY_ROUTE;
         }
-
-        //运输类型不匹配抛IncompatibleTypeException
         if (!Objects.equals(transport.getType(), this.getType())) {
-            throw new IncompatibleTypeException();
+            return TransportResult.INCOMPATIBLE_TYPE;
         }
-
         transports.add(transport);
+        return TransportResult.SUCCESS;
+    }
+
+    /**
+     * 批量增加交通工具，跳过不能加入的
+     *
+     * @param transports
+     * @return 成功加入的数量
+     */
+    public int tryAddTransports(Collection<? extends PublicTransport> transports) {
+        if (Objects.isNull(transports)) {
+            return 0;
+        }
+        int added = 0;
+        for (PublicTransport transport : transports) {
+            if (tryAddTransport(transport) == TransportResult.SUCCESS) {
+                added++;
+            }
+        }
+        return added;
     }
 
     /**
@@ -109,7 +182,104 @@ public abstract class Route {
      * @return
      */
     public Stop getStartStop() throws EmptyRouteException {
-        return stopsOnRoute.stream().findFirst().orElseThrow(EmptyRouteException::new);
+        Stop startStop = findStartStop();
+        if (startStop == null) {
+            throw EmptyRouteException.INSTANCE;
+        }
+        return startStop;
+    }
+
+    /**
+     * 查找始发站，没有始发站时返回null
+     *
+     * @return
+     */
+    public Stop findStartStop() {
+        return stopsOnRoute.isEmpty() ? null : stopsOnRoute.get(0);
+    }
+
+    /**
+     * 站点是否在线路上
+     *
+     * @param stop
+     * @return
+     */
+    public boolean containsStop(Stop stop) {
+        return Objects.nonNull(stop) && stopPositions.containsKey(stop);
+    }
+
+    /**
+     * 站点在线路上首次出现的位置，不在线路上时返回-1
+     *
+     * @param stop
+     * @return
+     */
+    public int indexOf(Stop stop) {
+        Integer position = Objects.isNull(stop) ? null : stopPositions.get(stop);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * 是否闭合环线(终点站即始发站)
+     *
+     * @return
+     */
+    public boolean isClosed() {
+        return stopsOnRoute.size() > 1 && stopsOnRoute.get(0) == stopsOnRoute.get(stopsOnRoute.size() - 1);
+    }
+
+    /**
+     * 获取时刻表用于增加班次，首次调用时按当前停靠站数量创建
+     * <p>
+     * 停靠站数量变化后已有班次与线路不一致，抛IllegalStateException，须先{@link #clearTimetable()}再重建
+     *
+     * @return
+     */
+    public Timetable getTimetable() {
+        if (Objects.isNull(timetable)) {
+            timetable = new Timetable(stopsOnRoute.size());
+        }
+        return findTimetable();
+    }
+
+    /**
+     * 查询用的时刻表，没有时刻表时返回共用的{@link Timetable#EMPTY}，不创建新对象
+     * <p>
+     * 停靠站数量变化后抛IllegalStateException
+     *
+     * @return
+     */
+    public Timetable findTimetable() {
+        if (Objects.isNull(timetable)) {
+            return Timetable.EMPTY;
+        }
+        if (timetable.getStopCount() != stopsOnRoute.size()) {
+            throw new IllegalStateException("Timetable Does Not Match Stops On Route!");
+        }
+        return timetable;
+    }
+
+    /**
+     * 丢弃时刻表，停靠站变化后重建时刻表前调用
+     */
+    public void clearTimetable() {
+        timetable = null;
+    }
+
+    /**
+     * 站点在time及以后的最早离站时间，站点不在线路上或没有班次时返回-1
+     *
+     * @param stop
+     * @param time 当天零点起的秒数
+     * @return
+     */
+    public int nextDeparture(Stop stop, int time) {
+        int position = indexOf(stop);
+        Timetable schedule = findTimetable();
+        if (position < 0 || schedule.isEmpty()) {
+            return -1;
+        }
+        return schedule.nextDeparture(position, time);
     }
 
     @Override
@@ -127,7 +297,8 @@ public abstract class Route {
 
     @Override
     public int hashCode() {
-        return Objects.hash(routeNumber, name);
+        //与Objects.hash(routeNumber, name)取值相同，避免每次分配可变参数数组
+        return 31 * (31 + Integer.hashCode(routeNumber)) + Objects.hashCode(name);
     }
 
     @Override
@@ -148,10 +319,22 @@ public abstract class Route {
         return stopsOnRoute;
     }
 
+    public int getTopologyVersion() {
+        return topologyVersion;
+    }
+
     public List<PublicTransport> getTransports() {
         return transports;
     }
 
+    public OperatingPattern getOperatingPattern() {
+        return operatingPattern;
+    }
+
+    public void setOperatingPattern(OperatingPattern operatingPattern) {
+        this.operatingPattern = Objects.isNull(operatingPattern) ? OperatingPattern.SHUTTLE : operatingPattern;
+    }
+
     /**
      * 构造停靠站names
      *
@@ -0,0 +1,183 @@
+package routes;
+
+import stops.Stop;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 车辆在线路上的位置游标
+ * <p>
+ * 记录车辆当前所在的线路位置和行驶方向，下一站、是否在前方等判断均为O(1)
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class RouteCursor {
+
+    /**
+     * 所在线路
+     */
+    private Route route;
+
+    /**
+     * 线路上的位置，线路为空时为-1
+     */
+    private int position;
+
+    /**
+     * 行驶方向，1为正向，-1为反向
+     */
+    private int direction;
+
+    public RouteCursor(Route route) {
+        if (Objects.isNull(route)) {
+            throw new IllegalArgumentException("Route Can Not Be Empty!");
+        }
+        this.route = route;
+        this.position = route.getStopsOnRoute().isEmpty() ? -1 : 0;
+        this.direction = 1;
+    }
+
+    /**
+     * 当前站
+     *
+     * @return
+     */
+    public Stop current() {
+        return position < 0 ? null : route.getStopsOnRoute().get(position);
+    }
+
+    /**
+     * 下一站位置，线路为空时返回-1
+     *
+     * @return
+     */
+    public int nextPosition() {
+        int size = route.getStopsOnRoute().size();
+        if (size == 0) {
+            return -1;
+        }
+        if (position < 0 || size == 1) {
+            return 0;
+        }
+        if (route.getOperatingPattern() == OperatingPattern.LOOP) {
+            if (position + 1 < size) {
+                return position + 1;
+            }
+            return route.isClosed() ? 1 : 0;
+        }
+        return position + effectiveDirection(size);
+    }
+
+    /**
+     * 下一站，线路为空时返回null
+     *
+     * @return
+     */
+    public Stop peekNext() {
+        int next = nextPosition();
+        return next < 0 ? null : route.getStopsOnRoute().get(next);
+    }
+
+    /**
+     * 前进到下一站
+     */
+    public void advance() {
+        int next = nextPosition();
+        if (next < 0) {
+            return;
+        }
+        if (route.getOperatingPattern() == OperatingPattern.SHUTTLE && next != position) {
+            direction = next > position ? 1 : -1;
+        }
+        position = next;
+    }
+
+    /**
+     * 移动到指定站
+     * <p>
+     * 指定站为下一站时等同{@link #advance()}，否则跳到该站并按移动方向更新行驶方向；
+     * 不在线路上的站忽略
+     *
+     * @param stop
+     */
+    public void moveTo(Stop stop) {
+        if (Objects.isNull(stop)) {
+            return;
+        }
+        if (stop == peekNext()) {
+            advance();
+            return;
+        }
+        int index = route.indexOf(stop);
+        if (index < 0) {
+            return;
+        }
+        if (index != position) {
+            direction = index < position ? -1 : 1;
+        }
+        position = index;
+    }
+
+    /**
+     * 恢复位置和方向，用于检查点恢复
+     *
+     * @param position
+     * @param direction
+     */
+    public void restore(int position, int direction) {
+        if (position < -1 || position >= route.getStopsOnRoute().size()) {
+            throw new IllegalArgumentException("Position " + position + " Out Of Route!");
+        }
+        this.position = position;
+        this.direction = direction < 0 ? -1 : 1;
+    }
+
+    /**
+     * 指定站是否在车辆前方(当前方向上尚未到达)
+     * <p>
+     * 往返线路在终点站视为已折返；环线上除当前站外的所有站都在前方
+     *
+     * @param stop
+     * @return
+     */
+    public boolean isDownstream(Stop stop) {
+        int index = route.indexOf(stop);
+        if (index < 0 || position < 0) {
+            return false;
+        }
+        if (route.getOperatingPattern() == OperatingPattern.LOOP) {
+            return stop != current();
+        }
+        return effectiveDirection(route.getStopsOnRoute().size()) > 0 ? index > position : index < position;
+    }
+
+    /**
+     * 考虑终点折返后的行驶方向
+     *
+     * @param size
+     * @return
+     */
+    private int effectiveDirection(int size) {
+        if (position >= size - 1) {
+            return -1;
+        }
+        if (position <= 0) {
+            return 1;
+        }
+        return direction;
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getDirection() {
+        return effectiveDirection(route.getStopsOnRoute().size());
+    }
+}
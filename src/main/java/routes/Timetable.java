@@ -0,0 +1,450 @@
+package routes;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 线路时刻表
+ * <p>
+ * 时间均为当天零点起的秒数，跨零点的班次可大于86400。班次按线路停靠站顺序运行，
+ * 每个班次在每个停靠站有到站和离站时间，按班次连续存放在两个int数组中(班次数×站数)，
+ * 不为每个站点时刻创建对象，每个站点时刻占8字节。
+ * <p>
+ * 除具体班次外还支持按发车间隔运行的时段(如07:00-09:00每5分钟一班)，
+ * 每个时段只保存起止时间、间隔和各站相对首站发车的偏移。
+ * <p>
+ * 班次在增加时按首站发车时间插入到有序位置，按时间顺序增加时只是追加；同一线路班次互不超车时各站的离站时间同样有序，
+ * 下一班查询为二分查找；存在超车时退化为顺序扫描。查询不修改任何状态，构建完成后可被多个线程并发查询，
+ * 构建期间不是线程安全的。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class Timetable {
+
+    /**
+     * 默认初始班次容量
+     */
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * 没有班次的线路共用的空时刻表，不能增加班次
+     */
+    public static final Timetable EMPTY = new Timetable(0, true);
+
+    /**
+     * 停靠站数量
+     */
+    private int stopCount;
+
+    /**
+     * 班次数量
+     */
+    private int tripCount;
+
+    /**
+     * 到站时间，下标为 班次*站数+站
+     */
+    private int[] arrivals;
+
+    /**
+     * 离站时间，下标为 班次*站数+站
+     */
+    private int[] departures;
+
+    /**
+     * 班次之间是否互不超车
+     */
+    private boolean fifo;
+
+    /**
+     * 间隔运行时段数量
+     */
+    private int frequencyCount;
+
+    /**
+     * 时段首班发车时间
+     */
+    private int[] frequencyStarts;
+
+    /**
+     * 时段结束时间(不含)
+     */
+    private int[] frequencyEnds;
+
+    /**
+     * 时段发车间隔
+     */
+    private int[] headways;
+
+    /**
+     * 各站到站时间相对首站发车的偏移，下标为 时段*站数+站
+     */
+    private int[] arrivalOffsets;
+
+    /**
+     * 各站离站时间相对首站发车的偏移，下标为 时段*站数+站
+     */
+    private int[] departureOffsets;
+
+    /**
+     * 是否只读
+     */
+    private boolean readOnly;
+
+    public Timetable(int stopCount) {
+        this(stopCount, false);
+    }
+
+    private Timetable(int stopCount, boolean readOnly) {
+        if (stopCount < 0) {
+            throw new IllegalArgumentException("Stop Count Can Not Be Negative!");
+        }
+        this.stopCount = stopCount;
+        this.readOnly = readOnly;
+        this.arrivals = new int[DEFAULT_CAPACITY * stopCount];
+        this.departures = new int[DEFAULT_CAPACITY * stopCount];
+        this.fifo = true;
+        this.frequencyStarts = new int[0];
+        this.frequencyEnds = new int[0];
+        this.headways = new int[0];
+        this.arrivalOffsets = new int[0];
+        this.departureOffsets = new int[0];
+    }
+
+    /**
+     * 增加班次
+     *
+     * @param arrivals   各站到站时间
+     * @param departures 各站离站时间
+     */
+    public void addTrip(int[] arrivals, int[] departures) {
+        checkTimes(arrivals, departures);
+        if ((tripCount + 1) * stopCount > this.arrivals.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, tripCount * 2) * stopCount;
+            this.arrivals = Arrays.copyOf(this.arrivals, capacity);
+            this.departures = Arrays.copyOf(this.departures, capacity);
+        }
+        //首站发车时间相同的班次按增加先后排列
+        int trip = insertionPoint(stopCount == 0 ? 0 : departures[0]);
+        int base = trip * stopCount;
+        int tail = (tripCount - trip) * stopCount;
+        System.arraycopy(this.arrivals, base, this.arrivals, base + stopCount, tail);
+        System.arraycopy(this.departures, base, this.departures, base + stopCount, tail);
+        System.arraycopy(arrivals, 0, this.arrivals, base, stopCount);
+        System.arraycopy(departures, 0, this.departures, base, stopCount);
+        tripCount++;
+        //原有相邻班次互不超车时，只需检查新班次与前后两班
+        fifo = fifo && !overtakes(trip - 1, trip) && !overtakes(trip, trip + 1);
+    }
+
+    /**
+     * 首站发车时间晚于firstDeparture的第一个班次下标
+     *
+     * @param firstDeparture
+     * @return
+     */
+    private int insertionPoint(int firstDeparture) {
+        if (stopCount == 0 || tripCount == 0 || departures[(tripCount - 1) * stopCount] <= firstDeparture) {
+            return tripCount;
+        }
+        int low = 0;
+        int high = tripCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departures[mid * stopCount] <= firstDeparture) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 以统一停站时间增加班次，到站即离站
+     *
+     * @param times 各站时间
+     */
+    public void addTrip(int[] times) {
+        addTrip(times, times);
+    }
+
+    /**
+     * 增加间隔运行时段
+     *
+     * @param start            首班发车时间
+     * @param end              结束时间(不含)，此时刻及以后不再发车
+     * @param headway          发车间隔
+     * @param arrivalOffsets   各站到站时间相对首站发车的偏移
+     * @param departureOffsets 各站离站时间相对首站发车的偏移
+     */
+    public void addFrequency(int start, int end, int headway, int[] arrivalOffsets, int[] departureOffsets) {
+        checkWritable();
+        if (headway <= 0) {
+            throw new IllegalArgumentException("Headway Must Be Positive!");
+        }
+        if (end < start) {
+            throw new IllegalArgumentException("Frequency Ends Before It Starts!");
+        }
+        checkTimes(arrivalOffsets, departureOffsets);
+        int count = frequencyCount + 1;
+        frequencyStarts = Arrays.copyOf(frequencyStarts, count);
+        frequencyEnds = Arrays.copyOf(frequencyEnds, count);
+        headways = Arrays.copyOf(headways, count);
+        this.arrivalOffsets = Arrays.copyOf(this.arrivalOffsets, count * stopCount);
+        this.departureOffsets = Arrays.copyOf(this.departureOffsets, count * stopCount);
+        frequencyStarts[frequencyCount] = start;
+        frequencyEnds[frequencyCount] = end;
+        headways[frequencyCount] = headway;
+        System.arraycopy(arrivalOffsets, 0, this.arrivalOffsets, frequencyCount * stopCount, stopCount);
+        System.arraycopy(departureOffsets, 0, this.departureOffsets, frequencyCount * stopCount, stopCount);
+        frequencyCount = count;
+    }
+
+    /**
+     * 增加间隔运行时段，到站即离站
+     *
+     * @param start
+     * @param end
+     * @param headway
+     * @param offsets 各站时间相对首站发车的偏移
+     */
+    public void addFrequency(int start, int end, int headway, int[] offsets) {
+        addFrequency(start, end, headway, offsets, offsets);
+    }
+
+    /**
+     * 在站点time及以后的最早离站时间(含具体班次和间隔运行时段)，没有时返回-1
+     *
+     * @param stop 停靠站在线路上的位置
+     * @param time
+     * @return
+     */
+    public int nextDeparture(int stop, int time) {
+        checkStop(stop);
+        int best = -1;
+        int trip = nextTrip(stop, time);
+        if (trip >= 0) {
+            best = departures[trip * stopCount + stop];
+        }
+        for (int i = 0; i < frequencyCount; i++) {
+            int start = nextFrequencyStart(i, stop, time);
+            if (start >= 0) {
+                int departure = start + departureOffsets[i * stopCount + stop];
+                if (best < 0 || departure < best) {
+                    best = departure;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 在站点time及以后离站的最早具体班次，没有时返回-1
+     *
+     * @param stop 停靠站在线路上的位置
+     * @param time
+     * @return 班次下标
+     */
+    public int nextTrip(int stop, int time) {
+        checkStop(stop);
+        if (!fifo) {
+            int best = -1;
+            for (int trip = 0; trip < tripCount; trip++) {
+                int departure = departures[trip * stopCount + stop];
+                if (departure >= time && (best < 0 || departure < departures[best * stopCount + stop])) {
+                    best = trip;
+                }
+            }
+            return best;
+        }
+        //班次不超车，各站离站时间随班次下标递增
+        int low = 0;
+        int high = tripCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departures[mid * stopCount + stop] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < tripCount ? low : -1;
+    }
+
+    /**
+     * 间隔运行时段中在站点time及以后离站的最早一班的首站发车时间，没有时返回-1
+     *
+     * @param frequency 时段下标
+     * @param stop      停靠站在线路上的位置
+     * @param time
+     * @return
+     */
+    public int nextFrequencyStart(int frequency, int stop, int time) {
+        checkStop(stop);
+        int start = frequencyStarts[frequency];
+        int headway = headways[frequency];
+        int base = time - departureOffsets[frequency * stopCount + stop];
+        if (base > start) {
+            //向上取整到下一个发车时刻
+            start += (int) (((long) base - start + headway - 1) / headway) * headway;
+        }
+        return start < frequencyEnds[frequency] ? start : -1;
+    }
+
+    /**
+     * 班次在站点的到站时间
+     *
+     * @param trip
+     * @param stop
+     * @return
+     */
+    public int arrival(int trip, int stop) {
+        return arrivals[index(trip, stop)];
+    }
+
+    /**
+     * 班次在站点的离站时间
+     *
+     * @param trip
+     * @param stop
+     * @return
+     */
+    public int departure(int trip, int stop) {
+        return departures[index(trip, stop)];
+    }
+
+    /**
+     * 间隔运行的一班在站点的到站时间
+     *
+     * @param frequency 时段下标
+     * @param start     该班首站发车时间
+     * @param stop
+     * @return
+     */
+    public int frequencyArrival(int frequency, int start, int stop) {
+        checkStop(stop);
+        return start + arrivalOffsets[frequency * stopCount + stop];
+    }
+
+    /**
+     * 间隔运行的一班在站点的离站时间
+     *
+     * @param frequency 时段下标
+     * @param start     该班首站发车时间
+     * @param stop
+     * @return
+     */
+    public int frequencyDeparture(int frequency, int start, int stop) {
+        checkStop(stop);
+        return start + departureOffsets[frequency * stopCount + stop];
+    }
+
+    /**
+     * 释放数组的空余容量
+     */
+    public void trimToSize() {
+        arrivals = Arrays.copyOf(arrivals, tripCount * stopCount);
+        departures = Arrays.copyOf(departures, tripCount * stopCount);
+    }
+
+    /**
+     * 估算占用的数组字节数
+     *
+     * @return
+     */
+    public long estimatedBytes() {
+        long ints = (long) arrivals.length + departures.length + arrivalOffsets.length + departureOffsets.length
+                + frequencyStarts.length + frequencyEnds.length + headways.length;
+        return ints * Integer.BYTES;
+    }
+
+    /**
+     * 班次之间是否互不超车
+     *
+     * @return
+     */
+    public boolean isFifo() {
+        return fifo;
+    }
+
+    public boolean isEmpty() {
+        return tripCount == 0 && frequencyCount == 0;
+    }
+
+    public int getStopCount() {
+        return stopCount;
+    }
+
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    public int getFrequencyCount() {
+        return frequencyCount;
+    }
+
+    public int getHeadway(int frequency) {
+        return headways[frequency];
+    }
+
+    /**
+     * 后一班次是否在某站早于前一班次
+     *
+     * @param earlier
+     * @param later
+     * @return
+     */
+    private boolean overtakes(int earlier, int later) {
+        if (earlier < 0 || later >= tripCount) {
+            return false;
+        }
+        for (int stop = 0; stop < stopCount; stop++) {
+            if (departures[later * stopCount + stop] < departures[earlier * stopCount + stop]
+                    || arrivals[later * stopCount + stop] < arrivals[earlier * stopCount + stop]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int index(int trip, int stop) {
+        if (trip < 0 || trip >= tripCount) {
+            throw new IndexOutOfBoundsException("Trip " + trip + " Out Of Range!");
+        }
+        checkStop(stop);
+        return trip * stopCount + stop;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Empty Timetable Can Not Be Modified!");
+        }
+    }
+
+    private void checkStop(int stop) {
+        if (stop < 0 || stop >= stopCount) {
+            throw new IndexOutOfBoundsException("Stop " + stop + " Out Of Range!");
+        }
+    }
+
+    /**
+     * 校验各站时间数量与站数一致且不倒流
+     *
+     * @param arrivals
+     * @param departures
+     */
+    private void checkTimes(int[] arrivals, int[] departures) {
+        checkWritable();
+        if (Objects.isNull(arrivals) || Objects.isNull(departures)
+                || arrivals.length != stopCount || departures.length != stopCount) {
+            throw new IllegalArgumentException("Times Must Cover Every Stop!");
+        }
+        for (int i = 0; i < stopCount; i++) {
+            if (departures[i] < arrivals[i] || (i > 0 && arrivals[i] < departures[i - 1])) {
+                throw new IllegalArgumentException("Times Must Not Decrease!");
+            }
+        }
+    }
+}
@@ -0,0 +1,699 @@
+package routing;
+
+import network.CompiledNetwork;
+import stops.Stop;
+import utils.EventCalendar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 站点相邻关系图的收缩层次(Contraction Hierarchies)
+ * <p>
+ * 预处理按重要性从低到高逐个收缩站点：收缩站点v时，若u->v->w是u到w的唯一最短路径，
+ * 则增加捷径u->w。查询时从起点和终点分别只沿重要性升高的边做Dijkstra，
+ * 两侧搜索空间通常只有几十个站点，在交汇处得到最短距离，捷径递归展开即得到完整路径。
+ * <p>
+ * 预处理每一批选出互不相邻且重要性为局部最小的站点并行收缩，见证搜索不经过同批站点，
+ * 保证同批收缩互不影响；之后并行更新受影响站点的重要性。
+ * <p>
+ * 结果是编译网络的只读快照，可被多个线程同时查询；拓扑变化后{@link #isStale()}返回true，
+ * 需要重新构建，见{@link DistanceOracle}。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class ContractionHierarchy {
+
+    /**
+     * 不可达
+     */
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    /**
+     * 见证搜索最多确定的站点数，超过后视为没有见证路径(只会多加捷径，不影响正确性)
+     */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    /**
+     * 编译后的网络
+     */
+    private CompiledNetwork network;
+
+    /**
+     * 站点收缩次序，越大越重要
+     */
+    private int[] ranks;
+
+    /**
+     * 向上出边CSR：终点、权重、捷径中间站(原始边为-1)
+     */
+    private int[] upOutOffsets;
+    private int[] upOutTargets;
+    private int[] upOutWeights;
+    private int[] upOutMiddles;
+
+    /**
+     * 向上入边CSR：起点、权重、捷径中间站(原始边为-1)
+     */
+    private int[] upInOffsets;
+    private int[] upInSources;
+    private int[] upInWeights;
+    private int[] upInMiddles;
+
+    /**
+     * 增加的捷径数
+     */
+    private int shortcutCount;
+
+    /**
+     * 每个查询线程各自的搜索数组
+     */
+    private ThreadLocal<QueryScratch> scratch;
+
+    private ContractionHierarchy(CompiledNetwork network) {
+        this.network = network;
+        this.scratch = ThreadLocal.withInitial(() -> new QueryScratch(network.stopCount()));
+    }
+
+    /**
+     * 使用公共ForkJoinPool构建
+     *
+     * @param network
+     * @return
+     */
+    public static ContractionHierarchy build(CompiledNetwork network) {
+        return build(network, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 在指定线程池中并行构建
+     *
+     * @param network
+     * @param pool
+     * @return
+     */
+    public static ContractionHierarchy build(CompiledNetwork network, ForkJoinPool pool) {
+        if (Objects.isNull(network) || Objects.isNull(pool)) {
+            throw new IllegalArgumentException("Network And Pool Can Not Be Empty!");
+        }
+        ContractionHierarchy hierarchy = new ContractionHierarchy(network);
+        new Builder(network, pool).contract(hierarchy);
+        return hierarchy;
+    }
+
+    /**
+     * 两站最短距离，任一站点不在网络内或不连通时返回-1
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public int distance(Stop from, Stop to) {
+        int source = network.idOf(from);
+        int target = network.idOf(to);
+        if (source < 0 || target < 0) {
+            return -1;
+        }
+        QueryScratch query = scratch.get();
+        int meeting = search(query, source, target);
+        int distance = meeting < 0 ? -1 : query.forward[meeting] + query.backward[meeting];
+        query.reset();
+        return distance;
+    }
+
+    /**
+     * 两站最短路径(含起点和终点)，任一站点不在网络内或不连通时返回null
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public List<Stop> path(Stop from, Stop to) {
+        int source = network.idOf(from);
+        int target = network.idOf(to);
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        QueryScratch query = scratch.get();
+        int meeting = search(query, source, target);
+        if (meeting < 0) {
+            query.reset();
+            return null;
+        }
+
+        //起点 -> 交汇点：回溯后反转
+        List<Integer> ids = new ArrayList<>();
+        List<int[]> forwardEdges = new ArrayList<>();
+        for (int node = meeting; node != source; node = query.forwardParents[node]) {
+            int edge = query.forwardEdges[node];
+            forwardEdges.add(new int[]{query.forwardParents[node], node, upOutMiddles[edge]});
+        }
+        Collections.reverse(forwardEdges);
+        ids.add(source);
+        for (int[] edge : forwardEdges) {
+            unpack(edge[0], edge[1], edge[2], ids);
+        }
+        //交汇点 -> 终点
+        for (int node = meeting; node != target; node = query.backwardParents[node]) {
+            int edge = query.backwardEdges[node];
+            unpack(node, query.backwardParents[node], upInMiddles[edge], ids);
+        }
+        query.reset();
+
+        List<Stop> stops = new ArrayList<>(ids.size());
+        ids.forEach(e -> stops.add(network.stopOf(e)));
+        return stops;
+    }
+
+    /**
+     * 双向向上搜索，返回最短路径上重要性最高的交汇站，不连通时返回-1
+     *
+     * @param query
+     * @param source
+     * @param target
+     * @return
+     */
+    private int search(QueryScratch query, int source, int target) {
+        query.forward[source] = 0;
+        query.backward[target] = 0;
+        query.touch(source);
+        //起终点相同时只登记一次，单站网络中touched只有一个位置
+        if (source == target) {
+            return source;
+        }
+        query.touch(target);
+        query.forwardQueue.schedule(0, 0, source);
+        query.backwardQueue.schedule(0, 0, target);
+
+        int best = UNREACHED;
+        int meeting = -1;
+        EventCalendar forwardQueue = query.forwardQueue;
+        EventCalendar backwardQueue = query.backwardQueue;
+        while (true) {
+            long forwardMin = forwardQueue.isEmpty() ? UNREACHED : forwardQueue.peekTime();
+            long backwardMin = backwardQueue.isEmpty() ? UNREACHED : backwardQueue.peekTime();
+            //两侧队首都不短于已知最短距离时结束
+            if (Math.min(forwardMin, backwardMin) >= best) {
+                break;
+            }
+            boolean forward = forwardMin <= backwardMin;
+            EventCalendar queue = forward ? forwardQueue : backwardQueue;
+            int node = queue.peekTarget();
+            int distance = (int) queue.peekTime();
+            queue.remove();
+            int[] own = forward ? query.forward : query.backward;
+            int[] other = forward ? query.backward : query.forward;
+            //过期的队列项
+            if (distance != own[node]) {
+                continue;
+            }
+            if (other[node] != UNREACHED && distance + other[node] < best) {
+                best = distance + other[node];
+                meeting = node;
+            }
+            int[] offsets = forward ? upOutOffsets : upInOffsets;
+            int[] heads = forward ? upOutTargets : upInSources;
+            int[] weights = forward ? upOutWeights : upInWeights;
+            int[] parents = forward ? query.forwardParents : query.backwardParents;
+            int[] parentEdges = forward ? query.forwardEdges : query.backwardEdges;
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                int next = heads[edge];
+                int nextDistance = distance + weights[edge];
+                if (nextDistance < own[next]) {
+                    if (query.forward[next] == UNREACHED && query.backward[next] == UNREACHED) {
+                        query.touch(next);
+                    }
+                    own[next] = nextDistance;
+                    parents[next] = node;
+                    parentEdges[next] = edge;
+                    queue.schedule(nextDistance, 0, next);
+                }
+            }
+        }
+        return meeting;
+    }
+
+    /**
+     * 展开边from->to并把to之前的中间站和to依次加入路径
+     *
+     * @param from
+     * @param to
+     * @param middle 捷径中间站，原始边为-1
+     * @param path
+     */
+    private void unpack(int from, int to, int middle, List<Integer> path) {
+        if (middle < 0) {
+            path.add(to);
+            return;
+        }
+        //中间站重要性低于两端：from->middle在middle的向上入边中，middle->to在middle的向上出边中
+        int first = -1;
+        for (int edge = upInOffsets[middle]; edge < upInOffsets[middle + 1]; edge++) {
+            if (upInSources[edge] == from) {
+                first = upInMiddles[edge];
+                break;
+            }
+        }
+        int second = -1;
+        for (int edge = upOutOffsets[middle]; edge < upOutOffsets[middle + 1]; edge++) {
+            if (upOutTargets[edge] == to) {
+                second = upOutMiddles[edge];
+                break;
+            }
+        }
+        unpack(from, middle, first, path);
+        unpack(middle, to, second, path);
+    }
+
+    /**
+     * 编译后拓扑是否已变化
+     *
+     * @return
+     */
+    public boolean isStale() {
+        return network.isStale();
+    }
+
+    public CompiledNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * 站点重要性次序
+     *
+     * @param stop
+     * @return 不在网络内时返回-1
+     */
+    public int rankOf(Stop stop) {
+        int id = network.idOf(stop);
+        return id < 0 ? -1 : ranks[id];
+    }
+
+    public int getShortcutCount() {
+        return shortcutCount;
+    }
+
+    /**
+     * 查询搜索数组，只重置访问过的站点
+     */
+    private static class QueryScratch {
+        private int[] forward;
+        private int[] backward;
+        private int[] forwardParents;
+        private int[] backwardParents;
+        private int[] forwardEdges;
+        private int[] backwardEdges;
+        private int[] touched;
+        private int touchedCount;
+        private EventCalendar forwardQueue;
+        private EventCalendar backwardQueue;
+
+        private QueryScratch(int stopCount) {
+            this.forward = new int[stopCount];
+            this.backward = new int[stopCount];
+            this.forwardParents = new int[stopCount];
+            this.backwardParents = new int[stopCount];
+            this.forwardEdges = new int[stopCount];
+            this.backwardEdges = new int[stopCount];
+            this.touched = new int[stopCount];
+            this.forwardQueue = new EventCalendar();
+            this.backwardQueue = new EventCalendar();
+            Arrays.fill(forward, UNREACHED);
+            Arrays.fill(backward, UNREACHED);
+        }
+
+        private void touch(int node) {
+            touched[touchedCount++] = node;
+        }
+
+        private void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                forward[touched[i]] = UNREACHED;
+                backward[touched[i]] = UNREACHED;
+            }
+            touchedCount = 0;
+            forwardQueue.clear();
+            backwardQueue.clear();
+        }
+    }
+
+    /**
+     * 预处理过程中可变的邻接表
+     */
+    private static class Adjacency {
+        private int[] nodes = new int[4];
+        private int[] weights = new int[4];
+        private int[] middles = new int[4];
+        private int size;
+
+        /**
+         * 增加边，已有同端点的边时保留较短的
+         */
+        private void put(int node, int weight, int middle) {
+            for (int i = 0; i < size; i++) {
+                if (nodes[i] == node) {
+                    if (weight < weights[i]) {
+                        weights[i] = weight;
+                        middles[i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+                middles = Arrays.copyOf(middles, size * 2);
+            }
+            nodes[size] = node;
+            weights[size] = weight;
+            middles[size] = middle;
+            size++;
+        }
+    }
+
+    /**
+     * 见证搜索数组，每个工作线程一份
+     */
+    private static class WitnessSearch {
+        private int[] distances;
+        private int[] touched;
+        private int touchedCount;
+        private EventCalendar queue;
+
+        private WitnessSearch(int stopCount) {
+            this.distances = new int[stopCount];
+            this.touched = new int[stopCount];
+            this.queue = new EventCalendar();
+            Arrays.fill(distances, UNREACHED);
+        }
+
+        private void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                distances[touched[i]] = UNREACHED;
+            }
+            touchedCount = 0;
+            queue.clear();
+        }
+    }
+
+    /**
+     * 预处理
+     */
+    private static class Builder {
+        private CompiledNetwork network;
+        private ForkJoinPool pool;
+        private int stopCount;
+        private Adjacency[] outs;
+        private Adjacency[] ins;
+        private boolean[] contracted;
+        private boolean[] inBatch;
+        private int[] priorities;
+        private int[] contractedNeighbours;
+        private ThreadLocal<WitnessSearch> witnessSearches;
+
+        private Builder(CompiledNetwork network, ForkJoinPool pool) {
+            this.network = network;
+            this.pool = pool;
+            this.stopCount = network.stopCount();
+            this.outs = new Adjacency[stopCount];
+            this.ins = new Adjacency[stopCount];
+            this.contracted = new boolean[stopCount];
+            this.inBatch = new boolean[stopCount];
+            this.priorities = new int[stopCount];
+            this.contractedNeighbours = new int[stopCount];
+            this.witnessSearches = ThreadLocal.withInitial(() -> new WitnessSearch(stopCount));
+            for (int i = 0; i < stopCount; i++) {
+                outs[i] = new Adjacency();
+                ins[i] = new Adjacency();
+            }
+            for (int i = 0; i < stopCount; i++) {
+                for (int edge = network.neighbourStart(i); edge < network.neighbourEnd(i); edge++) {
+                    int target = network.neighbourAt(edge);
+                    if (target != i) {
+                        outs[i].put(target, network.weightAt(edge), -1);
+                        ins[target].put(i, network.weightAt(edge), -1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 分批收缩全部站点并生成向上边CSR
+         *
+         * @param hierarchy
+         */
+        private void contract(ContractionHierarchy hierarchy) {
+            int[] ranks = new int[stopCount];
+            pool.submit(() -> IntStream.range(0, stopCount).parallel()
+                    .forEach(v -> priorities[v] = priority(v))).join();
+
+            int rank = 0;
+            int remaining = stopCount;
+            while (remaining > 0) {
+                int[] batch = pool.submit(() -> IntStream.range(0, stopCount).parallel()
+                        .filter(this::isLocalMinimum).toArray()).join();
+                for (int v : batch) {
+                    inBatch[v] = true;
+                }
+                //并行计算捷径，只读图结构
+                int[][] shortcuts = pool.submit(() -> Arrays.stream(batch).parallel()
+                        .mapToObj(this::shortcuts).toArray(int[][]::new)).join();
+                //顺序写入捷径
+                for (int i = 0; i < batch.length; i++) {
+                    int v = batch[i];
+                    int[] found = shortcuts[i];
+                    for (int j = 0; j < found.length; j += 3) {
+                        outs[found[j]].put(found[j + 1], found[j + 2], v);
+                        ins[found[j + 1]].put(found[j], found[j + 2], v);
+                        hierarchy.shortcutCount++;
+                    }
+                    contracted[v] = true;
+                    ranks[v] = rank++;
+                }
+                //并行更新受影响站点的重要性
+                int[] affected = affected(batch);
+                pool.submit(() -> Arrays.stream(affected).parallel()
+                        .forEach(v -> priorities[v] = priority(v))).join();
+                for (int v : batch) {
+                    inBatch[v] = false;
+                }
+                remaining -= batch.length;
+            }
+            hierarchy.ranks = ranks;
+            buildUpward(hierarchy, ranks);
+        }
+
+        /**
+         * 重要性：增加的捷径数 - 去掉的边数 + 已收缩的相邻站数
+         *
+         * @param v
+         * @return
+         */
+        private int priority(int v) {
+            int edges = 0;
+            for (int i = 0; i < outs[v].size; i++) {
+                if (!contracted[outs[v].nodes[i]]) {
+                    edges++;
+                }
+            }
+            for (int i = 0; i < ins[v].size; i++) {
+                if (!contracted[ins[v].nodes[i]]) {
+                    edges++;
+                }
+            }
+            return shortcuts(v).length / 3 - edges + contractedNeighbours[v];
+        }
+
+        /**
+         * 未收缩且重要性低于所有未收缩相邻站(相同时编号小的优先)
+         *
+         * @param v
+         * @return
+         */
+        private boolean isLocalMinimum(int v) {
+            if (contracted[v]) {
+                return false;
+            }
+            return isLower(v, outs[v]) && isLower(v, ins[v]);
+        }
+
+        private boolean isLower(int v, Adjacency adjacency) {
+            for (int i = 0; i < adjacency.size; i++) {
+                int u = adjacency.nodes[i];
+                if (!contracted[u] && (priorities[u] < priorities[v] || (priorities[u] == priorities[v] && u < v))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 本批收缩站点的未收缩相邻站，同时累计其已收缩相邻站数
+         *
+         * @param batch
+         * @return
+         */
+        private int[] affected(int[] batch) {
+            boolean[] seen = new boolean[stopCount];
+            int[] result = new int[stopCount];
+            int count = 0;
+            for (int v : batch) {
+                for (Adjacency adjacency : new Adjacency[]{outs[v], ins[v]}) {
+                    for (int i = 0; i < adjacency.size; i++) {
+                        int u = adjacency.nodes[i];
+                        if (!contracted[u]) {
+                            contractedNeighbours[u]++;
+                            if (!seen[u]) {
+                                seen[u] = true;
+                                result[count++] = u;
+                            }
+                        }
+                    }
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        /**
+         * 收缩v所需的捷径，按(起点, 终点, 权重)三元组依次排列
+         *
+         * @param v
+         * @return
+         */
+        private int[] shortcuts(int v) {
+            Adjacency in = ins[v];
+            Adjacency out = outs[v];
+            int[] result = new int[0];
+            int count = 0;
+            WitnessSearch search = witnessSearches.get();
+            for (int i = 0; i < in.size; i++) {
+                int u = in.nodes[i];
+                if (contracted[u]) {
+                    continue;
+                }
+                int maxOut = 0;
+                for (int j = 0; j < out.size; j++) {
+                    if (!contracted[out.nodes[j]] && out.nodes[j] != u) {
+                        maxOut = Math.max(maxOut, out.weights[j]);
+                    }
+                }
+                witness(search, u, v, in.weights[i] + maxOut);
+                for (int j = 0; j < out.size; j++) {
+                    int w = out.nodes[j];
+                    if (contracted[w] || w == u) {
+                        continue;
+                    }
+                    int via = in.weights[i] + out.weights[j];
+                    if (search.distances[w] > via) {
+                        if (count + 3 > result.length) {
+                            result = Arrays.copyOf(result, Math.max(6, result.length * 2));
+                        }
+                        result[count++] = u;
+                        result[count++] = w;
+                        result[count++] = via;
+                    }
+                }
+                search.reset();
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        /**
+         * 从u出发不经过v、同批站点和已收缩站点的有界Dijkstra
+         *
+         * @param search
+         * @param u
+         * @param v
+         * @param limit
+         */
+        private void witness(WitnessSearch search, int u, int v, int limit) {
+            EventCalendar queue = search.queue;
+            search.distances[u] = 0;
+            search.touched[search.touchedCount++] = u;
+            queue.schedule(0, 0, u);
+            int settled = 0;
+            while (!queue.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                int node = queue.peekTarget();
+                int distance = (int) queue.peekTime();
+                queue.remove();
+                if (distance != search.distances[node]) {
+                    continue;
+                }
+                if (distance > limit) {
+                    break;
+                }
+                settled++;
+                Adjacency adjacency = outs[node];
+                for (int i = 0; i < adjacency.size; i++) {
+                    int next = adjacency.nodes[i];
+                    if (next == v || contracted[next] || inBatch[next]) {
+                        continue;
+                    }
+                    int nextDistance = distance + adjacency.weights[i];
+                    if (nextDistance < search.distances[next]) {
+                        if (search.distances[next] == UNREACHED) {
+                            search.touched[search.touchedCount++] = next;
+                        }
+                        search.distances[next] = nextDistance;
+                        queue.schedule(nextDistance, 0, next);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 按重要性生成向上出边和入边CSR
+         *
+         * @param hierarchy
+         * @param ranks
+         */
+        private void buildUpward(ContractionHierarchy hierarchy, int[] ranks) {
+            hierarchy.upOutOffsets = new int[stopCount + 1];
+            hierarchy.upInOffsets = new int[stopCount + 1];
+            for (int v = 0; v < stopCount; v++) {
+                hierarchy.upOutOffsets[v + 1] = hierarchy.upOutOffsets[v] + countHigher(outs[v], ranks, ranks[v]);
+                hierarchy.upInOffsets[v + 1] = hierarchy.upInOffsets[v] + countHigher(ins[v], ranks, ranks[v]);
+            }
+            hierarchy.upOutTargets = new int[hierarchy.upOutOffsets[stopCount]];
+            hierarchy.upOutWeights = new int[hierarchy.upOutTargets.length];
+            hierarchy.upOutMiddles = new int[hierarchy.upOutTargets.length];
+            hierarchy.upInSources = new int[hierarchy.upInOffsets[stopCount]];
+            hierarchy.upInWeights = new int[hierarchy.upInSources.length];
+            hierarchy.upInMiddles = new int[hierarchy.upInSources.length];
+            for (int v = 0; v < stopCount; v++) {
+                copyHigher(outs[v], ranks, ranks[v], hierarchy.upOutOffsets[v],
+                        hierarchy.upOutTargets, hierarchy.upOutWeights, hierarchy.upOutMiddles);
+                copyHigher(ins[v], ranks, ranks[v], hierarchy.upInOffsets[v],
+                        hierarchy.upInSources, hierarchy.upInWeights, hierarchy.upInMiddles);
+            }
+        }
+
+        private static int countHigher(Adjacency adjacency, int[] ranks, int rank) {
+            int count = 0;
+            for (int i = 0; i < adjacency.size; i++) {
+                if (ranks[adjacency.nodes[i]] > rank) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static void copyHigher(Adjacency adjacency, int[] ranks, int rank, int offset,
+                                       int[] nodes, int[] weights, int[] middles) {
+            for (int i = 0; i < adjacency.size; i++) {
+                if (ranks[adjacency.nodes[i]] > rank) {
+                    nodes[offset] = adjacency.nodes[i];
+                    weights[offset] = adjacency.weights[i];
+                    middles[offset] = adjacency.middles[i];
+                    offset++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package routing;
+
+import network.CompiledNetwork;
+import routes.Route;
+import stops.Stop;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 站点距离查询
+ * <p>
+ * 持有指定线路网络的收缩层次，查询时若拓扑已变化(如{@link Route#addStop(Stop)})则重新编译并构建，
+ * 构建期间其他线程的查询等待新结果。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class DistanceOracle {
+
+    /**
+     * 网络线路
+     */
+    private Collection<? extends Route> routes;
+
+    /**
+     * 预处理线程池
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * 当前收缩层次，首次查询时构建
+     */
+    private volatile ContractionHierarchy hierarchy;
+
+    public DistanceOracle(Collection<? extends Route> routes) {
+        this(routes, ForkJoinPool.commonPool());
+    }
+
+    public DistanceOracle(Collection<? extends Route> routes, ForkJoinPool pool) {
+        if (Objects.isNull(routes) || Objects.isNull(pool)) {
+            throw new IllegalArgumentException("Routes And Pool Can Not Be Empty!");
+        }
+        this.routes = routes;
+        this.pool = pool;
+    }
+
+    /**
+     * 两站最短距离，不连通时返回-1
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public int distance(Stop from, Stop to) {
+        return current().distance(from, to);
+    }
+
+    /**
+     * 两站最短路径，不连通时返回null
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public List<Stop> path(Stop from, Stop to) {
+        return current().path(from, to);
+    }
+
+    /**
+     * 当前有效的收缩层次，过期时重新构建
+     *
+     * @return
+     */
+    public ContractionHierarchy current() {
+        ContractionHierarchy current = hierarchy;
+        if (Objects.nonNull(current) && !current.isStale()) {
+            return current;
+        }
+        synchronized (this) {
+            current = hierarchy;
+            if (Objects.isNull(current) || current.isStale()) {
+                current = ContractionHierarchy.build(CompiledNetwork.compile(routes), pool);
+                hierarchy = current;
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package routing;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按时刻表规划的行程
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class Itinerary {
+
+    /**
+     * 依次乘坐的各段
+     */
+    private List<Leg> legs;
+
+    public Itinerary(List<Leg> legs) {
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    /**
+     * 出发时间(首段上车时间)
+     *
+     * @return
+     */
+    public int getDepartureTime() {
+        return legs.isEmpty() ? -1 : legs.get(0).getDepartureTime();
+    }
+
+    /**
+     * 到达时间(末段下车时间)
+     *
+     * @return
+     */
+    public int getArrivalTime() {
+        return legs.isEmpty() ? -1 : legs.get(legs.size() - 1).getArrivalTime();
+    }
+
+    /**
+     * 换乘次数
+     *
+     * @return
+     */
+    public int getTransfers() {
+        return Math.max(legs.size() - 1, 0);
+    }
+
+    public List<Leg> getLegs() {
+        return legs;
+    }
+
+    @Override
+    public String toString() {
+        //格式{leg0} | {leg1} | ...
+        StringBuilder stringBuilder = new StringBuilder();
+        legs.forEach(e -> stringBuilder.append(e).append(" | "));
+        if (stringBuilder.length() > 0) {
+            stringBuilder.setLength(stringBuilder.length() - 3);
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package routing;
+
+import routes.Route;
+import stops.Stop;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 行程规划结果
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class Journey {
+
+    /**
+     * 途经站点(含起点和终点)
+     */
+    private List<Stop> stops;
+
+    /**
+     * 总距离
+     */
+    private int distance;
+
+    /**
+     * 依次乘坐的线路
+     */
+    private List<Route> routes;
+
+    public Journey(List<Stop> stops, int distance, List<Route> routes) {
+        this.stops = Collections.unmodifiableList(stops);
+        this.distance = distance;
+        this.routes = Collections.unmodifiableList(routes);
+    }
+
+    @Override
+    public String toString() {
+        //格式{stop0}|{stop1}|...|{stopN} ({distance})
+        StringBuilder stringBuilder = new StringBuilder();
+        stops.forEach(e -> stringBuilder.append(e.getName()).append("|"));
+        if (stringBuilder.length() > 0) {
+            stringBuilder.deleteCharAt(stringBuilder.length() - 1);
+        }
+        return String.format("%s (%s)", stringBuilder, distance);
+    }
+
+    public List<Stop> getStops() {
+        return stops;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+}
@@ -0,0 +1,188 @@
+package routing;
+
+import routes.Route;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * 行程规划器
+ * <p>
+ * 在站点相邻关系图上使用A*搜索最短路径，边权和启发函数均为{@link Stop#distanceTo(Stop)}。
+ * 曼哈顿距离满足三角不等式，启发函数不会高估剩余距离，因此结果是最短路径。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class JourneyPlanner {
+
+    /**
+     * 规划从from到to的最短行程
+     * <p>
+     * 任一站点为空或两站不连通时返回null
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public Journey plan(Stop from, Stop to) {
+        if (Objects.isNull(from) || Objects.isNull(to)) {
+            return null;
+        }
+
+        Map<Stop, Node> nodes = new IdentityHashMap<>();
+        PriorityQueue<Entry> open = new PriorityQueue<>();
+        Node start = new Node(from, 0, null);
+        nodes.put(from, start);
+        open.add(new Entry(start, from.distanceTo(to)));
+
+        while (!open.isEmpty()) {
+            Entry entry = open.poll();
+            Node current = entry.node;
+            //过期的队列项(该点已有更短的g)直接跳过
+            if (current.closed || entry.g != current.g) {
+                continue;
+            }
+            if (current.stop == to) {
+                return buildJourney(current);
+            }
+            current.closed = true;
+
+            for (Stop neighbour : current.stop.getNeighbours()) {
+                int g = current.g + current.stop.distanceTo(neighbour);
+                Node next = nodes.get(neighbour);
+                if (next == null) {
+                    next = new Node(neighbour, g, current);
+                    nodes.put(neighbour, next);
+                } else if (next.closed || g >= next.g) {
+                    continue;
+                } else {
+                    next.g = g;
+                    next.parent = current;
+                }
+                open.add(new Entry(next, g + neighbour.distanceTo(to)));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据终点回溯构造行程
+     *
+     * @param target
+     * @return
+     */
+    private Journey buildJourney(Node target) {
+        List<Stop> stops = new ArrayList<>();
+        for (Node node = target; node != null; node = node.parent) {
+            stops.add(node.stop);
+        }
+        Collections.reverse(stops);
+
+        //逐段选择线路，尽量沿用上一段的线路以减少换乘
+        List<Route> routes = new ArrayList<>();
+        Route currentRoute = null;
+        for (int i = 1; i < stops.size(); i++) {
+            Stop a = stops.get(i - 1);
+            Stop b = stops.get(i);
+            if (currentRoute != null && connects(currentRoute, a, b)) {
+                continue;
+            }
+            currentRoute = findRoute(a, b);
+            if (currentRoute != null) {
+                routes.add(currentRoute);
+            }
+        }
+        return new Journey(stops, target.g, routes);
+    }
+
+    /**
+     * 查找将两站连为相邻站的线路
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    private Route findRoute(Stop a, Stop b) {
+        for (Route route : a.getRoutes()) {
+            if (connects(route, a, b)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 线路上两站是否相邻
+     *
+     * @param route
+     * @param a
+     * @param b
+     * @return
+     */
+    private boolean connects(Route route, Stop a, Stop b) {
+        if (!route.containsStop(a) || !route.containsStop(b)) {
+            return false;
+        }
+        List<Stop> stopsOnRoute = route.getStopsOnRoute();
+        int index = route.indexOf(a);
+        if ((index > 0 && stopsOnRoute.get(index - 1) == b)
+                || (index + 1 < stopsOnRoute.size() && stopsOnRoute.get(index + 1) == b)) {
+            return true;
+        }
+        //站点在线路上重复出现时逐段比较
+        for (int i = 1; i < stopsOnRoute.size(); i++) {
+            Stop previous = stopsOnRoute.get(i - 1);
+            Stop current = stopsOnRoute.get(i);
+            if ((previous == a && current == b) || (previous == b && current == a)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 搜索节点
+     */
+    private static class Node {
+        private Stop stop;
+        private int g;
+        private Node parent;
+        private boolean closed;
+
+        private Node(Stop stop, int g, Node parent) {
+            this.stop = stop;
+            this.g = g;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * 优先队列项，f相同时g大的优先(更靠近终点)
+     */
+    private static class Entry implements Comparable<Entry> {
+        private Node node;
+        private int g;
+        private int f;
+
+        private Entry(Node node, int f) {
+            this.node = node;
+            this.g = node.g;
+            this.f = f;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            if (f != o.f) {
+                return Integer.compare(f, o.f);
+            }
+            return Integer.compare(o.g, g);
+        }
+    }
+}
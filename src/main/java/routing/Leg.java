@@ -0,0 +1,73 @@
+package routing;
+
+import routes.Route;
+import stops.Stop;
+
+/**
+ * 行程中乘坐一条线路的一段
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class Leg {
+
+    /**
+     * 乘坐线路
+     */
+    private Route route;
+
+    /**
+     * 上车站
+     */
+    private Stop from;
+
+    /**
+     * 下车站
+     */
+    private Stop to;
+
+    /**
+     * 上车站离站时间
+     */
+    private int departureTime;
+
+    /**
+     * 下车站到站时间
+     */
+    private int arrivalTime;
+
+    public Leg(Route route, Stop from, Stop to, int departureTime, int arrivalTime) {
+        this.route = route;
+        this.from = from;
+        this.to = to;
+        this.departureTime = departureTime;
+        this.arrivalTime = arrivalTime;
+    }
+
+    @Override
+    public String toString() {
+        //格式{route}:{from}@{departureTime}->{to}@{arrivalTime}
+        return String.format("%s:%s@%s->%s@%s", route.getRouteNumber(), from.getName(), departureTime,
+                to.getName(), arrivalTime);
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    public Stop getFrom() {
+        return from;
+    }
+
+    public Stop getTo() {
+        return to;
+    }
+
+    public int getDepartureTime() {
+        return departureTime;
+    }
+
+    public int getArrivalTime() {
+        return arrivalTime;
+    }
+}
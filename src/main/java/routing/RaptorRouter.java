@@ -0,0 +1,372 @@
+package routing;
+
+import network.CompiledNetwork;
+import routes.Route;
+import routes.Timetable;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按时刻表的多线路行程规划器(RAPTOR)
+ * <p>
+ * 按轮次而不是逐条边搜索：第k轮扫描上一轮到达时间有改进的站点所在的线路，
+ * 在每条线路上搭乘能赶上的最早班次，得到乘坐k段线路时各站的最早到达时间。
+ * 每轮到达终点的时间即为对应换乘次数下的最优解，合起来就是到达时间与换乘次数的帕累托前沿。
+ * <p>
+ * 换乘时须在到站后等待换乘时间才能搭乘下一班。各轮标记、到达时间和回溯数组在构造时分配，
+ * 查询之间复用，只有结果对象需要分配。路由器不是线程安全的，每个线程应各自创建。
+ * <p>
+ * 时刻表班次按线路停靠站顺序运行，往返线路的反方向需作为另一条线路录入。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class RaptorRouter {
+
+    /**
+     * 不可达
+     */
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    /**
+     * 编译后的网络
+     */
+    private CompiledNetwork network;
+
+    /**
+     * 最多换乘次数
+     */
+    private int maxTransfers;
+
+    /**
+     * 换乘时间
+     */
+    private int transferPenalty;
+
+    /**
+     * 站点所属线路CSR对应的站点在线路上首次出现的位置
+     */
+    private int[] stopRoutePositions;
+
+    /**
+     * 各轮各站最早到达时间，第0轮为出发站
+     */
+    private int[][] arrivals;
+
+    /**
+     * 各站任意轮次最早到达时间
+     */
+    private int[] bestArrivals;
+
+    /**
+     * 各轮到达各站所乘线路
+     */
+    private int[][] parentRoutes;
+
+    /**
+     * 各轮到达各站的上车站
+     */
+    private int[][] parentStops;
+
+    /**
+     * 各轮到达各站时在上车站的离站时间
+     */
+    private int[][] parentDepartures;
+
+    /**
+     * 本轮有改进的站点
+     */
+    private boolean[] marked;
+
+    /**
+     * 本轮有改进的站点列表
+     */
+    private int[] markedStops;
+
+    private int markedCount;
+
+    /**
+     * 线路需开始扫描的位置，未标记时为-1
+     */
+    private int[] routeStartPositions;
+
+    /**
+     * 本轮需扫描的线路列表
+     */
+    private int[] markedRoutes;
+
+    private int markedRouteCount;
+
+    public RaptorRouter(CompiledNetwork network, int maxTransfers, int transferPenalty) {
+        if (Objects.isNull(network)) {
+            throw new IllegalArgumentException("Network Can Not Be Empty!");
+        }
+        if (maxTransfers < 0 || transferPenalty < 0) {
+            throw new IllegalArgumentException("Transfers And Penalty Can Not Be Negative!");
+        }
+        this.network = network;
+        this.maxTransfers = maxTransfers;
+        this.transferPenalty = transferPenalty;
+
+        int stopCount = network.stopCount();
+        int rounds = maxTransfers + 2;
+        this.arrivals = new int[rounds][stopCount];
+        this.parentRoutes = new int[rounds][stopCount];
+        this.parentStops = new int[rounds][stopCount];
+        this.parentDepartures = new int[rounds][stopCount];
+        this.bestArrivals = new int[stopCount];
+        this.marked = new boolean[stopCount];
+        this.markedStops = new int[stopCount];
+        this.routeStartPositions = new int[network.routeCount()];
+        this.markedRoutes = new int[network.routeCount()];
+        Arrays.fill(routeStartPositions, -1);
+        buildStopRoutePositions();
+    }
+
+    /**
+     * 站点所属线路CSR各项对应的线路位置，线路按倒序遍历使首次出现的位置最后写入
+     */
+    private void buildStopRoutePositions() {
+        int stopCount = network.stopCount();
+        stopRoutePositions = new int[stopCount == 0 ? 0 : network.stopRouteEnd(stopCount - 1)];
+        for (int r = 0; r < network.routeCount(); r++) {
+            int start = network.routeStopStart(r);
+            for (int i = network.routeStopEnd(r) - 1; i >= start; i--) {
+                int stop = network.routeStopAt(i);
+                for (int j = network.stopRouteStart(stop); j < network.stopRouteEnd(stop); j++) {
+                    if (network.stopRouteAt(j) == r) {
+                        stopRoutePositions[j] = i - start;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 最早到达时间，不可达时返回-1
+     *
+     * @param from
+     * @param to
+     * @param departureTime 当天零点起的秒数
+     * @return
+     */
+    public int earliestArrival(Stop from, Stop to, int departureTime) {
+        int target = search(from, to, departureTime);
+        if (target < 0) {
+            return -1;
+        }
+        int best = bestArrivals[target];
+        return best == UNREACHED ? -1 : best;
+    }
+
+    /**
+     * 规划行程，返回到达时间与换乘次数的帕累托最优解，按换乘次数升序
+     * <p>
+     * 换乘次数更多的解到达时间一定更早；不可达时返回空列表
+     *
+     * @param from
+     * @param to
+     * @param departureTime 当天零点起的秒数
+     * @return
+     */
+    public List<Itinerary> plan(Stop from, Stop to, int departureTime) {
+        int target = search(from, to, departureTime);
+        if (target < 0) {
+            return Collections.emptyList();
+        }
+        List<Itinerary> itineraries = new ArrayList<>();
+        int best = UNREACHED;
+        for (int k = 1; k <= maxTransfers + 1; k++) {
+            if (arrivals[k][target] < best) {
+                best = arrivals[k][target];
+                itineraries.add(buildItinerary(k, target));
+            }
+        }
+        return itineraries;
+    }
+
+    /**
+     * 执行搜索，站点为空、不在网络内或起终点相同时返回-1，否则返回终点编号
+     *
+     * @param from
+     * @param to
+     * @param departureTime
+     * @return
+     */
+    private int search(Stop from, Stop to, int departureTime) {
+        int source = network.idOf(from);
+        int target = network.idOf(to);
+        if (source < 0 || target < 0 || source == target) {
+            return -1;
+        }
+        for (int[] round : arrivals) {
+            Arrays.fill(round, UNREACHED);
+        }
+        Arrays.fill(bestArrivals, UNREACHED);
+        arrivals[0][source] = departureTime;
+        bestArrivals[source] = departureTime;
+        markedCount = 0;
+        mark(source);
+
+        for (int k = 1; k <= maxTransfers + 1 && markedCount > 0; k++) {
+            collectRoutes();
+            for (int i = 0; i < markedRouteCount; i++) {
+                int route = markedRoutes[i];
+                scanRoute(k, route, routeStartPositions[route], target);
+                routeStartPositions[route] = -1;
+            }
+        }
+        //清除最后一轮遗留的标记
+        for (int i = 0; i < markedCount; i++) {
+            marked[markedStops[i]] = false;
+        }
+        markedCount = 0;
+        return target;
+    }
+
+    /**
+     * 收集上一轮有改进站点所在的线路，记录每条线路最靠前的标记位置
+     */
+    private void collectRoutes() {
+        markedRouteCount = 0;
+        for (int i = 0; i < markedCount; i++) {
+            int stop = markedStops[i];
+            marked[stop] = false;
+            for (int j = network.stopRouteStart(stop); j < network.stopRouteEnd(stop); j++) {
+                int route = network.stopRouteAt(j);
+                int position = stopRoutePositions[j];
+                int current = routeStartPositions[route];
+                if (current < 0) {
+                    markedRoutes[markedRouteCount++] = route;
+                    routeStartPositions[route] = position;
+                } else if (position < current) {
+                    routeStartPositions[route] = position;
+                }
+            }
+        }
+        markedCount = 0;
+    }
+
+    /**
+     * 第k轮扫描线路
+     *
+     * @param k
+     * @param routeId
+     * @param startPosition
+     * @param target
+     */
+    private void scanRoute(int k, int routeId, int startPosition, int target) {
+        Route route = network.routeOf(routeId);
+        Timetable timetable = route.findTimetable();
+        if (timetable.isEmpty()) {
+            return;
+        }
+        int offset = network.routeStopStart(routeId);
+        int end = network.routeStopEnd(routeId) - offset;
+        int[] previous = arrivals[k - 1];
+        int[] current = arrivals[k];
+        int minChange = k > 1 ? transferPenalty : 0;
+
+        //当前搭乘的班次：具体班次下标，或间隔运行时段及该班首站发车时间
+        int trip = -1;
+        int frequency = -1;
+        int frequencyStart = 0;
+        int boardStop = -1;
+        int boardDeparture = 0;
+        for (int position = startPosition; position < end; position++) {
+            int stop = network.routeStopAt(offset + position);
+
+            //已搭乘班次时尝试改进本站到达时间，超过终点已知最早时间的不必记录
+            if (trip >= 0 || frequency >= 0) {
+                int arrival = trip >= 0 ? timetable.arrival(trip, position)
+                        : timetable.frequencyArrival(frequency, frequencyStart, position);
+                if (arrival < bestArrivals[stop] && arrival < bestArrivals[target]) {
+                    current[stop] = arrival;
+                    bestArrivals[stop] = arrival;
+                    parentRoutes[k][stop] = routeId;
+                    parentStops[k][stop] = boardStop;
+                    parentDepartures[k][stop] = boardDeparture;
+                    mark(stop);
+                }
+            }
+
+            //上一轮到达本站时能否赶上更早的班次
+            if (previous[stop] == UNREACHED) {
+                continue;
+            }
+            int ready = previous[stop] + minChange;
+            int departure = trip >= 0 ? timetable.departure(trip, position)
+                    : frequency >= 0 ? timetable.frequencyDeparture(frequency, frequencyStart, position) : UNREACHED;
+            if (ready >= departure) {
+                continue;
+            }
+            int nextTrip = timetable.nextTrip(position, ready);
+            int nextDeparture = nextTrip >= 0 ? timetable.departure(nextTrip, position) : UNREACHED;
+            int nextFrequency = -1;
+            int nextFrequencyStart = 0;
+            for (int f = 0; f < timetable.getFrequencyCount(); f++) {
+                int start = timetable.nextFrequencyStart(f, position, ready);
+                if (start >= 0 && timetable.frequencyDeparture(f, start, position) < nextDeparture) {
+                    nextDeparture = timetable.frequencyDeparture(f, start, position);
+                    nextFrequency = f;
+                    nextFrequencyStart = start;
+                }
+            }
+            if (nextDeparture < departure) {
+                trip = nextFrequency >= 0 ? -1 : nextTrip;
+                frequency = nextFrequency;
+                frequencyStart = nextFrequencyStart;
+                boardStop = stop;
+                boardDeparture = nextDeparture;
+            }
+        }
+    }
+
+    private void mark(int stop) {
+        if (!marked[stop]) {
+            marked[stop] = true;
+            markedStops[markedCount++] = stop;
+        }
+    }
+
+    /**
+     * 从第k轮终点回溯构造行程
+     *
+     * @param k
+     * @param target
+     * @return
+     */
+    private Itinerary buildItinerary(int k, int target) {
+        List<Leg> legs = new ArrayList<>();
+        int stop = target;
+        for (int round = k; round > 0; round--) {
+            //本轮未改进时沿用上一轮的到达
+            while (round > 0 && arrivals[round][stop] == UNREACHED) {
+                round--;
+            }
+            if (round == 0) {
+                break;
+            }
+            int boardStop = parentStops[round][stop];
+            legs.add(new Leg(network.routeOf(parentRoutes[round][stop]), network.stopOf(boardStop),
+                    network.stopOf(stop), parentDepartures[round][stop], arrivals[round][stop]));
+            stop = boardStop;
+        }
+        Collections.reverse(legs);
+        return new Itinerary(legs);
+    }
+
+    public int getMaxTransfers() {
+        return maxTransfers;
+    }
+
+    public int getTransferPenalty() {
+        return transferPenalty;
+    }
+}
@@ -0,0 +1,403 @@
+package simulation;
+
+import metrics.TransportMetrics;
+import routes.Route;
+import stops.Stop;
+import utils.EventCalendar;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 按线路分区的并行仿真
+ * <p>
+ * 车辆按线路分区，每个分区有自己的事件日历，仿真按固定时长的时间片推进。每个时间片内反复执行两个阶段：
+ * <ol>
+ * <li>并行阶段：各分区在线程池中按(时间, 入队序号)处理本分区不晚于时间片终点的事件。
+ * 只有本分区线路停靠的站点直接处理；下一事件在多个分区共用的站点时，该分区暂停</li>
+ * <li>合并阶段：单线程按(时间, 车辆序号)依次处理暂停分区的共用站点事件(下客、上客、换乘乘客进入候车)，
+ * 再把车辆的下一事件放回所属分区。只处理早于所有已恢复分区下一事件的共用站点事件，
+ * 已恢复的分区回到并行阶段，直到所有分区都处理到时间片终点</li>
+ * </ol>
+ * 每个分区暂停在自己最早的共用站点事件上，合并阶段总是先处理全局最早的共用站点事件，
+ * 因此共用站点的事件严格按时间先后处理，与时间片长度无关；非共用站点只被一个分区访问。
+ * 每辆车有独立的随机数序列，结果与线程调度无关：不传线程池时顺序执行同一算法，结果逐位相同。
+ * <p>
+ * 同一时刻不同分区在共用站点的事件按车辆序号排序，{@link Simulation}按入队先后排序，只有这种同时刻的先后可能不同；
+ * 时间片越长，每个时间片的并行阶段越长，同步次数越少。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class ParallelSimulation {
+
+    /**
+     * 默认时间片长度
+     */
+    private static final int DEFAULT_TICK = 60;
+
+    /**
+     * 每单位距离耗时
+     */
+    private int pace;
+
+    /**
+     * 停站时间
+     */
+    private int dwellTime;
+
+    /**
+     * 停站时间随机浮动上限
+     */
+    private int dwellJitter;
+
+    /**
+     * 时间片长度
+     */
+    private int tick;
+
+    /**
+     * 线程池，为空时顺序执行
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * 车辆随机数序列的来源
+     */
+    private SplittableRandom seedRandom;
+
+    /**
+     * 仿真时钟
+     */
+    private long clock;
+
+    /**
+     * 参与仿真的车辆
+     */
+    private List<Vehicle> vehicles;
+
+    /**
+     * 分区，按首辆车加入的先后排列
+     */
+    private List<Partition> partitions;
+
+    /**
+     * 线路 -> 分区
+     */
+    private Map<Route, Partition> partitionsByRoute;
+
+    /**
+     * 被多个分区停靠的站点
+     */
+    private Map<Stop, Boolean> sharedStops;
+
+    /**
+     * 共用站点需要重新计算
+     */
+    private boolean sharedStopsDirty;
+
+    /**
+     * 合并阶段处理的事件数
+     */
+    private long mergedEvents;
+
+    public ParallelSimulation(long seed, ForkJoinPool pool) {
+        this(seed, Simulation.DEFAULT_PACE, Simulation.DEFAULT_DWELL_TIME, Simulation.DEFAULT_DWELL_JITTER,
+                DEFAULT_TICK, pool);
+    }
+
+    public ParallelSimulation(long seed, int pace, int dwellTime, int dwellJitter, int tick, ForkJoinPool pool) {
+        this.pace = Math.max(pace, 1);
+        this.dwellTime = Math.max(dwellTime, 0);
+        this.dwellJitter = Math.max(dwellJitter, 0);
+        this.tick = Math.max(tick, 1);
+        this.pool = pool;
+        this.seedRandom = new SplittableRandom(seed);
+        this.vehicles = new ArrayList<>();
+        this.partitions = new ArrayList<>();
+        this.partitionsByRoute = new IdentityHashMap<>();
+        this.sharedStops = new IdentityHashMap<>();
+    }
+
+    /**
+     * 加入车辆，规则同{@link Simulation#addTransport(PublicTransport)}
+     *
+     * @param transport
+     */
+    public void addTransport(PublicTransport transport) {
+        if (Objects.isNull(transport) || transport.getRoute().getStopsOnRoute().size() < 2) {
+            return;
+        }
+        Route route = transport.getRoute();
+        Partition partition = partitionsByRoute.get(route);
+        if (partition == null) {
+            partition = new Partition();
+            partitionsByRoute.put(route, partition);
+            partitions.add(partition);
+            sharedStopsDirty = true;
+        }
+        Stop start = transport.getCurrentStop();
+        Vehicle vehicle = new Vehicle(vehicles.size(), transport, partition, seedRandom.split());
+        vehicle.target = Objects.isNull(start) ? route.getStopsOnRoute().get(0) : start;
+        vehicles.add(vehicle);
+        partition.vehicles.add(vehicle);
+        partition.calendar.schedule(clock + vehicle.jitter(), Simulation.ARRIVE, partition.vehicles.size() - 1);
+    }
+
+    /**
+     * 运行到指定时刻
+     * <p>
+     * 处理所有时间不晚于endTime的事件，结束后时钟停在endTime
+     *
+     * @param endTime
+     * @return 本次处理的事件数
+     */
+    public long runUntil(long endTime) {
+        if (endTime < clock) {
+            return 0;
+        }
+        if (sharedStopsDirty) {
+            computeSharedStops();
+        }
+        long before = getProcessedEvents();
+        do {
+            long tickEnd = Math.min(clock + tick, endTime);
+            runTick(tickEnd);
+            clock = tickEnd;
+        } while (clock < endTime);
+        return getProcessedEvents() - before;
+    }
+
+    /**
+     * 推进一个时间片
+     *
+     * @param tickEnd
+     */
+    private void runTick(long tickEnd) {
+        //按(时间, 车辆序号)排列的暂停分区
+        PriorityQueue<Partition> blocked = new PriorityQueue<>((a, b) -> a.blockedTime != b.blockedTime
+                ? Long.compare(a.blockedTime, b.blockedTime) : Integer.compare(a.blockedIndex, b.blockedIndex));
+        List<Partition> runnable = partitions;
+        while (!runnable.isEmpty()) {
+            List<Partition> running = runnable;
+            if (Objects.isNull(pool) || running.size() == 1) {
+                running.forEach(e -> e.advance(tickEnd));
+            } else {
+                pool.submit(() -> running.parallelStream().forEach(e -> e.advance(tickEnd))).join();
+            }
+            for (Partition partition : running) {
+                if (partition.blocked) {
+                    blocked.add(partition);
+                }
+            }
+            //已恢复分区的后续共用站点事件不早于其下一事件，早于它的共用站点事件可以先处理
+            runnable = new ArrayList<>();
+            long bound = Long.MAX_VALUE;
+            while (!blocked.isEmpty() && blocked.peek().blockedTime < bound) {
+                Partition partition = blocked.poll();
+                partition.processBlocked();
+                mergedEvents++;
+                runnable.add(partition);
+                if (!partition.calendar.isEmpty()) {
+                    bound = Math.min(bound, partition.calendar.peekTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算被多个分区停靠的站点
+     */
+    private void computeSharedStops() {
+        Map<Stop, Partition> owners = new IdentityHashMap<>();
+        sharedStops.clear();
+        for (Map.Entry<Route, Partition> entry : partitionsByRoute.entrySet()) {
+            for (Stop stop : entry.getKey().getStopsOnRoute()) {
+                Partition owner = owners.putIfAbsent(stop, entry.getValue());
+                if (owner != null && owner != entry.getValue()) {
+                    sharedStops.put(stop, Boolean.TRUE);
+                }
+            }
+        }
+        sharedStopsDirty = false;
+    }
+
+    private boolean isShared(Stop stop) {
+        return sharedStops.containsKey(stop);
+    }
+
+    /**
+     * 仿真时钟
+     *
+     * @return
+     */
+    public long getClock() {
+        return clock;
+    }
+
+    /**
+     * 已处理事件数
+     *
+     * @return
+     */
+    public long getProcessedEvents() {
+        long processed = mergedEvents;
+        for (Partition partition : partitions) {
+            processed += partition.processedEvents;
+        }
+        return processed;
+    }
+
+    /**
+     * 合并阶段处理的事件数
+     *
+     * @return
+     */
+    public long getMergedEvents() {
+        return mergedEvents;
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * 共用站点数
+     *
+     * @return
+     */
+    public int sharedStopCount() {
+        if (sharedStopsDirty) {
+            computeSharedStops();
+        }
+        return sharedStops.size();
+    }
+
+    public List<PublicTransport> getTransports() {
+        List<PublicTransport> transports = new ArrayList<>(vehicles.size());
+        vehicles.forEach(e -> transports.add(e.transport));
+        return Collections.unmodifiableList(transports);
+    }
+
+    /**
+     * 分区：一条线路上的车辆
+     */
+    private class Partition {
+        private List<Vehicle> vehicles = new ArrayList<>();
+        private EventCalendar calendar = new EventCalendar();
+        private long processedEvents;
+
+        /**
+         * 下一事件在共用站点，等待合并
+         */
+        private boolean blocked;
+        private long blockedTime;
+        private int blockedIndex;
+
+        /**
+         * 处理不晚于tickEnd的事件，遇到共用站点事件时暂停
+         *
+         * @param tickEnd
+         */
+        private void advance(long tickEnd) {
+            blocked = false;
+            while (!calendar.isEmpty() && calendar.peekTime() <= tickEnd) {
+                Vehicle vehicle = vehicles.get(calendar.peekTarget());
+                if (isShared(vehicle.target)) {
+                    blocked = true;
+                    blockedTime = calendar.peekTime();
+                    blockedIndex = vehicle.index;
+                    return;
+                }
+                processNext();
+                processedEvents++;
+            }
+        }
+
+        /**
+         * 合并阶段处理暂停的共用站点事件
+         */
+        private void processBlocked() {
+            blocked = false;
+            processNext();
+        }
+
+        private void processNext() {
+            long time = calendar.peekTime();
+            int type = calendar.peekType();
+            Vehicle vehicle = vehicles.get(calendar.peekTarget());
+            calendar.remove();
+            long next = vehicle.process(type, time);
+            if (next >= 0) {
+                calendar.schedule(next, vehicle.nextType(), vehicle.position);
+            }
+        }
+    }
+
+    /**
+     * 车辆状态
+     */
+    private class Vehicle {
+        private int index;
+        private int position;
+        private PublicTransport transport;
+        private Partition partition;
+        private SplittableRandom random;
+        private Stop target;
+        private long arrivalTime;
+        private int lastType;
+
+        private Vehicle(int index, PublicTransport transport, Partition partition, SplittableRandom random) {
+            this.index = index;
+            this.position = partition.vehicles.size();
+            this.transport = transport;
+            this.partition = partition;
+            this.random = random;
+        }
+
+        /**
+         * 处理一个事件
+         *
+         * @param type
+         * @param time
+         * @return 下一事件时间，没有下一站时返回-1
+         */
+        private long process(int type, long time) {
+            lastType = type;
+            Stop stop = target;
+            if (type == Simulation.ARRIVE) {
+                transport.travelTo(stop);
+                stop.transportArrive(transport);
+                stop.board(transport);
+                arrivalTime = time;
+                return time + dwellTime + jitter();
+            }
+            stop.transportLeave(transport);
+            if (TransportMetrics.isEnabled()) {
+                TransportMetrics.recordDwell(time - arrivalTime);
+            }
+            Stop next = transport.nextStop();
+            if (Objects.isNull(next)) {
+                return -1L;
+            }
+            target = next;
+            return time + Math.max(1L, (long) stop.distanceTo(next) * pace);
+        }
+
+        private int nextType() {
+            return lastType == Simulation.ARRIVE ? Simulation.DEPART : Simulation.ARRIVE;
+        }
+
+        private int jitter() {
+            return dwellJitter == 0 ? 0 : random.nextInt(dwellJitter + 1);
+        }
+    }
+}
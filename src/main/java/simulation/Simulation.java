@@ -0,0 +1,250 @@
+package simulation;
+
+import metrics.TransportMetrics;
+import stops.Stop;
+import utils.EventCalendar;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * 离散事件仿真
+ * <p>
+ * 以事件日历驱动车辆在线路上往返运行：到站事件调用{@link Stop#transportArrive(PublicTransport)}
+ * 并让候车乘客上车，停站时间结束后触发离站事件，行驶时间由{@link Stop#distanceTo(Stop)}乘以每单位距离耗时得出。
+ * 仿真时钟为模拟时间，随机数由种子决定，相同输入得到相同结果。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class Simulation {
+
+    /**
+     * 到站事件
+     */
+    public static final int ARRIVE = 0;
+
+    /**
+     * 离站事件
+     */
+    public static final int DEPART = 1;
+
+    /**
+     * 默认每单位距离耗时
+     */
+    static final int DEFAULT_PACE = 1;
+
+    /**
+     * 默认停站时间
+     */
+    static final int DEFAULT_DWELL_TIME = 30;
+
+    /**
+     * 默认停站时间随机浮动
+     */
+    static final int DEFAULT_DWELL_JITTER = 10;
+
+    /**
+     * 每单位距离耗时
+     */
+    private int pace;
+
+    /**
+     * 停站时间
+     */
+    private int dwellTime;
+
+    /**
+     * 停站时间随机浮动上限
+     */
+    private int dwellJitter;
+
+    /**
+     * 随机数
+     */
+    private SplittableRandom random;
+
+    /**
+     * 事件日历
+     */
+    private EventCalendar calendar;
+
+    /**
+     * 仿真时钟
+     */
+    private long clock;
+
+    /**
+     * 已处理事件数
+     */
+    private long processedEvents;
+
+    /**
+     * 参与仿真的车辆
+     */
+    private List<PublicTransport> transports;
+
+    /**
+     * 车辆所在或正前往的站
+     */
+    private List<Stop> targets;
+
+    /**
+     * 车辆到站时刻，用于统计停站时间
+     */
+    private long[] arrivalTimes;
+
+    public Simulation(long seed) {
+        this(seed, DEFAULT_PACE, DEFAULT_DWELL_TIME, DEFAULT_DWELL_JITTER);
+    }
+
+    public Simulation(long seed, int pace, int dwellTime, int dwellJitter) {
+        this.pace = Math.max(pace, 1);
+        this.dwellTime = Math.max(dwellTime, 0);
+        this.dwellJitter = Math.max(dwellJitter, 0);
+        this.random = new SplittableRandom(seed);
+        this.calendar = new EventCalendar();
+        this.transports = new ArrayList<>();
+        this.targets = new ArrayList<>();
+        this.arrivalTimes = new long[16];
+    }
+
+    /**
+     * 加入车辆
+     * <p>
+     * 车辆从当前停靠站(没有时为始发站)出发，按线路运营方式前进，首次到站时间在[0, dwellJitter]内随机错开；
+     * 停靠站少于两个的线路无法运行，直接忽略
+     *
+     * @param transport
+     */
+    public void addTransport(PublicTransport transport) {
+        if (Objects.isNull(transport) || transport.getRoute().getStopsOnRoute().size() < 2) {
+            return;
+        }
+        int index = transports.size();
+        Stop start = transport.getCurrentStop();
+        if (index == arrivalTimes.length) {
+            arrivalTimes = Arrays.copyOf(arrivalTimes, index << 1);
+        }
+        transports.add(transport);
+        targets.add(Objects.isNull(start) ? transport.getRoute().getStopsOnRoute().get(0) : start);
+        calendar.schedule(clock + jitter(), ARRIVE, index);
+    }
+
+    /**
+     * 运行到指定时刻
+     * <p>
+     * 处理所有时间不晚于endTime的事件，结束后时钟停在endTime
+     *
+     * @param endTime
+     * @return 本次处理的事件数
+     */
+    public long runUntil(long endTime) {
+        long processed = 0;
+        while (!calendar.isEmpty() && calendar.peekTime() <= endTime) {
+            step();
+            processed++;
+        }
+        clock = Math.max(clock, endTime);
+        return processed;
+    }
+
+    /**
+     * 处理一个事件
+     *
+     * @return 没有待处理事件时返回false
+     */
+    public boolean step() {
+        if (calendar.isEmpty()) {
+            return false;
+        }
+        clock = calendar.peekTime();
+        int type = calendar.peekType();
+        int index = calendar.peekTarget();
+        calendar.remove();
+
+        if (type == ARRIVE) {
+            arrive(index);
+        } else {
+            depart(index);
+        }
+        processedEvents++;
+        return true;
+    }
+
+    /**
+     * 到站：进站下客、上客，停站后离站
+     *
+     * @param index
+     */
+    private void arrive(int index) {
+        PublicTransport transport = transports.get(index);
+        Stop stop = targets.get(index);
+        transport.travelTo(stop);
+        stop.transportArrive(transport);
+        stop.board(transport);
+        arrivalTimes[index] = clock;
+        calendar.schedule(clock + dwellTime + jitter(), DEPART, index);
+    }
+
+    /**
+     * 离站：前往车辆线路游标给出的下一站，没有下一站时不再安排该车辆的事件
+     *
+     * @param index
+     */
+    private void depart(int index) {
+        PublicTransport transport = transports.get(index);
+        Stop stop = targets.get(index);
+        stop.transportLeave(transport);
+        if (TransportMetrics.isEnabled()) {
+            TransportMetrics.recordDwell(clock - arrivalTimes[index]);
+        }
+
+        Stop next = transport.nextStop();
+        if (Objects.isNull(next)) {
+            return;
+        }
+        targets.set(index, next);
+        long travelTime = Math.max(1L, (long) stop.distanceTo(next) * pace);
+        calendar.schedule(clock + travelTime, ARRIVE, index);
+    }
+
+    private int jitter() {
+        return dwellJitter == 0 ? 0 : random.nextInt(dwellJitter + 1);
+    }
+
+    /**
+     * 仿真时钟
+     *
+     * @return
+     */
+    public long getClock() {
+        return clock;
+    }
+
+    /**
+     * 已处理事件数
+     *
+     * @return
+     */
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+
+    /**
+     * 待处理事件数
+     *
+     * @return
+     */
+    public int pendingEvents() {
+        return calendar.size();
+    }
+
+    public List<PublicTransport> getTransports() {
+        return transports;
+    }
+}
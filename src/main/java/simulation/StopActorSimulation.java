@@ -0,0 +1,356 @@
+package simulation;
+
+import metrics.TransportMetrics;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 站点actor仿真
+ * <p>
+ * 每个站点是一个actor，只有站点actor调用{@link Stop#transportArrive(PublicTransport)}、
+ * {@link Stop#board(PublicTransport)}和{@link Stop#transportLeave(PublicTransport)}；
+ * 车辆不直接修改站点，而是作为消息投递到目标站点的邮箱。
+ * <p>
+ * 仿真按轮次推进，每轮之间是一道屏障：
+ * <ol>
+ * <li>取出所有车辆中最早的下一事件时间(全局低水位)，只有下一事件恰好在该时刻的车辆投递到站点邮箱</li>
+ * <li>有消息的站点actor在执行器中并行运行，各自按(时间, 入队序号)串行处理邮箱，推进车辆时钟</li>
+ * <li>所有站点处理完后进入下一轮</li>
+ * </ol>
+ * 站点只处理不晚于全局低水位的消息，不会先处理较晚的车辆再收到较早的车辆；
+ * 入队序号与{@link Simulation}的事件日历分配方式相同，没有停站时间随机浮动时结果与{@link Simulation}逐位相同。
+ * 每辆车有独立的随机数序列，结果与线程调度无关。
+ * <p>
+ * 同一时刻到站的车辆越多、分布的站点越多，并行度越高；需要按时间片放宽同步换取并行度时使用{@link ParallelSimulation}。
+ * <p>
+ * 每个不同的事件时刻都是一轮：一次屏障等待和一批执行器任务，车辆时刻分散时轮次开销与事件数同阶，
+ * 吞吐可能低于{@link Simulation}。每辆车常驻一个actor对象，内存与车辆数成正比。
+ * 目前没有50万辆车规模的测试或基准，不能保证达到该规模下的吞吐和内存有界的目标。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class StopActorSimulation {
+
+    /**
+     * 每单位距离耗时
+     */
+    private int pace;
+
+    /**
+     * 停站时间
+     */
+    private int dwellTime;
+
+    /**
+     * 停站时间随机浮动上限
+     */
+    private int dwellJitter;
+
+    /**
+     * 执行器
+     */
+    private Executor executor;
+
+    /**
+     * 车辆随机数序列的来源
+     */
+    private SplittableRandom seedRandom;
+
+    /**
+     * 仿真时钟
+     */
+    private long clock;
+
+    /**
+     * 车辆actor
+     */
+    private List<VehicleActor> vehicles;
+
+    /**
+     * 按(下一事件时间, 入队序号)排列的车辆
+     */
+    private PriorityQueue<VehicleActor> pending;
+
+    /**
+     * 下一个入队序号
+     */
+    private long nextSequence;
+
+    /**
+     * 站点 -> 站点actor
+     */
+    private Map<Stop, StopActor> stops;
+
+    /**
+     * 已处理事件数
+     */
+    private long processedEvents;
+
+    /**
+     * 本轮第一个异常
+     */
+    private AtomicReference<RuntimeException> failure;
+
+    public StopActorSimulation(long seed, Executor executor) {
+        this(seed, Simulation.DEFAULT_PACE, Simulation.DEFAULT_DWELL_TIME, Simulation.DEFAULT_DWELL_JITTER,
+                executor);
+    }
+
+    public StopActorSimulation(long seed, int pace, int dwellTime, int dwellJitter, Executor executor) {
+        if (Objects.isNull(executor)) {
+            throw new IllegalArgumentException("Executor Can Not Be Empty!");
+        }
+        this.pace = Math.max(pace, 1);
+        this.dwellTime = Math.max(dwellTime, 0);
+        this.dwellJitter = Math.max(dwellJitter, 0);
+        this.executor = executor;
+        this.seedRandom = new SplittableRandom(seed);
+        this.vehicles = new ArrayList<>();
+        this.pending = new PriorityQueue<>((a, b) -> a.time != b.time
+                ? Long.compare(a.time, b.time) : Long.compare(a.sequence, b.sequence));
+        this.stops = new IdentityHashMap<>();
+        this.failure = new AtomicReference<>();
+    }
+
+    /**
+     * 加入车辆，规则同{@link Simulation#addTransport(PublicTransport)}；不能在运行期间调用
+     *
+     * @param transport
+     */
+    public void addTransport(PublicTransport transport) {
+        if (Objects.isNull(transport) || transport.getRoute().getStopsOnRoute().size() < 2) {
+            return;
+        }
+        for (Stop stop : transport.getRoute().getStopsOnRoute()) {
+            stops.computeIfAbsent(stop, StopActor::new);
+        }
+        Stop start = transport.getCurrentStop();
+        VehicleActor vehicle = new VehicleActor(transport, seedRandom.split());
+        vehicle.target = stops.computeIfAbsent(
+                Objects.isNull(start) ? transport.getRoute().getStopsOnRoute().get(0) : start, StopActor::new);
+        vehicle.time = clock + vehicle.jitter();
+        vehicle.sequence = nextSequence++;
+        vehicles.add(vehicle);
+        pending.add(vehicle);
+    }
+
+    /**
+     * 运行到指定时刻
+     * <p>
+     * 处理所有时间不晚于endTime的事件，结束后时钟停在endTime
+     *
+     * @param endTime
+     * @return 本次处理的事件数
+     */
+    public long runUntil(long endTime) {
+        if (endTime < clock) {
+            return 0;
+        }
+        long before = processedEvents;
+        List<VehicleActor> round = new ArrayList<>();
+        List<StopActor> active = new ArrayList<>();
+        while (!pending.isEmpty() && pending.peek().time <= endTime) {
+            //全局低水位上的车辆按入队序号投递
+            long lowWaterMark = pending.peek().time;
+            while (!pending.isEmpty() && pending.peek().time == lowWaterMark) {
+                VehicleActor vehicle = pending.poll();
+                vehicle.sequence = nextSequence++;
+                round.add(vehicle);
+                if (vehicle.target.mailbox.isEmpty()) {
+                    active.add(vehicle.target);
+                }
+                vehicle.target.mailbox.add(vehicle);
+            }
+            try {
+                runRound(active);
+                processedEvents += round.size();
+            } finally {
+                //失败时本轮车辆也放回，未处理的车辆保留原事件，下次运行时重新投递；没有下一站的车辆不再放回
+                for (VehicleActor vehicle : round) {
+                    if (!vehicle.finished) {
+                        pending.add(vehicle);
+                    }
+                }
+                round.clear();
+                active.clear();
+            }
+        }
+        clock = endTime;
+        return processedEvents - before;
+    }
+
+    /**
+     * 运行一轮站点actor，全部处理完后返回
+     *
+     * @param active 有消息的站点
+     */
+    private void runRound(List<StopActor> active) {
+        if (active.size() == 1) {
+            active.get(0).run();
+        } else {
+            CountDownLatch done = new CountDownLatch(active.size());
+            for (StopActor stop : active) {
+                executor.execute(() -> {
+                    try {
+                        stop.run();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Simulation Interrupted!", e);
+            }
+        }
+        RuntimeException error = failure.getAndSet(null);
+        if (Objects.nonNull(error)) {
+            throw new IllegalStateException("Actor Failed!", error);
+        }
+    }
+
+    /**
+     * 仿真时钟
+     *
+     * @return
+     */
+    public long getClock() {
+        return clock;
+    }
+
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+
+    public int stopActorCount() {
+        return stops.size();
+    }
+
+    public List<PublicTransport> getTransports() {
+        List<PublicTransport> transports = new ArrayList<>(vehicles.size());
+        vehicles.forEach(e -> transports.add(e.transport));
+        return Collections.unmodifiableList(transports);
+    }
+
+    /**
+     * 站点actor
+     * <p>
+     * 邮箱只在两轮之间由仿真线程写入，轮内只由本站点actor读取
+     */
+    private class StopActor implements Runnable {
+        private final Stop stop;
+        private final List<VehicleActor> mailbox = new ArrayList<>();
+
+        private StopActor(Stop stop) {
+            this.stop = stop;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (VehicleActor vehicle : mailbox) {
+                    receive(vehicle);
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                mailbox.clear();
+            }
+        }
+
+        /**
+         * 处理车辆到站或离站，并推进车辆时钟
+         *
+         * @param vehicle
+         */
+        private void receive(VehicleActor vehicle) {
+            PublicTransport transport = vehicle.transport;
+            if (vehicle.type == Simulation.ARRIVE) {
+                transport.travelTo(stop);
+                stop.transportArrive(transport);
+                stop.board(transport);
+            } else {
+                stop.transportLeave(transport);
+            }
+            vehicle.complete();
+        }
+    }
+
+    /**
+     * 车辆actor，同一时刻只属于一个站点的邮箱
+     */
+    private class VehicleActor {
+        private final PublicTransport transport;
+        private final SplittableRandom random;
+
+        /**
+         * 所在或正前往的站
+         */
+        private StopActor target;
+
+        /**
+         * 下一事件
+         */
+        private long time;
+        private int type = Simulation.ARRIVE;
+
+        /**
+         * 下一事件的入队序号，同一时刻的事件按入队先后处理
+         */
+        private long sequence;
+        private long arrivalTime;
+
+        /**
+         * 没有下一站，不再安排事件
+         */
+        private boolean finished;
+
+        private VehicleActor(PublicTransport transport, SplittableRandom random) {
+            this.transport = transport;
+            this.random = random;
+        }
+
+        /**
+         * 站点处理完成后推进车辆时钟
+         */
+        private void complete() {
+            if (type == Simulation.ARRIVE) {
+                arrivalTime = time;
+                time += dwellTime + jitter();
+                type = Simulation.DEPART;
+                return;
+            }
+            if (TransportMetrics.isEnabled()) {
+                TransportMetrics.recordDwell(time - arrivalTime);
+            }
+            Stop from = target.stop;
+            Stop nextStop = transport.nextStop();
+            if (Objects.isNull(nextStop)) {
+                finished = true;
+                return;
+            }
+            target = stops.get(nextStop);
+            time += Math.max(1L, (long) from.distanceTo(nextStop) * pace);
+            type = Simulation.ARRIVE;
+        }
+
+        private int jitter() {
+            return dwellJitter == 0 ? 0 : random.nextInt(dwellJitter + 1);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package stops;
+
+import passengers.PassengerStore;
+import vehicles.PublicTransport;
+
+/**
+ * 线程安全的停靠站
+ * <p>
+ * 车辆到站、离站、乘客候车和上车可由多个线程同时调用，状态保存在{@link ConcurrentStopStorage}中：
+ * 在站车辆和候车乘客的登记和移除都是原子操作，按线路索引的候车队列为无锁队列，不同线路的乘客互不竞争。
+ * 到站、上车等逻辑与{@link Stop}相同，只替换存储。
+ * <p>
+ * {@link #getVehicles()}和{@link #getWaitingPassengers()}返回调用时刻的只读快照。
+ * 列式存储乘客的句柄列表以本对象加锁访问，{@link PassengerStore}本身仍需调用方同步。
+ * 线路和相邻站属于网络拓扑，仍需在单线程中构建完成后再并发使用。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class ConcurrentStop extends Stop {
+
+    public ConcurrentStop(String name, int x, int y) {
+        super(name, x, y, new ConcurrentStopStorage());
+    }
+
+    @Override
+    public synchronized void addPassengerHandle(int handle, PassengerStore store) {
+        super.addPassengerHandle(handle, store);
+    }
+
+    @Override
+    public synchronized int alightHandles(PublicTransport transport, PassengerStore store) {
+        return super.alightHandles(transport, store);
+    }
+
+    @Override
+    public synchronized int boardHandles(PublicTransport transport, PassengerStore store) {
+        return super.boardHandles(transport, store);
+    }
+
+    @Override
+    public synchronized int[] getWaitingHandles() {
+        return super.getWaitingHandles();
+    }
+
+    @Override
+    public synchronized int waitingHandleCount() {
+        return super.waitingHandleCount();
+    }
+}
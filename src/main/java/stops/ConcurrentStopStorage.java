@@ -0,0 +1,151 @@
+package stops;
+
+import passengers.Passenger;
+import routes.Route;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 线程安全的站点存储
+ * <p>
+ * 在站车辆和候车乘客保存在ConcurrentHashMap中，登记和移除都是原子操作；
+ * 按线路索引的候车队列为无锁队列，不同线路的乘客互不竞争，放回的乘客排到队尾
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+class ConcurrentStopStorage implements StopStorage {
+
+    /**
+     * 在站车辆 -> 到站序号
+     */
+    private Map<PublicTransport, Long> vehicles;
+
+    /**
+     * 候车乘客 -> 候车序号
+     */
+    private Map<Passenger, Long> waitingPassengers;
+
+    /**
+     * 按线路索引的候车队列
+     */
+    private Map<Route, ConcurrentLinkedQueue<Passenger>> routeQueues;
+
+    /**
+     * 本站的到站序号，用于快照保持到站先后顺序
+     */
+    private final AtomicLong vehicleSequence;
+
+    /**
+     * 本站的候车序号，用于快照保持候车先后顺序
+     */
+    private final AtomicLong waitingSequence;
+
+    ConcurrentStopStorage() {
+        this.vehicles = new ConcurrentHashMap<>();
+        this.waitingPassengers = new ConcurrentHashMap<>();
+        this.routeQueues = new ConcurrentHashMap<>();
+        this.vehicleSequence = new AtomicLong();
+        this.waitingSequence = new AtomicLong();
+    }
+
+    @Override
+    public boolean addVehicle(PublicTransport transport) {
+        return vehicles.putIfAbsent(transport, vehicleSequence.getAndIncrement()) == null;
+    }
+
+    @Override
+    public boolean removeVehicle(PublicTransport transport) {
+        return vehicles.remove(transport) != null;
+    }
+
+    @Override
+    public boolean containsVehicle(PublicTransport transport) {
+        return vehicles.containsKey(transport);
+    }
+
+    @Override
+    public int vehicleCount() {
+        return vehicles.size();
+    }
+
+    @Override
+    public List<PublicTransport> vehicles() {
+        return snapshot(vehicles);
+    }
+
+    @Override
+    public boolean addWaiting(Passenger passenger) {
+        return waitingPassengers.putIfAbsent(passenger, waitingSequence.getAndIncrement()) == null;
+    }
+
+    @Override
+    public boolean removeWaiting(Passenger passenger) {
+        return waitingPassengers.remove(passenger) != null;
+    }
+
+    @Override
+    public boolean isWaiting(Passenger passenger) {
+        return waitingPassengers.containsKey(passenger);
+    }
+
+    @Override
+    public int waitingCount() {
+        return waitingPassengers.size();
+    }
+
+    @Override
+    public List<Passenger> waiting() {
+        return snapshot(waitingPassengers);
+    }
+
+    @Override
+    public void enqueue(Route route, Passenger passenger) {
+        routeQueues.computeIfAbsent(route, e -> new ConcurrentLinkedQueue<>()).offer(passenger);
+    }
+
+    @Override
+    public Passenger poll(Route route) {
+        ConcurrentLinkedQueue<Passenger> queue = routeQueues.get(route);
+        return queue == null ? null : queue.poll();
+    }
+
+    @Override
+    public void requeue(Route route, List<Passenger> passengers) {
+        if (!passengers.isEmpty()) {
+            routeQueues.computeIfAbsent(route, e -> new ConcurrentLinkedQueue<>()).addAll(passengers);
+        }
+    }
+
+    /**
+     * 清空全部状态，调用期间不能有其他线程访问
+     */
+    @Override
+    public void clear() {
+        vehicles.clear();
+        waitingPassengers.clear();
+        routeQueues.clear();
+    }
+
+    /**
+     * 按序号排序的快照
+     *
+     * @param map
+     * @param <T>
+     * @return
+     */
+    private static <T> List<T> snapshot(Map<T, Long> map) {
+        List<Map.Entry<T, Long>> entries = new ArrayList<>(map.entrySet());
+        entries.sort(Map.Entry.comparingByValue());
+        List<T> snapshot = new ArrayList<>(entries.size());
+        entries.forEach(e -> snapshot.add(e.getKey()));
+        return Collections.unmodifiableList(snapshot);
+    }
+}
@@ -0,0 +1,134 @@
+package stops;
+
+import passengers.Passenger;
+import routes.Route;
+import vehicles.PublicTransport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 单线程站点存储
+ * <p>
+ * 在站车辆和候车乘客保存在按插入顺序排列的集合中；放回的乘客回到队首，保持候车先后顺序
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+class SequentialStopStorage implements StopStorage {
+
+    /**
+     * 当前在此站的所有车辆，按到站先后排列
+     */
+    private Set<PublicTransport> vehicles;
+
+    /**
+     * 当前在此站候车的乘客，按到站先后排列
+     */
+    private Set<Passenger> waitingPassengers;
+
+    /**
+     * 按线路索引的候车队列
+     * <p>
+     * 已上车的乘客不会立即从其他线路队列移除，扫描队列时发现不再候车再清理
+     */
+    private Map<Route, ArrayDeque<Passenger>> routeQueues;
+
+    SequentialStopStorage() {
+        this.vehicles = new LinkedHashSet<>();
+        this.waitingPassengers = new LinkedHashSet<>();
+        this.routeQueues = new IdentityHashMap<>();
+    }
+
+    @Override
+    public boolean addVehicle(PublicTransport transport) {
+        return vehicles.add(transport);
+    }
+
+    @Override
+    public boolean removeVehicle(PublicTransport transport) {
+        return vehicles.remove(transport);
+    }
+
+    @Override
+    public boolean containsVehicle(PublicTransport transport) {
+        return vehicles.contains(transport);
+    }
+
+    @Override
+    public int vehicleCount() {
+        return vehicles.size();
+    }
+
+    @Override
+    public List<PublicTransport> vehicles() {
+        return Collections.unmodifiableList(new ArrayList<>(vehicles));
+    }
+
+    @Override
+    public boolean addWaiting(Passenger passenger) {
+        return waitingPassengers.add(passenger);
+    }
+
+    @Override
+    public boolean removeWaiting(Passenger passenger) {
+        return waitingPassengers.remove(passenger);
+    }
+
+    @Override
+    public boolean isWaiting(Passenger passenger) {
+        return waitingPassengers.contains(passenger);
+    }
+
+    @Override
+    public int waitingCount() {
+        return waitingPassengers.size();
+    }
+
+    @Override
+    public List<Passenger> waiting() {
+        return Collections.unmodifiableList(new ArrayList<>(waitingPassengers));
+    }
+
+    @Override
+    public void enqueue(Route route, Passenger passenger) {
+        routeQueues.computeIfAbsent(route, e -> new ArrayDeque<>()).offer(passenger);
+    }
+
+    @Override
+    public Passenger poll(Route route) {
+        ArrayDeque<Passenger> queue = routeQueues.get(route);
+        if (queue == null) {
+            return null;
+        }
+        Passenger passenger = queue.poll();
+        if (queue.isEmpty()) {
+            routeQueues.remove(route);
+        }
+        return passenger;
+    }
+
+    @Override
+    public void requeue(Route route, List<Passenger> passengers) {
+        if (passengers.isEmpty()) {
+            return;
+        }
+        ArrayDeque<Passenger> queue = routeQueues.computeIfAbsent(route, e -> new ArrayDeque<>());
+        for (int i = passengers.size() - 1; i >= 0; i--) {
+            queue.offerFirst(passengers.get(i));
+        }
+    }
+
+    @Override
+    public void clear() {
+        vehicles.clear();
+        waitingPassengers.clear();
+        routeQueues.clear();
+    }
+}
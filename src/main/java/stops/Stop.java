@@ -1,13 +1,25 @@
 package stops;
 
+import events.NetworkEvents;
 import exceptions.NoNameException;
+import exceptions.TransportResult;
+import metrics.TransportMetrics;
+import network.NetworkVersion;
 import passengers.Passenger;
+import passengers.PassengerStore;
 import routes.Route;
+import utils.IntList;
+import utils.NameUtils;
 import vehicles.PublicTransport;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * 停靠站类
@@ -17,6 +29,21 @@ import java.util.Objects;
  */
 public class Stop {
 
+    /**
+     * 候车句柄槽位中已上车的标记
+     */
+    private static final int NO_HANDLE = -1;
+
+    /**
+     * 槽位数超过此值且一半以上已上车时压缩
+     */
+    private static final int COMPACT_THRESHOLD = 64;
+
+    /**
+     * 站点标识，创建时分配且不可变
+     */
+    private final int id;
+
     /**
      * 站名
      */
@@ -38,41 +65,121 @@ public class Stop {
     private List<Stop> neighbours;
 
     /**
-     * 有此站的所有线路
+     * 相邻站集合，用于O(1)判重
+     */
+    private Set<Stop> neighbourSet;
+
+    /**
+     * 相邻站修改次数，用于判断编译结果是否过期
+     */
+    private volatile int topologyVersion;
+
+    /**
+     * 有此站的所有线路，同一线路多次经过此站时出现多次
      */
     private List<Route> routes;
 
     /**
-     * 当前在此站的所有车辆
+     * 有此站的不同线路，按对象标识去重，用于入队
+     */
+    private List<Route> distinctRoutes;
+
+    private Set<Route> routeSet;
+
+    /**
+     * 在站车辆、候车乘客和按线路索引的候车队列
+     */
+    private StopStorage storage;
+
+    /**
+     * 列式存储中在此站候车的乘客句柄槽位，按到站先后排列，已上车的槽位为{@link #NO_HANDLE}，见{@link PassengerStore}
      */
-    private List<PublicTransport> vehicles;
+    private IntList waitingHandles;
 
     /**
-     * 当前在此站候车的乘客
+     * 候车句柄乘客人数
      */
-    private List<Passenger> waitingPassengers;
+    private int waitingHandleCount;
+
+    /**
+     * 线路 -> 目的站在线路上的候车句柄槽位，上客时按需建立
+     */
+    private Map<Route, HandleBucket> handleBuckets;
 
     public Stop(String name, int x, int y) {
+        this(name, x, y, new SequentialStopStorage());
+    }
+
+    /**
+     * 以指定存储构造，供子类改变状态的存储方式
+     *
+     * @param name
+     * @param x
+     * @param y
+     * @param storage
+     */
+    protected Stop(String name, int x, int y, StopStorage storage) {
         if (name == null || name.isEmpty()) {
             throw new NoNameException();
         }
+        this.id = StopRegistry.nextId();
         this.x = x;
         this.y = y;
-        this.name = name.replaceAll("[\\n,\\r]", "");
+        this.name = NameUtils.sanitize(name);
         this.neighbours = new ArrayList<>();
+        this.neighbourSet = new HashSet<>();
         this.routes = new ArrayList<>();
-        this.vehicles = new ArrayList<>();
-        this.waitingPassengers = new ArrayList<>();
+        this.distinctRoutes = new ArrayList<>();
+        this.routeSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.storage = storage;
+        this.waitingHandles = new IntList();
+        this.handleBuckets = new IdentityHashMap<>();
     }
 
     /**
      * 增加线路
+     * <p>
+     * 首次增加的线路上有候车乘客的目的站时，这些乘客进入此线路的候车队列
      *
      * @param route
      */
     public void addRoute(Route route) {
-        if (Objects.nonNull(route)) {
-            this.routes.add(route);
+        if (Objects.isNull(route)) {
+            return;
+        }
+        this.routes.add(route);
+        if (!routeSet.add(route)) {
+            return;
+        }
+        distinctRoutes.add(route);
+        if (storage.waitingCount() == 0) {
+            return;
+        }
+        for (Passenger passenger : storage.waiting()) {
+            Stop destination = passenger.getDestination();
+            if (Objects.nonNull(destination) && destination != this && route.containsStop(destination)) {
+                storage.enqueue(route, passenger);
+            }
+        }
+    }
+
+    /**
+     * 经过此站的线路新增了停靠站，由{@link Route#addStop(Stop)}调用
+     * <p>
+     * 前往新停靠站的候车乘客进入此线路的候车队列
+     *
+     * @param route
+     * @param destination 线路上首次出现的停靠站
+     */
+    public void addDestination(Route route, Stop destination) {
+        if (Objects.isNull(route) || Objects.isNull(destination) || destination == this
+                || storage.waitingCount() == 0 || !routeSet.contains(route)) {
+            return;
+        }
+        for (Passenger passenger : storage.waiting()) {
+            if (passenger.getDestination() == destination) {
+                storage.enqueue(route, passenger);
+            }
         }
     }
 
@@ -82,10 +189,12 @@ public class Stop {
      * @param neighbour
      */
     public void addNeighbouringStop(Stop neighbour) {
-        if (Objects.isNull(neighbour) || this.neighbours.contains(neighbour)) {
+        if (Objects.isNull(neighbour) || !this.neighbourSet.add(neighbour)) {
             return;
         }
         this.neighbours.add(neighbour);
+        topologyVersion++;
+        NetworkVersion.increment();
     }
 
     /**
@@ -94,9 +203,185 @@ public class Stop {
      * @param passenger
      */
     public void addPassenger(Passenger passenger) {
-        if (Objects.nonNull(passenger)) {
-            this.waitingPassengers.add(passenger);
+        if (Objects.nonNull(passenger) && storage.addWaiting(passenger)) {
+            if (NetworkEvents.isEnabled()) {
+                NetworkEvents.waiting(this, passenger);
+            }
+            enqueue(passenger);
+        }
+    }
+
+    /**
+     * 批量上车
+     * <p>
+     * 依次取出车辆所在线路的候车队列，在剩余载客量内让目的站位于车辆前方的乘客上车，
+     * 通过移除候车登记认领乘客，同一乘客只会被一辆车认领；其余乘客在本轮结束后放回队列。
+     * 车辆不在此站时不上客
+     *
+     * @param transport
+     * @return 上车人数
+     */
+    public int board(PublicTransport transport) {
+        if (!isAtStop(transport)) {
+            return 0;
+        }
+        //同一辆车不会被多个线程同时上客，剩余载客量只会被本线程减少
+        int remaining = transport.remainingCapacity();
+        Route route = transport.getRoute();
+        List<Passenger> skipped = null;
+        int boarded = 0;
+        Passenger passenger;
+        while (boarded < remaining && (passenger = storage.poll(route)) != null) {
+            //已离开此站的乘客直接清理
+            if (!storage.isWaiting(passenger)) {
+                continue;
+            }
+            if (!transport.isDownstream(passenger.getDestination())) {
+                if (skipped == null) {
+                    skipped = new ArrayList<>();
+                }
+                skipped.add(passenger);
+                continue;
+            }
+            if (storage.removeWaiting(passenger)) {
+                if (NetworkEvents.isEnabled()) {
+                    NetworkEvents.waitEnd(this, passenger);
+                }
+                addToTransport(transport, passenger);
+                boarded++;
+            }
+        }
+        if (skipped != null) {
+            storage.requeue(route, skipped);
+        }
+        if (boarded > 0 && TransportMetrics.isEnabled()) {
+            TransportMetrics.recordBoarding(this, route, boarded);
+        }
+        return boarded;
+    }
+
+    /**
+     * 列式存储中的乘客到站候车
+     *
+     * @param handle
+     * @param store
+     */
+    public void addPassengerHandle(int handle, PassengerStore store) {
+        store.moveToStop(handle, this);
+        waitingHandles.add(handle);
+        waitingHandleCount++;
+        if (NetworkEvents.isEnabled()) {
+            NetworkEvents.waitingHandle(this, handle);
+        }
+    }
+
+    /**
+     * 车辆上列式存储中的乘客在此站下车候车
+     *
+     * @param transport
+     * @param store
+     * @return 下车人数
+     */
+    public int alightHandles(PublicTransport transport, PassengerStore store) {
+        if (Objects.isNull(transport)) {
+            return 0;
+        }
+        IntList alighting = transport.alightHandlesAt(this, store);
+        for (int i = 0; i < alighting.size(); i++) {
+            addPassengerHandle(alighting.get(i), store);
+        }
+        return alighting.size();
+    }
+
+    /**
+     * 列式存储中的乘客批量上车，规则同{@link #board(PublicTransport)}
+     * <p>
+     * 只扫描目的站在车辆线路上的候车句柄；候车期间修改目的站的乘客按归入线路时的目的站上车，
+     * 线路停靠站变化后重新归入
+     *
+     * @param transport
+     * @param store
+     * @return 上车人数
+     */
+    public int boardHandles(PublicTransport transport, PassengerStore store) {
+        if (!isAtStop(transport)) {
+            return 0;
+        }
+        IntList slots = indexHandles(transport.getRoute(), store).slots;
+        int remaining = transport.remainingCapacity();
+        int boarded = 0;
+        int kept = 0;
+        int i = 0;
+        for (; i < slots.size() && boarded < remaining; i++) {
+            int slot = slots.get(i);
+            int handle = waitingHandles.get(slot);
+            //已乘其他线路的车离开
+            if (handle == NO_HANDLE) {
+                continue;
+            }
+            if (transport.isDownstream(store.getDestination(handle))
+                    && transport.tryAddPassengerHandle(handle) == TransportResult.SUCCESS) {
+                store.moveToVehicle(handle, transport.getId());
+                waitingHandles.set(slot, NO_HANDLE);
+                waitingHandleCount--;
+                boarded++;
+                continue;
+            }
+            slots.set(kept++, slot);
+        }
+        for (; i < slots.size(); i++) {
+            slots.set(kept++, slots.get(i));
+        }
+        slots.truncate(kept);
+        if (waitingHandles.size() > COMPACT_THRESHOLD && waitingHandleCount < waitingHandles.size() / 2) {
+            compactHandles();
+        }
+        if (boarded > 0 && TransportMetrics.isEnabled()) {
+            TransportMetrics.recordBoarding(this, transport.getRoute(), boarded);
+        }
+        return boarded;
+    }
+
+    /**
+     * 把新到站的候车句柄归入线路，线路停靠站变化后重新归入
+     *
+     * @param route
+     * @param store
+     * @return
+     */
+    private HandleBucket indexHandles(Route route, PassengerStore store) {
+        HandleBucket bucket = handleBuckets.get(route);
+        if (bucket == null || bucket.routeVersion != route.getTopologyVersion()) {
+            bucket = new HandleBucket(route.getTopologyVersion());
+            handleBuckets.put(route, bucket);
+        }
+        for (int slot = bucket.indexed; slot < waitingHandles.size(); slot++) {
+            int handle = waitingHandles.get(slot);
+            if (handle == NO_HANDLE) {
+                continue;
+            }
+            Stop destination = store.getDestination(handle);
+            if (Objects.nonNull(destination) && destination != this && route.containsStop(destination)) {
+                bucket.slots.add(slot);
+            }
         }
+        bucket.indexed = waitingHandles.size();
+        return bucket;
+    }
+
+    /**
+     * 移除已上车的槽位，槽位号改变后各线路在下次上客时重新归入
+     */
+    private void compactHandles() {
+        int kept = 0;
+        for (int i = 0; i < waitingHandles.size(); i++) {
+            int handle = waitingHandles.get(i);
+            if (handle != NO_HANDLE) {
+                waitingHandles.set(kept++, handle);
+            }
+        }
+        waitingHandles.truncate(kept);
+        handleBuckets.clear();
     }
 
     /**
@@ -106,7 +391,7 @@ public class Stop {
      * @return
      */
     public boolean isAtStop(PublicTransport transport) {
-        return Objects.nonNull(transport) && this.vehicles.contains(transport);
+        return Objects.nonNull(transport) && storage.containsVehicle(transport);
     }
 
     /**
@@ -115,17 +400,23 @@ public class Stop {
      * @param transport
      */
     public void transportArrive(PublicTransport transport) {
-        if (Objects.isNull(transport) || this.vehicles.contains(transport)) {
+        //记录车辆，同一车辆只有一个线程能登记成功
+        if (Objects.isNull(transport) || !storage.addVehicle(transport)) {
             return;
         }
 
-        //卸乘客
-        List<Passenger> unloadPassengers = transport.unload();
+        //下客，默认只有到达目的站的乘客下车
+        List<Passenger> unloadPassengers = transport.alightAt(this);
         //放站点
-        this.waitingPassengers.addAll(unloadPassengers);
-        //记录车辆
-        this.vehicles.add(transport);
-
+        for (Passenger passenger : unloadPassengers) {
+            addPassenger(passenger);
+        }
+        if (TransportMetrics.isEnabled()) {
+            TransportMetrics.recordArrival(this, storage.waitingCount());
+        }
+        if (NetworkEvents.isEnabled()) {
+            NetworkEvents.arrive(this, transport);
+        }
     }
 
     /**
@@ -136,17 +427,59 @@ public class Stop {
      */
     public void transportDepart(PublicTransport transport, Stop nextStop) {
         //车辆为空或下一站为空或车辆不在此站直接返回
-        if (Objects.isNull(transport) || Objects.isNull(nextStop) || !this.vehicles.contains(transport)) {
+        if (Objects.isNull(nextStop) || !transportLeave(transport)) {
             return;
         }
-        //离站
-        vehicles.remove(transport);
         //更新车辆停靠站
         transport.travelTo(nextStop);
         //下一站进站
         nextStop.transportArrive(transport);
     }
 
+    /**
+     * 车辆离站
+     * <p>
+     * 只把车辆移出此站，不前往下一站；由调用方决定何时到达下一站
+     *
+     * @param transport
+     * @return 车辆不在此站时返回false
+     */
+    public boolean transportLeave(PublicTransport transport) {
+        if (Objects.isNull(transport) || !storage.removeVehicle(transport)) {
+            return false;
+        }
+        if (TransportMetrics.isEnabled()) {
+            TransportMetrics.recordDeparture(this);
+        }
+        if (NetworkEvents.isEnabled()) {
+            NetworkEvents.depart(this, transport);
+        }
+        return true;
+    }
+
+    /**
+     * 恢复检查点状态
+     * <p>
+     * 替换候车乘客和在站车辆，不下客、不触发事件；列式存储的候车句柄不受影响。
+     * 调用期间不能有其他线程访问此站
+     *
+     * @param waiting 候车乘客，按候车先后排列
+     * @param present 在站车辆，按到站先后排列
+     */
+    public void restoreState(List<Passenger> waiting, List<PublicTransport> present) {
+        storage.clear();
+        for (Passenger passenger : waiting) {
+            if (Objects.nonNull(passenger) && storage.addWaiting(passenger)) {
+                enqueue(passenger);
+            }
+        }
+        for (PublicTransport transport : present) {
+            if (Objects.nonNull(transport)) {
+                storage.addVehicle(transport);
+            }
+        }
+    }
+
     /**
      * 计算两站距离
      * <p>
@@ -172,15 +505,12 @@ public class Stop {
             return false;
         }
         Stop stop = (Stop) o;
-        return x == stop.x &&
-                y == stop.y &&
-                Objects.equals(name, stop.name) &&
-                Objects.equals(routes, stop.routes);
+        return id == stop.id;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, x, y, routes);
+        return Integer.hashCode(id);
     }
 
     @Override
@@ -188,6 +518,10 @@ public class Stop {
         return this.name + ":" + this.x + ":" + this.y;
     }
 
+    public int getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -204,15 +538,132 @@ public class Stop {
         return neighbours;
     }
 
+    public int getTopologyVersion() {
+        return topologyVersion;
+    }
+
     public List<Route> getRoutes() {
         return routes;
     }
 
+    /**
+     * 在站车辆快照
+     * <p>
+     * 返回调用时的只读副本，之后的到站和离站不会反映到返回的列表中；需要最新状态时重新获取或使用{@link #isAtStop(PublicTransport)}
+     *
+     * @return
+     */
     public List<PublicTransport> getVehicles() {
-        return vehicles;
+        return storage.vehicles();
     }
 
+    /**
+     * 候车人数
+     *
+     * @return
+     */
+    public int waitingCount() {
+        return storage.waitingCount();
+    }
+
+    /**
+     * 在站车辆数
+     *
+     * @return
+     */
+    public int vehicleCount() {
+        return storage.vehicleCount();
+    }
+
+    /**
+     * 候车乘客快照
+     * <p>
+     * 返回调用时的只读副本，之后的候车和上车不会反映到返回的列表中，增加候车乘客使用{@link #addPassenger(Passenger)}
+     *
+     * @return
+     */
     public List<Passenger> getWaitingPassengers() {
-        return waitingPassengers;
+        return storage.waiting();
+    }
+
+    /**
+     * 候车句柄乘客快照
+     *
+     * @return
+     */
+    public int[] getWaitingHandles() {
+        int[] handles = new int[waitingHandleCount];
+        int count = 0;
+        for (int i = 0; i < waitingHandles.size(); i++) {
+            int handle = waitingHandles.get(i);
+            if (handle != NO_HANDLE) {
+                handles[count++] = handle;
+            }
+        }
+        return handles;
+    }
+
+    /**
+     * 候车句柄乘客人数
+     *
+     * @return
+     */
+    public int waitingHandleCount() {
+        return waitingHandleCount;
+    }
+
+    /**
+     * 乘客进入目的站所在线路的候车队列
+     *
+     * @param passenger
+     */
+    private void enqueue(Passenger passenger) {
+        Stop destination = passenger.getDestination();
+        if (Objects.isNull(destination) || destination == this) {
+            return;
+        }
+        for (int i = 0; i < distinctRoutes.size(); i++) {
+            Route route = distinctRoutes.get(i);
+            if (route.containsStop(destination)) {
+                storage.enqueue(route, passenger);
+            }
+        }
+    }
+
+    /**
+     * 乘客上车，调用前已确认有剩余载客量
+     *
+     * @param transport
+     * @param passenger
+     */
+    static void addToTransport(PublicTransport transport, Passenger passenger) {
+        TransportResult result = transport.tryAddPassenger(passenger);
+        if (result == TransportResult.ALREADY_ABOARD) {
+            throw new IllegalStateException("Passenger Already Aboard!");
+        }
+        if (result != TransportResult.SUCCESS) {
+            throw new IllegalStateException("Transport Is Full!");
+        }
+    }
+
+    /**
+     * 一条线路的候车句柄槽位
+     */
+    private static class HandleBucket {
+        private final IntList slots = new IntList();
+
+        /**
+         * 建立时的线路拓扑版本
+         */
+        private final int routeVersion;
+
+        /**
+         * 已归入的槽位上限
+         */
+        private int indexed;
+
+        private HandleBucket(int routeVersion) {
+            this.routeVersion = routeVersion;
+        }
     }
 }
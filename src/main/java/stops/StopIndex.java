@@ -0,0 +1,434 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 站点空间索引
+ * <p>
+ * 基于k-d树，每个节点记录子树包围盒，点到包围盒的曼哈顿距离作为剪枝下界。
+ * 节点按切分坐标、再按另一坐标比较，坐标完全相同的站点放在同一节点中，不会形成退化的长链。
+ * 支持增量插入，树深度超过阈值时整体重建为平衡树，查询复杂度保持对数级。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class StopIndex {
+
+    /**
+     * 深度阈值的常数余量
+     */
+    private static final int DEPTH_SLACK = 4;
+
+    /**
+     * 根节点
+     */
+    private Node root;
+
+    /**
+     * 已索引站点
+     */
+    private Set<Stop> indexed;
+
+    public StopIndex() {
+        this.indexed = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * 以指定站点批量构造平衡索引
+     *
+     * @param stops
+     */
+    public StopIndex(Collection<Stop> stops) {
+        this();
+        if (Objects.isNull(stops)) {
+            return;
+        }
+        List<Stop> stopList = new ArrayList<>();
+        for (Stop stop : stops) {
+            if (Objects.nonNull(stop) && indexed.add(stop)) {
+                stopList.add(stop);
+            }
+        }
+        root = build(stopList, 0, stopList.size(), true);
+    }
+
+    /**
+     * 增加站点，已索引的站点忽略
+     *
+     * @param stop
+     */
+    public void add(Stop stop) {
+        if (Objects.isNull(stop) || !indexed.add(stop)) {
+            return;
+        }
+        if (root == null) {
+            root = new Node(stop, true);
+            return;
+        }
+
+        int depth = 1;
+        Node node = root;
+        while (true) {
+            node.expand(stop);
+            int compare = node.compare(stop.getX(), stop.getY());
+            //同坐标的站点放入同一节点，不增加深度
+            if (compare == 0) {
+                node.addDuplicate(stop);
+                return;
+            }
+            boolean left = compare < 0;
+            Node child = left ? node.left : node.right;
+            depth++;
+            if (child == null) {
+                if (left) {
+                    node.left = new Node(stop, !node.splitX);
+                } else {
+                    node.right = new Node(stop, !node.splitX);
+                }
+                break;
+            }
+            node = child;
+        }
+
+        //深度超过2*log2(n)+常数时整体重建
+        if (depth > 2 * log2(indexed.size()) + DEPTH_SLACK) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 已索引站点数
+     *
+     * @return
+     */
+    public int size() {
+        return indexed.size();
+    }
+
+    /**
+     * 是否已索引
+     *
+     * @param stop
+     * @return
+     */
+    public boolean contains(Stop stop) {
+        return Objects.nonNull(stop) && indexed.contains(stop);
+    }
+
+    /**
+     * 树高度，空树为0
+     *
+     * @return
+     */
+    int depth() {
+        return depth(root);
+    }
+
+    private static int depth(Node node) {
+        return node == null ? 0 : 1 + Math.max(depth(node.left), depth(node.right));
+    }
+
+    /**
+     * 查找离指定点最近的k个站点，按距离升序
+     *
+     * @param x
+     * @param y
+     * @param k
+     * @return
+     */
+    public List<Stop> nearest(int x, int y, int k) {
+        if (k <= 0 || root == null) {
+            return new ArrayList<>();
+        }
+        //大顶堆，堆顶为当前第k近
+        PriorityQueue<Candidate> best = new PriorityQueue<>(k + 1, Comparator.reverseOrder());
+        nearest(root, x, y, k, best);
+
+        List<Stop> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().stop);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 查找离指定站点最近的k个站点(不含自身)
+     *
+     * @param stop
+     * @param k
+     * @return
+     */
+    public List<Stop> nearest(Stop stop, int k) {
+        if (Objects.isNull(stop)) {
+            return new ArrayList<>();
+        }
+        List<Stop> result = nearest(stop.getX(), stop.getY(), contains(stop) ? k + 1 : k);
+        result.removeIf(e -> e == stop);
+        if (result.size() > k) {
+            result.remove(result.size() - 1);
+        }
+        return result;
+    }
+
+    /**
+     * 查找与指定点曼哈顿距离不超过radius的所有站点
+     *
+     * @param x
+     * @param y
+     * @param radius
+     * @return
+     */
+    public List<Stop> withinDistance(int x, int y, int radius) {
+        List<Stop> result = new ArrayList<>();
+        if (radius >= 0) {
+            withinDistance(root, x, y, radius, result);
+        }
+        return result;
+    }
+
+    /**
+     * 查找落在包围盒[minX, maxX] x [minY, maxY]内的所有站点
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @return
+     */
+    public List<Stop> inBox(int minX, int minY, int maxX, int maxY) {
+        List<Stop> result = new ArrayList<>();
+        if (minX <= maxX && minY <= maxY) {
+            inBox(root, minX, minY, maxX, maxY, result);
+        }
+        return result;
+    }
+
+    /**
+     * 整体重建为平衡树
+     */
+    private void rebuild() {
+        List<Stop> stopList = new ArrayList<>(indexed);
+        root = build(stopList, 0, stopList.size(), true);
+    }
+
+    /**
+     * 以中位数切分递归构造
+     *
+     * @param stops
+     * @param from
+     * @param to
+     * @param splitX
+     * @return
+     */
+    private Node build(List<Stop> stops, int from, int to, boolean splitX) {
+        if (from >= to) {
+            return null;
+        }
+        Comparator<Stop> comparator = splitX
+                ? Comparator.comparingInt(Stop::getX).thenComparingInt(Stop::getY)
+                : Comparator.comparingInt(Stop::getY).thenComparingInt(Stop::getX);
+        stops.subList(from, to).sort(comparator);
+        int middle = (from + to) >>> 1;
+        //与中位数坐标相同的站点相邻排列，全部放入同一节点
+        int first = middle;
+        while (first > from && comparator.compare(stops.get(first - 1), stops.get(middle)) == 0) {
+            first--;
+        }
+        int last = middle + 1;
+        while (last < to && comparator.compare(stops.get(last), stops.get(middle)) == 0) {
+            last++;
+        }
+
+        Node node = new Node(stops.get(first), splitX);
+        for (int i = first + 1; i < last; i++) {
+            node.addDuplicate(stops.get(i));
+        }
+        node.left = build(stops, from, first, !splitX);
+        node.right = build(stops, last, to, !splitX);
+        node.include(node.left);
+        node.include(node.right);
+        return node;
+    }
+
+    private void nearest(Node node, int x, int y, int k, PriorityQueue<Candidate> best) {
+        if (node == null || (best.size() == k && node.distanceToBox(x, y) > best.peek().distance)) {
+            return;
+        }
+        int distance = Math.abs(node.stop.getX() - x) + Math.abs(node.stop.getY() - y);
+        offer(best, k, node.stop, distance);
+        if (node.duplicates != null) {
+            for (Stop duplicate : node.duplicates) {
+                offer(best, k, duplicate, distance);
+            }
+        }
+
+        //先访问查询点所在一侧
+        boolean left = node.compare(x, y) < 0;
+        nearest(left ? node.left : node.right, x, y, k, best);
+        nearest(left ? node.right : node.left, x, y, k, best);
+    }
+
+    private static void offer(PriorityQueue<Candidate> best, int k, Stop stop, int distance) {
+        if (best.size() < k) {
+            best.add(new Candidate(stop, distance));
+        } else if (distance < best.peek().distance) {
+            best.poll();
+            best.add(new Candidate(stop, distance));
+        }
+    }
+
+    private void withinDistance(Node node, int x, int y, int radius, List<Stop> result) {
+        if (node == null || node.distanceToBox(x, y) > radius) {
+            return;
+        }
+        if (Math.abs(node.stop.getX() - x) + Math.abs(node.stop.getY() - y) <= radius) {
+            node.collect(result);
+        }
+        withinDistance(node.left, x, y, radius, result);
+        withinDistance(node.right, x, y, radius, result);
+    }
+
+    private void inBox(Node node, int minX, int minY, int maxX, int maxY, List<Stop> result) {
+        if (node == null || node.maxX < minX || node.minX > maxX || node.maxY < minY || node.minY > maxY) {
+            return;
+        }
+        int x = node.stop.getX();
+        int y = node.stop.getY();
+        if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+            node.collect(result);
+        }
+        inBox(node.left, minX, minY, maxX, maxY, result);
+        inBox(node.right, minX, minY, maxX, maxY, result);
+    }
+
+    private static int log2(int n) {
+        return 31 - Integer.numberOfLeadingZeros(Math.max(n, 1));
+    }
+
+    /**
+     * 树节点
+     */
+    private static class Node {
+        private Stop stop;
+
+        /**
+         * 与stop坐标相同的其他站点，没有时为null
+         */
+        private List<Stop> duplicates;
+        private boolean splitX;
+        private Node left;
+        private Node right;
+        private int minX;
+        private int maxX;
+        private int minY;
+        private int maxY;
+
+        private Node(Stop stop, boolean splitX) {
+            this.stop = stop;
+            this.splitX = splitX;
+            this.minX = this.maxX = stop.getX();
+            this.minY = this.maxY = stop.getY();
+        }
+
+        /**
+         * 按切分坐标、再按另一坐标比较指定点与本节点
+         *
+         * @param x
+         * @param y
+         * @return 指定点在左子树一侧时小于0，坐标相同时为0
+         */
+        private int compare(int x, int y) {
+            int primary = splitX ? Integer.compare(x, stop.getX()) : Integer.compare(y, stop.getY());
+            if (primary != 0) {
+                return primary;
+            }
+            return splitX ? Integer.compare(y, stop.getY()) : Integer.compare(x, stop.getX());
+        }
+
+        private void addDuplicate(Stop duplicate) {
+            if (duplicates == null) {
+                duplicates = new ArrayList<>(2);
+            }
+            duplicates.add(duplicate);
+        }
+
+        /**
+         * 本节点的全部站点加入结果
+         *
+         * @param result
+         */
+        private void collect(List<Stop> result) {
+            result.add(stop);
+            if (duplicates != null) {
+                result.addAll(duplicates);
+            }
+        }
+
+        /**
+         * 包围盒扩展到包含指定站点
+         *
+         * @param stop
+         */
+        private void expand(Stop stop) {
+            minX = Math.min(minX, stop.getX());
+            maxX = Math.max(maxX, stop.getX());
+            minY = Math.min(minY, stop.getY());
+            maxY = Math.max(maxY, stop.getY());
+        }
+
+        /**
+         * 包围盒扩展到包含子树
+         *
+         * @param child
+         */
+        private void include(Node child) {
+            if (child == null) {
+                return;
+            }
+            minX = Math.min(minX, child.minX);
+            maxX = Math.max(maxX, child.maxX);
+            minY = Math.min(minY, child.minY);
+            maxY = Math.max(maxY, child.maxY);
+        }
+
+        /**
+         * 点到包围盒的曼哈顿距离
+         *
+         * @param x
+         * @param y
+         * @return
+         */
+        private int distanceToBox(int x, int y) {
+            int dx = x < minX ? minX - x : (x > maxX ? x - maxX : 0);
+            int dy = y < minY ? minY - y : (y > maxY ? y - maxY : 0);
+            return dx + dy;
+        }
+    }
+
+    /**
+     * 最近邻候选
+     */
+    private static class Candidate implements Comparable<Candidate> {
+        private Stop stop;
+        private int distance;
+
+        private Candidate(Stop stop, int distance) {
+            this.stop = stop;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            return Integer.compare(distance, o.distance);
+        }
+    }
+}
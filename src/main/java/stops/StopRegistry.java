@@ -0,0 +1,135 @@
+package stops;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 站点注册表
+ * <p>
+ * 每个站点创建时从全局序列分配不可变id，站点的相等性和哈希只取决于id。
+ * 注册表按id和站名建立索引，均为O(1)查找；同名站点只索引最先注册的一个。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class StopRegistry {
+
+    /**
+     * 全局站点id序列
+     */
+    private static final AtomicInteger ID_SEQUENCE = new AtomicInteger();
+
+    /**
+     * id -> 站点
+     */
+    private Map<Integer, Stop> stopsById;
+
+    /**
+     * 站名 -> 站点
+     */
+    private Map<String, Stop> stopsByName;
+
+    /**
+     * 按注册先后排列的站点
+     */
+    private List<Stop> stops;
+
+    public StopRegistry() {
+        this.stopsById = new HashMap<>();
+        this.stopsByName = new HashMap<>();
+        this.stops = new ArrayList<>();
+    }
+
+    /**
+     * 分配下一个站点id
+     *
+     * @return
+     */
+    static int nextId() {
+        return ID_SEQUENCE.getAndIncrement();
+    }
+
+    /**
+     * 创建并注册站点
+     *
+     * @param name
+     * @param x
+     * @param y
+     * @return
+     */
+    public Stop create(String name, int x, int y) {
+        Stop stop = new Stop(name, x, y);
+        register(stop);
+        return stop;
+    }
+
+    /**
+     * 注册站点
+     *
+     * @param stop
+     * @return 站点为空或已注册时返回false
+     */
+    public boolean register(Stop stop) {
+        if (Objects.isNull(stop) || stopsById.putIfAbsent(stop.getId(), stop) != null) {
+            return false;
+        }
+        stopsByName.putIfAbsent(stop.getName(), stop);
+        stops.add(stop);
+        return true;
+    }
+
+    /**
+     * 批量注册站点
+     *
+     * @param stops
+     */
+    public void registerAll(Collection<? extends Stop> stops) {
+        if (Objects.nonNull(stops)) {
+            stops.forEach(this::register);
+        }
+    }
+
+    /**
+     * 按id查找，未注册时返回null
+     *
+     * @param id
+     * @return
+     */
+    public Stop get(int id) {
+        return stopsById.get(id);
+    }
+
+    /**
+     * 按站名查找，未注册时返回null
+     *
+     * @param name
+     * @return
+     */
+    public Stop get(String name) {
+        return Objects.isNull(name) ? null : stopsByName.get(name);
+    }
+
+    /**
+     * 是否已注册
+     *
+     * @param stop
+     * @return
+     */
+    public boolean contains(Stop stop) {
+        return Objects.nonNull(stop) && stopsById.get(stop.getId()) == stop;
+    }
+
+    public int size() {
+        return stops.size();
+    }
+
+    public List<Stop> getStops() {
+        return Collections.unmodifiableList(stops);
+    }
+}
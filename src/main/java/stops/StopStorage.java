@@ -0,0 +1,102 @@
+package stops;
+
+import passengers.Passenger;
+import routes.Route;
+import vehicles.PublicTransport;
+
+import java.util.List;
+
+/**
+ * 站点状态存储
+ * <p>
+ * 保存在站车辆、候车乘客和按线路索引的候车队列。{@link Stop}的到站、离站、候车和上车逻辑都通过此接口访问状态，
+ * 子类通过构造时传入不同实现改变存储方式(如{@link ConcurrentStop}的线程安全存储)，而不是重新声明字段
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public interface StopStorage {
+
+    /**
+     * 登记在站车辆
+     *
+     * @param transport
+     * @return 已在站时返回false
+     */
+    boolean addVehicle(PublicTransport transport);
+
+    /**
+     * 移除在站车辆
+     *
+     * @param transport
+     * @return 不在站时返回false
+     */
+    boolean removeVehicle(PublicTransport transport);
+
+    boolean containsVehicle(PublicTransport transport);
+
+    int vehicleCount();
+
+    /**
+     * 在站车辆快照，按到站先后排列
+     *
+     * @return
+     */
+    List<PublicTransport> vehicles();
+
+    /**
+     * 登记候车乘客
+     *
+     * @param passenger
+     * @return 已在候车时返回false
+     */
+    boolean addWaiting(Passenger passenger);
+
+    /**
+     * 移除候车乘客，多个线程同时移除同一乘客时只有一个成功
+     *
+     * @param passenger
+     * @return 不在候车时返回false
+     */
+    boolean removeWaiting(Passenger passenger);
+
+    boolean isWaiting(Passenger passenger);
+
+    int waitingCount();
+
+    /**
+     * 候车乘客快照，按候车先后排列
+     *
+     * @return
+     */
+    List<Passenger> waiting();
+
+    /**
+     * 乘客进入线路候车队列
+     *
+     * @param route
+     * @param passenger
+     */
+    void enqueue(Route route, Passenger passenger);
+
+    /**
+     * 取出线路候车队列的队首乘客
+     *
+     * @param route
+     * @return 队列为空时返回null
+     */
+    Passenger poll(Route route);
+
+    /**
+     * 本轮未上车的乘客放回线路候车队列
+     *
+     * @param route
+     * @param passengers 按取出先后排列
+     */
+    void requeue(Route route, List<Passenger> passengers);
+
+    /**
+     * 清空全部状态
+     */
+    void clear();
+}
@@ -0,0 +1,192 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * 事件日历
+ * <p>
+ * 以并行基本类型数组实现的二叉小顶堆，按(时间, 入队序号)排序，
+ * 同一时刻的事件按入队先后出队，保证仿真结果确定。入队出队不产生对象分配。
+ * 除仿真外也作为通用的基本类型优先队列，如最短路搜索以距离为时间、站点编号为目标。
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class EventCalendar {
+
+    /**
+     * 默认初始容量
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * 事件时间
+     */
+    private long[] times;
+
+    /**
+     * 入队序号
+     */
+    private long[] sequences;
+
+    /**
+     * 事件类型
+     */
+    private int[] types;
+
+    /**
+     * 事件目标(车辆下标)
+     */
+    private int[] targets;
+
+    /**
+     * 堆大小
+     */
+    private int size;
+
+    /**
+     * 下一个入队序号
+     */
+    private long nextSequence;
+
+    public EventCalendar() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EventCalendar(int capacity) {
+        int initial = Math.max(capacity, 1);
+        this.times = new long[initial];
+        this.sequences = new long[initial];
+        this.types = new int[initial];
+        this.targets = new int[initial];
+    }
+
+    /**
+     * 入队
+     *
+     * @param time
+     * @param type
+     * @param target
+     */
+    public void schedule(long time, int type, int target) {
+        if (size == times.length) {
+            grow();
+        }
+        int i = size++;
+        long sequence = nextSequence++;
+        //上浮
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(time, sequence, times[parent], sequences[parent])) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, time, sequence, type, target);
+    }
+
+    /**
+     * 是否为空
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 队首事件时间，调用前需确认非空
+     *
+     * @return
+     */
+    public long peekTime() {
+        return times[0];
+    }
+
+    /**
+     * 队首事件类型，调用前需确认非空
+     *
+     * @return
+     */
+    public int peekType() {
+        return types[0];
+    }
+
+    /**
+     * 队首事件目标，调用前需确认非空
+     *
+     * @return
+     */
+    public int peekTarget() {
+        return targets[0];
+    }
+
+    /**
+     * 移除队首事件
+     */
+    public void remove() {
+        if (size == 0) {
+            return;
+        }
+        size--;
+        if (size == 0) {
+            return;
+        }
+        long time = times[size];
+        long sequence = sequences[size];
+        int type = types[size];
+        int target = targets[size];
+        //下沉
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && less(times[right], sequences[right], times[child], sequences[child])) {
+                child = right;
+            }
+            if (!less(times[child], sequences[child], time, sequence)) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        set(i, time, sequence, type, target);
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        size = 0;
+        nextSequence = 0;
+    }
+
+    private static boolean less(long time, long sequence, long otherTime, long otherSequence) {
+        return time < otherTime || (time == otherTime && sequence < otherSequence);
+    }
+
+    private void move(int from, int to) {
+        set(to, times[from], sequences[from], types[from], targets[from]);
+    }
+
+    private void set(int i, long time, long sequence, int type, int target) {
+        times[i] = time;
+        sequences[i] = sequence;
+        types[i] = type;
+        targets[i] = target;
+    }
+
+    private void grow() {
+        int capacity = times.length << 1;
+        times = Arrays.copyOf(times, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+        types = Arrays.copyOf(types, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+    }
+}
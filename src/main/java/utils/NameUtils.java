@@ -0,0 +1,45 @@
+package utils;
+
+/**
+ * 名称工具
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public final class NameUtils {
+
+    private NameUtils() {
+    }
+
+    /**
+     * 去掉名称中的换行、回车和逗号，与replaceAll("[\\n,\\r]", "")结果相同
+     * <p>
+     * 名称通常不含这些字符，此时原样返回，不编译正则也不分配新字符串
+     *
+     * @param name 非空
+     * @return
+     */
+    public static String sanitize(String name) {
+        int length = name.length();
+        int i = 0;
+        while (i < length && !isForbidden(name.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return name;
+        }
+        StringBuilder stringBuilder = new StringBuilder(length - 1);
+        stringBuilder.append(name, 0, i);
+        for (i++; i < length; i++) {
+            char c = name.charAt(i);
+            if (!isForbidden(c)) {
+                stringBuilder.append(c);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    private static boolean isForbidden(char c) {
+        return c == '\n' || c == '\r' || c == ',';
+    }
+}
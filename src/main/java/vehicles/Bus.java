@@ -1,6 +1,7 @@
 package vehicles;
 
 import routes.Route;
+import utils.NameUtils;
 
 /**
  * 巴士
@@ -21,7 +22,7 @@ public class Bus extends PublicTransport {
             this.registrationNumber = "";
             return;
         }
-        this.registrationNumber = registrationNumber.replaceAll("[\\n,\\r]", "");
+        this.registrationNumber = NameUtils.sanitize(registrationNumber);
     }
 
     public String getRegistrationNumber() {
@@ -2,6 +2,7 @@ package vehicles;
 
 import routes.BusRoute;
 import routes.Route;
+import utils.NameUtils;
 
 import java.util.Objects;
 
@@ -27,7 +28,7 @@ public class Ferry extends PublicTransport {
             this.ferryType = DEFAULT_TYPE;
             return;
         }
-        this.ferryType = ferryType.replaceAll("[\\n,\\r]", "");
+        this.ferryType = NameUtils.sanitize(ferryType);
     }
 
     public String getFerryType() {
@@ -1,13 +1,22 @@
 package vehicles;
 
-import exceptions.EmptyRouteException;
+import events.NetworkEvents;
 import exceptions.OverCapacityException;
+import exceptions.TransportResult;
+import metrics.TransportMetrics;
 import passengers.Passenger;
+import passengers.PassengerStore;
 import routes.Route;
+import routes.RouteCursor;
 import stops.Stop;
+import utils.IntList;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -18,6 +27,18 @@ import java.util.Objects;
  */
 public abstract class PublicTransport {
 
+    /**
+     * 上下车凭证
+     * <p>
+     * 只有PublicTransport能取得实例，保证{@link Passenger#getVehicle()}只随车辆上下客变化
+     */
+    public static final class Boarding {
+        private static final Boarding INSTANCE = new Boarding();
+
+        private Boarding() {
+        }
+    }
+
     /**
      * 标识id
      */
@@ -39,9 +60,29 @@ public abstract class PublicTransport {
     private Stop currentStop;
 
     /**
-     * 所载乘客
+     * 线路位置游标
+     */
+    private RouteCursor cursor;
+
+    /**
+     * 所载乘客，按上车时的目的站分组
+     */
+    private Map<Stop, List<Passenger>> passengers;
+
+    /**
+     * 列式存储中所载乘客的句柄，见{@link PassengerStore}
+     */
+    private IntList passengerHandles;
+
+    /**
+     * 当前人数(含句柄乘客)
+     */
+    private int passengerCount;
+
+    /**
+     * 到站下客方式
      */
-    private List<Passenger> passengers;
+    private UnloadMode unloadMode;
 
     public PublicTransport(int id, int capacity, Route route) {
         if (Objects.isNull(route)) {
@@ -51,12 +92,11 @@ public abstract class PublicTransport {
         this.id = id;
         this.capacity = capacity < 0 ? 0 : capacity;
         this.route = route;
-        this.passengers = new ArrayList<>();
-        try {
-            this.currentStop = route.getStartStop();
-        } catch (EmptyRouteException e) {
-            this.currentStop = null;
-        }
+        this.cursor = new RouteCursor(route);
+        this.passengers = new IdentityHashMap<>();
+        this.passengerHandles = new IntList();
+        this.unloadMode = UnloadMode.DESTINATION;
+        this.currentStop = route.findStartStop();
     }
 
     /**
@@ -65,7 +105,7 @@ public abstract class PublicTransport {
      * @return
      */
     public int passengerCount() {
-        return passengers.size();
+        return passengerCount;
     }
 
     /**
@@ -84,16 +124,137 @@ public abstract class PublicTransport {
      * @throws OverCapacityException
      */
     public void addPassenger(Passenger passenger) throws OverCapacityException {
+        TransportResult result = tryAddPassenger(passenger);
+        //人已满抛OverCapacityException
+        if (result == TransportResult.OVER_CAPACITY) {
+            throw OverCapacityException.INSTANCE;
+        }
+        if (result == TransportResult.ALREADY_ABOARD) {
+            throw new IllegalStateException("Passenger Already Aboard!");
+        }
+    }
+
+    /**
+     * 指定乘客上车，不抛异常
+     *
+     * @param passenger
+     * @return 人已满返回OVER_CAPACITY，乘客已在此车或其他车上返回ALREADY_ABOARD
+     */
+    public TransportResult tryAddPassenger(Passenger passenger) {
         if (Objects.isNull(passenger)) {
-            return;
+            return TransportResult.IGNORED;
+        }
+        if (passengerCount >= capacity) {
+            if (TransportMetrics.isEnabled()) {
+                TransportMetrics.recordCapacityRejection(route);
+            }
+            return TransportResult.OVER_CAPACITY;
+        }
+        if (Objects.nonNull(passenger.getVehicle())) {
+            return TransportResult.ALREADY_ABOARD;
         }
 
-        //人已满抛OverCapacityException
-        if (passengers.size() >= capacity) {
-            throw new OverCapacityException();
+        passengers.computeIfAbsent(passenger.getDestination(), e -> new ArrayList<>()).add(passenger);
+        passenger.setVehicle(this, Boarding.INSTANCE);
+        passengerCount++;
+        if (NetworkEvents.isEnabled()) {
+            NetworkEvents.board(this, passenger);
         }
+        return TransportResult.SUCCESS;
+    }
+
+    /**
+     * 批量上车，按顺序上车直到满载
+     *
+     * @param passengers
+     * @return 上车人数
+     */
+    public int tryAddPassengers(List<? extends Passenger> passengers) {
+        if (Objects.isNull(passengers)) {
+            return 0;
+        }
+        int added = 0;
+        for (Passenger passenger : passengers) {
+            if (passengerCount >= capacity) {
+                if (TransportMetrics.isEnabled()) {
+                    TransportMetrics.recordCapacityRejection(route);
+                }
+                break;
+            }
+            if (tryAddPassenger(passenger) == TransportResult.SUCCESS) {
+                added++;
+            }
+        }
+        return added;
+    }
 
-        passengers.add(passenger);
+    /**
+     * 列式存储中的乘客上车，与乘客对象共用载客量
+     *
+     * @param handle
+     * @return 人已满返回OVER_CAPACITY
+     */
+    public TransportResult tryAddPassengerHandle(int handle) {
+        if (passengerCount >= capacity) {
+            if (TransportMetrics.isEnabled()) {
+                TransportMetrics.recordCapacityRejection(route);
+            }
+            return TransportResult.OVER_CAPACITY;
+        }
+        passengerHandles.add(handle);
+        passengerCount++;
+        if (NetworkEvents.isEnabled()) {
+            NetworkEvents.boardHandle(this, handle);
+        }
+        return TransportResult.SUCCESS;
+    }
+
+    /**
+     * 列式存储中目的站为此站或没有目的站的乘客下车，保持上车顺序
+     *
+     * @param stop
+     * @param store
+     * @return 下车乘客句柄
+     */
+    public IntList alightHandlesAt(Stop stop, PassengerStore store) {
+        IntList alighting = new IntList();
+        int stopId = Objects.isNull(stop) ? PassengerStore.NO_STOP : stop.getId();
+        int kept = 0;
+        for (int i = 0; i < passengerHandles.size(); i++) {
+            int handle = passengerHandles.get(i);
+            int destination = store.getDestinationId(handle);
+            if (unloadMode == UnloadMode.ALL || destination == stopId || destination == PassengerStore.NO_STOP) {
+                alighting.add(handle);
+            } else {
+                passengerHandles.set(kept++, handle);
+            }
+        }
+        passengerHandles.truncate(kept);
+        passengerCount -= alighting.size();
+        if (NetworkEvents.isEnabled()) {
+            for (int i = 0; i < alighting.size(); i++) {
+                NetworkEvents.alightHandle(this, alighting.get(i));
+            }
+        }
+        return alighting;
+    }
+
+    /**
+     * 所载句柄乘客快照
+     *
+     * @return
+     */
+    public int[] getPassengerHandles() {
+        return passengerHandles.toArray();
+    }
+
+    /**
+     * 剩余载客量
+     *
+     * @return
+     */
+    public int remainingCapacity() {
+        return capacity - passengerCount;
     }
 
     /**
@@ -103,10 +264,28 @@ public abstract class PublicTransport {
      * @return
      */
     public boolean removePassenger(Passenger passenger) {
-        if (Objects.nonNull(passenger) && passengers.contains(passenger)) {
-            return passengers.remove(passenger);
+        if (Objects.isNull(passenger) || !removeFromGroup(passenger.getDestination(), passenger)) {
+            return false;
         }
-        return false;
+        passengerCount--;
+        passenger.setVehicle(null, Boarding.INSTANCE);
+        if (NetworkEvents.isEnabled()) {
+            NetworkEvents.alight(this, passenger);
+        }
+        return true;
+    }
+
+    /**
+     * 车上乘客修改目的站后按新目的站重新分组，由{@link Passenger#setDestination(Stop)}调用
+     *
+     * @param passenger
+     * @param previous  原目的站
+     */
+    public void changeDestination(Passenger passenger, Stop previous) {
+        if (Objects.isNull(passenger) || !removeFromGroup(previous, passenger)) {
+            return;
+        }
+        passengers.computeIfAbsent(passenger.getDestination(), e -> new ArrayList<>()).add(passenger);
     }
 
     /**
@@ -115,12 +294,50 @@ public abstract class PublicTransport {
      * @return
      */
     public List<Passenger> unload() {
-        List<Passenger> unloadPassenger = new ArrayList<>();
-        unloadPassenger.addAll(passengers);
+        List<Passenger> unloadPassenger = new ArrayList<>(passengerCount);
+        passengers.values().forEach(unloadPassenger::addAll);
         passengers.clear();
+        unloadPassenger.forEach(e -> e.setVehicle(null, Boarding.INSTANCE));
+        //句柄乘客不受影响，由alightHandlesAt下车
+        passengerCount = passengerHandles.size();
+        if (NetworkEvents.isEnabled()) {
+            unloadPassenger.forEach(e -> NetworkEvents.alight(this, e));
+        }
         return unloadPassenger;
     }
 
+    /**
+     * 到站下客
+     * <p>
+     * DESTINATION方式下只移出目的站为此站和没有目的站的乘客，耗时与下车人数成正比。
+     * 乘客按目的站分组，车上修改目的站时重新分组，在修改后的目的站下车；
+     * ALL方式下等同{@link #unload()}
+     *
+     * @param stop
+     * @return 下车乘客
+     */
+    public List<Passenger> alightAt(Stop stop) {
+        if (unloadMode == UnloadMode.ALL) {
+            return unload();
+        }
+        List<Passenger> alighting = passengers.remove(stop);
+        List<Passenger> noDestination = Objects.isNull(stop) ? null : passengers.remove(null);
+        if (alighting == null) {
+            alighting = noDestination;
+        } else if (noDestination != null) {
+            alighting.addAll(noDestination);
+        }
+        if (alighting == null) {
+            return Collections.emptyList();
+        }
+        passengerCount -= alighting.size();
+        alighting.forEach(e -> e.setVehicle(null, Boarding.INSTANCE));
+        if (NetworkEvents.isEnabled()) {
+            alighting.forEach(e -> NetworkEvents.alight(this, e));
+        }
+        return alighting;
+    }
+
     /**
      * 前往指定站
      *
@@ -128,12 +345,56 @@ public abstract class PublicTransport {
      */
     public void travelTo(Stop stop) {
         //指定站空或不在线路内时，交通工具不动
-        if (Objects.isNull(stop) || Objects.isNull(route.getStopsOnRoute()) || !route.getStopsOnRoute().contains(stop)) {
+        if (!route.containsStop(stop)) {
             return;
         }
+        cursor.moveTo(stop);
         this.currentStop = stop;
     }
 
+    /**
+     * 恢复检查点状态
+     * <p>
+     * 替换所载乘客和线路位置，不触发事件；列式存储的句柄乘客不受影响
+     *
+     * @param position  线路上的位置
+     * @param direction 行驶方向
+     * @param loaded    所载乘客
+     */
+    public void restoreState(int position, int direction, List<Passenger> loaded) {
+        cursor.restore(position, direction);
+        this.currentStop = cursor.current();
+        passengers.values().forEach(e -> e.forEach(p -> p.setVehicle(null, Boarding.INSTANCE)));
+        passengers.clear();
+        for (Passenger passenger : loaded) {
+            if (Objects.nonNull(passenger)) {
+                passengers.computeIfAbsent(passenger.getDestination(), e -> new ArrayList<>()).add(passenger);
+                passenger.setVehicle(this, Boarding.INSTANCE);
+            }
+        }
+        passengerCount = passengerHandles.size();
+        passengers.values().forEach(e -> passengerCount += e.size());
+    }
+
+    /**
+     * 线路上的下一站
+     *
+     * @return
+     */
+    public Stop nextStop() {
+        return cursor.peekNext();
+    }
+
+    /**
+     * 指定站是否在车辆前方
+     *
+     * @param stop
+     * @return
+     */
+    public boolean isDownstream(Stop stop) {
+        return cursor.isDownstream(stop);
+    }
+
     @Override
     public String toString() {
         //格式:{type} number {id} ({capacity}) on route {route}
@@ -156,7 +417,52 @@ public abstract class PublicTransport {
         return currentStop;
     }
 
+    public RouteCursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * 所载乘客快照
+     * <p>
+     * 乘客按目的站分组保存，没有可直接返回的列表；返回调用时的只读副本，按目的站分组排列，之后的上下车不会反映到返回的列表中
+     *
+     * @return
+     */
     public List<Passenger> getPassengers() {
-        return passengers;
+        List<Passenger> snapshot = new ArrayList<>(passengerCount);
+        passengers.values().forEach(snapshot::addAll);
+        return Collections.unmodifiableList(snapshot);
+    }
+
+    public UnloadMode getUnloadMode() {
+        return unloadMode;
+    }
+
+    public void setUnloadMode(UnloadMode unloadMode) {
+        this.unloadMode = Objects.isNull(unloadMode) ? UnloadMode.DESTINATION : unloadMode;
+    }
+
+    /**
+     * 从目的站分组中移除乘客，分组为空时一并移除
+     *
+     * @param destination
+     * @param passenger
+     * @return
+     */
+    private boolean removeFromGroup(Stop destination, Passenger passenger) {
+        List<Passenger> group = passengers.get(destination);
+        if (group == null) {
+            return false;
+        }
+        for (Iterator<Passenger> iterator = group.iterator(); iterator.hasNext(); ) {
+            if (iterator.next() == passenger) {
+                iterator.remove();
+                if (group.isEmpty()) {
+                    passengers.remove(destination);
+                }
+                return true;
+            }
+        }
+        return false;
     }
 }
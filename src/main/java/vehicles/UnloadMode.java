@@ -0,0 +1,20 @@
+package vehicles;
+
+/**
+ * 到站下客方式
+ *
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public enum UnloadMode {
+
+    /**
+     * 只有目的站为本站(或没有目的站)的乘客下车
+     */
+    DESTINATION,
+
+    /**
+     * 每站清客，所有乘客下车
+     */
+    ALL
+}
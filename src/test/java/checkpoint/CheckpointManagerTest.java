@@ -0,0 +1,198 @@
+package checkpoint;
+
+import events.NetworkEvents;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import passengers.ConcessionPassenger;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class CheckpointManagerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService executor;
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        directory = folder.getRoot().toPath().resolve("checkpoints");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        NetworkEvents.clear();
+        executor.shutdown();
+    }
+
+    @Test
+    public void restore() throws Exception {
+        Route route = network();
+        List<Stop> stops = route.getStopsOnRoute();
+        PublicTransport bus1 = route.getTransports().get(0);
+        PublicTransport bus2 = route.getTransports().get(1);
+        CheckpointManager manager = new CheckpointManager(directory, Collections.singletonList(route), executor, 3);
+        NetworkEvents.register(manager);
+
+        stops.get(0).addPassenger(new Passenger("a", stops.get(2)));
+        stops.get(0).addPassenger(new ConcessionPassenger("b", stops.get(1), 420001));
+        stops.get(1).addPassenger(new Passenger("c", null));
+        bus1.travelTo(stops.get(0));
+        stops.get(0).transportArrive(bus1);
+        stops.get(0).board(bus1);
+        Assert.assertTrue(manager.checkpoint().get().toString().endsWith(".full"));
+        Assert.assertEquals(0, manager.dirtyStopCount());
+
+        //只有bus1和它经过的站点变化
+        stops.get(0).transportDepart(bus1, stops.get(1));
+        Assert.assertEquals(2, manager.dirtyStopCount());
+        Assert.assertEquals(1, manager.dirtyVehicleCount());
+        Assert.assertTrue(manager.checkpoint().get().toString().endsWith(".delta"));
+        bus2.travelTo(stops.get(2));
+        stops.get(2).transportArrive(bus2);
+        manager.checkpoint();
+        manager.awaitWrites();
+        NetworkEvents.unregister(manager);
+
+        //按相同顺序构造的新网络
+        Route restoredRoute = network();
+        List<Stop> restoredStops = restoredRoute.getStopsOnRoute();
+        PublicTransport restoredBus1 = restoredRoute.getTransports().get(0);
+        PublicTransport restoredBus2 = restoredRoute.getTransports().get(1);
+        CheckpointManager restorer = new CheckpointManager(directory, Collections.singletonList(restoredRoute),
+                executor, 3);
+        Assert.assertEquals(2, restorer.restore());
+
+        Assert.assertEquals(restoredStops.get(1), restoredBus1.getCurrentStop());
+        Assert.assertEquals(1, restoredBus1.getCursor().getPosition());
+        Assert.assertTrue(restoredStops.get(1).isAtStop(restoredBus1));
+        Assert.assertTrue(restoredStops.get(2).isAtStop(restoredBus2));
+        Assert.assertFalse(restoredStops.get(0).isAtStop(restoredBus1));
+        Assert.assertEquals(bus1.passengerCount(), restoredBus1.passengerCount());
+        Assert.assertEquals(names(bus1.getPassengers()), names(restoredBus1.getPassengers()));
+        for (int i = 0; i < stops.size(); i++) {
+            Assert.assertEquals(names(stops.get(i).getWaitingPassengers()),
+                    names(restoredStops.get(i).getWaitingPassengers()));
+        }
+        Passenger concession = restoredStops.get(1).getWaitingPassengers().stream()
+                .filter(e -> e instanceof ConcessionPassenger).findFirst().orElse(null);
+        Assert.assertNotNull(concession);
+        Assert.assertEquals(420001, ((ConcessionPassenger) concession).getConcessionId());
+
+        //第三个检查点之后回到全量，全量写完后删除之前的文件
+        Assert.assertTrue(manager.checkpoint().get().toString().endsWith(".full"));
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void writeFailure() throws Exception {
+        Route route = network();
+        List<Stop> stops = route.getStopsOnRoute();
+        PublicTransport bus1 = route.getTransports().get(0);
+        CheckpointManager manager = new CheckpointManager(directory, Collections.singletonList(route), executor, 3);
+        NetworkEvents.register(manager);
+
+        //目录位置被普通文件占用，写入失败
+        Files.write(directory, new byte[0]);
+        stops.get(0).addPassenger(new Passenger("a", stops.get(2)));
+        try {
+            manager.checkpoint().join();
+            Assert.fail();
+        } catch (CompletionException e) {
+            //预期写入失败
+        }
+
+        //失败的检查点中的变化由下一个全量补上，之后的写入照常进行
+        Files.delete(directory);
+        bus1.travelTo(stops.get(0));
+        stops.get(0).transportArrive(bus1);
+        stops.get(0).board(bus1);
+        Assert.assertTrue(manager.checkpoint().get().toString().endsWith(".full"));
+        try {
+            manager.awaitWrites();
+            Assert.fail();
+        } catch (IOException e) {
+            //报告之前的失败
+        }
+        manager.awaitWrites();
+        NetworkEvents.unregister(manager);
+
+        Route restoredRoute = network();
+        CheckpointManager restorer = new CheckpointManager(directory, Collections.singletonList(restoredRoute),
+                executor, 3);
+        Assert.assertEquals(1, restorer.restore());
+        Assert.assertEquals(names(bus1.getPassengers()), names(restoredRoute.getTransports().get(0).getPassengers()));
+        Assert.assertTrue(restoredRoute.getStopsOnRoute().get(0).isAtStop(restoredRoute.getTransports().get(0)));
+    }
+
+    @Test
+    public void existingDirectory() throws Exception {
+        Route route = network();
+        List<Stop> stops = route.getStopsOnRoute();
+        CheckpointManager first = new CheckpointManager(directory, Collections.singletonList(route), executor, 3);
+        first.checkpoint();
+        first.checkpoint();
+        first.awaitWrites();
+
+        //未先恢复的新管理器接着已有序号写入，全量写完后删除之前运行的文件
+        stops.get(0).addPassenger(new Passenger("late", stops.get(2)));
+        CheckpointManager second = new CheckpointManager(directory, Collections.singletonList(route), executor, 3);
+        Assert.assertTrue(second.checkpoint().get().getFileName().toString().endsWith("2.full"));
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(1, files.count());
+        }
+
+        Route restoredRoute = network();
+        CheckpointManager restorer = new CheckpointManager(directory, Collections.singletonList(restoredRoute),
+                executor, 3);
+        Assert.assertEquals(2, restorer.restore());
+        Assert.assertEquals(Collections.singletonList("late"),
+                names(restoredRoute.getStopsOnRoute().get(0).getWaitingPassengers()));
+    }
+
+    @Test
+    public void empty() throws Exception {
+        CheckpointManager manager = new CheckpointManager(directory, Collections.singletonList(network()), executor);
+        Assert.assertEquals(-1, manager.restore());
+    }
+
+    private Route network() {
+        Route route = new BusRoute(1, "route1");
+        route.addStop(new Stop("s0", 0, 0));
+        route.addStop(new Stop("s1", 10, 0));
+        route.addStop(new Stop("s2", 20, 0));
+        route.tryAddTransport(new Bus(1, 30, route, "BUS1"));
+        route.tryAddTransport(new Bus(2, 30, route, "BUS2"));
+        return route;
+    }
+
+    private static List<String> names(List<Passenger> passengers) {
+        return passengers.stream().map(Passenger::getName).sorted().collect(Collectors.toList());
+    }
+}
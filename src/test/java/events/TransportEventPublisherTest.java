@@ -0,0 +1,184 @@
+package events;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Ferry;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class TransportEventPublisherTest {
+    private Stop stop1;
+    private Stop stop2;
+    private Route busRoute;
+    private PublicTransport bus;
+    private PublicTransport ferry;
+    private TransportEventPublisher publisher;
+
+    @Before
+    public void setUp() throws Exception {
+        stop1 = new Stop("stop1", 0, 0);
+        stop2 = new Stop("stop2", 10, 0);
+        busRoute = new BusRoute(1, "bus");
+        busRoute.addStop(stop1);
+        busRoute.addStop(stop2);
+        Route ferryRoute = new FerryRoute(2, "ferry");
+        ferryRoute.addStop(stop1);
+        ferryRoute.addStop(stop2);
+        bus = new Bus(1, 30, busRoute, "BUS1");
+        ferry = new Ferry(2, 30, ferryRoute, "CityCat");
+        //同步执行器，送达在发布线程上完成
+        publisher = new TransportEventPublisher(Runnable::run);
+        NetworkEvents.register(publisher);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        NetworkEvents.clear();
+    }
+
+    @Test
+    public void filter() {
+        Recorder buses = new Recorder(Long.MAX_VALUE);
+        Recorder atStop2 = new Recorder(Long.MAX_VALUE);
+        publisher.subscribe(buses, TransportEvent.ofType("bus"), OverflowPolicy.DROP_OLDEST, 16);
+        publisher.subscribe(atStop2, TransportEvent.atStop(stop2), OverflowPolicy.DROP_OLDEST, 16);
+
+        stop1.addPassenger(new Passenger("p", stop2));
+        stop1.transportArrive(bus);
+        stop1.transportArrive(ferry);
+        stop1.board(bus);
+        stop1.transportDepart(bus, stop2);
+
+        Assert.assertEquals(4, buses.events.size());
+        Assert.assertEquals(TransportEvent.Kind.ARRIVAL, buses.events.get(0).getKind());
+        Assert.assertEquals(TransportEvent.Kind.BOARDING, buses.events.get(1).getKind());
+        Assert.assertEquals(TransportEvent.Kind.DEPARTURE, buses.events.get(2).getKind());
+        Assert.assertEquals(stop2, buses.events.get(3).getStop());
+        Assert.assertEquals(1, atStop2.events.size());
+        Assert.assertEquals(busRoute, atStop2.events.get(0).getRoute());
+    }
+
+    @Test
+    public void overflow() {
+        Recorder oldest = new Recorder(0);
+        Recorder newest = new Recorder(0);
+        Recorder coalesce = new Recorder(0);
+        publisher.subscribe(oldest, null, OverflowPolicy.DROP_OLDEST, 2);
+        publisher.subscribe(newest, null, OverflowPolicy.DROP_NEWEST, 2);
+        publisher.subscribe(coalesce, null, OverflowPolicy.COALESCE, 2);
+
+        //订阅者没有请求，发布不阻塞
+        stop1.transportArrive(bus);
+        stop1.transportLeave(bus);
+        stop1.transportArrive(ferry);
+        stop2.transportArrive(bus);
+        Assert.assertTrue(oldest.events.isEmpty());
+
+        oldest.subscription.request(10);
+        newest.subscription.request(10);
+        coalesce.subscription.request(10);
+        Assert.assertEquals(ferry, oldest.events.get(0).getTransport());
+        Assert.assertEquals(stop2, oldest.events.get(1).getStop());
+        Assert.assertEquals(TransportEvent.Kind.ARRIVAL, newest.events.get(0).getKind());
+        Assert.assertEquals(TransportEvent.Kind.DEPARTURE, newest.events.get(1).getKind());
+        //bus在stop1的到站和离站合并为离站，缓冲区满后丢弃最早的
+        Assert.assertEquals(2, coalesce.events.size());
+        Assert.assertEquals(ferry, coalesce.events.get(0).getTransport());
+        Assert.assertEquals(stop2, coalesce.events.get(1).getStop());
+        Assert.assertEquals(2 + 2 + 2, publisher.getDroppedCount());
+    }
+
+    @Test
+    public void close() {
+        Recorder recorder = new Recorder(1);
+        publisher.subscribe(recorder);
+        stop1.transportArrive(bus);
+        stop1.transportLeave(bus);
+        publisher.close();
+        Assert.assertFalse(NetworkEvents.isEnabled());
+        Assert.assertFalse(recorder.completed);
+        recorder.subscription.request(1);
+        Assert.assertEquals(2, recorder.events.size());
+        Assert.assertTrue(recorder.completed);
+        Assert.assertEquals(0, publisher.subscriberCount());
+    }
+
+    @Test
+    public void cancel() {
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        publisher.subscribe(recorder);
+        stop1.transportArrive(bus);
+        recorder.subscription.cancel();
+        stop1.transportLeave(bus);
+        Assert.assertEquals(1, recorder.events.size());
+        Assert.assertEquals(0, publisher.subscriberCount());
+    }
+
+    @Test
+    public void invalidRequest() {
+        //请求非正数时错误在送达任务中发出，不在请求线程上直接回调
+        List<Runnable> tasks = new ArrayList<>();
+        TransportEventPublisher queued = new TransportEventPublisher(tasks::add);
+        Recorder recorder = new Recorder(0);
+        queued.subscribe(recorder);
+        recorder.subscription.request(0);
+        Assert.assertNull(recorder.error);
+        Assert.assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        Assert.assertTrue(recorder.error instanceof IllegalArgumentException);
+        Assert.assertEquals(0, queued.subscriberCount());
+    }
+
+    /**
+     * 记录收到的事件，订阅时请求指定数量
+     */
+    private static class Recorder implements Flow.Subscriber<TransportEvent> {
+        private final long initialRequest;
+        private final List<TransportEvent> events = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private boolean completed;
+        private Throwable error;
+
+        private Recorder(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(TransportEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package journal;
+
+import events.NetworkEvents;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import passengers.Passenger;
+import passengers.PassengerStore;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class EventJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AtomicLong clock;
+    private Path directory;
+    private Stop stop1;
+    private Stop stop2;
+    private PublicTransport bus;
+    private Passenger passenger;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new AtomicLong();
+        directory = folder.getRoot().toPath().resolve("journal");
+        stop1 = new Stop("stop1", 0, 0);
+        stop2 = new Stop("stop2", 10, 0);
+        Route route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        bus = new Bus(7, 30, route, "BUS7");
+        passenger = new Passenger("p", stop2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        NetworkEvents.clear();
+    }
+
+    @Test
+    public void replay() throws Exception {
+        try (EventJournal journal = EventJournal.open(directory, clock::get)) {
+            NetworkEvents.register(journal);
+            clock.set(1);
+            stop1.addPassenger(passenger);
+            stop1.transportArrive(bus);
+            clock.set(2);
+            stop1.board(bus);
+            clock.set(3);
+            stop1.transportDepart(bus, stop2);
+            //候车、到站1、上车、离站1、下车、候车、到站2
+            Assert.assertEquals(7, journal.getRecordCount());
+        }
+        Assert.assertFalse(NetworkEvents.isEnabled());
+
+        JournalState boarded = EventJournal.replay(directory, 2);
+        Assert.assertEquals(Collections.singleton(passenger.getId()), boarded.passengersOn(bus.getId()));
+        Assert.assertTrue(boarded.waitingAt(stop1.getId()).isEmpty());
+        Assert.assertEquals(stop1.getId(), boarded.stopOf(bus.getId()));
+
+        JournalState arrived = EventJournal.replay(directory, Long.MAX_VALUE);
+        Assert.assertEquals(7, arrived.getRecordCount());
+        Assert.assertEquals(3, arrived.getTime());
+        Assert.assertEquals(stop2.getId(), arrived.stopOf(bus.getId()));
+        Assert.assertTrue(arrived.vehiclesAt(stop1.getId()).isEmpty());
+        Assert.assertTrue(arrived.passengersOn(bus.getId()).isEmpty());
+        Assert.assertEquals(Collections.singleton(passenger.getId()), arrived.waitingAt(stop2.getId()));
+
+        Assert.assertEquals(0, EventJournal.replay(directory, 0).getRecordCount());
+    }
+
+    @Test
+    public void segments() throws Exception {
+        try (EventJournal journal = EventJournal.open(directory, clock::get, 4, 3)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(i, EventJournal.WAIT, 1, -1, i);
+            }
+        }
+        //重新打开后在末尾继续追加
+        try (EventJournal journal = EventJournal.open(directory, clock::get, 4, 3)) {
+            journal.append(10, EventJournal.WAIT, 1, -1, 10);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(3, files.count());
+        }
+        long[] times = new long[11];
+        Assert.assertEquals(11, EventJournal.replay(directory, 100, (time, type, stop, vehicle, id) -> times[id] = time));
+        Assert.assertArrayEquals(new long[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, times);
+        Assert.assertEquals(11, EventJournal.replay(directory, 100).waitingAt(1).size());
+        Assert.assertEquals(Arrays.asList(0, 1, 2), Arrays.asList(EventJournal.replay(directory, 2)
+                .waitingAt(1).toArray()));
+    }
+
+    @Test
+    public void replayHandles() throws Exception {
+        PassengerStore store = new PassengerStore();
+        int handle = store.add("h", stop2);
+        try (EventJournal journal = EventJournal.open(directory, clock::get)) {
+            NetworkEvents.register(journal);
+            clock.set(1);
+            stop1.addPassengerHandle(handle, store);
+            stop1.transportArrive(bus);
+            clock.set(2);
+            stop1.boardHandles(bus, store);
+            clock.set(3);
+            stop1.transportLeave(bus);
+            bus.travelTo(stop2);
+            stop2.transportArrive(bus);
+            stop2.alightHandles(bus, store);
+        }
+
+        JournalState waiting = EventJournal.replay(directory, 1);
+        Assert.assertEquals(Collections.singleton(handle), waiting.waitingHandlesAt(stop1.getId()));
+        Assert.assertTrue(waiting.waitingAt(stop1.getId()).isEmpty());
+
+        JournalState boarded = EventJournal.replay(directory, 2);
+        Assert.assertTrue(boarded.waitingHandlesAt(stop1.getId()).isEmpty());
+        Assert.assertEquals(Collections.singleton(handle), boarded.handlesOn(bus.getId()));
+
+        JournalState alighted = EventJournal.replay(directory, 3);
+        Assert.assertTrue(alighted.handlesOn(bus.getId()).isEmpty());
+        Assert.assertEquals(Collections.singleton(handle), alighted.waitingHandlesAt(stop2.getId()));
+    }
+
+    @Test
+    public void replaySkipsLaterRecords() throws Exception {
+        try (EventJournal journal = EventJournal.open(directory, clock::get)) {
+            journal.append(1, EventJournal.WAIT, 1, -1, 1);
+            journal.append(5, EventJournal.WAIT, 1, -1, 2);
+            journal.append(2, EventJournal.WAIT, 1, -1, 3);
+        }
+        //晚于upTo的记录不结束重放
+        Assert.assertEquals(Arrays.asList(1, 3), Arrays.asList(EventJournal.replay(directory, 2)
+                .waitingAt(1).toArray()));
+        JournalState all = EventJournal.replay(directory, Long.MAX_VALUE);
+        Assert.assertEquals(3, all.getRecordCount());
+        Assert.assertEquals(5, all.getTime());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closed() throws Exception {
+        EventJournal journal = EventJournal.open(directory, clock::get);
+        journal.close();
+        journal.append(0, EventJournal.ARRIVE, 0, 0, -1);
+    }
+}
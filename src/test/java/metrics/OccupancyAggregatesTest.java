@@ -0,0 +1,180 @@
+package metrics;
+
+import events.NetworkEvents;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Ferry;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class OccupancyAggregatesTest {
+    private Stop stop1;
+    private Stop stop2;
+    private Stop stop3;
+    private Route busRoute;
+    private Route ferryRoute;
+    private PublicTransport bus;
+    private PublicTransport ferry;
+
+    @Before
+    public void setUp() throws Exception {
+        stop1 = new Stop("stop1", 0, 0);
+        stop2 = new Stop("stop2", 10, 0);
+        stop3 = new Stop("stop3", 20, 0);
+        busRoute = new BusRoute(42, "bus");
+        busRoute.addStop(stop1);
+        busRoute.addStop(stop2);
+        busRoute.addStop(stop3);
+        ferryRoute = new FerryRoute(7, "ferry");
+        ferryRoute.addStop(stop1);
+        ferryRoute.addStop(stop3);
+        bus = new Bus(1, 4, busRoute, "BUS1");
+        ferry = new Ferry(2, 10, ferryRoute, "CityCat");
+        busRoute.tryAddTransport(bus);
+        ferryRoute.tryAddTransport(ferry);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        NetworkEvents.clear();
+    }
+
+    @Test
+    public void incremental() throws Exception {
+        OccupancyAggregates aggregates = new OccupancyAggregates(Arrays.asList(busRoute, ferryRoute));
+        NetworkEvents.register(aggregates);
+
+        for (int i = 0; i < 3; i++) {
+            stop1.addPassenger(new Passenger("a" + i, stop2));
+        }
+        stop2.addPassenger(new Passenger("b", stop3));
+        for (int i = 0; i < 5; i++) {
+            stop3.addPassenger(new Passenger("c" + i, stop1));
+        }
+        Assert.assertEquals(9, aggregates.totalWaiting());
+        Assert.assertEquals(Arrays.asList(stop3, stop1), aggregates.mostCrowdedStops(2));
+
+        stop1.transportArrive(bus);
+        stop1.board(bus);
+        Assert.assertEquals(1, aggregates.stopVehicles(stop1));
+        Assert.assertEquals(0, aggregates.stopWaiting(stop1));
+        Assert.assertEquals(3, aggregates.routePassengers(busRoute));
+        Assert.assertEquals(0.75, aggregates.routeLoadFactor(busRoute), 1e-9);
+        Assert.assertEquals(3, aggregates.typePassengers("bus"));
+        Assert.assertEquals(Arrays.asList(stop3, stop2), aggregates.mostCrowdedStops(5));
+
+        //到站stop2:3人下车候车
+        stop1.transportDepart(bus, stop2);
+        Assert.assertEquals(0, aggregates.stopVehicles(stop1));
+        Assert.assertEquals(1, aggregates.stopVehicles(stop2));
+        Assert.assertEquals(0, aggregates.routePassengers(busRoute));
+        Assert.assertEquals(4, aggregates.stopWaiting(stop2));
+
+        ferry.addPassenger(new Passenger("d", stop3));
+        Assert.assertEquals(0.1, aggregates.typeLoadFactor("ferry"), 1e-9);
+        Assert.assertEquals(1, aggregates.totalOnBoard());
+        ferry.unload();
+        Assert.assertEquals(0, aggregates.typePassengers("ferry"));
+        Assert.assertEquals(Collections.singletonList(stop3), aggregates.mostCrowdedStops(1));
+    }
+
+    @Test
+    public void emptyVehicle() throws Exception {
+        OccupancyAggregates aggregates = new OccupancyAggregates(Arrays.asList(busRoute, ferryRoute));
+        NetworkEvents.register(aggregates);
+        //构造后加入的空车只到站离站，载客量仍计入
+        PublicTransport empty = new Ferry(3, 30, ferryRoute, "Empty");
+        ferryRoute.tryAddTransport(empty);
+        stop1.transportArrive(empty);
+        stop1.transportDepart(empty, stop3);
+
+        ferry.addPassenger(new Passenger("d", stop3));
+        Assert.assertEquals(0, empty.passengerCount());
+        Assert.assertEquals(0.025, aggregates.typeLoadFactor("ferry"), 1e-9);
+        Assert.assertEquals(0.025, aggregates.routeLoadFactor(ferryRoute), 1e-9);
+    }
+
+    @Test
+    public void initialState() throws Exception {
+        stop2.addPassenger(new Passenger("a", stop3));
+        bus.addPassenger(new Passenger("b", stop3));
+        stop1.transportArrive(ferry);
+
+        OccupancyAggregates aggregates = new OccupancyAggregates(Arrays.asList(busRoute, ferryRoute));
+        Assert.assertEquals(1, aggregates.routePassengers(busRoute));
+        Assert.assertEquals(1, aggregates.stopWaiting(stop2));
+        Assert.assertEquals(1, aggregates.stopVehicles(stop1));
+        Assert.assertEquals(0, aggregates.typeLoadFactor("train"), 1e-9);
+        Assert.assertTrue(aggregates.mostCrowdedStops(0).isEmpty());
+    }
+
+    @Test
+    public void unregister() throws Exception {
+        OccupancyAggregates aggregates = new OccupancyAggregates(Arrays.asList(busRoute, ferryRoute));
+        NetworkEvents.register(aggregates);
+        stop1.addPassenger(new Passenger("a", stop2));
+        stop2.addPassenger(new Passenger("b", stop3));
+        stop2.addPassenger(new Passenger("c", stop3));
+        bus.addPassenger(new Passenger("d", stop3));
+
+        aggregates.unregister(stop2);
+        Assert.assertEquals(1, aggregates.totalWaiting());
+        Assert.assertEquals(0, aggregates.stopWaiting(stop2));
+        Assert.assertEquals(Collections.singletonList(stop1), aggregates.mostCrowdedStops(3));
+
+        aggregates.unregister(bus);
+        Assert.assertEquals(0, aggregates.routePassengers(busRoute));
+        Assert.assertEquals(0, aggregates.routeLoadFactor(busRoute), 1e-9);
+    }
+
+    @Test
+    public void mostCrowdedBeyondTop() throws Exception {
+        OccupancyAggregates aggregates = new OccupancyAggregates();
+        NetworkEvents.register(aggregates);
+        int count = OccupancyAggregates.TOP_SIZE * 3;
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            stops.add(new Stop("s" + i, i, 0));
+        }
+        //候车人数 = 序号 % 7 + 1，再让排行中的站点减少
+        List<Passenger> waiting = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j <= i % 7; j++) {
+                Passenger passenger = new Passenger("p", stop1);
+                stops.get(i).addPassenger(passenger);
+                waiting.add(passenger);
+            }
+        }
+        Stop first = aggregates.mostCrowdedStops(1).get(0);
+        Route route = new BusRoute(9, "drain");
+        route.addStop(first);
+        route.addStop(stop1);
+        PublicTransport drain = new Bus(9, 100, route, "DRAIN");
+        first.transportArrive(drain);
+        first.board(drain);
+
+        List<Stop> expected = new ArrayList<>(stops);
+        expected.sort((a, b) -> a.waitingCount() != b.waitingCount()
+                ? Integer.compare(b.waitingCount(), a.waitingCount()) : Integer.compare(a.getId(), b.getId()));
+        expected.removeIf(e -> e.waitingCount() == 0);
+        Assert.assertEquals(expected.subList(0, 5), aggregates.mostCrowdedStops(5));
+        Assert.assertEquals(expected, aggregates.mostCrowdedStops(count));
+        Assert.assertEquals(waiting.size() - 7, aggregates.totalWaiting());
+    }
+}
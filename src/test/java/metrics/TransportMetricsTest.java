@@ -0,0 +1,107 @@
+package metrics;
+
+import exceptions.OverCapacityException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class TransportMetricsTest {
+    private Stop stop1;
+    private Stop stop2;
+    private Route route;
+    private PublicTransport bus;
+
+    @Before
+    public void setUp() throws Exception {
+        TransportMetrics.reset();
+        TransportMetrics.setEnabled(true);
+        stop1 = new Stop("stop1", 0, 0);
+        stop2 = new Stop("stop2", 1, 1);
+        route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        bus = new Bus(1, 1, route, "BUS1");
+        route.addTransport(bus);
+    }
+
+    @After
+    public void tearDown() {
+        TransportMetrics.setEnabled(false);
+        TransportMetrics.reset();
+    }
+
+    @Test
+    public void record() {
+        stop1.addPassenger(new Passenger("a", stop2));
+        stop1.addPassenger(new Passenger("b", stop2));
+        stop1.transportArrive(bus);
+        stop1.board(bus);
+        try {
+            bus.addPassenger(new Passenger("c", stop2));
+            Assert.fail();
+        } catch (OverCapacityException e) {
+            //预期超载
+        }
+        stop1.transportDepart(bus, stop2);
+        TransportMetrics.recordDwell(30);
+
+        MetricsSnapshot snapshot = TransportMetrics.snapshot();
+        String stopLabels = TransportMetrics.stopLabels(stop1);
+        String routeLabels = TransportMetrics.routeLabels(route);
+        Assert.assertEquals(2, snapshot.getValue("transport_arrivals_total", ""));
+        Assert.assertEquals(1, snapshot.getValue("transport_departures_total", ""));
+        Assert.assertEquals(1, snapshot.getValue("transport_boardings_total", ""));
+        Assert.assertEquals(1, snapshot.getValue("transport_capacity_rejections_total", ""));
+        Assert.assertEquals(1, snapshot.getValue("transport_stop_waiting_passengers", stopLabels));
+        Assert.assertEquals(1, snapshot.getValue("transport_route_capacity_rejections_total", routeLabels));
+        Assert.assertEquals(0, snapshot.getValue("transport_route_passengers", routeLabels));
+        Assert.assertEquals(1, snapshot.getValue("transport_dwell_time_count", ""));
+        Assert.assertEquals(30, snapshot.getValue("transport_dwell_time_sum", ""));
+        Assert.assertEquals(1, snapshot.getValue("transport_dwell_time_bucket", "le=\"31\""));
+
+        String text = snapshot.toText();
+        Assert.assertTrue(text.contains("# TYPE transport_arrivals_total counter\n"));
+        Assert.assertTrue(text.contains("transport_stop_arrivals_total{" + stopLabels + "} 1 "));
+    }
+
+    @Test
+    public void disabled() {
+        TransportMetrics.setEnabled(false);
+        stop1.transportArrive(bus);
+        Assert.assertEquals(0, TransportMetrics.snapshot().getValue("transport_arrivals_total", ""));
+    }
+
+    @Test
+    public void discardedStopsCollected() throws Exception {
+        WeakReference<Stop> discarded = recordOnDiscardedStop();
+        for (int i = 0; i < 50 && discarded.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        //指标不持有站点的强引用
+        Assert.assertNull(discarded.get());
+        Assert.assertEquals(1, TransportMetrics.trackedStopCount());
+        TransportMetrics.snapshot();
+        Assert.assertEquals(0, TransportMetrics.trackedStopCount());
+        Assert.assertEquals(1, TransportMetrics.snapshot().getValue("transport_arrivals_total", ""));
+    }
+
+    private WeakReference<Stop> recordOnDiscardedStop() {
+        Stop stop = new Stop("discarded", 5, 5);
+        stop.transportArrive(bus);
+        return new WeakReference<>(stop);
+    }
+}
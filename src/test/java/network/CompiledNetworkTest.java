@@ -0,0 +1,161 @@
+package network;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.Route;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class CompiledNetworkTest {
+    private Stop stopA;
+    private Stop stopB;
+    private Stop stopC;
+    private Stop stopD;
+    private Route busRoute;
+    private Route ferryRoute;
+
+    @Before
+    public void setUp() throws Exception {
+        stopA = new Stop("A", 0, 0);
+        stopB = new Stop("B", 5, 0);
+        stopC = new Stop("C", 10, -3);
+        stopD = new Stop("D", 20, 20);
+        busRoute = new BusRoute(1, "bus");
+        busRoute.addStop(stopA);
+        busRoute.addStop(stopB);
+        busRoute.addStop(stopC);
+        ferryRoute = new FerryRoute(2, "ferry");
+        ferryRoute.addStop(stopC);
+        ferryRoute.addStop(stopA);
+        //线路之外的相邻关系
+        stopC.addNeighbouringStop(stopD);
+    }
+
+    @Test
+    public void ids() {
+        CompiledNetwork network = CompiledNetwork.compile(Arrays.asList(busRoute, ferryRoute, busRoute));
+        Assert.assertEquals(2, network.routeCount());
+        Assert.assertEquals(0, network.idOf(busRoute));
+        Assert.assertEquals(1, network.idOf(ferryRoute));
+        Assert.assertEquals(busRoute, network.routeOf(0));
+        Assert.assertEquals(-1, network.idOf(new BusRoute(3, "other")));
+        Assert.assertEquals(-1, network.idOf((Route) null));
+
+        //线路上的站按线路顺序编号，仅相邻可达的站排在最后
+        Assert.assertEquals(4, network.stopCount());
+        List<Stop> stops = Arrays.asList(stopA, stopB, stopC, stopD);
+        for (int i = 0; i < stops.size(); i++) {
+            Assert.assertEquals(i, network.idOf(stops.get(i)));
+            Assert.assertEquals(stops.get(i), network.stopOf(i));
+            Assert.assertEquals(stops.get(i).getX(), network.x(i));
+            Assert.assertEquals(stops.get(i).getY(), network.y(i));
+        }
+        Assert.assertEquals(-1, network.idOf(new Stop("E", 0, 0)));
+        Assert.assertEquals(-1, network.idOf((Stop) null));
+        Assert.assertEquals(stopA.distanceTo(stopC), network.distance(0, 2));
+    }
+
+    @Test
+    public void neighbours() {
+        CompiledNetwork network = CompiledNetwork.compile(Arrays.asList(busRoute, ferryRoute));
+        for (int i = 0; i < network.stopCount(); i++) {
+            Stop stop = network.stopOf(i);
+            Assert.assertEquals(stop.getNeighbours().size(), network.neighbourEnd(i) - network.neighbourStart(i));
+            Set<Stop> neighbours = new HashSet<>();
+            for (int edge = network.neighbourStart(i); edge < network.neighbourEnd(i); edge++) {
+                Stop neighbour = network.stopOf(network.neighbourAt(edge));
+                neighbours.add(neighbour);
+                Assert.assertEquals(stop.distanceTo(neighbour), network.weightAt(edge));
+            }
+            Assert.assertEquals(new HashSet<>(stop.getNeighbours()), neighbours);
+        }
+        //区间首尾相接
+        Assert.assertEquals(0, network.neighbourStart(0));
+        for (int i = 1; i < network.stopCount(); i++) {
+            Assert.assertEquals(network.neighbourEnd(i - 1), network.neighbourStart(i));
+        }
+        //相邻关系是单向的：C到D有边，D没有出边
+        int d = network.idOf(stopD);
+        Assert.assertEquals(network.neighbourStart(d), network.neighbourEnd(d));
+        int c = network.idOf(stopC);
+        Assert.assertEquals(d, network.neighbourAt(network.neighbourEnd(c) - 1));
+    }
+
+    @Test
+    public void routeStops() {
+        CompiledNetwork network = CompiledNetwork.compile(Arrays.asList(busRoute, ferryRoute));
+        Assert.assertEquals(Arrays.asList(stopA, stopB, stopC), routeStops(network, network.idOf(busRoute)));
+        Assert.assertEquals(Arrays.asList(stopC, stopA), routeStops(network, network.idOf(ferryRoute)));
+
+        Assert.assertEquals(Arrays.asList(busRoute, ferryRoute), stopRoutes(network, network.idOf(stopA)));
+        Assert.assertEquals(Arrays.asList(busRoute), stopRoutes(network, network.idOf(stopB)));
+        Assert.assertEquals(Arrays.asList(busRoute, ferryRoute), stopRoutes(network, network.idOf(stopC)));
+        Assert.assertTrue(stopRoutes(network, network.idOf(stopD)).isEmpty());
+    }
+
+    @Test
+    public void loopCountedOnce() {
+        Route loop = new BusRoute(4, "loop");
+        loop.addStop(stopA);
+        loop.addStop(stopB);
+        loop.addStop(stopA);
+        CompiledNetwork network = CompiledNetwork.compile(Arrays.asList(loop));
+        Assert.assertEquals(Arrays.asList(stopA, stopB, stopA), routeStops(network, 0));
+        Assert.assertEquals(Arrays.asList(loop), stopRoutes(network, network.idOf(stopA)));
+    }
+
+    @Test
+    public void recompile() {
+        CompiledNetwork network = CompiledNetwork.compile(Arrays.asList(busRoute, ferryRoute));
+        Assert.assertFalse(network.isStale());
+
+        Stop stopE = new Stop("E", 30, 0);
+        ferryRoute.addStop(stopE);
+        Assert.assertTrue(network.isStale());
+        //旧的编译结果不变
+        Assert.assertEquals(4, network.stopCount());
+        Assert.assertEquals(-1, network.idOf(stopE));
+
+        CompiledNetwork recompiled = network.recompile();
+        Assert.assertFalse(recompiled.isStale());
+        Assert.assertTrue(recompiled.getVersion() > network.getVersion());
+        Assert.assertEquals(5, recompiled.stopCount());
+        Assert.assertEquals(Arrays.asList(stopC, stopA, stopE), routeStops(recompiled, recompiled.idOf(ferryRoute)));
+        int e = recompiled.idOf(stopE);
+        Assert.assertEquals(1, recompiled.neighbourEnd(e) - recompiled.neighbourStart(e));
+        Assert.assertEquals(recompiled.idOf(stopA), recompiled.neighbourAt(recompiled.neighbourStart(e)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullRoutes() {
+        CompiledNetwork.compile(null);
+    }
+
+    private static List<Stop> routeStops(CompiledNetwork network, int routeId) {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = network.routeStopStart(routeId); i < network.routeStopEnd(routeId); i++) {
+            stops.add(network.stopOf(network.routeStopAt(i)));
+        }
+        return stops;
+    }
+
+    private static List<Route> stopRoutes(CompiledNetwork network, int stopId) {
+        List<Route> routes = new ArrayList<>();
+        for (int i = network.stopRouteStart(stopId); i < network.stopRouteEnd(stopId); i++) {
+            routes.add(network.routeOf(network.stopRouteAt(i)));
+        }
+        return routes;
+    }
+}
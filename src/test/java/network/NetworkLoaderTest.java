@@ -0,0 +1,85 @@
+package network;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+
+import java.io.StringReader;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class NetworkLoaderTest {
+    private NetworkLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        loader = new NetworkLoader();
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        Stop stopA = new Stop("A", 0, 0);
+        Stop stopB = new Stop("B:east", -5, 12);
+        Stop stopC = new Stop("C", 10, 3);
+        Route route = new TrainRoute(42, "airport");
+        route.addStop(stopA);
+        route.addStop(stopB);
+        route.addStop(stopC);
+        String text = stopA + "\n" + stopB + "\r\n" + stopC + "\n\n" + route;
+
+        LoadResult result = loader.load(new StringReader(text));
+        Assert.assertEquals(0, result.getErrorCount());
+        Assert.assertEquals(3, result.getRegistry().size());
+        Assert.assertEquals(-5, result.getRegistry().get("B:east").getX());
+        Assert.assertEquals(1, result.getRoutes().size());
+        Route loaded = result.getRoutes().get(0);
+        Assert.assertTrue(loaded instanceof TrainRoute);
+        Assert.assertEquals(route.toString(), loaded.toString());
+        Assert.assertSame(result.getRegistry().get("C"), loaded.getStopsOnRoute().get(2));
+        Assert.assertTrue(result.getRegistry().get("A").getNeighbours().contains(result.getRegistry().get("B:east")));
+    }
+
+    @Test
+    public void reportsMalformedLines() throws Exception {
+        String text = "A:0:0\n"
+                + "B:1\n"
+                + "C:1:x\n"
+                + "D:1:2\n"
+                + "bus,r1,1:A|D\n"
+                + "tram,r2,2:A|D\n"
+                + "ferry,r3,3:A|Z\n"
+                + "bus,r4,99999999999:A\n"
+                + "ferry,r5,5:D|A";
+        LoadResult result = loader.load(new StringReader(text));
+
+        Assert.assertEquals(9, result.getLineCount());
+        Assert.assertEquals(5, result.getErrorCount());
+        Assert.assertEquals("line 2: Malformed Stop", result.getErrors().get(0));
+        Assert.assertEquals("line 7: Unknown Stop Z", result.getErrors().get(3));
+        Assert.assertEquals(2, result.getRoutes().size());
+        Assert.assertTrue(result.getRoutes().get(0) instanceof BusRoute);
+        Assert.assertTrue(result.getRoutes().get(1) instanceof FerryRoute);
+    }
+
+    @Test
+    public void longLinesAcrossBuffers() throws Exception {
+        StringBuilder stops = new StringBuilder();
+        StringBuilder route = new StringBuilder("bus,long,7:");
+        for (int i = 0; i < 20000; i++) {
+            stops.append("stop").append(i).append(':').append(i).append(":0\n");
+            route.append("stop").append(i).append('|');
+        }
+        route.setLength(route.length() - 1);
+
+        LoadResult result = loader.load(new StringReader(stops.append(route).toString()));
+        Assert.assertEquals(0, result.getErrorCount());
+        Assert.assertEquals(20000, result.getRoutes().get(0).getStopsOnRoute().size());
+    }
+}
@@ -0,0 +1,123 @@
+package network;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.OperatingPattern;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Ferry;
+import vehicles.PublicTransport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class NetworkSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Stop stopA;
+    private Stop stopB;
+    private Stop stopC;
+    private Stop stopD;
+    private Route busRoute;
+    private Route ferryRoute;
+
+    @Before
+    public void setUp() throws Exception {
+        stopA = new Stop("A", 0, 0);
+        stopB = new Stop("B站", 5, 0);
+        stopC = new Stop("C", 10, -3);
+        stopD = new Stop("D", 20, 20);
+        busRoute = new BusRoute(1, "bus");
+        busRoute.addStop(stopA);
+        busRoute.addStop(stopB);
+        busRoute.addStop(stopC);
+        busRoute.setOperatingPattern(OperatingPattern.LOOP);
+        ferryRoute = new FerryRoute(2, "ferry");
+        ferryRoute.addStop(stopC);
+        ferryRoute.addStop(stopA);
+        //线路之外的相邻关系
+        stopC.addNeighbouringStop(stopD);
+        busRoute.addTransport(new Bus(7, 30, busRoute, "ABC123"));
+        ferryRoute.addTransport(new Ferry(8, 100, ferryRoute, "CityHopper"));
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("network.bin");
+        NetworkSnapshot.write(path, Arrays.asList(busRoute, ferryRoute));
+        NetworkSnapshot snapshot = NetworkSnapshot.read(path);
+
+        Assert.assertEquals(4, snapshot.getStops().size());
+        Route bus = snapshot.getRoutes().get(0);
+        Assert.assertEquals(busRoute.toString(), bus.toString());
+        Assert.assertEquals(OperatingPattern.LOOP, bus.getOperatingPattern());
+        Assert.assertEquals(ferryRoute.toString(), snapshot.getRoutes().get(1).toString());
+
+        Stop c = bus.getStopsOnRoute().get(2);
+        Assert.assertEquals(-3, c.getY());
+        Assert.assertEquals(3, c.getNeighbours().size());
+        Assert.assertEquals("D", c.getNeighbours().get(2).getName());
+
+        PublicTransport busVehicle = snapshot.getVehicles().get(0);
+        Assert.assertEquals("ABC123", ((Bus) busVehicle).getRegistrationNumber());
+        Assert.assertEquals(30, busVehicle.getCapacity());
+        Assert.assertSame(bus, busVehicle.getRoute());
+        Assert.assertEquals("CityHopper", ((Ferry) snapshot.getVehicles().get(1)).getFerryType());
+    }
+
+    @Test
+    public void mappedQueries() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("network.bin");
+        NetworkSnapshot.write(path, Arrays.asList(busRoute, ferryRoute));
+        MappedNetwork mapped = MappedNetwork.open(path);
+
+        int b = mapped.findStop("B站");
+        Assert.assertEquals("B站", mapped.stopName(b));
+        Assert.assertEquals(-1, mapped.findStop("E"));
+        Assert.assertEquals(5, mapped.distance(b, mapped.findStop("A")));
+        Assert.assertEquals("ferry", mapped.routeType(1));
+        Assert.assertEquals(2, mapped.routeStopEnd(1) - mapped.routeStopStart(1));
+        Assert.assertEquals(8, mapped.vehicleId(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignFile() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("other.bin");
+        Files.write(path, new byte[64]);
+        MappedNetwork.open(path);
+    }
+
+    @Test
+    public void rejectsCorruptCounts() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("network.bin");
+        NetworkSnapshot.write(path, Arrays.asList(busRoute, ferryRoute));
+        byte[] original = Files.readAllBytes(path);
+        //站点数为负、线路数超出文件、字符串数接近int上限
+        int[][] corruptions = {{12, -1}, {20, 1 << 20}, {8, Integer.MAX_VALUE}};
+        for (int[] corruption : corruptions) {
+            byte[] bytes = original.clone();
+            ByteBuffer.wrap(bytes).putInt(corruption[0], corruption[1]);
+            Files.write(path, bytes);
+            try {
+                MappedNetwork.open(path);
+                Assert.fail();
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().startsWith("Corrupt") || e.getMessage().startsWith("Truncated"));
+            }
+        }
+    }
+}
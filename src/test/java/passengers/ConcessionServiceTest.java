@@ -0,0 +1,72 @@
+package passengers;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import stops.Stop;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class ConcessionServiceTest {
+    private Stop stop;
+    private List<ConcessionPassenger> passengers;
+
+    @Before
+    public void setUp() throws Exception {
+        stop = new Stop("stop", 0, 0);
+        passengers = Arrays.asList(
+                new ConcessionPassenger("a", stop, 420000),
+                new ConcessionPassenger("b", stop, 430000),
+                new ConcessionPassenger("c", stop, 429999));
+    }
+
+    @Test
+    public void matchesStringRule() {
+        int[] samples = {0, 42, 4200, 41999, 419999, 420000, 425555, 429999, 430000, 4200000, -420000,
+                Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int id : samples) {
+            String text = String.valueOf(id);
+            Assert.assertEquals(text.startsWith("42") && text.length() == 6, ConcessionService.isValid(id));
+        }
+    }
+
+    @Test
+    public void batches() {
+        BitSet valid = ConcessionService.validate(new int[]{420000, 1, 429999, 430000});
+        Assert.assertEquals("{0, 2}", valid.toString());
+        Assert.assertEquals("{0, 2}", ConcessionService.validate(passengers).toString());
+    }
+
+    @Test
+    public void sweeps() {
+        BitSet selection = new BitSet();
+        selection.set(0);
+        Assert.assertEquals(1, ConcessionService.expire(passengers, selection));
+        Assert.assertFalse(passengers.get(0).isValid());
+        Assert.assertTrue(passengers.get(2).isValid());
+
+        Assert.assertEquals(3, ConcessionService.renew(passengers, null, e -> 421111));
+        Assert.assertEquals("{0, 1, 2}", ConcessionService.validate(passengers).toString());
+    }
+
+    @Test
+    public void store() {
+        PassengerStore store = new PassengerStore();
+        store.addConcession("a", stop, 420001);
+        store.add("b", stop);
+        store.addConcession("c", stop, 1);
+        Assert.assertEquals("{0}", ConcessionService.validate(store).toString());
+
+        Assert.assertEquals(1, ConcessionService.renew(store, ConcessionService.validate(store), e -> e + 1));
+        Assert.assertEquals(420002, store.getConcessionId(0));
+        Assert.assertEquals(2, ConcessionService.expire(store, null));
+        Assert.assertTrue(ConcessionService.validate(store).isEmpty());
+        Assert.assertFalse(store.isConcessionValid(0));
+    }
+}
@@ -0,0 +1,158 @@
+package passengers;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class PassengerStoreTest {
+    private PassengerStore store;
+    private Stop stop1;
+    private Stop stop2;
+    private Stop stop3;
+    private Route route;
+    private PublicTransport bus;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new PassengerStore(2);
+        stop1 = new Stop("stop1", 0, 0);
+        stop2 = new Stop("stop2", 1, 0);
+        stop3 = new Stop("stop3", 2, 0);
+        route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        route.addStop(stop3);
+        bus = new Bus(1, 2, route, "ABC");
+        route.addTransport(bus);
+    }
+
+    @Test
+    public void columns() {
+        int a = store.add("\ralice\n", stop2);
+        int b = store.addConcession("alice", stop3, 420001);
+        int c = store.add(null, null);
+
+        Assert.assertEquals(3, store.size());
+        Assert.assertEquals("alice", store.getName(a));
+        //同名共享字符串池编号
+        Assert.assertEquals(store.getNameId(a), store.getNameId(b));
+        Assert.assertSame(stop3, store.getDestination(b));
+        Assert.assertEquals(PassengerStore.NO_STOP, store.getDestinationId(c));
+        Assert.assertTrue(store.isConcession(b));
+        Assert.assertFalse(store.isConcession(a));
+
+        Passenger passenger = store.toPassenger(b);
+        Assert.assertTrue(passenger instanceof ConcessionPassenger);
+        Assert.assertEquals(420001, ((ConcessionPassenger) passenger).getConcessionId());
+        Assert.assertEquals(stop3, passenger.getDestination());
+    }
+
+    @Test
+    public void boardAndAlight() {
+        int toStop2 = store.add("a", stop2);
+        int toStop3 = store.add("b", stop3);
+        int backwards = store.add("c", stop1);
+        int extra = store.add("d", stop3);
+        stop1.addPassengerHandle(toStop2, store);
+        stop1.addPassengerHandle(backwards, store);
+        stop1.addPassengerHandle(toStop3, store);
+        stop1.addPassengerHandle(extra, store);
+        stop1.transportArrive(bus);
+
+        //容量2，终点在后方的乘客不上车
+        Assert.assertEquals(2, stop1.boardHandles(bus, store));
+        Assert.assertArrayEquals(new int[]{backwards, extra}, stop1.getWaitingHandles());
+        Assert.assertEquals(PassengerStore.LOCATION_VEHICLE, store.getLocationKind(toStop3));
+        Assert.assertEquals(bus.getId(), store.getLocationId(toStop3));
+        Assert.assertEquals(0, bus.remainingCapacity());
+
+        stop1.transportDepart(bus, stop2);
+        Assert.assertEquals(1, stop2.alightHandles(bus, store));
+        Assert.assertArrayEquals(new int[]{toStop3}, bus.getPassengerHandles());
+        Assert.assertArrayEquals(new int[]{toStop2}, stop2.getWaitingHandles());
+        Assert.assertEquals(PassengerStore.LOCATION_STOP, store.getLocationKind(toStop2));
+        Assert.assertEquals(stop2.getId(), store.getLocationId(toStop2));
+        Assert.assertEquals(1, bus.passengerCount());
+    }
+
+    @Test
+    public void localStopIndexes() {
+        //全局站点id很大时站点表只按用到的站点数增长
+        for (int i = 0; i < 100; i++) {
+            new Stop("filler" + i, i, i);
+        }
+        Stop far = new Stop("far", 9, 9);
+        int a = store.add("a", far);
+        int b = store.add("b", stop2);
+        Assert.assertEquals(far.getId(), store.getDestinationId(a));
+        Assert.assertSame(far, store.getDestination(a));
+        Assert.assertEquals(stop2.getId(), store.getDestinationId(b));
+        store.setDestination(b, far);
+        Assert.assertEquals(far.getId(), store.getDestinationId(b));
+        far.addPassengerHandle(a, store);
+        Assert.assertEquals(far.getId(), store.getLocationId(a));
+    }
+
+    @Test
+    public void boardByRoute() throws Exception {
+        Stop stop4 = new Stop("stop4", 0, 5);
+        int toStop4 = store.add("a", stop4);
+        int toStop3 = store.add("b", stop3);
+        stop1.addPassengerHandle(toStop4, store);
+        stop1.addPassengerHandle(toStop3, store);
+        stop1.transportArrive(bus);
+        Assert.assertEquals(1, stop1.boardHandles(bus, store));
+
+        //候车后才开通的线路和新增的停靠站
+        Route branch = new BusRoute(2, "branch");
+        branch.addStop(stop1);
+        branch.addStop(stop3);
+        PublicTransport branchBus = new Bus(2, 10, branch, "BR");
+        branch.addTransport(branchBus);
+        stop1.transportArrive(branchBus);
+        Assert.assertEquals(0, stop1.boardHandles(branchBus, store));
+        branch.addStop(stop4);
+        Assert.assertEquals(1, stop1.boardHandles(branchBus, store));
+        Assert.assertEquals(0, stop1.waitingHandleCount());
+        Assert.assertArrayEquals(new int[0], stop1.getWaitingHandles());
+    }
+
+    @Test
+    public void boardAfterCompaction() throws Exception {
+        Route branch = new BusRoute(2, "branch");
+        branch.addStop(stop1);
+        branch.addStop(stop3);
+        for (int i = 0; i < 200; i++) {
+            stop1.addPassengerHandle(store.add("p" + i, i % 2 == 0 ? stop2 : stop3), store);
+        }
+        PublicTransport branchBus = new Bus(2, 10, branch, "BR1");
+        stop1.transportArrive(branchBus);
+        Assert.assertEquals(10, stop1.boardHandles(branchBus, store));
+
+        //大部分乘客上车后压缩槽位，线路索引重新建立
+        PublicTransport large = new Bus(3, 150, route, "L");
+        stop1.transportArrive(large);
+        Assert.assertEquals(150, stop1.boardHandles(large, store));
+        Assert.assertEquals(40, stop1.waitingHandleCount());
+
+        PublicTransport sweep = new Bus(4, 1000, branch, "BR2");
+        stop1.transportArrive(sweep);
+        int boarded = stop1.boardHandles(sweep, store);
+        Assert.assertEquals(40 - boarded, stop1.waitingHandleCount());
+        Assert.assertEquals(40 - boarded, stop1.getWaitingHandles().length);
+        for (int handle : stop1.getWaitingHandles()) {
+            Assert.assertSame(stop2, store.getDestination(handle));
+            Assert.assertEquals(PassengerStore.LOCATION_STOP, store.getLocationKind(handle));
+        }
+        Assert.assertTrue(boarded > 0);
+    }
+}
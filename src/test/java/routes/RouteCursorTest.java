@@ -0,0 +1,81 @@
+package routes;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import stops.Stop;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class RouteCursorTest {
+    private Stop stop1;
+    private Stop stop2;
+    private Stop stop3;
+    private Route route;
+
+    @Before
+    public void setUp() throws Exception {
+        stop1 = new Stop("stop1", 0, 0);
+        stop2 = new Stop("stop2", 1, 0);
+        stop3 = new Stop("stop3", 2, 0);
+        route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        route.addStop(stop3);
+    }
+
+    @Test
+    public void indexOf() {
+        Assert.assertEquals(1, route.indexOf(stop2));
+        Assert.assertEquals(-1, route.indexOf(new Stop("other", 0, 0)));
+        Assert.assertTrue(route.containsStop(stop3));
+        Assert.assertFalse(route.containsStop(null));
+    }
+
+    @Test
+    public void shuttle() {
+        RouteCursor cursor = new RouteCursor(route);
+        Assert.assertEquals(stop1, cursor.current());
+        Assert.assertTrue(cursor.isDownstream(stop3));
+        cursor.advance();
+        cursor.advance();
+        Assert.assertEquals(stop3, cursor.current());
+        //终点站已折返
+        Assert.assertEquals(stop2, cursor.peekNext());
+        Assert.assertTrue(cursor.isDownstream(stop1));
+        cursor.advance();
+        Assert.assertEquals(-1, cursor.getDirection());
+        Assert.assertFalse(cursor.isDownstream(stop3));
+        Assert.assertTrue(cursor.isDownstream(stop1));
+    }
+
+    @Test
+    public void loop() {
+        route.setOperatingPattern(OperatingPattern.LOOP);
+        RouteCursor cursor = new RouteCursor(route);
+        cursor.moveTo(stop3);
+        Assert.assertEquals(stop1, cursor.peekNext());
+        Assert.assertTrue(cursor.isDownstream(stop2));
+        Assert.assertFalse(cursor.isDownstream(stop3));
+
+        //闭合环线终点即始发站，不重复停靠
+        route.addStop(stop1);
+        Assert.assertTrue(route.isClosed());
+        cursor.advance();
+        Assert.assertEquals(3, cursor.getPosition());
+        Assert.assertEquals(stop2, cursor.peekNext());
+    }
+
+    @Test
+    public void moveTo() {
+        RouteCursor cursor = new RouteCursor(route);
+        cursor.moveTo(stop3);
+        cursor.moveTo(stop2);
+        Assert.assertEquals(-1, cursor.getDirection());
+        Assert.assertEquals(stop1, cursor.peekNext());
+        cursor.moveTo(new Stop("other", 0, 0));
+        Assert.assertEquals(stop2, cursor.current());
+    }
+}
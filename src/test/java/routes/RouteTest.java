@@ -0,0 +1,94 @@
+package routes;
+
+import exceptions.EmptyRouteException;
+import exceptions.IncompatibleTypeException;
+import exceptions.TransportResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Ferry;
+import vehicles.PublicTransport;
+
+import java.util.Arrays;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class RouteTest {
+    private Stop stop1;
+    private Route route;
+    private Route emptyRoute;
+
+    @Before
+    public void setUp() throws Exception {
+        stop1 = new Stop("stop1", 0, 0);
+        route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        emptyRoute = new BusRoute(2, "empty");
+    }
+
+    @Test
+    public void findStartStop() throws Exception {
+        Assert.assertNull(emptyRoute.findStartStop());
+        Assert.assertEquals(stop1, route.findStartStop());
+        Assert.assertEquals(stop1, route.getStartStop());
+        route.addStop(new Stop("stop2", 1, 1));
+        Assert.assertEquals(stop1, route.findStartStop());
+    }
+
+    @Test
+    public void getStartStopEmpty() {
+        try {
+            emptyRoute.getStartStop();
+            Assert.fail();
+        } catch (EmptyRouteException e) {
+            Assert.assertSame(EmptyRouteException.INSTANCE, e);
+            Assert.assertEquals(0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void tryAddTransport() {
+        Assert.assertEquals(TransportResult.IGNORED, route.tryAddTransport(null));
+        Assert.assertEquals(TransportResult.EMPTY_ROUTE, emptyRoute.tryAddTransport(new Bus(1, 10, emptyRoute, "BUS1")));
+        Assert.assertEquals(TransportResult.INCOMPATIBLE_TYPE,
+                route.tryAddTransport(new Ferry(2, 10, new FerryRoute(3, "ferry"), "CityCat")));
+        Assert.assertEquals(TransportResult.SUCCESS, route.tryAddTransport(new Bus(3, 10, route, "BUS3")));
+        Assert.assertEquals(1, route.getTransports().size());
+        Assert.assertTrue(emptyRoute.getTransports().isEmpty());
+    }
+
+    @Test
+    public void tryAddTransportsPartial() {
+        PublicTransport bus = new Bus(1, 10, route, "BUS1");
+        PublicTransport ferry = new Ferry(2, 10, new FerryRoute(3, "ferry"), "CityCat");
+        PublicTransport bus2 = new Bus(3, 10, route, "BUS3");
+        //跳过空元素和类型不匹配的车辆
+        Assert.assertEquals(2, route.tryAddTransports(Arrays.asList(bus, null, ferry, bus2)));
+        Assert.assertEquals(Arrays.asList(bus, bus2), route.getTransports());
+        Assert.assertEquals(0, emptyRoute.tryAddTransports(Arrays.asList(bus, bus2)));
+        Assert.assertEquals(0, route.tryAddTransports(null));
+    }
+
+    @Test
+    public void addTransportInstances() throws Exception {
+        try {
+            emptyRoute.addTransport(new Bus(1, 10, emptyRoute, "BUS1"));
+            Assert.fail();
+        } catch (EmptyRouteException e) {
+            Assert.assertSame(EmptyRouteException.INSTANCE, e);
+        }
+        try {
+            route.addTransport(new Ferry(2, 10, new FerryRoute(3, "ferry"), "CityCat"));
+            Assert.fail();
+        } catch (IncompatibleTypeException e) {
+            Assert.assertSame(IncompatibleTypeException.INSTANCE, e);
+            Assert.assertEquals(0, e.getStackTrace().length);
+        }
+        route.addTransport(null);
+        Assert.assertTrue(route.getTransports().isEmpty());
+    }
+}
@@ -0,0 +1,133 @@
+package routes;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import stops.Stop;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class TimetableTest {
+    private Stop stop1;
+    private Stop stop2;
+    private Stop stop3;
+    private Route route;
+
+    @Before
+    public void setUp() throws Exception {
+        stop1 = new Stop("stop1", 0, 0);
+        stop2 = new Stop("stop2", 1, 0);
+        stop3 = new Stop("stop3", 2, 0);
+        route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        route.addStop(stop3);
+    }
+
+    @Test
+    public void nextTrip() {
+        Timetable timetable = route.getTimetable();
+        //乱序加入，增加时插入有序位置
+        timetable.addTrip(new int[]{600, 700, 800});
+        timetable.addTrip(new int[]{0, 100, 200});
+        timetable.addTrip(new int[]{300, 400, 500});
+
+        Assert.assertTrue(timetable.isFifo());
+        Assert.assertEquals(0, timetable.nextTrip(0, 0));
+        Assert.assertEquals(1, timetable.nextTrip(1, 101));
+        Assert.assertEquals(400, timetable.departure(1, 1));
+        Assert.assertEquals(-1, timetable.nextTrip(2, 801));
+        Assert.assertEquals(500, route.nextDeparture(stop3, 201));
+        Assert.assertEquals(-1, route.nextDeparture(new Stop("other", 0, 0), 0));
+    }
+
+    @Test
+    public void overtaking() {
+        Timetable timetable = route.getTimetable();
+        timetable.addTrip(new int[]{0, 100, 900});
+        timetable.addTrip(new int[]{50, 150, 300});
+
+        Assert.assertFalse(timetable.isFifo());
+        Assert.assertEquals(300, timetable.nextDeparture(2, 200));
+    }
+
+    @Test
+    public void insertInOrder() {
+        Timetable timetable = route.getTimetable();
+        timetable.addTrip(new int[]{0, 100, 200});
+        timetable.addTrip(new int[]{600, 700, 800});
+        timetable.addTrip(new int[]{300, 400, 500});
+        timetable.addTrip(new int[]{300, 450, 550});
+        Assert.assertTrue(timetable.isFifo());
+        Assert.assertEquals(500, timetable.departure(1, 2));
+        Assert.assertEquals(550, timetable.departure(2, 2));
+        Assert.assertEquals(800, timetable.departure(3, 2));
+
+        //插到中间的班次超过后一班
+        timetable.addTrip(new int[]{200, 300, 900});
+        Assert.assertFalse(timetable.isFifo());
+        Assert.assertEquals(900, timetable.departure(1, 2));
+        Assert.assertEquals(500, timetable.nextDeparture(2, 450));
+    }
+
+    @Test
+    public void frequency() {
+        Timetable timetable = route.getTimetable();
+        timetable.addFrequency(1000, 2000, 300, new int[]{0, 60, 120});
+
+        //首站1000、1300、1600、1900发车
+        Assert.assertEquals(1000, timetable.nextDeparture(0, 0));
+        Assert.assertEquals(1360, timetable.nextDeparture(1, 1061));
+        Assert.assertEquals(1900, timetable.nextFrequencyStart(0, 2, 1721));
+        Assert.assertEquals(2020, timetable.frequencyArrival(0, 1900, 2));
+        Assert.assertEquals(-1, timetable.nextDeparture(0, 1901));
+
+        //具体班次早于间隔运行时取具体班次
+        timetable.addTrip(new int[]{1010, 1020, 1030});
+        Assert.assertEquals(1020, timetable.nextDeparture(1, 1001));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decreasingTimes() {
+        route.getTimetable().addTrip(new int[]{100, 50, 200});
+    }
+
+    @Test
+    public void stopChange() {
+        route.getTimetable().addTrip(new int[]{0, 100, 200});
+        route.addStop(new Stop("stop4", 3, 0));
+        //停靠站变化后不静默丢弃班次
+        try {
+            route.getTimetable();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            //预期不一致
+        }
+        try {
+            route.nextDeparture(stop1, 0);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            //预期不一致
+        }
+        route.clearTimetable();
+        Assert.assertTrue(route.getTimetable().isEmpty());
+        Assert.assertEquals(4, route.getTimetable().getStopCount());
+    }
+
+    @Test
+    public void sharedEmpty() {
+        Route unscheduled = new BusRoute(2, "unscheduled");
+        unscheduled.addStop(stop1);
+        Assert.assertSame(Timetable.EMPTY, unscheduled.findTimetable());
+        Assert.assertSame(Timetable.EMPTY, new BusRoute(3, "other").findTimetable());
+        Assert.assertEquals(-1, unscheduled.nextDeparture(stop1, 0));
+        Assert.assertNotSame(Timetable.EMPTY, unscheduled.getTimetable());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void emptyReadOnly() {
+        Timetable.EMPTY.addTrip(new int[0]);
+    }
+}
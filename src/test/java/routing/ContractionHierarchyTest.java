@@ -0,0 +1,127 @@
+package routing;
+
+import network.CompiledNetwork;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class ContractionHierarchyTest {
+    private static final int SIZE = 12;
+    private Stop[][] grid;
+    private List<Route> routes;
+
+    @Before
+    public void setUp() throws Exception {
+        //网格:每行一条东西向线路，每列一条南北向线路，坐标随机扰动使最短路径唯一性降低
+        SplittableRandom random = new SplittableRandom(7);
+        grid = new Stop[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                grid[i][j] = new Stop("s" + i + "_" + j, i * 10 + random.nextInt(5), j * 10 + random.nextInt(5));
+            }
+        }
+        routes = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            Route row = new BusRoute(i, "row" + i);
+            Route column = new BusRoute(SIZE + i, "column" + i);
+            for (int j = 0; j < SIZE; j++) {
+                row.addStop(grid[i][j]);
+                column.addStop(grid[j][i]);
+            }
+            routes.add(row);
+            routes.add(column);
+        }
+    }
+
+    @Test
+    public void matchesAStar() {
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(CompiledNetwork.compile(routes));
+        JourneyPlanner planner = new JourneyPlanner();
+        SplittableRandom random = new SplittableRandom(11);
+        for (int n = 0; n < 200; n++) {
+            Stop from = grid[random.nextInt(SIZE)][random.nextInt(SIZE)];
+            Stop to = grid[random.nextInt(SIZE)][random.nextInt(SIZE)];
+            int expected = planner.plan(from, to).getDistance();
+            Assert.assertEquals(expected, hierarchy.distance(from, to));
+
+            //展开后的路径逐段相邻且总长等于最短距离
+            List<Stop> path = hierarchy.path(from, to);
+            Assert.assertEquals(from, path.get(0));
+            Assert.assertEquals(to, path.get(path.size() - 1));
+            int length = 0;
+            for (int i = 1; i < path.size(); i++) {
+                Assert.assertTrue(path.get(i - 1).getNeighbours().contains(path.get(i)));
+                length += path.get(i - 1).distanceTo(path.get(i));
+            }
+            Assert.assertEquals(expected, length);
+        }
+    }
+
+    @Test
+    public void unreachable() {
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(CompiledNetwork.compile(routes));
+        Assert.assertEquals(-1, hierarchy.distance(grid[0][0], new Stop("other", 0, 0)));
+        Assert.assertNull(hierarchy.path(null, grid[0][0]));
+        Assert.assertEquals(0, hierarchy.distance(grid[1][1], grid[1][1]));
+    }
+
+    @Test
+    public void rebuildOnTopologyChange() {
+        DistanceOracle oracle = new DistanceOracle(routes);
+        ContractionHierarchy before = oracle.current();
+        Assert.assertSame(before, oracle.current());
+
+        //增加一条捷径线路
+        Stop corner = grid[SIZE - 1][SIZE - 1];
+        Route express = new BusRoute(100, "express");
+        express.addStop(grid[0][0]);
+        express.addStop(corner);
+        routes.add(express);
+        Assert.assertTrue(before.isStale());
+        Assert.assertEquals(grid[0][0].distanceTo(corner), oracle.distance(grid[0][0], corner));
+        Assert.assertNotSame(before, oracle.current());
+    }
+
+    @Test
+    public void unrelatedNetworkChange() {
+        DistanceOracle oracle = new DistanceOracle(routes);
+        ContractionHierarchy before = oracle.current();
+
+        //另建的网络不在编译范围内，不触发重建
+        Route other = new BusRoute(200, "other");
+        other.addStop(new Stop("o1", 0, 0));
+        other.addStop(new Stop("o2", 10, 0));
+        Assert.assertFalse(before.isStale());
+        Assert.assertSame(before, oracle.current());
+
+        //编译范围内的站点增加相邻站后过期
+        grid[0][0].addNeighbouringStop(new Stop("spur", -10, 0));
+        Assert.assertTrue(before.isStale());
+        Assert.assertNotSame(before, oracle.current());
+    }
+
+    @Test
+    public void singleStop() {
+        Stop only = new Stop("only", 0, 0);
+        Route route = new BusRoute(100, "single");
+        route.addStop(only);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(CompiledNetwork.compile(Collections.singletonList(route)));
+        //重复查询，确认临时状态已复位
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, hierarchy.distance(only, only));
+            Assert.assertEquals(Collections.singletonList(only), hierarchy.path(only, only));
+        }
+    }
+}
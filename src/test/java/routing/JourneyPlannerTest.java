@@ -0,0 +1,76 @@
+package routing;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+
+import java.util.Arrays;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class JourneyPlannerTest {
+    private JourneyPlanner planner;
+    private Stop stopA;
+    private Stop stopB;
+    private Stop stopC;
+    private Stop stopD;
+    private Stop stopE;
+    private Route busRoute;
+    private Route trainRoute;
+
+    @Before
+    public void setUp() throws Exception {
+        planner = new JourneyPlanner();
+        stopA = new Stop("A", 0, 0);
+        stopB = new Stop("B", 5, 0);
+        stopC = new Stop("C", 10, 0);
+        stopD = new Stop("D", 10, 10);
+        stopE = new Stop("E", 20, 20);
+
+        //巴士绕远:A-D-C，火车直达:A-B-C
+        busRoute = new BusRoute(1, "bus");
+        busRoute.addStop(stopA);
+        busRoute.addStop(stopD);
+        busRoute.addStop(stopC);
+        trainRoute = new TrainRoute(2, "train");
+        trainRoute.addStop(stopA);
+        trainRoute.addStop(stopB);
+        trainRoute.addStop(stopC);
+    }
+
+    @Test
+    public void planShortest() {
+        Journey journey = planner.plan(stopA, stopC);
+        Assert.assertEquals(Arrays.asList(stopA, stopB, stopC), journey.getStops());
+        Assert.assertEquals(10, journey.getDistance());
+        Assert.assertEquals(Arrays.asList(trainRoute), journey.getRoutes());
+    }
+
+    @Test
+    public void planWithTransfer() {
+        Journey journey = planner.plan(stopB, stopD);
+        Assert.assertEquals(Arrays.asList(stopB, stopC, stopD), journey.getStops());
+        Assert.assertEquals(15, journey.getDistance());
+        Assert.assertEquals(Arrays.asList(trainRoute, busRoute), journey.getRoutes());
+    }
+
+    @Test
+    public void planSameStop() {
+        Journey journey = planner.plan(stopA, stopA);
+        Assert.assertEquals(Arrays.asList(stopA), journey.getStops());
+        Assert.assertEquals(0, journey.getDistance());
+        Assert.assertTrue(journey.getRoutes().isEmpty());
+    }
+
+    @Test
+    public void planUnreachable() {
+        Assert.assertNull(planner.plan(stopA, stopE));
+        Assert.assertNull(planner.plan(null, stopA));
+    }
+}
@@ -0,0 +1,91 @@
+package routing;
+
+import network.CompiledNetwork;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class RaptorRouterTest {
+    private Stop stopA;
+    private Stop stopB;
+    private Stop stopC;
+    private Stop stopD;
+    private Route slowBus;
+    private Route feeder;
+    private Route express;
+    private RaptorRouter router;
+
+    @Before
+    public void setUp() throws Exception {
+        stopA = new Stop("A", 0, 0);
+        stopB = new Stop("B", 5, 0);
+        stopC = new Stop("C", 10, 0);
+        stopD = new Stop("D", 15, 0);
+
+        //慢巴士直达:A-B-C-D，或巴士到B换乘快车:B-D
+        slowBus = new BusRoute(1, "slow");
+        slowBus.addStop(stopA);
+        slowBus.addStop(stopB);
+        slowBus.addStop(stopC);
+        slowBus.addStop(stopD);
+        slowBus.getTimetable().addTrip(new int[]{100, 200, 300, 1000});
+
+        feeder = new BusRoute(2, "feeder");
+        feeder.addStop(stopA);
+        feeder.addStop(stopB);
+        feeder.getTimetable().addFrequency(0, 1000, 60, new int[]{0, 50});
+
+        express = new TrainRoute(3, "express");
+        express.addStop(stopB);
+        express.addStop(stopD);
+        express.getTimetable().addTrip(new int[]{150, 400});
+        express.getTimetable().addTrip(new int[]{250, 500});
+
+        router = new RaptorRouter(CompiledNetwork.compile(Arrays.asList(slowBus, feeder, express)), 2, 30);
+    }
+
+    @Test
+    public void paretoFront() {
+        List<Itinerary> itineraries = router.plan(stopA, stopD, 90);
+        Assert.assertEquals(2, itineraries.size());
+
+        Itinerary direct = itineraries.get(0);
+        Assert.assertEquals(0, direct.getTransfers());
+        Assert.assertEquals(1000, direct.getArrivalTime());
+        Assert.assertEquals(slowBus, direct.getLegs().get(0).getRoute());
+
+        //feeder 120发车170到B，等30秒换乘赶不上150的快车，只能坐250的
+        Itinerary transfer = itineraries.get(1);
+        Assert.assertEquals(1, transfer.getTransfers());
+        Assert.assertEquals(120, transfer.getDepartureTime());
+        Assert.assertEquals(500, transfer.getArrivalTime());
+        Assert.assertEquals(stopB, transfer.getLegs().get(1).getFrom());
+        Assert.assertEquals(express, transfer.getLegs().get(1).getRoute());
+    }
+
+    @Test
+    public void earliestArrival() {
+        Assert.assertEquals(500, router.earliestArrival(stopA, stopD, 90));
+        //复用同一路由器再次查询
+        Assert.assertEquals(400, router.earliestArrival(stopA, stopD, 0));
+        Assert.assertEquals(-1, router.earliestArrival(stopD, stopA, 0));
+        Assert.assertTrue(router.plan(stopA, new Stop("E", 0, 0), 0).isEmpty());
+    }
+
+    @Test
+    public void maxTransfers() {
+        RaptorRouter direct = new RaptorRouter(CompiledNetwork.compile(Arrays.asList(slowBus, feeder, express)), 0, 30);
+        Assert.assertEquals(1000, direct.earliestArrival(stopA, stopD, 90));
+    }
+}
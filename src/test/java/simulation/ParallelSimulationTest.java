@@ -0,0 +1,218 @@
+package simulation;
+
+import events.NetworkEvents;
+import events.NetworkListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class ParallelSimulationTest {
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    @Test
+    public void runUntil() {
+        //单条线路与Simulation相同:0到站stop1，30离站，40到站stop2，70离站，80到站stop3，110离站折返，120到站stop2
+        Stop stop1 = new Stop("stop1", 0, 0);
+        Stop stop2 = new Stop("stop2", 10, 0);
+        Stop stop3 = new Stop("stop3", 10, 10);
+        Route route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        route.addStop(stop3);
+        PublicTransport bus = new Bus(1, 30, route, "BUS1");
+
+        ParallelSimulation simulation = new ParallelSimulation(1L, 1, 30, 0, 25, pool);
+        simulation.addTransport(bus);
+        simulation.runUntil(0);
+        Assert.assertTrue(stop1.isAtStop(bus));
+
+        simulation.runUntil(40);
+        Assert.assertTrue(stop2.isAtStop(bus));
+
+        simulation.runUntil(120);
+        Assert.assertTrue(stop2.isAtStop(bus));
+        Assert.assertEquals(120, simulation.getClock());
+        Assert.assertEquals(7, simulation.getProcessedEvents());
+        Assert.assertEquals(0, simulation.sharedStopCount());
+    }
+
+    @Test
+    public void matchesSequential() {
+        List<Stop> sequentialStops = new ArrayList<>();
+        List<PublicTransport> sequentialBuses = new ArrayList<>();
+        ParallelSimulation sequential = new ParallelSimulation(11L, null);
+        build(sequential, sequentialStops, sequentialBuses);
+
+        List<Stop> parallelStops = new ArrayList<>();
+        List<PublicTransport> parallelBuses = new ArrayList<>();
+        ParallelSimulation parallel = new ParallelSimulation(11L, pool);
+        build(parallel, parallelStops, parallelBuses);
+
+        Assert.assertEquals(4, parallel.getPartitionCount());
+        Assert.assertTrue(parallel.sharedStopCount() > 0);
+        for (long end = 500; end <= 5000; end += 500) {
+            Assert.assertEquals(sequential.runUntil(end), parallel.runUntil(end));
+        }
+        Assert.assertEquals(sequential.getProcessedEvents(), parallel.getProcessedEvents());
+        Assert.assertEquals(sequential.getMergedEvents(), parallel.getMergedEvents());
+        Assert.assertTrue(parallel.getMergedEvents() > 0);
+        for (int i = 0; i < sequentialBuses.size(); i++) {
+            Assert.assertEquals(sequentialBuses.get(i).getCurrentStop().getName(),
+                    parallelBuses.get(i).getCurrentStop().getName());
+            Assert.assertEquals(sequentialBuses.get(i).passengerCount(), parallelBuses.get(i).passengerCount());
+        }
+        for (int i = 0; i < sequentialStops.size(); i++) {
+            Assert.assertEquals(sequentialStops.get(i).waitingCount(), parallelStops.get(i).waitingCount());
+            Assert.assertEquals(sequentialStops.get(i).vehicleCount(), parallelStops.get(i).vehicleCount());
+        }
+    }
+
+    @Test
+    public void sharedStopInTimeOrder() {
+        //时间片内先到共用站的车辆离站早于另一分区的车辆到站，与时间片长度无关都按时间先后处理
+        List<String> expected = sharedStopEvents(null, 1000);
+        Assert.assertEquals(Arrays.asList("arrive BUS1 1", "depart BUS1 0", "arrive BUS2 1", "depart BUS2 0"),
+                expected.subList(0, 4));
+        Assert.assertEquals(expected, sharedStopEvents(new ParallelSimulation(5L, 1, 30, 0, 1000, pool), 1000));
+        Assert.assertEquals(expected, sharedStopEvents(new ParallelSimulation(5L, 1, 30, 0, 1, pool), 1000));
+    }
+
+    /**
+     * 两条线路在S相交：BUS1从S出发，BUS2从50外驶向S；记录S上的到站离站顺序和当时在站车辆数
+     *
+     * @param simulation 为空时用{@link Simulation}
+     * @param endTime
+     * @return
+     */
+    private List<String> sharedStopEvents(ParallelSimulation simulation, long endTime) {
+        Stop shared = new Stop("S", 0, 0);
+        Route first = new BusRoute(1, "first");
+        first.addStop(shared);
+        first.addStop(new Stop("X", 100, 0));
+        Route second = new BusRoute(2, "second");
+        second.addStop(new Stop("Y", 0, 50));
+        second.addStop(shared);
+        PublicTransport bus1 = new Bus(1, 10, first, "BUS1");
+        PublicTransport bus2 = new Bus(2, 10, second, "BUS2");
+
+        List<String> events = new ArrayList<>();
+        NetworkEvents.register(new NetworkListener() {
+            @Override
+            public void onArrive(Stop stop, PublicTransport transport) {
+                if (stop == shared) {
+                    events.add("arrive BUS" + transport.getId() + " " + stop.vehicleCount());
+                }
+            }
+
+            @Override
+            public void onDepart(Stop stop, PublicTransport transport) {
+                if (stop == shared) {
+                    events.add("depart BUS" + transport.getId() + " " + stop.vehicleCount());
+                }
+            }
+        });
+        try {
+            if (Objects.isNull(simulation)) {
+                Simulation sequential = new Simulation(5L, 1, 30, 0);
+                sequential.addTransport(bus1);
+                sequential.addTransport(bus2);
+                sequential.runUntil(endTime);
+            } else {
+                simulation.addTransport(bus1);
+                simulation.addTransport(bus2);
+                simulation.runUntil(endTime);
+            }
+        } finally {
+            NetworkEvents.clear();
+        }
+        return events;
+    }
+
+    /**
+     * 4x4网格，两条横线两条竖线在交叉点共用站点，各站有前往其他站的候车乘客
+     *
+     * @param simulation
+     * @param stops
+     * @param buses
+     */
+    private void build(ParallelSimulation simulation, List<Stop> stops, List<PublicTransport> buses) {
+        Stop[][] grid = new Stop[4][4];
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                grid[x][y] = new Stop("s" + x + y, x * 20, y * 20);
+                stops.add(grid[x][y]);
+            }
+        }
+        List<Route> routes = new ArrayList<>();
+        for (int line = 1; line <= 2; line++) {
+            Route row = new BusRoute(line, "row" + line);
+            Route column = new BusRoute(line + 2, "column" + line);
+            for (int i = 0; i < 4; i++) {
+                row.addStop(grid[i][line]);
+                column.addStop(grid[line][i]);
+            }
+            routes.add(row);
+            routes.add(column);
+        }
+        int id = 0;
+        for (Route route : routes) {
+            for (int i = 0; i < 3; i++) {
+                PublicTransport bus = new Bus(++id, 20, route, "BUS" + id);
+                buses.add(bus);
+                simulation.addTransport(bus);
+            }
+        }
+        for (int i = 0; i < stops.size(); i++) {
+            for (int j = 0; j < 5; j++) {
+                Stop destination = stops.get((i * 7 + j * 3 + 1) % stops.size());
+                stops.get(i).addPassenger(new Passenger("p" + i + "_" + j, destination));
+            }
+        }
+    }
+
+    @Test
+    public void noNextStop() {
+        Stop stop1 = new Stop("stop1", 0, 0);
+        Route route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(new Stop("stop2", 10, 0));
+        PublicTransport terminal = new Bus(1, 30, route, "BUS1") {
+            @Override
+            public Stop nextStop() {
+                return null;
+            }
+        };
+        ParallelSimulation simulation = new ParallelSimulation(1L, 1, 30, 0, 25, pool);
+        simulation.addTransport(terminal);
+        simulation.runUntil(1000);
+        Assert.assertEquals(2, simulation.getProcessedEvents());
+        Assert.assertFalse(stop1.isAtStop(terminal));
+    }
+}
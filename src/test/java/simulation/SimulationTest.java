@@ -0,0 +1,105 @@
+package simulation;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class SimulationTest {
+    private Stop stop1;
+    private Stop stop2;
+    private Stop stop3;
+    private Route route;
+    private PublicTransport bus;
+
+    @Before
+    public void setUp() throws Exception {
+        stop1 = new Stop("stop1", 0, 0);
+        stop2 = new Stop("stop2", 10, 0);
+        stop3 = new Stop("stop3", 10, 10);
+        route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        route.addStop(stop3);
+        bus = new Bus(1, 30, route, "BUS1");
+    }
+
+    @Test
+    public void runUntil() {
+        //无随机浮动:0到站stop1，30离站，40到站stop2，70离站，80到站stop3，110离站折返，120到站stop2
+        Simulation simulation = new Simulation(1L, 1, 30, 0);
+        simulation.addTransport(bus);
+
+        simulation.runUntil(0);
+        Assert.assertTrue(stop1.isAtStop(bus));
+
+        simulation.runUntil(39);
+        Assert.assertFalse(stop1.isAtStop(bus));
+        Assert.assertEquals(stop1, bus.getCurrentStop());
+
+        simulation.runUntil(40);
+        Assert.assertTrue(stop2.isAtStop(bus));
+        Assert.assertEquals(stop2, bus.getCurrentStop());
+
+        simulation.runUntil(120);
+        Assert.assertTrue(stop2.isAtStop(bus));
+        Assert.assertFalse(stop3.isAtStop(bus));
+        Assert.assertEquals(120, simulation.getClock());
+        Assert.assertEquals(7, simulation.getProcessedEvents());
+    }
+
+    @Test
+    public void deterministic() {
+        Simulation first = new Simulation(7L);
+        first.addTransport(bus);
+        first.runUntil(10000);
+
+        Stop other1 = new Stop("stop1", 0, 0);
+        Stop other2 = new Stop("stop2", 10, 0);
+        Route otherRoute = new BusRoute(1, "route1");
+        otherRoute.addStop(other1);
+        otherRoute.addStop(other2);
+        otherRoute.addStop(new Stop("stop3", 10, 10));
+        PublicTransport otherBus = new Bus(1, 30, otherRoute, "BUS1");
+        Simulation second = new Simulation(7L);
+        second.addTransport(otherBus);
+        second.runUntil(10000);
+
+        Assert.assertEquals(first.getProcessedEvents(), second.getProcessedEvents());
+        Assert.assertEquals(bus.getCurrentStop().getName(), otherBus.getCurrentStop().getName());
+    }
+
+    @Test
+    public void addTransport() {
+        Simulation simulation = new Simulation(1L);
+        simulation.addTransport(null);
+        simulation.addTransport(new Bus(2, 10, new BusRoute(2, "empty"), "BUS2"));
+        Assert.assertTrue(simulation.getTransports().isEmpty());
+        Assert.assertEquals(0, simulation.pendingEvents());
+    }
+
+    @Test
+    public void noNextStop() {
+        //离站时没有下一站的车辆不再安排事件
+        PublicTransport terminal = new Bus(2, 30, route, "BUS2") {
+            @Override
+            public Stop nextStop() {
+                return null;
+            }
+        };
+        Simulation simulation = new Simulation(1L, 1, 30, 0);
+        simulation.addTransport(terminal);
+        simulation.runUntil(1000);
+        Assert.assertEquals(2, simulation.getProcessedEvents());
+        Assert.assertEquals(0, simulation.pendingEvents());
+        Assert.assertFalse(stop1.isAtStop(terminal));
+    }
+}
@@ -0,0 +1,200 @@
+package simulation;
+
+import events.NetworkEvents;
+import events.NetworkListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class StopActorSimulationTest {
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    @Test
+    public void runUntil() {
+        //与Simulation相同:0到站stop1，30离站，40到站stop2，70离站，80到站stop3，110离站折返，120到站stop2
+        Stop stop1 = new Stop("stop1", 0, 0);
+        Stop stop2 = new Stop("stop2", 10, 0);
+        Stop stop3 = new Stop("stop3", 10, 10);
+        Route route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        route.addStop(stop3);
+        PublicTransport bus = new Bus(1, 30, route, "BUS1");
+
+        StopActorSimulation simulation = new StopActorSimulation(1L, 1, 30, 0, pool);
+        simulation.addTransport(bus);
+        simulation.runUntil(0);
+        Assert.assertTrue(stop1.isAtStop(bus));
+
+        simulation.runUntil(39);
+        Assert.assertFalse(stop1.isAtStop(bus));
+
+        simulation.runUntil(120);
+        Assert.assertTrue(stop2.isAtStop(bus));
+        Assert.assertEquals(120, simulation.getClock());
+        Assert.assertEquals(7, simulation.getProcessedEvents());
+        Assert.assertEquals(3, simulation.stopActorCount());
+    }
+
+    @Test
+    public void runUntilAfterFailure() {
+        Stop stop1 = new Stop("stop1", 0, 0);
+        Stop stop2 = new Stop("stop2", 10, 0);
+        Route route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        PublicTransport bus = new Bus(1, 30, route, "BUS1");
+        StopActorSimulation simulation = new StopActorSimulation(1L, 1, 30, 0, pool);
+        simulation.addTransport(bus);
+
+        NetworkEvents.register(new NetworkListener() {
+            @Override
+            public void onArrive(Stop stop, PublicTransport transport) {
+                throw new IllegalArgumentException("Arrive Failed!");
+            }
+        });
+        try {
+            simulation.runUntil(0);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        } finally {
+            NetworkEvents.clear();
+        }
+
+        //失败轮次的车辆没有丢失
+        simulation.runUntil(40);
+        Assert.assertTrue(stop2.isAtStop(bus));
+    }
+
+    @Test
+    public void matchesSequential() {
+        //没有随机浮动时与顺序仿真逐位相同，两次运行各用一套独立的站点、线路和车辆
+        List<Stop> sequentialStops = new ArrayList<>();
+        List<PublicTransport> sequentialBuses = new ArrayList<>();
+        Simulation sequential = new Simulation(3L, 1, 30, 0);
+        build(sequentialStops, sequentialBuses);
+        sequentialBuses.forEach(sequential::addTransport);
+
+        List<Stop> actorStops = new ArrayList<>();
+        List<PublicTransport> actorBuses = new ArrayList<>();
+        StopActorSimulation simulation = new StopActorSimulation(3L, 1, 30, 0, pool);
+        build(actorStops, actorBuses);
+        actorBuses.forEach(simulation::addTransport);
+
+        for (long end = 300; end <= 3000; end += 300) {
+            Assert.assertEquals(sequential.runUntil(end), simulation.runUntil(end));
+        }
+        Assert.assertEquals(sequential.getProcessedEvents(), simulation.getProcessedEvents());
+        for (int i = 0; i < sequentialBuses.size(); i++) {
+            Assert.assertEquals(sequentialBuses.get(i).getCurrentStop().getName(),
+                    actorBuses.get(i).getCurrentStop().getName());
+            Assert.assertEquals(sequentialBuses.get(i).passengerCount(), actorBuses.get(i).passengerCount());
+        }
+        for (int i = 0; i < sequentialStops.size(); i++) {
+            Assert.assertEquals(sequentialStops.get(i).waitingCount(), actorStops.get(i).waitingCount());
+            Assert.assertEquals(sequentialStops.get(i).vehicleCount(), actorStops.get(i).vehicleCount());
+        }
+    }
+
+    @Test
+    public void sameTimeAtSharedStop() {
+        //两辆车同时到达共用站点，按加入顺序上车，先到的车坐满
+        Stop stop1 = new Stop("stop1", 0, 0);
+        Stop stop2 = new Stop("stop2", 10, 0);
+        Route route1 = new BusRoute(1, "route1");
+        Route route2 = new BusRoute(2, "route2");
+        route1.addStop(stop1);
+        route1.addStop(stop2);
+        route2.addStop(stop1);
+        route2.addStop(stop2);
+        PublicTransport first = new Bus(1, 2, route1, "BUS1");
+        PublicTransport second = new Bus(2, 2, route2, "BUS2");
+        for (int i = 0; i < 3; i++) {
+            stop1.addPassenger(new Passenger("p" + i, stop2));
+        }
+
+        StopActorSimulation simulation = new StopActorSimulation(1L, 1, 30, 0, pool);
+        simulation.addTransport(first);
+        simulation.addTransport(second);
+        Assert.assertEquals(2, simulation.runUntil(0));
+        Assert.assertEquals(2, first.passengerCount());
+        Assert.assertEquals(1, second.passengerCount());
+    }
+
+    /**
+     * 20个站点、10条重叠线路各50辆车，各站有前往其他站的候车乘客
+     *
+     * @param stops
+     * @param buses
+     */
+    private void build(List<Stop> stops, List<PublicTransport> buses) {
+        for (int i = 0; i < 20; i++) {
+            stops.add(new Stop("s" + i, i * 5, (i % 3) * 5));
+        }
+        for (int r = 0; r < 10; r++) {
+            Route route = new BusRoute(r, "route" + r);
+            for (int i = r; i < r + 8; i++) {
+                route.addStop(stops.get(i));
+            }
+            for (int i = 0; i < 50; i++) {
+                buses.add(new Bus(r * 100 + i, 10, route, "BUS" + r + "_" + i));
+            }
+        }
+        int passengers = 0;
+        for (int i = 0; i < stops.size(); i++) {
+            for (int j = 0; j < 40; j++) {
+                stops.get(i).addPassenger(new Passenger("p" + passengers++, stops.get((i + j + 1) % stops.size())));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullExecutor() {
+        new StopActorSimulation(1L, null);
+    }
+
+    @Test
+    public void noNextStop() {
+        Stop stop1 = new Stop("stop1", 0, 0);
+        Route route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(new Stop("stop2", 10, 0));
+        PublicTransport terminal = new Bus(1, 30, route, "BUS1") {
+            @Override
+            public Stop nextStop() {
+                return null;
+            }
+        };
+        StopActorSimulation simulation = new StopActorSimulation(1L, 1, 30, 0, pool);
+        simulation.addTransport(terminal);
+        simulation.runUntil(1000);
+        Assert.assertEquals(2, simulation.getProcessedEvents());
+        Assert.assertFalse(stop1.isAtStop(terminal));
+    }
+}
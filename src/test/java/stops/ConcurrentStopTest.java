@@ -0,0 +1,118 @@
+package stops;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class ConcurrentStopTest {
+    private static final int THREADS = 4;
+    private static final int PASSENGERS_PER_THREAD = 20000;
+    private static final int TRIPS_PER_THREAD = 5000;
+
+    private ConcurrentStop stop1;
+    private ConcurrentStop stop2;
+    private Route route;
+
+    @Before
+    public void setUp() throws Exception {
+        stop1 = new ConcurrentStop("stop1", 0, 0);
+        stop2 = new ConcurrentStop("stop2", 1, 1);
+        route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+    }
+
+    @Test
+    public void transportArriveOnce() {
+        PublicTransport bus = new Bus(1, 10, route, "BUS1");
+        stop1.transportArrive(bus);
+        stop1.transportArrive(bus);
+        Assert.assertEquals(1, stop1.getVehicles().size());
+        stop1.transportDepart(bus, stop2);
+        Assert.assertFalse(stop1.isAtStop(bus));
+        Assert.assertTrue(stop2.isAtStop(bus));
+        Assert.assertEquals(stop2, bus.getCurrentStop());
+    }
+
+    @Test
+    public void boardOnce() throws Exception {
+        List<PublicTransport> buses = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            PublicTransport bus = new Bus(t, 1000, route, "BUS" + t);
+            stop1.transportArrive(bus);
+            buses.add(bus);
+        }
+        for (int i = 0; i < 2000; i++) {
+            stop1.addPassenger(new Passenger("p" + i, stop2));
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (PublicTransport bus : buses) {
+            Thread thread = new Thread(() -> stop1.board(bus));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(2000, buses.stream().mapToInt(PublicTransport::passengerCount).sum());
+        Assert.assertTrue(stop1.getWaitingPassengers().isEmpty());
+    }
+
+    @Test
+    public void stress() throws Exception {
+        run(THREADS);
+        Assert.assertEquals(THREADS * PASSENGERS_PER_THREAD, stop1.waitingCount());
+        Assert.assertEquals(THREADS * PASSENGERS_PER_THREAD, stop1.getWaitingPassengers().size());
+        Assert.assertEquals(THREADS, stop1.vehicleCount() + stop2.vehicleCount());
+        Assert.assertEquals(THREADS, stop1.getVehicles().size() + stop2.getVehicles().size());
+    }
+
+    /**
+     * 每个线程驾驶一辆车在两站间往返，同时向stop1加入乘客
+     *
+     * @param threads
+     */
+    private void run(int threads) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            PublicTransport bus = new Bus(t, 10, route, "BUS" + t);
+            new Thread(() -> {
+                try {
+                    start.await();
+                    stop1.transportArrive(bus);
+                    for (int i = 0; i < PASSENGERS_PER_THREAD; i++) {
+                        stop1.addPassenger(new Passenger("p", stop1));
+                        if (i < TRIPS_PER_THREAD) {
+                            Stop from = bus.getCurrentStop();
+                            from.transportDepart(bus, from == stop1 ? stop2 : stop1);
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+    }
+}
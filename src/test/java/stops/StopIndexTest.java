@@ -0,0 +1,106 @@
+package stops;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class StopIndexTest {
+    private List<Stop> stops;
+    private StopIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        stops = new ArrayList<>();
+        index = new StopIndex();
+        for (int i = 0; i < 2000; i++) {
+            Stop stop = new Stop("stop" + i, random.nextInt(200), random.nextInt(200));
+            stops.add(stop);
+            index.add(stop);
+        }
+    }
+
+    @Test
+    public void add() {
+        index.add(null);
+        index.add(stops.get(0));
+        Assert.assertEquals(2000, index.size());
+        Assert.assertTrue(index.contains(stops.get(0)));
+    }
+
+    @Test
+    public void nearest() {
+        Stop origin = new Stop("origin", 100, 100);
+        List<Stop> result = index.nearest(100, 100, 10);
+        List<Integer> expected = stops.stream().map(origin::distanceTo).sorted().limit(10).collect(Collectors.toList());
+        Assert.assertEquals(expected, result.stream().map(origin::distanceTo).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void nearestStop() {
+        Stop stop = stops.get(7);
+        List<Stop> result = index.nearest(stop, 5);
+        Assert.assertEquals(5, result.size());
+        Assert.assertFalse(result.contains(stop));
+    }
+
+    @Test
+    public void withinDistance() {
+        Stop origin = new Stop("origin", 50, 150);
+        List<Stop> expected = stops.stream().filter(e -> origin.distanceTo(e) <= 15).collect(Collectors.toList());
+        Assert.assertEquals(new HashSet<>(expected), new HashSet<>(index.withinDistance(50, 150, 15)));
+        Assert.assertTrue(index.withinDistance(50, 150, -1).isEmpty());
+    }
+
+    @Test
+    public void inBox() {
+        List<Stop> expected = stops.stream()
+                .filter(e -> e.getX() >= 20 && e.getX() <= 60 && e.getY() >= 30 && e.getY() <= 45)
+                .collect(Collectors.toList());
+        List<Stop> result = index.inBox(20, 30, 60, 45);
+        result.sort(Comparator.comparing(Stop::getName));
+        expected.sort(Comparator.comparing(Stop::getName));
+        Assert.assertEquals(expected, result);
+    }
+
+    @Test
+    public void bulkBuild() {
+        StopIndex bulk = new StopIndex(stops);
+        Assert.assertEquals(2000, bulk.size());
+        Assert.assertEquals(index.withinDistance(10, 10, 30).size(), bulk.withinDistance(10, 10, 30).size());
+    }
+
+    @Test
+    public void identicalPoints() {
+        StopIndex same = new StopIndex();
+        List<Stop> stacked = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Stop stop = new Stop("same" + i, 5, 5);
+            stacked.add(stop);
+            same.add(stop);
+        }
+        same.add(new Stop("other", 6, 5));
+        //同坐标的站点在同一节点中，不形成长链
+        Assert.assertEquals(2, same.depth());
+        Assert.assertEquals(1001, same.size());
+        Assert.assertEquals(new HashSet<>(stacked), new HashSet<>(same.withinDistance(5, 5, 0)));
+        Assert.assertEquals(1000, same.inBox(0, 0, 5, 5).size());
+        Assert.assertEquals(1000, same.nearest(5, 5, 1000).stream().filter(e -> e.getX() == 5).count());
+        Assert.assertEquals(1000, same.nearest(stacked.get(0), 1000).size());
+
+        StopIndex bulk = new StopIndex(stacked);
+        Assert.assertEquals(1, bulk.depth());
+        Assert.assertEquals(1000, bulk.withinDistance(5, 5, 0).size());
+    }
+}
@@ -10,6 +10,11 @@ import routes.Route;
 import vehicles.Bus;
 import vehicles.Ferry;
 import vehicles.PublicTransport;
+import vehicles.UnloadMode;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * @author mazhenjie
@@ -82,6 +87,100 @@ public class StopTest {
         Assert.assertTrue(stop1.getWaitingPassengers().size() == 3);
     }
 
+    @Test
+    public void transportArriveByDestination() throws Exception {
+        Passenger through = new Passenger("through", stop2);
+        publicTransport.addPassenger(through);
+        stop1.transportArrive(publicTransport);
+        Assert.assertTrue(stop1.getWaitingPassengers().size() == 3);
+        Assert.assertFalse(stop1.getWaitingPassengers().contains(through));
+        Assert.assertTrue(publicTransport.getPassengers().contains(through));
+        Assert.assertTrue(publicTransport.passengerCount() == 1);
+
+        stop1.transportDepart(publicTransport, stop2);
+        Assert.assertTrue(stop2.getWaitingPassengers().contains(through));
+        Assert.assertTrue(publicTransport.passengerCount() == 0);
+    }
+
+    @Test
+    public void transportArriveUnloadAll() throws Exception {
+        publicTransport.addPassenger(new Passenger("through", stop2));
+        publicTransport.setUnloadMode(UnloadMode.ALL);
+        stop1.transportArrive(publicTransport);
+        Assert.assertTrue(stop1.getWaitingPassengers().size() == 4);
+        Assert.assertTrue(publicTransport.passengerCount() == 0);
+    }
+
+    @Test
+    public void board() {
+        Stop stop3 = new Stop("stop3", 3, 3);
+        route.addStop(stop3);
+        Passenger toStop2 = new Passenger("toStop2", stop2);
+        Passenger toStop3 = new Passenger("toStop3", stop3);
+        Passenger nowhere = new Passenger("nowhere", stop);
+        stop1.addPassenger(toStop2);
+        stop1.addPassenger(nowhere);
+        stop1.addPassenger(toStop3);
+
+        Assert.assertTrue(stop1.board(publicTransport) == 0);
+        stop1.transportArrive(publicTransport);
+        Assert.assertTrue(stop1.board(publicTransport) == 2);
+        Assert.assertTrue(publicTransport.getPassengers().contains(toStop2));
+        Assert.assertTrue(publicTransport.getPassengers().contains(toStop3));
+        Assert.assertTrue(stop1.getWaitingPassengers().contains(nowhere));
+        Assert.assertTrue(stop1.getWaitingPassengers().size() == 4);
+        Assert.assertTrue(stop1.board(publicTransport) == 0);
+    }
+
+    @Test
+    public void boardUpToCapacity() {
+        PublicTransport small = new Bus(2, 1, route, "BUS2");
+        stop1.addPassenger(new Passenger("first", stop2));
+        stop1.addPassenger(new Passenger("second", stop2));
+        stop1.transportArrive(small);
+        Assert.assertTrue(stop1.board(small) == 1);
+        Assert.assertTrue(small.passengerCount() == 1);
+        Assert.assertTrue(stop1.getWaitingPassengers().size() == 3);
+    }
+
+    @Test
+    public void boardAfterRouteChange() {
+        //乘客候车时目的站还不在线路上
+        Stop stop3 = new Stop("stop3", 3, 3);
+        Passenger toStop3 = new Passenger("toStop3", stop3);
+        stop1.addPassenger(toStop3);
+        route.addStop(stop3);
+
+        //线路新经过的站点已有候车乘客
+        Passenger toStop2 = new Passenger("toStop2", stop2);
+        stop.addPassenger(toStop2);
+        Route branch = new BusRoute(2, "branch");
+        branch.addStop(stop);
+        branch.addStop(stop2);
+        PublicTransport branchBus = new Bus(2, 30, branch, "BUS2");
+
+        stop1.transportArrive(publicTransport);
+        Assert.assertEquals(1, stop1.board(publicTransport));
+        Assert.assertTrue(publicTransport.getPassengers().contains(toStop3));
+        stop.transportArrive(branchBus);
+        Assert.assertEquals(1, stop.board(branchBus));
+        Assert.assertTrue(branchBus.getPassengers().contains(toStop2));
+    }
+
+    @Test
+    public void boardEqualRoutes() {
+        //编号和名称相同的两条线路是不同的候车队列
+        Route twin = new BusRoute(1, "route1");
+        twin.addStop(stop1);
+        twin.addStop(stop2);
+        Passenger toStop2 = new Passenger("toStop2", stop2);
+        stop1.addPassenger(toStop2);
+        PublicTransport twinBus = new Bus(2, 30, twin, "BUS2");
+        stop1.transportArrive(twinBus);
+        Assert.assertEquals(1, stop1.board(twinBus));
+        Assert.assertTrue(twinBus.getPassengers().contains(toStop2));
+    }
+
     @Test
     public void transportDepart() {
         stop1.transportArrive(publicTransport);
@@ -94,6 +193,29 @@ public class StopTest {
 
     }
 
+    @Test
+    public void hashCodeStable() {
+        Set<Stop> stops = new HashSet<>();
+        stops.add(stop);
+        int hash = stop.hashCode();
+        route.addStop(stop);
+        Assert.assertEquals(hash, stop.hashCode());
+        Assert.assertTrue(stops.contains(stop));
+        Assert.assertNotEquals(stop, new Stop("stop", 0, 0));
+    }
+
+    @Test
+    public void registry() {
+        StopRegistry registry = new StopRegistry();
+        Stop created = registry.create("created", 5, 5);
+        Assert.assertTrue(registry.register(stop1));
+        Assert.assertFalse(registry.register(stop1));
+        Assert.assertEquals(stop1, registry.get(stop1.getId()));
+        Assert.assertEquals(created, registry.get("created"));
+        Assert.assertNull(registry.get("missing"));
+        Assert.assertTrue(registry.size() == 2);
+    }
+
     @Test
     public void distanceTo() {
         Assert.assertTrue(stop1.distanceTo(stop2) == 2);
@@ -137,4 +259,15 @@ public class StopTest {
     public void getWaitingPassengers() {
         Assert.assertTrue(stop1.getWaitingPassengers().size() == 2);
     }
+
+    @Test
+    public void snapshots() {
+        List<PublicTransport> vehicles = stop1.getVehicles();
+        List<Passenger> waiting = stop1.getWaitingPassengers();
+        stop1.transportArrive(publicTransport);
+        //快照不随站点状态变化
+        Assert.assertTrue(vehicles.isEmpty());
+        Assert.assertTrue(waiting.size() == 2);
+        Assert.assertTrue(stop1.getWaitingPassengers().size() == 3);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package vehicles;
+
+import exceptions.OverCapacityException;
+import exceptions.TransportResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * @author mazhenjie
+ * @since 2019/3/24
+ */
+public class PublicTransportTest {
+    private Stop stop1;
+    private Stop stop2;
+    private Stop stop3;
+    private Route route;
+    private PublicTransport bus;
+
+    @Before
+    public void setUp() throws Exception {
+        stop1 = new Stop("stop1", 0, 0);
+        stop2 = new Stop("stop2", 10, 0);
+        stop3 = new Stop("stop3", 20, 0);
+        route = new BusRoute(1, "route1");
+        route.addStop(stop1);
+        route.addStop(stop2);
+        route.addStop(stop3);
+        bus = new Bus(1, 2, route, "BUS1");
+    }
+
+    @Test
+    public void alightAfterDestinationChange() throws Exception {
+        Passenger passenger = new Passenger("p", stop3);
+        bus.addPassenger(passenger);
+        Assert.assertEquals(bus, passenger.getVehicle());
+
+        //车上改为在stop2下车
+        passenger.setDestination(stop2);
+        Assert.assertTrue(bus.alightAt(stop3).isEmpty());
+        Assert.assertEquals(Collections.singletonList(passenger), bus.alightAt(stop2));
+        Assert.assertEquals(0, bus.passengerCount());
+        Assert.assertNull(passenger.getVehicle());
+
+        //下车后修改目的站不影响车辆
+        passenger.setDestination(stop3);
+        Assert.assertTrue(bus.alightAt(stop3).isEmpty());
+    }
+
+    @Test
+    public void removeAfterDestinationChange() throws Exception {
+        Passenger passenger = new Passenger("p", stop3);
+        bus.addPassenger(passenger);
+        passenger.setDestination(null);
+        Assert.assertTrue(bus.removePassenger(passenger));
+        Assert.assertFalse(bus.removePassenger(passenger));
+        Assert.assertEquals(0, bus.passengerCount());
+    }
+
+    @Test
+    public void tryAddPassenger() {
+        Assert.assertEquals(TransportResult.IGNORED, bus.tryAddPassenger(null));
+        Assert.assertEquals(TransportResult.SUCCESS, bus.tryAddPassenger(new Passenger("a", stop2)));
+        Assert.assertEquals(TransportResult.SUCCESS, bus.tryAddPassenger(new Passenger("b", stop3)));
+        Assert.assertEquals(TransportResult.OVER_CAPACITY, bus.tryAddPassenger(new Passenger("c", stop3)));
+        Assert.assertEquals(2, bus.passengerCount());
+        Assert.assertEquals(0, bus.remainingCapacity());
+    }
+
+    @Test
+    public void tryAddPassengerAboard() throws Exception {
+        Passenger passenger = new Passenger("p", stop3);
+        PublicTransport other = new Bus(2, 2, route, "BUS2");
+        bus.addPassenger(passenger);
+        //已在车上的乘客不能再上同一辆或其他车辆
+        Assert.assertEquals(TransportResult.ALREADY_ABOARD, other.tryAddPassenger(passenger));
+        Assert.assertEquals(TransportResult.ALREADY_ABOARD, bus.tryAddPassenger(passenger));
+        Assert.assertEquals(0, other.passengerCount());
+        Assert.assertEquals(1, bus.passengerCount());
+        Assert.assertEquals(bus, passenger.getVehicle());
+
+        bus.removePassenger(passenger);
+        Assert.assertEquals(TransportResult.SUCCESS, other.tryAddPassenger(passenger));
+        Assert.assertEquals(other, passenger.getVehicle());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setVehicleWithoutBoarding() {
+        new Passenger("p", stop3).setVehicle(bus, null);
+    }
+
+    @Test
+    public void tryAddPassengersPartial() {
+        Passenger a = new Passenger("a", stop2);
+        Passenger b = new Passenger("b", stop3);
+        //空元素跳过，满载后停止
+        Assert.assertEquals(2, bus.tryAddPassengers(Arrays.asList(a, null, b, new Passenger("c", stop3))));
+        Assert.assertEquals(2, bus.passengerCount());
+        Assert.assertTrue(bus.getPassengers().containsAll(Arrays.asList(a, b)));
+        Assert.assertEquals(0, bus.tryAddPassengers(Collections.singletonList(new Passenger("d", stop2))));
+        Assert.assertEquals(0, bus.tryAddPassengers(null));
+    }
+
+    @Test
+    public void overCapacityInstance() throws Exception {
+        bus.addPassenger(new Passenger("a", stop2));
+        bus.addPassenger(new Passenger("b", stop2));
+        try {
+            bus.addPassenger(new Passenger("c", stop2));
+            Assert.fail();
+        } catch (OverCapacityException e) {
+            //共享实例不填充堆栈，也不记录suppressed
+            Assert.assertSame(OverCapacityException.INSTANCE, e);
+            Assert.assertEquals(0, e.getStackTrace().length);
+            e.addSuppressed(new RuntimeException());
+            Assert.assertEquals(0, e.getSuppressed().length);
+        }
+        Assert.assertTrue(new OverCapacityException().getStackTrace().length > 0);
+    }
+}